@@ -39,6 +39,8 @@ public class CassandraConfiguration {
     public static final int DEFAULT_FLAGS_UPDATE_MESSAGE_ID_MAX_RETRY = 1000;
     public static final int DEFAULT_MODSEQ_MAX_RETRY = 100000;
     public static final int DEFAULT_UID_MAX_RETRY = 100000;
+    public static final int DEFAULT_MODSEQ_LEASE_SIZE = 1;
+    public static final int DEFAULT_UID_LEASE_SIZE = 1;
     public static final int DEFAULT_ACL_MAX_RETRY = 1000;
     public static final int DEFAULT_FETCH_NEXT_PAGE_ADVANCE_IN_ROW = 100;
     public static final int DEFAULT_BLOB_PART_SIZE = 100 * 1024;
@@ -49,6 +51,8 @@ public class CassandraConfiguration {
     private static final String MAILBOX_MAX_RETRY_ACL = "mailbox.max.retry.acl";
     private static final String MAILBOX_MAX_RETRY_MODSEQ = "mailbox.max.retry.modseq";
     private static final String MAILBOX_MAX_RETRY_UID = "mailbox.max.retry.uid";
+    private static final String MAILBOX_LEASE_SIZE_MODSEQ = "mailbox.lease.size.modseq";
+    private static final String MAILBOX_LEASE_SIZE_UID = "mailbox.lease.size.uid";
     private static final String MAILBOX_MAX_RETRY_MESSAGE_FLAGS_UPDATE = "mailbox.max.retry.message.flags.update";
     private static final String MAILBOX_MAX_RETRY_MESSAGE_ID_FLAGS_UPDATE = "mailbox.max.retry.message.id.flags.update";
     private static final String FETCH_ADVANCE_ROW_COUNT = "fetch.advance.row.count";
@@ -69,6 +73,8 @@ public class CassandraConfiguration {
         private Optional<Integer> flagsUpdateMessageMaxRetry = Optional.empty();
         private Optional<Integer> modSeqMaxRetry = Optional.empty();
         private Optional<Integer> uidMaxRetry = Optional.empty();
+        private Optional<Integer> modSeqLeaseSize = Optional.empty();
+        private Optional<Integer> uidLeaseSize = Optional.empty();
         private Optional<Integer> aclMaxRetry = Optional.empty();
         private Optional<Integer> fetchNextPageInAdvanceRow = Optional.empty();
         private Optional<Integer> blobPartSize = Optional.empty();
@@ -117,6 +123,18 @@ public class CassandraConfiguration {
             return this;
         }
 
+        public Builder modSeqLeaseSize(int value) {
+            Preconditions.checkArgument(value > 0, "modSeqLeaseSize needs to be strictly positive");
+            this.modSeqLeaseSize = Optional.of(value);
+            return this;
+        }
+
+        public Builder uidLeaseSize(int value) {
+            Preconditions.checkArgument(value > 0, "uidLeaseSize needs to be strictly positive");
+            this.uidLeaseSize = Optional.of(value);
+            return this;
+        }
+
         public Builder aclMaxRetry(int value) {
             Preconditions.checkArgument(value > 0, "aclMaxRetry needs to be strictly positive");
             this.aclMaxRetry = Optional.of(value);
@@ -182,6 +200,16 @@ public class CassandraConfiguration {
             return this;
         }
 
+        public Builder modSeqLeaseSize(Optional<Integer> value) {
+            value.ifPresent(this::modSeqLeaseSize);
+            return this;
+        }
+
+        public Builder uidLeaseSize(Optional<Integer> value) {
+            value.ifPresent(this::uidLeaseSize);
+            return this;
+        }
+
         public Builder aclMaxRetry(Optional<Integer> value) {
             value.ifPresent(this::aclMaxRetry);
             return this;
@@ -216,6 +244,8 @@ public class CassandraConfiguration {
                 flagsUpdateMessageMaxRetry.orElse(DEFAULT_FLAGS_UPDATE_MESSAGE_MAX_RETRY),
                 modSeqMaxRetry.orElse(DEFAULT_MODSEQ_MAX_RETRY),
                 uidMaxRetry.orElse(DEFAULT_UID_MAX_RETRY),
+                modSeqLeaseSize.orElse(DEFAULT_MODSEQ_LEASE_SIZE),
+                uidLeaseSize.orElse(DEFAULT_UID_LEASE_SIZE),
                 fetchNextPageInAdvanceRow.orElse(DEFAULT_FETCH_NEXT_PAGE_ADVANCE_IN_ROW),
                 blobPartSize.orElse(DEFAULT_BLOB_PART_SIZE),
                 attachmentV2MigrationReadTimeout.orElse(DEFAULT_ATTACHMENT_V2_MIGRATION_READ_TIMEOUT),
@@ -235,6 +265,10 @@ public class CassandraConfiguration {
                 propertiesConfiguration.getInteger(MAILBOX_MAX_RETRY_MODSEQ, null)))
             .uidMaxRetry(Optional.ofNullable(
                 propertiesConfiguration.getInteger(MAILBOX_MAX_RETRY_UID, null)))
+            .modSeqLeaseSize(Optional.ofNullable(
+                propertiesConfiguration.getInteger(MAILBOX_LEASE_SIZE_MODSEQ, null)))
+            .uidLeaseSize(Optional.ofNullable(
+                propertiesConfiguration.getInteger(MAILBOX_LEASE_SIZE_UID, null)))
             .flagsUpdateMessageMaxRetry(Optional.ofNullable(
                 propertiesConfiguration.getInteger(MAILBOX_MAX_RETRY_MESSAGE_FLAGS_UPDATE, null)))
             .flagsUpdateMessageIdMaxRetry(Optional.ofNullable(
@@ -263,6 +297,8 @@ public class CassandraConfiguration {
     private final int flagsUpdateMessageMaxRetry;
     private final int modSeqMaxRetry;
     private final int uidMaxRetry;
+    private final int modSeqLeaseSize;
+    private final int uidLeaseSize;
     private final int aclMaxRetry;
     private final int fetchNextPageInAdvanceRow;
     private final int blobPartSize;
@@ -272,7 +308,7 @@ public class CassandraConfiguration {
     @VisibleForTesting
     CassandraConfiguration(int aclMaxRetry, int messageReadChunkSize, int expungeChunkSize,
                            int flagsUpdateChunkSize, int flagsUpdateMessageIdMaxRetry, int flagsUpdateMessageMaxRetry,
-                           int modSeqMaxRetry, int uidMaxRetry, int fetchNextPageInAdvanceRow,
+                           int modSeqMaxRetry, int uidMaxRetry, int modSeqLeaseSize, int uidLeaseSize, int fetchNextPageInAdvanceRow,
                            int blobPartSize, final int attachmentV2MigrationReadTimeout, int messageAttachmentIdsReadTimeout) {
         this.aclMaxRetry = aclMaxRetry;
         this.messageReadChunkSize = messageReadChunkSize;
@@ -281,6 +317,8 @@ public class CassandraConfiguration {
         this.flagsUpdateMessageMaxRetry = flagsUpdateMessageMaxRetry;
         this.modSeqMaxRetry = modSeqMaxRetry;
         this.uidMaxRetry = uidMaxRetry;
+        this.modSeqLeaseSize = modSeqLeaseSize;
+        this.uidLeaseSize = uidLeaseSize;
         this.fetchNextPageInAdvanceRow = fetchNextPageInAdvanceRow;
         this.flagsUpdateChunkSize = flagsUpdateChunkSize;
         this.blobPartSize = blobPartSize;
@@ -324,6 +362,14 @@ public class CassandraConfiguration {
         return uidMaxRetry;
     }
 
+    public int getModSeqLeaseSize() {
+        return modSeqLeaseSize;
+    }
+
+    public int getUidLeaseSize() {
+        return uidLeaseSize;
+    }
+
     public int getFetchNextPageInAdvanceRow() {
         return fetchNextPageInAdvanceRow;
     }
@@ -348,6 +394,8 @@ public class CassandraConfiguration {
                 && Objects.equals(this.flagsUpdateMessageMaxRetry, that.flagsUpdateMessageMaxRetry)
                 && Objects.equals(this.modSeqMaxRetry, that.modSeqMaxRetry)
                 && Objects.equals(this.uidMaxRetry, that.uidMaxRetry)
+                && Objects.equals(this.modSeqLeaseSize, that.modSeqLeaseSize)
+                && Objects.equals(this.uidLeaseSize, that.uidLeaseSize)
                 && Objects.equals(this.flagsUpdateChunkSize, that.flagsUpdateChunkSize)
                 && Objects.equals(this.fetchNextPageInAdvanceRow, that.fetchNextPageInAdvanceRow)
                 && Objects.equals(this.blobPartSize, that.blobPartSize)
@@ -360,7 +408,7 @@ public class CassandraConfiguration {
     @Override
     public final int hashCode() {
         return Objects.hash(aclMaxRetry, messageReadChunkSize, expungeChunkSize, flagsUpdateMessageIdMaxRetry,
-            flagsUpdateMessageMaxRetry, modSeqMaxRetry, uidMaxRetry, fetchNextPageInAdvanceRow, flagsUpdateChunkSize,
+            flagsUpdateMessageMaxRetry, modSeqMaxRetry, uidMaxRetry, modSeqLeaseSize, uidLeaseSize, fetchNextPageInAdvanceRow, flagsUpdateChunkSize,
             blobPartSize, attachmentV2MigrationReadTimeout, messageAttachmentIdsReadTimeout);
     }
 
@@ -376,6 +424,8 @@ public class CassandraConfiguration {
             .add("fetchNextPageInAdvanceRow", fetchNextPageInAdvanceRow)
             .add("flagsUpdateChunkSize", flagsUpdateChunkSize)
             .add("uidMaxRetry", uidMaxRetry)
+            .add("modSeqLeaseSize", modSeqLeaseSize)
+            .add("uidLeaseSize", uidLeaseSize)
             .add("blobPartSize", blobPartSize)
             .add("attachmentV2MigrationReadTimeout", attachmentV2MigrationReadTimeout)
             .add("messageAttachmentIdsReadTimeout", messageAttachmentIdsReadTimeout)
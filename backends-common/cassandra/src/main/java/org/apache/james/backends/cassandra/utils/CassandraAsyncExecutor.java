@@ -19,11 +19,13 @@
 
 package org.apache.james.backends.cassandra.utils;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
 import javax.inject.Inject;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
@@ -56,6 +58,16 @@ public class CassandraAsyncExecutor {
             .thenAccept(result -> { });
     }
 
+    /**
+     * Statements are sent as a single unlogged batch, which only pays off when they all target the same partition.
+     */
+    public CompletableFuture<Void> executeUnloggedBatch(Collection<? extends Statement> statements) {
+        if (statements.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return executeVoid(new BatchStatement(BatchStatement.Type.UNLOGGED).addAll(statements));
+    }
+
     public CompletableFuture<Optional<Row>> executeSingleRow(Statement statement) {
         return execute(statement)
             .thenApply(ResultSet::one)
@@ -171,6 +171,20 @@ public class CassandraConfigurationTest {
             .isInstanceOf(IllegalArgumentException.class);
     }
 
+    @Test
+    public void modSeqLeaseSizeShouldThrowOnZero() {
+        assertThatThrownBy(() -> CassandraConfiguration.builder()
+                .modSeqLeaseSize(0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void uidLeaseSizeShouldThrowOnZero() {
+        assertThatThrownBy(() -> CassandraConfiguration.builder()
+                .uidLeaseSize(0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     public void attachmentV2MigrationReadTimeoutShouldThrowOnZero() {
         assertThatThrownBy(() -> CassandraConfiguration.builder()
@@ -213,6 +227,8 @@ public class CassandraConfigurationTest {
         int blobPartSize = 10;
         int attachmentV2MigrationReadTimeout = 11;
         int messageAttachmentIdReadTimeout = 12;
+        int modSeqLeaseSize = 13;
+        int uidLeaseSize = 14;
 
         CassandraConfiguration configuration = CassandraConfiguration.builder()
             .aclMaxRetry(aclMaxRetry)
@@ -227,6 +243,8 @@ public class CassandraConfigurationTest {
             .blobPartSize(blobPartSize)
             .attachmentV2MigrationReadTimeout(attachmentV2MigrationReadTimeout)
             .messageAttachmentIdsReadTimeout(messageAttachmentIdReadTimeout)
+            .modSeqLeaseSize(modSeqLeaseSize)
+            .uidLeaseSize(uidLeaseSize)
             .build();
 
         softly.assertThat(configuration.getAclMaxRetry()).isEqualTo(aclMaxRetry);
@@ -241,6 +259,8 @@ public class CassandraConfigurationTest {
         softly.assertThat(configuration.getBlobPartSize()).isEqualTo(blobPartSize);
         softly.assertThat(configuration.getAttachmentV2MigrationReadTimeout()).isEqualTo(attachmentV2MigrationReadTimeout);
         softly.assertThat(configuration.getMessageAttachmentIdsReadTimeout()).isEqualTo(messageAttachmentIdReadTimeout);
+        softly.assertThat(configuration.getModSeqLeaseSize()).isEqualTo(modSeqLeaseSize);
+        softly.assertThat(configuration.getUidLeaseSize()).isEqualTo(uidLeaseSize);
     }
 
 }
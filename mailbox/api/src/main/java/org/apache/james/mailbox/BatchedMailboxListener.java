@@ -0,0 +1,42 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox;
+
+import java.util.List;
+
+/**
+ * A {@link MailboxListener} able to process several events at once.
+ *
+ * Event deliveries are free to coalesce consecutive events of a same mailbox and of a same type, for instance the
+ * flag updates of a client resynchronisation, and hand them over in a single call to {@link #events(List)}. Events
+ * of a batch are given in the order they were emitted.
+ *
+ * Implementations still need to handle events delivered one at a time through {@link #event(Event)}.
+ */
+public interface BatchedMailboxListener extends MailboxListener {
+
+    /**
+     * Informs this listener about the given events.
+     *
+     * @param events
+     *            not null nor empty, in emission order
+     */
+    void events(List<Event> events);
+}
@@ -20,6 +20,7 @@
 package org.apache.james.mailbox.model;
 
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
 
 import org.apache.james.mailbox.model.MessageResult.MimePath;
@@ -41,6 +42,8 @@ public class FetchGroupImpl implements MessageResult.FetchGroup {
 
     private Set<PartContentDescriptor> partContentDescriptors;
 
+    private Optional<Long> bodyOctetsLimit = Optional.empty();
+
     public FetchGroupImpl() {
         this(0, new HashSet<>());
     }
@@ -72,6 +75,15 @@ public class FetchGroupImpl implements MessageResult.FetchGroup {
         return partContentDescriptors;
     }
 
+    @Override
+    public Optional<Long> getBodyOctetsLimit() {
+        return bodyOctetsLimit;
+    }
+
+    public void setBodyOctetsLimit(long bodyOctetsLimit) {
+        this.bodyOctetsLimit = Optional.of(bodyOctetsLimit);
+    }
+
     /**
      * Adds content for the particular part.
      * 
@@ -22,6 +22,7 @@ package org.apache.james.mailbox.model;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import javax.mail.MessagingException;
@@ -108,6 +109,17 @@ public interface MessageResult extends Comparable<MessageResult>, MessageMetaDat
          */
         Set<PartContentDescriptor> getPartContentDescriptors();
 
+        /**
+         * Number of leading octets of the message body which will be read, when the
+         * requested content is only a range of the beginning of the message, like a
+         * partial fetch. Storage may then only load these octets of the body.
+         * 
+         * @return number of octets, or empty if the whole body may be read
+         */
+        default Optional<Long> getBodyOctetsLimit() {
+            return Optional.empty();
+        }
+
         /**
          * Describes the contents to be fetched for a mail part. All
          * implementations MUST implement equals. Two implementations are equal
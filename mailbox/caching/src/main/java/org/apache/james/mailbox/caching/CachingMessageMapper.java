@@ -55,6 +55,15 @@ public class CachingMessageMapper implements MessageMapper {
         return underlying.findInMailbox(mailbox, set, type, limit);
     }
 
+    @Override
+    public Iterator<MailboxMessage> findInMailbox(Mailbox mailbox,
+                                                      MessageRange set,
+                                                      org.apache.james.mailbox.store.mail.MessageMapper.FetchType type,
+                                                      long bodyOctetsLimit,
+                                                      int limit) throws MailboxException {
+        return underlying.findInMailbox(mailbox, set, type, bodyOctetsLimit, limit);
+    }
+
     @Override
     public Map<MessageUid, MessageMetaData> expungeMarkedForDeletionInMailbox(
             Mailbox mailbox, MessageRange set) throws MailboxException {
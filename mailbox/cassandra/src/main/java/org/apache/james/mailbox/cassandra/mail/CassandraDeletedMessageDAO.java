@@ -30,6 +30,7 @@ import static org.apache.james.mailbox.cassandra.table.CassandraDeletedMessageTa
 import static org.apache.james.mailbox.cassandra.table.CassandraDeletedMessageTable.TABLE_NAME;
 import static org.apache.james.mailbox.cassandra.table.CassandraDeletedMessageTable.UID;
 
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
@@ -44,6 +45,7 @@ import org.apache.james.mailbox.model.MessageRange;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
+import com.github.steveash.guavate.Guavate;
 import com.google.common.annotations.VisibleForTesting;
 
 public class CassandraDeletedMessageDAO {
@@ -125,12 +127,28 @@ public class CassandraDeletedMessageDAO {
                 .setLong(UID, uid.asLong()));
     }
 
+    public CompletableFuture<Void> addDeleted(CassandraId cassandraId, Collection<MessageUid> uids) {
+        return cassandraAsyncExecutor.executeUnloggedBatch(uids.stream()
+            .map(uid -> addStatement.bind()
+                .setUUID(MAILBOX_ID, cassandraId.asUuid())
+                .setLong(UID, uid.asLong()))
+            .collect(Guavate.toImmutableList()));
+    }
+
     public CompletableFuture<Void> removeDeleted(CassandraId cassandraId, MessageUid uid) {
         return cassandraAsyncExecutor.executeVoid(deleteStatement.bind()
             .setUUID(MAILBOX_ID, cassandraId.asUuid())
             .setLong(UID, uid.asLong()));
     }
 
+    public CompletableFuture<Void> removeDeleted(CassandraId cassandraId, Collection<MessageUid> uids) {
+        return cassandraAsyncExecutor.executeUnloggedBatch(uids.stream()
+            .map(uid -> deleteStatement.bind()
+                .setUUID(MAILBOX_ID, cassandraId.asUuid())
+                .setLong(UID, uid.asLong()))
+            .collect(Guavate.toImmutableList()));
+    }
+
     public CompletableFuture<Stream<MessageUid>> retrieveDeletedMessage(CassandraId cassandraId, MessageRange range) {
         return retrieveResultSetOfDeletedMessage(cassandraId, range)
             .thenApply(this::resultSetToStream);
@@ -29,6 +29,7 @@ import static org.apache.james.mailbox.cassandra.table.CassandraFirstUnseenTable
 import static org.apache.james.mailbox.cassandra.table.CassandraFirstUnseenTable.TABLE_NAME;
 import static org.apache.james.mailbox.cassandra.table.CassandraFirstUnseenTable.UID;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 
@@ -40,6 +41,7 @@ import org.apache.james.mailbox.cassandra.ids.CassandraId;
 
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Session;
+import com.github.steveash.guavate.Guavate;
 
 public class CassandraFirstUnseenDAO {
     private final CassandraAsyncExecutor cassandraAsyncExecutor;
@@ -83,12 +85,28 @@ public class CassandraFirstUnseenDAO {
                 .setLong(UID, uid.asLong()));
     }
 
+    public CompletableFuture<Void> addUnread(CassandraId cassandraId, Collection<MessageUid> uids) {
+        return cassandraAsyncExecutor.executeUnloggedBatch(uids.stream()
+            .map(uid -> addStatement.bind()
+                .setUUID(MAILBOX_ID, cassandraId.asUuid())
+                .setLong(UID, uid.asLong()))
+            .collect(Guavate.toImmutableList()));
+    }
+
     public CompletableFuture<Void> removeUnread(CassandraId cassandraId, MessageUid uid) {
         return cassandraAsyncExecutor.executeVoid(deleteStatement.bind()
             .setUUID(MAILBOX_ID, cassandraId.asUuid())
             .setLong(UID, uid.asLong()));
     }
 
+    public CompletableFuture<Void> removeUnread(CassandraId cassandraId, Collection<MessageUid> uids) {
+        return cassandraAsyncExecutor.executeUnloggedBatch(uids.stream()
+            .map(uid -> deleteStatement.bind()
+                .setUUID(MAILBOX_ID, cassandraId.asUuid())
+                .setLong(UID, uid.asLong()))
+            .collect(Guavate.toImmutableList()));
+    }
+
     public CompletableFuture<Optional<MessageUid>> retrieveFirstUnread(CassandraId cassandraId) {
         return cassandraAsyncExecutor.executeSingleRow(
             readStatement.bind()
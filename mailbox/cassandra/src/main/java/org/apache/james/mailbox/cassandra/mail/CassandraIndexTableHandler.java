@@ -19,6 +19,8 @@
 
 package org.apache.james.mailbox.cassandra.mail;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import javax.inject.Inject;
@@ -30,6 +32,8 @@ import org.apache.james.mailbox.model.ComposedMessageIdWithMetaData;
 import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 
+import com.github.steveash.guavate.Guavate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
 public class CassandraIndexTableHandler {
@@ -76,21 +80,45 @@ public class CassandraIndexTableHandler {
     }
 
     public CompletableFuture<Void> updateIndexOnFlagsUpdate(CassandraId mailboxId, UpdatedFlags updatedFlags) {
+        return updateIndexOnFlagsUpdate(mailboxId, ImmutableList.of(updatedFlags));
+    }
+
+    /**
+     * Aggregates the index changes of several flags updates of a mailbox: counters get a single net variation,
+     * applicable flags a single union, and per UID tables a single batch per table.
+     */
+    public CompletableFuture<Void> updateIndexOnFlagsUpdate(CassandraId mailboxId, Collection<UpdatedFlags> updatedFlags) {
         return CompletableFuture.allOf(manageUnseenMessageCountsOnFlagsUpdate(mailboxId, updatedFlags),
                                        manageRecentOnFlagsUpdate(mailboxId, updatedFlags),
                                        updateFirstUnseenOnFlagsUpdate(mailboxId, updatedFlags),
-                                       applicableFlagDAO.updateApplicableFlags(mailboxId, ImmutableSet.copyOf(updatedFlags.userFlagIterator())),
+                                       applicableFlagDAO.updateApplicableFlags(mailboxId, userFlagsOf(updatedFlags)),
                                        updateDeletedOnFlagsUpdate(mailboxId, updatedFlags));
     }
 
-    private CompletableFuture<Void> updateDeletedOnFlagsUpdate(CassandraId mailboxId, UpdatedFlags updatedFlags) {
-        if (updatedFlags.isModifiedToSet(Flags.Flag.DELETED)) {
-            return deletedMessageDAO.addDeleted(mailboxId, updatedFlags.getUid());
-        } else if (updatedFlags.isModifiedToUnset(Flags.Flag.DELETED)) {
-            return deletedMessageDAO.removeDeleted(mailboxId, updatedFlags.getUid());
-        } else {
-            return CompletableFuture.completedFuture(null);
-        }
+    private ImmutableSet<String> userFlagsOf(Collection<UpdatedFlags> updatedFlags) {
+        return updatedFlags.stream()
+            .flatMap(flags -> ImmutableList.copyOf(flags.userFlagIterator()).stream())
+            .collect(Guavate.toImmutableSet());
+    }
+
+    private List<MessageUid> uidsModifiedToSet(Collection<UpdatedFlags> updatedFlags, Flags.Flag flag) {
+        return updatedFlags.stream()
+            .filter(flags -> flags.isModifiedToSet(flag))
+            .map(UpdatedFlags::getUid)
+            .collect(Guavate.toImmutableList());
+    }
+
+    private List<MessageUid> uidsModifiedToUnset(Collection<UpdatedFlags> updatedFlags, Flags.Flag flag) {
+        return updatedFlags.stream()
+            .filter(flags -> flags.isModifiedToUnset(flag))
+            .map(UpdatedFlags::getUid)
+            .collect(Guavate.toImmutableList());
+    }
+
+    private CompletableFuture<Void> updateDeletedOnFlagsUpdate(CassandraId mailboxId, Collection<UpdatedFlags> updatedFlags) {
+        return CompletableFuture.allOf(
+            deletedMessageDAO.addDeleted(mailboxId, uidsModifiedToSet(updatedFlags, Flags.Flag.DELETED)),
+            deletedMessageDAO.removeDeleted(mailboxId, uidsModifiedToUnset(updatedFlags, Flags.Flag.DELETED)));
     }
 
     private CompletableFuture<Void> decrementUnseenOnDelete(CassandraId mailboxId, Flags flags) {
@@ -114,24 +142,16 @@ public class CassandraIndexTableHandler {
         return CompletableFuture.completedFuture(null);
     }
 
-    private CompletableFuture<Void> manageUnseenMessageCountsOnFlagsUpdate(CassandraId mailboxId, UpdatedFlags updatedFlags) {
-        if (updatedFlags.isModifiedToUnset(Flags.Flag.SEEN)) {
-            return mailboxCounterDAO.incrementUnseen(mailboxId);
-        }
-        if (updatedFlags.isModifiedToSet(Flags.Flag.SEEN)) {
-            return mailboxCounterDAO.decrementUnseen(mailboxId);
-        }
-        return CompletableFuture.completedFuture(null);
+    private CompletableFuture<Void> manageUnseenMessageCountsOnFlagsUpdate(CassandraId mailboxId, Collection<UpdatedFlags> updatedFlags) {
+        long unseenDelta = uidsModifiedToUnset(updatedFlags, Flags.Flag.SEEN).size()
+            - uidsModifiedToSet(updatedFlags, Flags.Flag.SEEN).size();
+        return mailboxCounterDAO.addToUnseen(mailboxId, unseenDelta);
     }
 
-    private CompletableFuture<Void> manageRecentOnFlagsUpdate(CassandraId mailboxId, UpdatedFlags updatedFlags) {
-        if (updatedFlags.isModifiedToUnset(Flags.Flag.RECENT)) {
-            return mailboxRecentDAO.removeFromRecent(mailboxId, updatedFlags.getUid());
-        }
-        if (updatedFlags.isModifiedToSet(Flags.Flag.RECENT)) {
-            return mailboxRecentDAO.addToRecent(mailboxId, updatedFlags.getUid());
-        }
-        return CompletableFuture.completedFuture(null);
+    private CompletableFuture<Void> manageRecentOnFlagsUpdate(CassandraId mailboxId, Collection<UpdatedFlags> updatedFlags) {
+        return CompletableFuture.allOf(
+            mailboxRecentDAO.removeFromRecent(mailboxId, uidsModifiedToUnset(updatedFlags, Flags.Flag.RECENT)),
+            mailboxRecentDAO.addToRecent(mailboxId, uidsModifiedToSet(updatedFlags, Flags.Flag.RECENT)));
     }
 
     private CompletableFuture<Void> updateFirstUnseenOnAdd(CassandraId mailboxId, Flags flags, MessageUid uid) {
@@ -156,13 +176,9 @@ public class CassandraIndexTableHandler {
         return firstUnseenDAO.removeUnread(mailboxId, uid);
     }
 
-    private CompletableFuture<Void> updateFirstUnseenOnFlagsUpdate(CassandraId mailboxId, UpdatedFlags updatedFlags) {
-        if (updatedFlags.isModifiedToUnset(Flags.Flag.SEEN)) {
-            return firstUnseenDAO.addUnread(mailboxId, updatedFlags.getUid());
-        }
-        if (updatedFlags.isModifiedToSet(Flags.Flag.SEEN)) {
-            return firstUnseenDAO.removeUnread(mailboxId, updatedFlags.getUid());
-        }
-        return CompletableFuture.completedFuture(null);
+    private CompletableFuture<Void> updateFirstUnseenOnFlagsUpdate(CassandraId mailboxId, Collection<UpdatedFlags> updatedFlags) {
+        return CompletableFuture.allOf(
+            firstUnseenDAO.addUnread(mailboxId, uidsModifiedToUnset(updatedFlags, Flags.Flag.SEEN)),
+            firstUnseenDAO.removeUnread(mailboxId, uidsModifiedToSet(updatedFlags, Flags.Flag.SEEN)));
     }
 }
@@ -51,6 +51,7 @@ public class CassandraMailboxCounterDAO {
     private final PreparedStatement incrementMessageCountStatement;
     private final PreparedStatement decrementUnseenCountStatement;
     private final PreparedStatement decrementMessageCountStatement;
+    private final PreparedStatement addToUnseenCountStatement;
 
     @Inject
     public CassandraMailboxCounterDAO(Session session) {
@@ -60,6 +61,7 @@ public class CassandraMailboxCounterDAO {
         incrementUnseenCountStatement = updateMailboxStatement(session, incr(CassandraMailboxCountersTable.UNSEEN));
         decrementMessageCountStatement = updateMailboxStatement(session, decr(CassandraMailboxCountersTable.COUNT));
         decrementUnseenCountStatement = updateMailboxStatement(session, decr(CassandraMailboxCountersTable.UNSEEN));
+        addToUnseenCountStatement = updateMailboxStatement(session, incr(CassandraMailboxCountersTable.UNSEEN, bindMarker(CassandraMailboxCountersTable.UNSEEN)));
     }
 
     private PreparedStatement createReadStatement(Session session) {
@@ -79,6 +81,10 @@ public class CassandraMailboxCounterDAO {
     public CompletableFuture<Optional<MailboxCounters>> retrieveMailboxCounters(Mailbox mailbox) throws MailboxException {
         CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
 
+        return retrieveMailboxCounters(mailboxId);
+    }
+
+    public CompletableFuture<Optional<MailboxCounters>> retrieveMailboxCounters(CassandraId mailboxId) {
         return cassandraAsyncExecutor.executeSingleRow(bindWithMailbox(mailboxId, readStatement))
             .thenApply(optional -> optional.map(row ->  MailboxCounters.builder()
                 .count(row.getLong(CassandraMailboxCountersTable.COUNT))
@@ -120,6 +126,17 @@ public class CassandraMailboxCounterDAO {
         return cassandraAsyncExecutor.executeVoid(bindWithMailbox(mailboxId, incrementUnseenCountStatement));
     }
 
+    /**
+     * Applies the net unseen variation of a whole flags update in a single write.
+     */
+    public CompletableFuture<Void> addToUnseen(CassandraId mailboxId, long delta) {
+        if (delta == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return cassandraAsyncExecutor.executeVoid(bindWithMailbox(mailboxId, addToUnseenCountStatement)
+            .setLong(CassandraMailboxCountersTable.UNSEEN, delta));
+    }
+
     private BoundStatement bindWithMailbox(CassandraId mailboxId, PreparedStatement statement) {
         return statement.bind()
             .setUUID(CassandraMailboxCountersTable.MAILBOX_ID, mailboxId.asUuid());
@@ -25,6 +25,7 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
 
+import java.util.Collection;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
@@ -39,6 +40,7 @@ import org.apache.james.mailbox.cassandra.table.CassandraMailboxRecentsTable;
 import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Session;
+import com.github.steveash.guavate.Guavate;
 import com.google.common.annotations.VisibleForTesting;
 
 public class CassandraMailboxRecentsDAO {
@@ -103,9 +105,25 @@ public class CassandraMailboxRecentsDAO {
             .setLong(CassandraMailboxRecentsTable.RECENT_MESSAGE_UID, messageUid.asLong()));
     }
 
+    public CompletableFuture<Void> removeFromRecent(CassandraId mailboxId, Collection<MessageUid> messageUids) {
+        return cassandraAsyncExecutor.executeUnloggedBatch(messageUids.stream()
+            .map(messageUid -> deleteStatement.bind()
+                .setUUID(CassandraMailboxRecentsTable.MAILBOX_ID, mailboxId.asUuid())
+                .setLong(CassandraMailboxRecentsTable.RECENT_MESSAGE_UID, messageUid.asLong()))
+            .collect(Guavate.toImmutableList()));
+    }
+
     public CompletableFuture<Void> addToRecent(CassandraId mailboxId, MessageUid messageUid) {
         return cassandraAsyncExecutor.executeVoid(addStatement.bind()
             .setUUID(CassandraMailboxRecentsTable.MAILBOX_ID, mailboxId.asUuid())
             .setLong(CassandraMailboxRecentsTable.RECENT_MESSAGE_UID, messageUid.asLong()));
     }
+
+    public CompletableFuture<Void> addToRecent(CassandraId mailboxId, Collection<MessageUid> messageUids) {
+        return cassandraAsyncExecutor.executeUnloggedBatch(messageUids.stream()
+            .map(messageUid -> addStatement.bind()
+                .setUUID(CassandraMailboxRecentsTable.MAILBOX_ID, mailboxId.asUuid())
+                .setLong(CassandraMailboxRecentsTable.RECENT_MESSAGE_UID, messageUid.asLong()))
+            .collect(Guavate.toImmutableList()));
+    }
 }
@@ -234,18 +234,25 @@ public class CassandraMessageDAO {
     }
 
     public CompletableFuture<Stream<MessageResult>> retrieveMessages(List<ComposedMessageIdWithMetaData> messageIds, FetchType fetchType, Limit limit) {
+        return retrieveMessages(messageIds, fetchType, Optional.empty(), limit);
+    }
+
+    /**
+     * When bodyOctetsLimit is specified, only the blob parts holding these leading octets of the bodies are read.
+     */
+    public CompletableFuture<Stream<MessageResult>> retrieveMessages(List<ComposedMessageIdWithMetaData> messageIds, FetchType fetchType, Optional<Long> bodyOctetsLimit, Limit limit) {
         return CompletableFutureUtil.chainAll(
                 limit.applyOnStream(messageIds.stream().distinct())
                     .collect(JamesCollectors.chunker(configuration.getMessageReadChunkSize())),
-            ids -> rowToMessages(fetchType, ids))
+            ids -> rowToMessages(fetchType, bodyOctetsLimit, ids))
             .thenApply(stream -> stream.flatMap(Function.identity()));
     }
 
-    private CompletableFuture<Stream<MessageResult>> rowToMessages(FetchType fetchType, Collection<ComposedMessageIdWithMetaData> ids) {
+    private CompletableFuture<Stream<MessageResult>> rowToMessages(FetchType fetchType, Optional<Long> bodyOctetsLimit, Collection<ComposedMessageIdWithMetaData> ids) {
         return FluentFutureStream.of(
             ids.stream()
                 .map(id -> retrieveRow(id, fetchType)
-                    .thenCompose((ResultSet resultSet) -> message(resultSet, id, fetchType))))
+                    .thenCompose((ResultSet resultSet) -> message(resultSet, id, fetchType, bodyOctetsLimit))))
             .completableFuture();
     }
 
@@ -258,7 +265,7 @@ public class CassandraMessageDAO {
     }
 
     private CompletableFuture<MessageResult>
-    message(ResultSet rows,ComposedMessageIdWithMetaData messageIdWithMetaData, FetchType fetchType) {
+    message(ResultSet rows,ComposedMessageIdWithMetaData messageIdWithMetaData, FetchType fetchType, Optional<Long> bodyOctetsLimit) {
         ComposedMessageId messageId = messageIdWithMetaData.getComposedMessageId();
 
         if (rows.isExhausted()) {
@@ -266,7 +273,7 @@ public class CassandraMessageDAO {
         }
 
         Row row = rows.one();
-        CompletableFuture<byte[]> contentFuture = buildContentRetriever(fetchType).apply(row);
+        CompletableFuture<byte[]> contentFuture = buildContentRetriever(fetchType, bodyOctetsLimit).apply(row);
 
         return contentFuture.thenApply(content -> {
             MessageWithoutAttachment messageWithoutAttachment =
@@ -340,14 +347,14 @@ public class CassandraMessageDAO {
             .setUUID(MESSAGE_ID, messageId.get()));
     }
 
-    private Function<Row, CompletableFuture<byte[]>> buildContentRetriever(FetchType fetchType) {
+    private Function<Row, CompletableFuture<byte[]>> buildContentRetriever(FetchType fetchType, Optional<Long> bodyOctetsLimit) {
         switch (fetchType) {
             case Full:
-                return this::getFullContent;
+                return row -> getFullContent(row, bodyOctetsLimit);
             case Headers:
                 return this::getHeaderContent;
             case Body:
-                return row -> getBodyContent(row)
+                return row -> getBodyContent(row, bodyOctetsLimit)
                     .thenApply(data -> Bytes.concat(new byte[row.getInt(BODY_START_OCTET)], data));
             case Metadata:
                 return row -> CompletableFuture.completedFuture(EMPTY_BYTE_ARRAY);
@@ -356,15 +363,18 @@ public class CassandraMessageDAO {
         }
     }
 
-    private CompletableFuture<byte[]> getFullContent(Row row) {
+    private CompletableFuture<byte[]> getFullContent(Row row, Optional<Long> bodyOctetsLimit) {
         return CompletableFutureUtil.combine(
             getHeaderContent(row),
-            getBodyContent(row),
+            getBodyContent(row, bodyOctetsLimit),
             Bytes::concat);
     }
 
-    private CompletableFuture<byte[]> getBodyContent(Row row) {
-        return getFieldContent(BODY_CONTENT, row);
+    private CompletableFuture<byte[]> getBodyContent(Row row, Optional<Long> bodyOctetsLimit) {
+        BlobId blobId = blobIdFactory.from(row.getString(BODY_CONTENT));
+        return bodyOctetsLimit
+            .map(maxLength -> blobStore.readBytes(blobId, maxLength))
+            .orElseGet(() -> blobStore.readBytes(blobId));
     }
 
     private CompletableFuture<byte[]> getHeaderContent(Row row) {
@@ -42,8 +42,12 @@ import static org.apache.james.mailbox.cassandra.table.Flag.USER;
 import static org.apache.james.mailbox.cassandra.table.Flag.USER_FLAGS;
 import static org.apache.james.mailbox.cassandra.table.MessageIdToImapUid.MOD_SEQ;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
@@ -58,8 +62,10 @@ import org.apache.james.mailbox.cassandra.ids.CassandraMessageId;
 import org.apache.james.mailbox.cassandra.ids.CassandraMessageId.Factory;
 import org.apache.james.mailbox.model.ComposedMessageId;
 import org.apache.james.mailbox.model.ComposedMessageIdWithMetaData;
+import org.apache.james.mailbox.model.MailboxId;
 import org.apache.james.mailbox.model.MessageRange;
 
+import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
@@ -194,9 +200,28 @@ public class CassandraMessageIdDAO {
     }
 
     public CompletableFuture<Void> updateMetadata(ComposedMessageIdWithMetaData composedMessageIdWithMetaData) {
+        return cassandraAsyncExecutor.executeVoid(bindUpdate(composedMessageIdWithMetaData));
+    }
+
+    /**
+     * Updates are grouped by mailbox, which is the partition key of this table, and each group is sent as a
+     * single unlogged batch.
+     */
+    public CompletableFuture<Void> updateMetadata(Collection<ComposedMessageIdWithMetaData> composedMessageIdsWithMetaData) {
+        Map<MailboxId, List<BoundStatement>> updatesByMailbox = composedMessageIdsWithMetaData.stream()
+            .collect(Collectors.groupingBy(metaData -> metaData.getComposedMessageId().getMailboxId(),
+                Collectors.mapping(this::bindUpdate, Collectors.toList())));
+
+        return CompletableFuture.allOf(updatesByMailbox.values()
+            .stream()
+            .map(cassandraAsyncExecutor::executeUnloggedBatch)
+            .toArray(CompletableFuture[]::new));
+    }
+
+    private BoundStatement bindUpdate(ComposedMessageIdWithMetaData composedMessageIdWithMetaData) {
         ComposedMessageId composedMessageId = composedMessageIdWithMetaData.getComposedMessageId();
         Flags flags = composedMessageIdWithMetaData.getFlags();
-        return cassandraAsyncExecutor.executeVoid(update.bind()
+        return update.bind()
                 .setLong(MOD_SEQ, composedMessageIdWithMetaData.getModSeq())
                 .setBool(ANSWERED, flags.contains(Flag.ANSWERED))
                 .setBool(DELETED, flags.contains(Flag.DELETED))
@@ -207,7 +232,7 @@ public class CassandraMessageIdDAO {
                 .setBool(USER, flags.contains(Flag.USER))
                 .setSet(USER_FLAGS, ImmutableSet.copyOf(flags.getUserFlags()))
                 .setUUID(MAILBOX_ID, ((CassandraId) composedMessageId.getMailboxId()).asUuid())
-                .setLong(IMAP_UID, composedMessageId.getUid().asLong()));
+                .setLong(IMAP_UID, composedMessageId.getUid().asLong());
     }
 
     public CompletableFuture<Optional<ComposedMessageIdWithMetaData>> retrieve(CassandraId mailboxId, MessageUid uid) {
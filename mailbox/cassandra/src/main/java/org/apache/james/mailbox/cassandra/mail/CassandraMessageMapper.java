@@ -19,6 +19,8 @@
 
 package org.apache.james.mailbox.cassandra.mail;
 
+import static org.apache.james.mailbox.store.mail.AsyncMessageMapper.join;
+
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -26,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 import javax.mail.Flags;
@@ -48,6 +51,7 @@ import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.FlagsUpdateCalculator;
 import org.apache.james.mailbox.store.SimpleMessageMetaData;
+import org.apache.james.mailbox.store.mail.AsyncMessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
@@ -70,6 +74,85 @@ public class CassandraMessageMapper implements MessageMapper {
         .build();
     public static final Logger LOGGER = LoggerFactory.getLogger(CassandraMessageMapper.class);
 
+    private class CassandraAsyncMessageMapper implements AsyncMessageMapper {
+        @Override
+        public CompletableFuture<Stream<MailboxMessage>> findInMailbox(Mailbox mailbox, MessageRange set, FetchType type, int limit) {
+            return findInMailboxAsync((CassandraId) mailbox.getMailboxId(), set, type, Optional.empty(), limit);
+        }
+
+        @Override
+        public CompletableFuture<Stream<MailboxMessage>> findInMailbox(Mailbox mailbox, MessageRange set, FetchType type, long bodyOctetsLimit, int limit) {
+            return findInMailboxAsync((CassandraId) mailbox.getMailboxId(), set, type, Optional.of(bodyOctetsLimit), limit);
+        }
+
+        @Override
+        public CompletableFuture<MessageMetaData> add(Mailbox mailbox, MailboxMessage message) {
+            CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
+
+            return addUidAndModseq(message, mailboxId)
+                .thenCompose(Throwing.function((MailboxMessage messageWithUid) -> save(mailbox, messageWithUid)).sneakyThrow())
+                .thenCompose(voidValue -> indexTableHandler.updateIndexOnAdd(message, mailboxId))
+                .thenApply(voidValue -> new SimpleMessageMetaData(message));
+        }
+
+        @Override
+        public CompletableFuture<List<UpdatedFlags>> updateFlags(Mailbox mailbox, FlagsUpdateCalculator flagsUpdateCalculator, MessageRange set) {
+            CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
+
+            return messageIdDAO.retrieveMessages(mailboxId, set)
+                .thenCompose(toBeUpdated -> runUpdateStage(mailboxId, toBeUpdated, flagsUpdateCalculator))
+                .thenCompose(firstResult -> handleUpdatesStagedRetry(mailboxId, flagsUpdateCalculator, firstResult, 0))
+                .thenApply(finalResult -> {
+                    if (finalResult.containsFailedResults()) {
+                        LOGGER.error("Can not update following UIDs {} for mailbox {}", finalResult.getFailed(), mailboxId.asUuid());
+                    }
+                    return finalResult.getSucceeded();
+                });
+        }
+
+        @Override
+        public CompletableFuture<Map<MessageUid, MessageMetaData>> expungeMarkedForDeletionInMailbox(Mailbox mailbox, MessageRange set) {
+            CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
+
+            return deletedMessageDAO.retrieveDeletedMessage(mailboxId, set)
+                .thenCompose(uids -> uids
+                    .collect(JamesCollectors.chunker(cassandraConfiguration.getExpungeChunkSize()))
+                    .reduce(CompletableFuture.completedFuture(Stream.<SimpleMailboxMessage>empty()),
+                        (previousChunks, uidChunk) -> previousChunks.thenCompose(expunged -> expungeUidChunk(mailboxId, uidChunk)
+                            .thenApply(expungedInChunk -> Stream.concat(expunged, expungedInChunk))),
+                        (chunks1, chunks2) -> chunks1.thenCombine(chunks2, Stream::concat)))
+                .thenApply(expunged -> expunged
+                    .collect(Guavate.toImmutableMap(MailboxMessage::getUid, SimpleMessageMetaData::new)));
+        }
+
+        @Override
+        public CompletableFuture<MailboxCounters> getMailboxCounters(Mailbox mailbox) {
+            return mailboxCounterDAO.retrieveMailboxCounters((CassandraId) mailbox.getMailboxId())
+                .thenApply(counters -> counters.orElse(INITIAL_COUNTERS));
+        }
+
+        @Override
+        public CompletableFuture<Optional<MessageUid>> findFirstUnseenMessageUid(Mailbox mailbox) {
+            return firstUnseenDAO.retrieveFirstUnread((CassandraId) mailbox.getMailboxId());
+        }
+
+        @Override
+        public CompletableFuture<List<MessageUid>> findRecentMessageUidsInMailbox(Mailbox mailbox) {
+            return mailboxRecentDAO.getRecentMessageUidsInMailbox((CassandraId) mailbox.getMailboxId())
+                .thenApply(uids -> uids.collect(Guavate.toImmutableList()));
+        }
+
+        @Override
+        public CompletableFuture<Optional<MessageUid>> getLastUid(Mailbox mailbox) {
+            return uidProvider.lastUid((CassandraId) mailbox.getMailboxId());
+        }
+
+        @Override
+        public CompletableFuture<Long> getHighestModSeq(Mailbox mailbox) {
+            return modSeqProvider.highestModSeq((CassandraId) mailbox.getMailboxId());
+        }
+    }
+
     private final CassandraModSeqProvider modSeqProvider;
     private final MailboxSession mailboxSession;
     private final CassandraUidProvider uidProvider;
@@ -84,6 +167,7 @@ public class CassandraMessageMapper implements MessageMapper {
     private final AttachmentLoader attachmentLoader;
     private final CassandraDeletedMessageDAO deletedMessageDAO;
     private final CassandraConfiguration cassandraConfiguration;
+    private final AsyncMessageMapper asyncMessageMapper;
 
     public CassandraMessageMapper(CassandraUidProvider uidProvider, CassandraModSeqProvider modSeqProvider,
                                   MailboxSession mailboxSession, CassandraAttachmentMapper attachmentMapper,
@@ -106,6 +190,12 @@ public class CassandraMessageMapper implements MessageMapper {
         this.applicableFlagDAO = applicableFlagDAO;
         this.deletedMessageDAO = deletedMessageDAO;
         this.cassandraConfiguration = cassandraConfiguration;
+        this.asyncMessageMapper = new CassandraAsyncMessageMapper();
+    }
+
+    @Override
+    public AsyncMessageMapper async() {
+        return asyncMessageMapper;
     }
 
     @Override
@@ -133,9 +223,7 @@ public class CassandraMessageMapper implements MessageMapper {
 
     @Override
     public MailboxCounters getMailboxCounters(Mailbox mailbox) throws MailboxException {
-        return mailboxCounterDAO.retrieveMailboxCounters(mailbox)
-            .join()
-            .orElse(INITIAL_COUNTERS);
+        return join(asyncMessageMapper.getMailboxCounters(mailbox));
     }
 
     @Override
@@ -163,22 +251,27 @@ public class CassandraMessageMapper implements MessageMapper {
 
     @Override
     public Iterator<MailboxMessage> findInMailbox(Mailbox mailbox, MessageRange messageRange, FetchType ftype, int max) throws MailboxException {
-        CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
-        return retrieveMessages(retrieveMessageIds(mailboxId, messageRange), ftype, Limit.from(max))
-            .join()
-            .map(SimpleMailboxMessage -> (MailboxMessage) SimpleMailboxMessage)
-            .sorted(Comparator.comparing(MailboxMessage::getUid))
+        return join(asyncMessageMapper.findInMailbox(mailbox, messageRange, ftype, max))
+            .iterator();
+    }
+
+    @Override
+    public Iterator<MailboxMessage> findInMailbox(Mailbox mailbox, MessageRange messageRange, FetchType ftype, long bodyOctetsLimit, int max) throws MailboxException {
+        return join(asyncMessageMapper.findInMailbox(mailbox, messageRange, ftype, bodyOctetsLimit, max))
             .iterator();
     }
 
-    private List<ComposedMessageIdWithMetaData> retrieveMessageIds(CassandraId mailboxId, MessageRange messageRange) {
+    private CompletableFuture<Stream<MailboxMessage>> findInMailboxAsync(CassandraId mailboxId, MessageRange messageRange, FetchType ftype, Optional<Long> bodyOctetsLimit, int max) {
         return messageIdDAO.retrieveMessages(mailboxId, messageRange)
-            .join()
-            .collect(Guavate.toImmutableList());
+            .thenApply(messageIds -> messageIds.collect(Guavate.toImmutableList()))
+            .thenCompose(messageIds -> retrieveMessages(messageIds, ftype, bodyOctetsLimit, Limit.from(max)))
+            .thenApply(messages -> messages
+                .map(SimpleMailboxMessage -> (MailboxMessage) SimpleMailboxMessage)
+                .sorted(Comparator.comparing(MailboxMessage::getUid)));
     }
 
-    private CompletableFuture<Stream<SimpleMailboxMessage>> retrieveMessages(List<ComposedMessageIdWithMetaData> messageIds, FetchType fetchType, Limit limit) {
-        return messageDAO.retrieveMessages(messageIds, fetchType, limit)
+    private CompletableFuture<Stream<SimpleMailboxMessage>> retrieveMessages(List<ComposedMessageIdWithMetaData> messageIds, FetchType fetchType, Optional<Long> bodyOctetsLimit, Limit limit) {
+        return messageDAO.retrieveMessages(messageIds, fetchType, bodyOctetsLimit, limit)
             .thenApply(steam -> steam
                 .filter(CassandraMessageDAO.MessageResult::isFound)
                 .map(CassandraMessageDAO.MessageResult::message))
@@ -187,30 +280,18 @@ public class CassandraMessageMapper implements MessageMapper {
 
     @Override
     public List<MessageUid> findRecentMessageUidsInMailbox(Mailbox mailbox) throws MailboxException {
-        CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
-        return mailboxRecentDAO.getRecentMessageUidsInMailbox(mailboxId)
-            .join()
-            .collect(Guavate.toImmutableList());
+        return join(asyncMessageMapper.findRecentMessageUidsInMailbox(mailbox));
     }
 
     @Override
     public MessageUid findFirstUnseenMessageUid(Mailbox mailbox) throws MailboxException {
-        CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
-        return firstUnseenDAO.retrieveFirstUnread(mailboxId)
-            .join()
+        return join(asyncMessageMapper.findFirstUnseenMessageUid(mailbox))
             .orElse(null);
     }
 
     @Override
     public Map<MessageUid, MessageMetaData> expungeMarkedForDeletionInMailbox(Mailbox mailbox, MessageRange messageRange) throws MailboxException {
-        CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
-
-        return deletedMessageDAO.retrieveDeletedMessage(mailboxId, messageRange)
-            .join()
-            .collect(JamesCollectors.chunker(cassandraConfiguration.getExpungeChunkSize()))
-            .map(uidChunk -> expungeUidChunk(mailboxId, uidChunk))
-            .flatMap(CompletableFuture::join)
-            .collect(Guavate.toImmutableMap(MailboxMessage::getUid, SimpleMessageMetaData::new));
+        return join(asyncMessageMapper.expungeMarkedForDeletionInMailbox(mailbox, messageRange));
     }
 
     private CompletableFuture<Stream<SimpleMailboxMessage>> expungeUidChunk(CassandraId mailboxId, Collection<MessageUid> uidChunk) {
@@ -250,27 +331,26 @@ public class CassandraMessageMapper implements MessageMapper {
 
     @Override
     public long getHighestModSeq(Mailbox mailbox) throws MailboxException {
-        return modSeqProvider.highestModSeq(mailboxSession, mailbox);
+        return join(asyncMessageMapper.getHighestModSeq(mailbox));
     }
 
     @Override
     public MessageMetaData add(Mailbox mailbox, MailboxMessage message) throws MailboxException {
-        CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
-
-        save(mailbox, addUidAndModseq(message, mailboxId))
-            .thenCompose(voidValue -> indexTableHandler.updateIndexOnAdd(message, mailboxId))
-            .join();
-        return new SimpleMessageMetaData(message);
+        return join(asyncMessageMapper.add(mailbox, message));
     }
 
-    private MailboxMessage addUidAndModseq(MailboxMessage message, CassandraId mailboxId) throws MailboxException {
+    private CompletableFuture<MailboxMessage> addUidAndModseq(MailboxMessage message, CassandraId mailboxId) {
         CompletableFuture<Optional<MessageUid>> uidFuture = uidProvider.nextUid(mailboxId);
         CompletableFuture<Optional<Long>> modseqFuture = modSeqProvider.nextModSeq(mailboxId);
-        CompletableFuture.allOf(uidFuture, modseqFuture).join();
 
-        message.setUid(uidFuture.join()
+        return CompletableFuture.allOf(uidFuture, modseqFuture)
+            .thenApply(Throwing.function((Void any) -> setUidAndModseq(message, mailboxId, uidFuture.join(), modseqFuture.join())).sneakyThrow());
+    }
+
+    private MailboxMessage setUidAndModseq(MailboxMessage message, CassandraId mailboxId, Optional<MessageUid> uid, Optional<Long> modSeq) throws MailboxException {
+        message.setUid(uid
             .orElseThrow(() -> new MailboxException("Can not find a UID to save " + message.getMessageId() + " in " + mailboxId)));
-        message.setModSeq(modseqFuture.join()
+        message.setModSeq(modSeq
             .orElseThrow(() -> new MailboxException("Can not find a MODSEQ to save " + message.getMessageId() + " in " + mailboxId)));
 
         return message;
@@ -278,45 +358,40 @@ public class CassandraMessageMapper implements MessageMapper {
 
     @Override
     public Iterator<UpdatedFlags> updateFlags(Mailbox mailbox, FlagsUpdateCalculator flagUpdateCalculator, MessageRange range) throws MailboxException {
-        CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
-
-        Stream<ComposedMessageIdWithMetaData> toBeUpdated = messageIdDAO.retrieveMessages(mailboxId, range).join();
-
-        FlagsUpdateStageResult firstResult = runUpdateStage(mailboxId, toBeUpdated, flagUpdateCalculator);
-        FlagsUpdateStageResult finalResult = handleUpdatesStagedRetry(mailboxId, flagUpdateCalculator, firstResult);
-        if (finalResult.containsFailedResults()) {
-            LOGGER.error("Can not update following UIDs {} for mailbox {}", finalResult.getFailed(), mailboxId.asUuid());
-        }
-        return finalResult.getSucceeded().iterator();
+        return join(asyncMessageMapper.updateFlags(mailbox, flagUpdateCalculator, range))
+            .iterator();
     }
 
-    private FlagsUpdateStageResult handleUpdatesStagedRetry(CassandraId mailboxId, FlagsUpdateCalculator flagUpdateCalculator, FlagsUpdateStageResult firstResult) {
-        FlagsUpdateStageResult globalResult = firstResult;
-        int retryCount = 0;
-        while (retryCount < cassandraConfiguration.getFlagsUpdateMessageMaxRetry() && globalResult.containsFailedResults()) {
-            retryCount++;
-            FlagsUpdateStageResult stageResult = retryUpdatesStage(mailboxId, flagUpdateCalculator, globalResult.getFailed());
-            globalResult = globalResult.keepSucceded().merge(stageResult);
+    private CompletableFuture<FlagsUpdateStageResult> handleUpdatesStagedRetry(CassandraId mailboxId, FlagsUpdateCalculator flagUpdateCalculator, FlagsUpdateStageResult globalResult, int retryCount) {
+        if (retryCount >= cassandraConfiguration.getFlagsUpdateMessageMaxRetry() || !globalResult.containsFailedResults()) {
+            return CompletableFuture.completedFuture(globalResult);
         }
-        return globalResult;
+        return retryUpdatesStage(mailboxId, flagUpdateCalculator, globalResult.getFailed())
+            .thenCompose(stageResult -> handleUpdatesStagedRetry(mailboxId, flagUpdateCalculator,
+                globalResult.keepSucceded().merge(stageResult), retryCount + 1));
     }
 
-    private FlagsUpdateStageResult retryUpdatesStage(CassandraId mailboxId, FlagsUpdateCalculator flagsUpdateCalculator, List<MessageUid> failed) {
-        Stream<ComposedMessageIdWithMetaData> idsFailed = FluentFutureStream.of(
+    private CompletableFuture<FlagsUpdateStageResult> retryUpdatesStage(CassandraId mailboxId, FlagsUpdateCalculator flagsUpdateCalculator, List<MessageUid> failed) {
+        return FluentFutureStream.of(
                 failed.stream().map(uid -> messageIdDAO.retrieve(mailboxId, uid)),
                 FluentFutureStream::unboxOptional)
-            .join();
-
-        return runUpdateStage(mailboxId, idsFailed, flagsUpdateCalculator);
+            .completableFuture()
+            .thenCompose(idsFailed -> runUpdateStage(mailboxId, idsFailed, flagsUpdateCalculator));
     }
 
-    private FlagsUpdateStageResult runUpdateStage(CassandraId mailboxId, Stream<ComposedMessageIdWithMetaData> toBeUpdated, FlagsUpdateCalculator flagsUpdateCalculator) {
-        Long newModSeq = modSeqProvider.nextModSeq(mailboxId).join().orElseThrow(() -> new RuntimeException("ModSeq generation failed for mailbox " + mailboxId.asUuid()));
-
-        return toBeUpdated.collect(JamesCollectors.chunker(cassandraConfiguration.getFlagsUpdateChunkSize()))
-            .map(uidChunk -> performUpdatesForChunk(mailboxId, flagsUpdateCalculator, newModSeq, uidChunk))
-            .map(CompletableFuture::join)
-            .reduce(FlagsUpdateStageResult.none(), FlagsUpdateStageResult::merge);
+    /**
+     * Chunks are updated one after the other, bounding the count of concurrent updates to the chunk size.
+     * Within a chunk, only the conditional imapUid updates are issued per message: the messageId table and the
+     * index tables are updated with one batch per partition.
+     */
+    private CompletableFuture<FlagsUpdateStageResult> runUpdateStage(CassandraId mailboxId, Stream<ComposedMessageIdWithMetaData> toBeUpdated, FlagsUpdateCalculator flagsUpdateCalculator) {
+        return modSeqProvider.nextModSeq(mailboxId)
+            .thenApply(modSeq -> modSeq.orElseThrow(() -> new RuntimeException("ModSeq generation failed for mailbox " + mailboxId.asUuid())))
+            .thenCompose(newModSeq -> toBeUpdated.collect(JamesCollectors.chunker(cassandraConfiguration.getFlagsUpdateChunkSize()))
+                .reduce(CompletableFuture.completedFuture(FlagsUpdateStageResult.none()),
+                    (previousChunks, uidChunk) -> previousChunks.thenCompose(result -> performUpdatesForChunk(mailboxId, flagsUpdateCalculator, newModSeq, uidChunk)
+                        .thenApply(result::merge)),
+                    (results1, results2) -> results1.thenCombine(results2, FlagsUpdateStageResult::merge)));
     }
 
     private CompletableFuture<FlagsUpdateStageResult> performUpdatesForChunk(CassandraId mailboxId, FlagsUpdateCalculator flagsUpdateCalculator, Long newModSeq, Collection<ComposedMessageIdWithMetaData> uidChunk) {
@@ -325,19 +400,37 @@ public class CassandraMessageMapper implements MessageMapper {
 
         return FluentFutureStream.of(updateMetaDataFuture)
             .reduce(FlagsUpdateStageResult.none(), FlagsUpdateStageResult::merge)
+            .thenCompose(result -> updateMessageIdsForUpdatesResult(uidChunk, result))
             .thenCompose(result -> updateIndexesForUpdatesResult(mailboxId, result));
     }
 
+    private CompletableFuture<FlagsUpdateStageResult> updateMessageIdsForUpdatesResult(Collection<ComposedMessageIdWithMetaData> uidChunk, FlagsUpdateStageResult result) {
+        Map<MessageUid, ComposedMessageId> composedIdsByUid = uidChunk.stream()
+            .map(ComposedMessageIdWithMetaData::getComposedMessageId)
+            .collect(Guavate.toImmutableMap(ComposedMessageId::getUid, Function.identity()));
+
+        List<ComposedMessageIdWithMetaData> newMetadata = result.getSucceeded().stream()
+            .filter(UpdatedFlags::flagsChanged)
+            .map(updatedFlags -> ComposedMessageIdWithMetaData.builder()
+                .composedMessageId(composedIdsByUid.get(updatedFlags.getUid()))
+                .modSeq(updatedFlags.getModSeq())
+                .flags(updatedFlags.getNewFlags())
+                .build())
+            .collect(Guavate.toImmutableList());
+
+        return messageIdDAO.updateMetadata(newMetadata)
+            .thenApply(any -> result);
+    }
+
     private CompletableFuture<FlagsUpdateStageResult> updateIndexesForUpdatesResult(CassandraId mailboxId, FlagsUpdateStageResult result) {
-        return FluentFutureStream.of(
-            result.getSucceeded().stream()
-                .map(Throwing
-                    .function((UpdatedFlags updatedFlags) -> indexTableHandler.updateIndexOnFlagsUpdate(mailboxId, updatedFlags))
-                    .fallbackTo(failedindex -> {
-                        LOGGER.error("Could not update flag indexes for mailboxId {} UID {}. This will lead to inconsistencies across Cassandra tables", mailboxId, failedindex.getUid());
-                        return CompletableFuture.completedFuture(null);
-                    })))
-            .completableFuture()
+        return indexTableHandler.updateIndexOnFlagsUpdate(mailboxId, result.getSucceeded())
+            .exceptionally(throwable -> {
+                LOGGER.error("Could not update flag indexes for mailboxId {} UIDs {}. This will lead to inconsistencies across Cassandra tables",
+                    mailboxId,
+                    result.getSucceeded().stream().map(UpdatedFlags::getUid).collect(Guavate.toImmutableList()),
+                    throwable);
+                return null;
+            })
             .thenApply(any -> result);
     }
 
@@ -354,7 +447,7 @@ public class CassandraMessageMapper implements MessageMapper {
 
     @Override
     public Optional<MessageUid> getLastUid(Mailbox mailbox) throws MailboxException {
-        return uidProvider.lastUid(mailboxSession, mailbox);
+        return join(asyncMessageMapper.getLastUid(mailbox));
     }
 
     @Override
@@ -369,10 +462,10 @@ public class CassandraMessageMapper implements MessageMapper {
     private MessageMetaData setInMailbox(Mailbox mailbox, MailboxMessage message) throws MailboxException {
         CassandraId mailboxId = (CassandraId) mailbox.getMailboxId();
 
-        insertIds(addUidAndModseq(message, mailboxId), mailboxId)
-                .thenCompose(voidValue -> indexTableHandler.updateIndexOnAdd(message, mailboxId))
-                .join();
-        return new SimpleMessageMetaData(message);
+        return join(addUidAndModseq(message, mailboxId)
+            .thenCompose(messageWithUid -> insertIds(messageWithUid, mailboxId))
+            .thenCompose(voidValue -> indexTableHandler.updateIndexOnAdd(message, mailboxId))
+            .thenApply(voidValue -> new SimpleMessageMetaData(message)));
     }
 
     private CompletableFuture<Void> save(Mailbox mailbox, MailboxMessage message) throws MailboxException {
@@ -430,11 +523,6 @@ public class CassandraMessageMapper implements MessageMapper {
                 .modSeq(newModSeq)
                 .flags(newFlags)
                 .build();
-        return imapUidDAO.updateMetadata(newMetadata, oldMetadata.getModSeq())
-            .thenCompose(success -> Optional.of(success)
-                .filter(b -> b)
-                .map((Boolean any) -> messageIdDAO.updateMetadata(newMetadata)
-                    .thenApply(v -> success))
-                .orElse(CompletableFuture.completedFuture(success)));
+        return imapUidDAO.updateMetadata(newMetadata, oldMetadata.getModSeq());
     }
 }
@@ -85,11 +85,15 @@ public class CassandraModSeqProvider implements ModSeqProvider {
     private final PreparedStatement select;
     private final PreparedStatement update;
     private final PreparedStatement insert;
+    private final int leaseSize;
+    private final LeasedRanges leasedRanges;
 
     @Inject
     public CassandraModSeqProvider(Session session, CassandraConfiguration cassandraConfiguration) {
         this.cassandraAsyncExecutor = new CassandraAsyncExecutor(session);
         this.runner = new FunctionRunnerWithRetry(cassandraConfiguration.getModSeqMaxRetry());
+        this.leaseSize = cassandraConfiguration.getModSeqLeaseSize();
+        this.leasedRanges = new LeasedRanges();
         this.insert = prepareInsert(session);
         this.update = prepareUpdate(session);
         this.select = prepareSelect(session);
@@ -146,6 +150,11 @@ public class CassandraModSeqProvider implements ModSeqProvider {
         return unbox(() -> findHighestModSeq((CassandraId) mailboxId).join().getValue());
     }
 
+    public CompletableFuture<Long> highestModSeq(CassandraId mailboxId) {
+        return findHighestModSeq(mailboxId)
+            .thenApply(ModSeq::getValue);
+    }
+
     private CompletableFuture<ModSeq> findHighestModSeq(CassandraId mailboxId) {
         return cassandraAsyncExecutor.executeSingleRow(
             select.bind()
@@ -154,52 +163,63 @@ public class CassandraModSeqProvider implements ModSeqProvider {
                 .orElse(FIRST_MODSEQ));
     }
 
-    private CompletableFuture<Optional<ModSeq>> tryInsertModSeq(CassandraId mailboxId, ModSeq modSeq) {
-        ModSeq nextModSeq = modSeq.next();
+    private CompletableFuture<Optional<LeasedRanges.Range>> tryInsertModSeq(CassandraId mailboxId, ModSeq modSeq, int count) {
+        LeasedRanges.Range range = LeasedRanges.Range.of(modSeq.next().getValue(), modSeq.getValue() + count);
         return cassandraAsyncExecutor.executeReturnApplied(
             insert.bind()
                 .setUUID(MAILBOX_ID, mailboxId.asUuid())
-                .setLong(NEXT_MODSEQ, nextModSeq.getValue()))
-            .thenApply(success -> successToModSeq(nextModSeq, success));
+                .setLong(NEXT_MODSEQ, range.getUpperBound()))
+            .thenApply(success -> successToRange(range, success));
     }
 
-    private CompletableFuture<Optional<ModSeq>> tryUpdateModSeq(CassandraId mailboxId, ModSeq modSeq) {
-        ModSeq nextModSeq = modSeq.next();
+    private CompletableFuture<Optional<LeasedRanges.Range>> tryUpdateModSeq(CassandraId mailboxId, ModSeq modSeq, int count) {
+        LeasedRanges.Range range = LeasedRanges.Range.of(modSeq.next().getValue(), modSeq.getValue() + count);
         return cassandraAsyncExecutor.executeReturnApplied(
             update.bind()
                 .setUUID(MAILBOX_ID, mailboxId.asUuid())
-                .setLong(NEXT_MODSEQ, nextModSeq.getValue())
+                .setLong(NEXT_MODSEQ, range.getUpperBound())
                 .setLong(MOD_SEQ_CONDITION, modSeq.getValue()))
-            .thenApply(success -> successToModSeq(nextModSeq, success));
+            .thenApply(success -> successToRange(range, success));
     }
 
-    private Optional<ModSeq> successToModSeq(ModSeq modSeq, Boolean success) {
+    private Optional<LeasedRanges.Range> successToRange(LeasedRanges.Range range, Boolean success) {
         if (success) {
-            return Optional.of(modSeq);
+            return Optional.of(range);
         }
         return Optional.empty();
     }
-    
+
+    /**
+     * With a lease size above one, ModSeqs are reserved by ranges and handed out locally: see {@link LeasedRanges}.
+     * The highest ModSeq then is the upper bound of the last reserved range.
+     */
     public CompletableFuture<Optional<Long>> nextModSeq(CassandraId mailboxId) {
+        if (leaseSize == 1) {
+            return reserve(mailboxId, 1)
+                .thenApply(optional -> optional.map(LeasedRanges.Range::getLowerBound));
+        }
+        return leasedRanges.next(mailboxId, id -> reserve(id, leaseSize));
+    }
+
+    private CompletableFuture<Optional<LeasedRanges.Range>> reserve(CassandraId mailboxId, int count) {
         return findHighestModSeq(mailboxId)
             .thenCompose(modSeq -> {
                 if (modSeq.isFirst()) {
-                    return tryInsertModSeq(mailboxId, FIRST_MODSEQ);
+                    return tryInsertModSeq(mailboxId, FIRST_MODSEQ, count);
                 }
-                return tryUpdateModSeq(mailboxId, modSeq);
+                return tryUpdateModSeq(mailboxId, modSeq, count);
             }).thenCompose(firstInsert -> {
                     if (firstInsert.isPresent()) {
                         return CompletableFuture.completedFuture(firstInsert);
                     }
-                    return handleRetries(mailboxId);
-                })
-            .thenApply(optional -> optional.map(ModSeq::getValue));
+                    return handleRetries(mailboxId, count);
+                });
     }
 
-    private CompletableFuture<Optional<ModSeq>> handleRetries(CassandraId mailboxId) {
+    private CompletableFuture<Optional<LeasedRanges.Range>> handleRetries(CassandraId mailboxId, int count) {
         return runner.executeAsyncAndRetrieveObject(
             () -> findHighestModSeq(mailboxId)
-                .thenCompose(newModSeq -> tryUpdateModSeq(mailboxId, newModSeq)));
+                .thenCompose(newModSeq -> tryUpdateModSeq(mailboxId, newModSeq, count)));
     }
 
     private static class ModSeq {
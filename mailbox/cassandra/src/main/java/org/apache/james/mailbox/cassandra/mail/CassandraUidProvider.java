@@ -57,11 +57,15 @@ public class CassandraUidProvider implements UidProvider {
     private final PreparedStatement insertStatement;
     private final PreparedStatement updateStatement;
     private final PreparedStatement selectStatement;
+    private final int leaseSize;
+    private final LeasedRanges leasedRanges;
 
     @Inject
     public CassandraUidProvider(Session session, CassandraConfiguration cassandraConfiguration) {
         this.executor = new CassandraAsyncExecutor(session);
         this.runner = new FunctionRunnerWithRetry(cassandraConfiguration.getUidMaxRetry());
+        this.leaseSize = cassandraConfiguration.getUidLeaseSize();
+        this.leasedRanges = new LeasedRanges();
         this.selectStatement = prepareSelect(session);
         this.updateStatement = prepareUpdate(session);
         this.insertStatement = prepareInsert(session);
@@ -87,7 +91,7 @@ public class CassandraUidProvider implements UidProvider {
 
     private PreparedStatement prepareInsert(Session session) {
         return session.prepare(insertInto(TABLE_NAME)
-            .value(NEXT_UID, MessageUid.MIN_VALUE.asLong())
+            .value(NEXT_UID, bindMarker(NEXT_UID))
             .value(MAILBOX_ID, bindMarker(MAILBOX_ID))
             .ifNotExists());
     }
@@ -105,13 +109,26 @@ public class CassandraUidProvider implements UidProvider {
         .orElseThrow(() -> new MailboxException("Error during Uid update"));
     }
 
+    /**
+     * With a lease size above one, Uids are reserved by ranges and handed out locally: see {@link LeasedRanges}.
+     * {@link #lastUid(MailboxSession, Mailbox)} then returns the upper bound of the last reserved range.
+     */
     public CompletableFuture<Optional<MessageUid>> nextUid(CassandraId cassandraId) {
+        if (leaseSize == 1) {
+            return reserve(cassandraId, 1)
+                .thenApply(optional -> optional.map(range -> MessageUid.of(range.getLowerBound())));
+        }
+        return leasedRanges.next(cassandraId, mailboxId -> reserve(mailboxId, leaseSize))
+            .thenApply(optional -> optional.map(MessageUid::of));
+    }
+
+    private CompletableFuture<Optional<LeasedRanges.Range>> reserve(CassandraId cassandraId, int count) {
         return findHighestUid(cassandraId)
             .thenCompose(optional -> {
                 if (optional.isPresent()) {
-                    return tryUpdateUid(cassandraId, optional);
+                    return tryUpdateUid(cassandraId, optional, count);
                 }
-                return tryInsert(cassandraId);
+                return tryInsert(cassandraId, count);
             })
             .thenCompose(optional -> {
                 if (optional.isPresent()) {
@@ -119,7 +136,7 @@ public class CassandraUidProvider implements UidProvider {
                 }
                 return runner.executeAsyncAndRetrieveObject(
                     () -> findHighestUid(cassandraId)
-                        .thenCompose(readUid -> tryUpdateUid(cassandraId, readUid)));
+                        .thenCompose(readUid -> tryUpdateUid(cassandraId, readUid, count)));
             });
     }
 
@@ -128,6 +145,10 @@ public class CassandraUidProvider implements UidProvider {
         return findHighestUid((CassandraId) mailbox.getMailboxId()).join();
     }
 
+    public CompletableFuture<Optional<MessageUid>> lastUid(CassandraId mailboxId) {
+        return findHighestUid(mailboxId);
+    }
+
     private CompletableFuture<Optional<MessageUid>> findHighestUid(CassandraId mailboxId) {
         return executor.executeSingleRow(
             selectStatement.bind()
@@ -135,30 +156,32 @@ public class CassandraUidProvider implements UidProvider {
             .thenApply(optional -> optional.map(row -> MessageUid.of(row.getLong(NEXT_UID))));
     }
 
-    private CompletableFuture<Optional<MessageUid>> tryUpdateUid(CassandraId mailboxId, Optional<MessageUid> uid) {
+    private CompletableFuture<Optional<LeasedRanges.Range>> tryUpdateUid(CassandraId mailboxId, Optional<MessageUid> uid, int count) {
         if (uid.isPresent()) {
-            MessageUid nextUid = uid.get().next();
+            LeasedRanges.Range range = LeasedRanges.Range.of(uid.get().next().asLong(), uid.get().asLong() + count);
             return executor.executeReturnApplied(
                 updateStatement.bind()
                     .setUUID(MAILBOX_ID, mailboxId.asUuid())
                     .setLong(CONDITION, uid.get().asLong())
-                    .setLong(NEXT_UID, nextUid.asLong()))
-                .thenApply(success -> successToUid(nextUid, success));
+                    .setLong(NEXT_UID, range.getUpperBound()))
+                .thenApply(success -> successToRange(range, success));
         } else {
-            return tryInsert(mailboxId);
+            return tryInsert(mailboxId, count);
         }
     }
 
-    private CompletableFuture<Optional<MessageUid>> tryInsert(CassandraId mailboxId) {
+    private CompletableFuture<Optional<LeasedRanges.Range>> tryInsert(CassandraId mailboxId, int count) {
+        LeasedRanges.Range range = LeasedRanges.Range.of(MessageUid.MIN_VALUE.asLong(), MessageUid.MIN_VALUE.asLong() + count - 1);
         return executor.executeReturnApplied(
             insertStatement.bind()
-                .setUUID(MAILBOX_ID, mailboxId.asUuid()))
-            .thenApply(success -> successToUid(MessageUid.MIN_VALUE, success));
+                .setUUID(MAILBOX_ID, mailboxId.asUuid())
+                .setLong(NEXT_UID, range.getUpperBound()))
+            .thenApply(success -> successToRange(range, success));
     }
 
-    private Optional<MessageUid> successToUid(MessageUid uid, Boolean success) {
+    private Optional<LeasedRanges.Range> successToRange(LeasedRanges.Range range, Boolean success) {
         if (success) {
-            return Optional.of(uid);
+            return Optional.of(range);
         }
         return Optional.empty();
     }
@@ -0,0 +1,122 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.cassandra.mail;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.james.mailbox.cassandra.ids.CassandraId;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Hands out values from ranges reserved in Cassandra, so that a single lightweight transaction serves a whole range
+ * of allocations.
+ *
+ * Values handed out by this node for a given mailbox are strictly increasing. Values handed out by distinct nodes
+ * however interleave, until leases expire. Callers needing a strict ordering across nodes should not lease.
+ */
+class LeasedRanges {
+
+    static class Range {
+        static Range of(long lowerBound, long upperBound) {
+            Preconditions.checkArgument(lowerBound <= upperBound, "'lowerBound' should not exceed 'upperBound'");
+            return new Range(lowerBound, upperBound);
+        }
+
+        private final long lowerBound;
+        private final long upperBound;
+
+        private Range(long lowerBound, long upperBound) {
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+        }
+
+        long getLowerBound() {
+            return lowerBound;
+        }
+
+        long getUpperBound() {
+            return upperBound;
+        }
+    }
+
+    private static class Lease {
+        private long next = 0;
+        private long last = -1;
+
+        synchronized Optional<Long> take() {
+            if (next > last) {
+                return Optional.empty();
+            }
+            return Optional.of(next++);
+        }
+
+        /**
+         * A range reserved concurrently with a higher one is dropped: using it would hand out values lower than
+         * already handed out ones.
+         */
+        synchronized Optional<Long> extendAndTake(Range range) {
+            if (range.getLowerBound() > last) {
+                next = range.getLowerBound();
+                last = range.getUpperBound();
+            }
+            return take();
+        }
+    }
+
+    private static final long LEASE_EXPIRATION_IN_SECONDS = 60;
+    private static final long MAX_LEASE_COUNT = 10_000;
+
+    private final LoadingCache<CassandraId, Lease> leases;
+
+    LeasedRanges() {
+        this.leases = CacheBuilder.newBuilder()
+            .expireAfterWrite(LEASE_EXPIRATION_IN_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(MAX_LEASE_COUNT)
+            .build(CacheLoader.from(Lease::new));
+    }
+
+    CompletableFuture<Optional<Long>> next(CassandraId mailboxId, Function<CassandraId, CompletableFuture<Optional<Range>>> reserve) {
+        Lease lease = leases.getUnchecked(mailboxId);
+        Optional<Long> leasedValue = lease.take();
+        if (leasedValue.isPresent()) {
+            return CompletableFuture.completedFuture(leasedValue);
+        }
+        return reserve.apply(mailboxId)
+            .thenCompose(maybeRange -> maybeRange
+                .map(range -> takeOrRetry(mailboxId, lease, range, reserve))
+                .orElse(CompletableFuture.completedFuture(Optional.empty())));
+    }
+
+    private CompletableFuture<Optional<Long>> takeOrRetry(CassandraId mailboxId, Lease lease, Range range,
+                                                          Function<CassandraId, CompletableFuture<Optional<Range>>> reserve) {
+        Optional<Long> value = lease.extendAndTake(range);
+        if (value.isPresent()) {
+            return CompletableFuture.completedFuture(value);
+        }
+        return next(mailboxId, reserve);
+    }
+}
@@ -30,6 +30,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
+import com.google.common.collect.ImmutableList;
+
 class CassandraFirstUnseenDAOTest {
     private static final CassandraId MAILBOX_ID = CassandraId.timeBased();
     private static final MessageUid UID_1 = MessageUid.of(1);
@@ -128,4 +130,31 @@ class CassandraFirstUnseenDAOTest {
         assertThat(testee.retrieveFirstUnread(MAILBOX_ID).join())
             .contains(UID_2);
     }
+
+    @Test
+    void addUnreadShouldAddAllUids() {
+        testee.addUnread(MAILBOX_ID, ImmutableList.of(UID_2, UID_1)).join();
+
+        assertThat(testee.retrieveFirstUnread(MAILBOX_ID).join())
+            .contains(UID_1);
+    }
+
+    @Test
+    void removeUnreadShouldRemoveAllUids() {
+        testee.addUnread(MAILBOX_ID, UID_1).join();
+        testee.addUnread(MAILBOX_ID, UID_2).join();
+
+        testee.removeUnread(MAILBOX_ID, ImmutableList.of(UID_1, UID_2)).join();
+
+        assertThat(testee.retrieveFirstUnread(MAILBOX_ID).join())
+            .isEmpty();
+    }
+
+    @Test
+    void removeUnreadShouldNotFailWhenNoUids() {
+        testee.removeUnread(MAILBOX_ID, ImmutableList.of()).join();
+
+        assertThat(testee.retrieveFirstUnread(MAILBOX_ID).join())
+            .isEmpty();
+    }
 }
@@ -52,11 +52,13 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
 import com.github.steveash.guavate.Guavate;
+import com.google.common.collect.ImmutableList;
 
 public class CassandraIndexTableHandlerTest {
 
     public static final CassandraId MAILBOX_ID = CassandraId.timeBased();
     public static final MessageUid MESSAGE_UID = MessageUid.of(18L);
+    public static final MessageUid MESSAGE_UID_2 = MessageUid.of(19L);
     public static final CassandraMessageId CASSANDRA_MESSAGE_ID = new CassandraMessageId.Factory().generate();
     public static final int UID_VALIDITY = 15;
     public static final long MODSEQ = 17;
@@ -699,4 +701,89 @@ public class CassandraIndexTableHandlerTest {
         Flags applicableFlag = applicableFlagDAO.retrieveApplicableFlag(MAILBOX_ID).join().get();
         assertThat(applicableFlag).isEqualTo(messageFlags);
     }
+
+    @Test
+    void updateIndexOnFlagsUpdateShouldAggregateUnseenCountOfSeveralUpdates() throws Exception {
+        MailboxMessage message = mock(MailboxMessage.class);
+        when(message.createFlags()).thenReturn(new Flags());
+        when(message.getUid()).thenReturn(MESSAGE_UID);
+        testee.updateIndexOnAdd(message, MAILBOX_ID).join();
+        when(message.getUid()).thenReturn(MESSAGE_UID_2);
+        testee.updateIndexOnAdd(message, MAILBOX_ID).join();
+
+        testee.updateIndexOnFlagsUpdate(MAILBOX_ID, ImmutableList.of(
+            UpdatedFlags.builder()
+                .uid(MESSAGE_UID)
+                .newFlags(new Flags(Flags.Flag.SEEN))
+                .oldFlags(new Flags())
+                .modSeq(MODSEQ)
+                .build(),
+            UpdatedFlags.builder()
+                .uid(MESSAGE_UID_2)
+                .newFlags(new Flags(Flags.Flag.SEEN))
+                .oldFlags(new Flags())
+                .modSeq(MODSEQ)
+                .build()))
+            .join();
+
+        Optional<Long> actual = mailboxCounterDAO.countUnseenMessagesInMailbox(mailbox).join();
+        assertThat(actual.isPresent()).isTrue();
+        assertThat(actual.get()).isEqualTo(0);
+        assertThat(firstUnseenDAO.retrieveFirstUnread(MAILBOX_ID).join().isPresent()).isFalse();
+    }
+
+    @Test
+    void updateIndexOnFlagsUpdateShouldApplyDeletedChangesOfSeveralUpdates() {
+        MailboxMessage message = mock(MailboxMessage.class);
+        when(message.createFlags()).thenReturn(new Flags(Flags.Flag.DELETED));
+        when(message.getUid()).thenReturn(MESSAGE_UID);
+        testee.updateIndexOnAdd(message, MAILBOX_ID).join();
+        when(message.createFlags()).thenReturn(new Flags());
+        when(message.getUid()).thenReturn(MESSAGE_UID_2);
+        testee.updateIndexOnAdd(message, MAILBOX_ID).join();
+
+        testee.updateIndexOnFlagsUpdate(MAILBOX_ID, ImmutableList.of(
+            UpdatedFlags.builder()
+                .uid(MESSAGE_UID)
+                .newFlags(new Flags())
+                .oldFlags(new Flags(Flags.Flag.DELETED))
+                .modSeq(MODSEQ)
+                .build(),
+            UpdatedFlags.builder()
+                .uid(MESSAGE_UID_2)
+                .newFlags(new Flags(Flags.Flag.DELETED))
+                .oldFlags(new Flags())
+                .modSeq(MODSEQ)
+                .build()))
+            .join();
+
+        assertThat(
+            deletedMessageDAO
+                .retrieveDeletedMessage(MAILBOX_ID, MessageRange.all())
+                .join()
+                .collect(Guavate.toImmutableList()))
+            .containsExactly(MESSAGE_UID_2);
+    }
+
+    @Test
+    void updateIndexOnFlagsUpdateShouldUnionApplicableFlagsOfSeveralUpdates() {
+        testee.updateIndexOnFlagsUpdate(MAILBOX_ID, ImmutableList.of(
+            UpdatedFlags.builder()
+                .uid(MESSAGE_UID)
+                .newFlags(new Flags("custom"))
+                .oldFlags(new Flags())
+                .modSeq(MODSEQ)
+                .build(),
+            UpdatedFlags.builder()
+                .uid(MESSAGE_UID_2)
+                .newFlags(new Flags("customBis"))
+                .oldFlags(new Flags())
+                .modSeq(MODSEQ)
+                .build()))
+            .join();
+
+        Flags applicableFlag = applicableFlagDAO.retrieveApplicableFlag(MAILBOX_ID).join().get();
+
+        assertThat(applicableFlag).isEqualTo(new FlagsBuilder().add("custom", "customBis").build());
+    }
 }
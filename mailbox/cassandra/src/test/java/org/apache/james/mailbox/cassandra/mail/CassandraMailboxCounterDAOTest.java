@@ -183,4 +183,32 @@ class CassandraMailboxCounterDAOTest {
         assertThat(testee.countUnseenMessagesInMailbox(mailbox).join())
             .contains(-1L);
     }
+
+    @Test
+    void addToUnseenShouldApplyPositiveDelta() throws Exception {
+        testee.addToUnseen(MAILBOX_ID, 3).join();
+
+        assertThat(testee.countUnseenMessagesInMailbox(mailbox).join())
+            .contains(3L);
+    }
+
+    @Test
+    void addToUnseenShouldApplyNegativeDelta() throws Exception {
+        testee.addToUnseen(MAILBOX_ID, 3).join();
+
+        testee.addToUnseen(MAILBOX_ID, -2).join();
+
+        assertThat(testee.countUnseenMessagesInMailbox(mailbox).join())
+            .contains(1L);
+    }
+
+    @Test
+    void addToUnseenShouldHaveNoEffectOnMessageCount() throws Exception {
+        testee.incrementCount(MAILBOX_ID).join();
+
+        testee.addToUnseen(MAILBOX_ID, 3).join();
+
+        assertThat(testee.countMessagesInMailbox(mailbox).join())
+            .contains(1L);
+    }
 }
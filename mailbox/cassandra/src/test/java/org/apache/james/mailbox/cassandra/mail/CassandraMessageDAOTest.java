@@ -26,6 +26,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Stream;
 
@@ -171,6 +172,21 @@ class CassandraMessageDAOTest {
             .isEqualTo(CONTENT.substring(0, BODY_START));
     }
 
+    @Test
+    void retrieveMessagesShouldOnlyReturnLeadingBodyOctetsWhenLimited() throws Exception {
+        message = createMessage(messageId, CONTENT, BODY_START, new PropertyBuilder(), NO_ATTACHMENT);
+
+        testee.save(message).join();
+
+        MessageWithoutAttachment attachmentRepresentation =
+            toMessage(testee.retrieveMessages(messageIds, MessageMapper.FetchType.Full, Optional.of(3L), Limit.unlimited()));
+
+        assertThat(IOUtils.toString(attachmentRepresentation.getContent(), StandardCharsets.UTF_8))
+            .isEqualTo(CONTENT.substring(0, BODY_START + 3));
+        assertThat(attachmentRepresentation.toMailboxMessage(NO_ATTACHMENT).getFullContentOctets())
+            .isEqualTo(CONTENT.length());
+    }
+
     private SimpleMailboxMessage createMessage(MessageId messageId, String content, int bodyStart, PropertyBuilder propertyBuilder, Collection<MessageAttachment> attachments) {
         return SimpleMailboxMessage.builder()
             .messageId(messageId)
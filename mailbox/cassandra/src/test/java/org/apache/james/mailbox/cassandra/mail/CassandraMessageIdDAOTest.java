@@ -41,6 +41,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
+import com.google.common.collect.ImmutableList;
+
 class CassandraMessageIdDAOTest {
     @RegisterExtension
     static CassandraClusterExtension cassandraCluster = new CassandraClusterExtension(CassandraMessageModule.MODULE);
@@ -350,6 +352,61 @@ class CassandraMessageIdDAOTest {
         assertThat(message.get()).isEqualTo(expectedComposedMessageId);
     }
 
+    @Test
+    void updateMetadataShouldUpdateAllMessagesOfAllMailboxes() {
+        CassandraId mailboxId = CassandraId.timeBased();
+        CassandraId mailboxId2 = CassandraId.timeBased();
+        ComposedMessageId composedMessageId = new ComposedMessageId(mailboxId, messageIdFactory.generate(), MessageUid.of(1));
+        ComposedMessageId composedMessageId2 = new ComposedMessageId(mailboxId, messageIdFactory.generate(), MessageUid.of(2));
+        ComposedMessageId composedMessageId3 = new ComposedMessageId(mailboxId2, messageIdFactory.generate(), MessageUid.of(1));
+        CompletableFuture.allOf(
+                testee.insert(ComposedMessageIdWithMetaData.builder()
+                    .composedMessageId(composedMessageId)
+                    .flags(new Flags())
+                    .modSeq(1)
+                    .build()),
+                testee.insert(ComposedMessageIdWithMetaData.builder()
+                    .composedMessageId(composedMessageId2)
+                    .flags(new Flags())
+                    .modSeq(1)
+                    .build()),
+                testee.insert(ComposedMessageIdWithMetaData.builder()
+                    .composedMessageId(composedMessageId3)
+                    .flags(new Flags())
+                    .modSeq(1)
+                    .build()))
+            .join();
+
+        ComposedMessageIdWithMetaData expected = ComposedMessageIdWithMetaData.builder()
+                .composedMessageId(composedMessageId)
+                .flags(new Flags(Flag.SEEN))
+                .modSeq(2)
+                .build();
+        ComposedMessageIdWithMetaData expected2 = ComposedMessageIdWithMetaData.builder()
+                .composedMessageId(composedMessageId2)
+                .flags(new Flags(Flag.SEEN))
+                .modSeq(2)
+                .build();
+        ComposedMessageIdWithMetaData expected3 = ComposedMessageIdWithMetaData.builder()
+                .composedMessageId(composedMessageId3)
+                .flags(new Flags(Flag.FLAGGED))
+                .modSeq(2)
+                .build();
+        testee.updateMetadata(ImmutableList.of(expected, expected2, expected3)).join();
+
+        assertThat(testee.retrieveMessages(mailboxId, MessageRange.all()).join()
+                .collect(Collectors.toList()))
+            .containsOnly(expected, expected2);
+        assertThat(testee.retrieveMessages(mailboxId2, MessageRange.all()).join()
+                .collect(Collectors.toList()))
+            .containsOnly(expected3);
+    }
+
+    @Test
+    void updateMetadataShouldNotFailWhenNoUpdates() {
+        testee.updateMetadata(ImmutableList.of()).join();
+    }
+
     @Test
     void retrieveShouldRetrieveWhenKeyMatches() {
         CassandraMessageId messageId = messageIdFactory.generate();
@@ -24,6 +24,7 @@ import java.util.stream.LongStream;
 
 import org.apache.james.backends.cassandra.CassandraCluster;
 import org.apache.james.backends.cassandra.CassandraClusterExtension;
+import org.apache.james.backends.cassandra.init.configuration.CassandraConfiguration;
 import org.apache.james.mailbox.cassandra.ids.CassandraId;
 import org.apache.james.mailbox.cassandra.modules.CassandraModSeqModule;
 import org.apache.james.mailbox.model.MailboxPath;
@@ -36,17 +37,25 @@ import com.github.fge.lambdas.Throwing;
 
 class CassandraModSeqProviderTest {
     private static final CassandraId CASSANDRA_ID = new CassandraId.Factory().fromString("e22b3ac0-a80b-11e7-bb00-777268d65503");
+    private static final int LEASE_SIZE = 10;
+    private static final CassandraConfiguration LEASING_CONFIGURATION = CassandraConfiguration.builder()
+        .modSeqLeaseSize(LEASE_SIZE)
+        .build();
 
     @RegisterExtension
     static CassandraClusterExtension cassandraCluster = new CassandraClusterExtension(CassandraModSeqModule.MODULE);
     
     private CassandraModSeqProvider modSeqProvider;
+    private CassandraModSeqProvider leasingModSeqProvider;
+    private CassandraModSeqProvider otherLeasingModSeqProvider;
     private SimpleMailbox mailbox;
 
 
     @BeforeEach
     void setUp(CassandraCluster cassandra) {
         modSeqProvider = new CassandraModSeqProvider(cassandra.getConf());
+        leasingModSeqProvider = new CassandraModSeqProvider(cassandra.getConf(), LEASING_CONFIGURATION);
+        otherLeasingModSeqProvider = new CassandraModSeqProvider(cassandra.getConf(), LEASING_CONFIGURATION);
         MailboxPath path = new MailboxPath("gsoc", "ieugen", "Trash");
         mailbox = new SimpleMailbox(path, 1234);
         mailbox.setMailboxId(CASSANDRA_ID);
@@ -86,4 +95,47 @@ class CassandraModSeqProviderTest {
             .count();
         assertThat(nbValues).isEqualTo(nbEntries);
     }
+
+    @Test
+    void nextModSeqShouldIncrementValueByOneWhenLeasing() {
+        int nbEntries = 100;
+        LongStream.range(1, nbEntries)
+            .forEach(Throwing.longConsumer(value -> {
+                long result = leasingModSeqProvider.nextModSeq(null, mailbox);
+                assertThat(value).isEqualTo(result);
+            }));
+    }
+
+    @Test
+    void highestModSeqShouldReturnTheUpperBoundOfTheLeaseWhenLeasing() throws Exception {
+        leasingModSeqProvider.nextModSeq(null, mailbox);
+
+        assertThat(modSeqProvider.highestModSeq(null, mailbox)).isEqualTo(LEASE_SIZE);
+    }
+
+    @Test
+    void nextModSeqShouldHandOutModSeqsLowerThanHighestModSeqWhenSeveralProvidersLease() throws Exception {
+        long firstModSeq = leasingModSeqProvider.nextModSeq(null, mailbox);
+        long otherNodeModSeq = otherLeasingModSeqProvider.nextModSeq(null, mailbox);
+        long highestModSeq = modSeqProvider.highestModSeq(null, mailbox);
+
+        long nextModSeq = leasingModSeqProvider.nextModSeq(null, mailbox);
+
+        assertThat(firstModSeq).isEqualTo(1);
+        assertThat(otherNodeModSeq).isEqualTo(LEASE_SIZE + 1);
+        assertThat(highestModSeq).isEqualTo(2 * LEASE_SIZE);
+        assertThat(nextModSeq).isEqualTo(2);
+    }
+
+    @Test
+    void nextModSeqShouldGenerateUniqueValuesWhenParallelCallsAndLeasing() {
+        int nbEntries = 100;
+        long nbValues = LongStream.range(0, nbEntries)
+            .parallel()
+            .boxed()
+            .map(Throwing.function(x -> leasingModSeqProvider.nextModSeq(null, mailbox)))
+            .distinct()
+            .count();
+        assertThat(nbValues).isEqualTo(nbEntries);
+    }
 }
@@ -25,6 +25,7 @@ import java.util.stream.LongStream;
 
 import org.apache.james.backends.cassandra.CassandraCluster;
 import org.apache.james.backends.cassandra.CassandraClusterExtension;
+import org.apache.james.backends.cassandra.init.configuration.CassandraConfiguration;
 import org.apache.james.mailbox.MessageUid;
 import org.apache.james.mailbox.cassandra.ids.CassandraId;
 import org.apache.james.mailbox.cassandra.modules.CassandraUidModule;
@@ -38,16 +39,24 @@ import com.github.fge.lambdas.Throwing;
 
 class CassandraUidProviderTest {
     private static final CassandraId CASSANDRA_ID = new CassandraId.Factory().fromString("e22b3ac0-a80b-11e7-bb00-777268d65503");
+    private static final int LEASE_SIZE = 10;
+    private static final CassandraConfiguration LEASING_CONFIGURATION = CassandraConfiguration.builder()
+        .uidLeaseSize(LEASE_SIZE)
+        .build();
 
     @RegisterExtension
     static CassandraClusterExtension cassandraCluster = new CassandraClusterExtension(CassandraUidModule.MODULE);
 
     private CassandraUidProvider uidProvider;
+    private CassandraUidProvider leasingUidProvider;
+    private CassandraUidProvider otherLeasingUidProvider;
     private SimpleMailbox mailbox;
 
     @BeforeEach
     void setUp(CassandraCluster cassandra) {
         uidProvider = new CassandraUidProvider(cassandra.getConf());
+        leasingUidProvider = new CassandraUidProvider(cassandra.getConf(), LEASING_CONFIGURATION);
+        otherLeasingUidProvider = new CassandraUidProvider(cassandra.getConf(), LEASING_CONFIGURATION);
         MailboxPath path = new MailboxPath("gsoc", "ieugen", "Trash");
         mailbox = new SimpleMailbox(path, 1234);
         mailbox.setMailboxId(CASSANDRA_ID);
@@ -87,4 +96,71 @@ class CassandraUidProviderTest {
             .count();
         assertThat(nbValues).isEqualTo(nbEntries);
     }
+
+    @Test
+    void nextUidShouldIncrementValueByOneWhenLeasing() {
+        int nbEntries = 100;
+        LongStream.range(1, nbEntries)
+            .forEach(Throwing.longConsumer(value -> {
+                MessageUid result = leasingUidProvider.nextUid(null, mailbox);
+                assertThat(value).isEqualTo(result.asLong());
+            }));
+    }
+
+    @Test
+    void lastUidShouldReturnTheUpperBoundOfTheLeaseWhenLeasing() throws Exception {
+        leasingUidProvider.nextUid(null, mailbox);
+
+        assertThat(uidProvider.lastUid(null, mailbox)).contains(MessageUid.of(LEASE_SIZE));
+    }
+
+    @Test
+    void nextUidShouldHandOutUidsLowerThanLastUidWhenSeveralProvidersLease() throws Exception {
+        MessageUid firstUid = leasingUidProvider.nextUid(null, mailbox);
+        MessageUid otherNodeUid = otherLeasingUidProvider.nextUid(null, mailbox);
+        Optional<MessageUid> lastUid = uidProvider.lastUid(null, mailbox);
+
+        MessageUid nextUid = leasingUidProvider.nextUid(null, mailbox);
+
+        assertThat(firstUid).isEqualTo(MessageUid.of(1));
+        assertThat(otherNodeUid).isEqualTo(MessageUid.of(LEASE_SIZE + 1));
+        assertThat(lastUid).contains(MessageUid.of(2 * LEASE_SIZE));
+        assertThat(nextUid).isEqualTo(MessageUid.of(2));
+    }
+
+    @Test
+    void nextUidShouldNotReuseLeasedValues() throws Exception {
+        leasingUidProvider.nextUid(null, mailbox);
+
+        assertThat(uidProvider.nextUid(null, mailbox)).isEqualTo(MessageUid.of(LEASE_SIZE + 1));
+    }
+
+    @Test
+    void nextUidShouldGenerateUniqueValuesWhenParallelCallsAndLeasing() {
+        int nbEntries = 100;
+        long nbValues = LongStream.range(0, nbEntries)
+            .parallel()
+            .boxed()
+            .map(Throwing.function(x -> leasingUidProvider.nextUid(null, mailbox)))
+            .distinct()
+            .count();
+        assertThat(nbValues).isEqualTo(nbEntries);
+    }
+
+    @Test
+    void nextUidShouldGenerateUniqueValuesWhenParallelCallsOnSeveralLeasingProviders() {
+        int nbEntries = 100;
+        long nbValues = LongStream.range(0, nbEntries)
+            .parallel()
+            .boxed()
+            .map(Throwing.function(x -> {
+                if (x % 2 == 0) {
+                    return leasingUidProvider.nextUid(null, mailbox);
+                }
+                return otherLeasingUidProvider.nextUid(null, mailbox);
+            }))
+            .distinct()
+            .count();
+        assertThat(nbValues).isEqualTo(nbEntries);
+    }
 }
@@ -27,16 +27,25 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TimeZone;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
@@ -65,6 +74,8 @@ import org.apache.james.mailbox.model.SearchQuery.NumericOperator;
 import org.apache.james.mailbox.model.SearchQuery.UidCriterion;
 import org.apache.james.mailbox.model.SearchQuery.UidRange;
 import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.mail.MailboxMapper;
+import org.apache.james.mailbox.store.mail.MailboxMapperFactory;
 import org.apache.james.mailbox.store.mail.MessageMapperFactory;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.apache.james.mailbox.store.mail.model.MailboxMessage;
@@ -87,6 +98,7 @@ import org.apache.james.mime4j.parser.MimeStreamParser;
 import org.apache.james.mime4j.stream.BodyDescriptor;
 import org.apache.james.mime4j.stream.MimeConfig;
 import org.apache.james.mime4j.util.MimeUtil;
+import org.apache.james.util.concurrent.NamedThreadFactory;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
@@ -94,7 +106,6 @@ import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Index;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.NumericField;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
@@ -120,6 +131,7 @@ import org.slf4j.LoggerFactory;
 import com.github.steveash.guavate.Guavate;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
 
 /**
  * Lucene based {@link ListeningMessageSearchIndex} which offers message searching via a Lucene index
@@ -146,6 +158,21 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
      * Default max query results
      */
     private static final int DEFAULT_MAX_QUERY_RESULTS = 100000;
+
+    /**
+     * Default count of writes after which the searcher is reopened
+     */
+    private static final int DEFAULT_MAX_PENDING_WRITES = 1000;
+
+    private static final String SHARED_PARTITION = "";
+
+    /**
+     * Provides the {@link Directory} holding the index of the mailboxes of a given user
+     */
+    @FunctionalInterface
+    public interface PartitionDirectoryProvider {
+        Directory forUser(String user) throws IOException;
+    }
     
     /**
      * {@link Field} which will contain the unique index of the {@link Document}
@@ -353,10 +380,19 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
     
     private final MailboxId.Factory mailboxIdFactory;
     private final MessageId.Factory messageIdFactory;
-    private final IndexWriter writer;
+    private final Map<String, NearRealTimeIndex> indexes;
+    private final Optional<PartitionDirectoryProvider> partitionDirectoryProvider;
+    private final Optional<MailboxMapperFactory> mailboxMapperFactory;
+    private final boolean lenient;
 
     private int maxQueryResults = DEFAULT_MAX_QUERY_RESULTS;
 
+    private volatile int maxPendingWrites = DEFAULT_MAX_PENDING_WRITES;
+
+    private volatile long refreshIntervalInMs = 0;
+
+    private Optional<ScheduledExecutorService> refreshScheduler = Optional.empty();
+
     private boolean suffixMatch = false;
 
     @Inject
@@ -380,15 +416,41 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
         super(factory);
         this.mailboxIdFactory = mailboxIdFactory;
         this.messageIdFactory = messageIdFactory;
-        this.writer = new IndexWriter(directory,  createConfig(createAnalyzer(lenient), dropIndexOnStart));
+        this.indexes = new ConcurrentHashMap<>();
+        this.partitionDirectoryProvider = Optional.empty();
+        this.mailboxMapperFactory = Optional.empty();
+        this.lenient = lenient;
+        this.indexes.put(SHARED_PARTITION, new NearRealTimeIndex(new IndexWriter(directory,  createConfig(createAnalyzer(lenient), dropIndexOnStart))));
     }
     
     
-    public LuceneMessageSearchIndex(MessageMapperFactory factory, MailboxId.Factory mailboxIdFactory, MessageId.Factory messageIdFactory, IndexWriter writer) {
+    public LuceneMessageSearchIndex(MessageMapperFactory factory, MailboxId.Factory mailboxIdFactory, MessageId.Factory messageIdFactory, IndexWriter writer) throws IOException {
         super(factory);
         this.mailboxIdFactory = mailboxIdFactory;
         this.messageIdFactory = messageIdFactory;
-        this.writer = writer;
+        this.indexes = new ConcurrentHashMap<>();
+        this.partitionDirectoryProvider = Optional.empty();
+        this.mailboxMapperFactory = Optional.empty();
+        this.lenient = true;
+        this.indexes.put(SHARED_PARTITION, new NearRealTimeIndex(writer));
+    }
+
+    /**
+     * Creates an index partitioned by user: the mailboxes of each user are indexed in their own {@link Directory},
+     * opened on first use. Searches and writes of a user then do not contend with other users ones.
+     *
+     * Multi-mailbox searches resolve the owner of each mailbox through the {@link MailboxMapperFactory}, so that
+     * mailboxes shared by other users are searched within the partition of their owner.
+     */
+    public LuceneMessageSearchIndex(MessageMapperFactory factory, MailboxMapperFactory mailboxMapperFactory, MailboxId.Factory mailboxIdFactory,
+                                    MessageId.Factory messageIdFactory, PartitionDirectoryProvider partitionDirectoryProvider, boolean lenient) {
+        super(factory);
+        this.mailboxIdFactory = mailboxIdFactory;
+        this.messageIdFactory = messageIdFactory;
+        this.indexes = new ConcurrentHashMap<>();
+        this.partitionDirectoryProvider = Optional.of(partitionDirectoryProvider);
+        this.mailboxMapperFactory = Optional.of(mailboxMapperFactory);
+        this.lenient = lenient;
     }
 
     @Override
@@ -411,6 +473,96 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
     public void setMaxQueryResults(int maxQueryResults) {
         this.maxQueryResults = maxQueryResults;
     }
+
+    /**
+     * Set the count of writes after which the shared searcher is reopened. The default is {@link #DEFAULT_MAX_PENDING_WRITES}
+     *
+     * @param maxPendingWrites
+     */
+    public void setMaxPendingWrites(int maxPendingWrites) {
+        Preconditions.checkArgument(maxPendingWrites > 0, "'maxPendingWrites' should be strictly positive");
+        this.maxPendingWrites = maxPendingWrites;
+    }
+
+    /**
+     * Set the interval at which the shared searcher is reopened to see the latest writes.
+     *
+     * When 0, which is the default, a search reopens the searcher if writes happened since it was last opened, so that
+     * searches always see previous writes. Otherwise searches use the searcher as last reopened, and may not see writes
+     * done less than this interval ago, or before {@link #setMaxPendingWrites(int)} writes are pending.
+     *
+     * @param refreshIntervalInMs
+     */
+    public synchronized void setRefreshIntervalInMs(long refreshIntervalInMs) {
+        Preconditions.checkArgument(refreshIntervalInMs >= 0, "'refreshIntervalInMs' should be positive");
+        this.refreshIntervalInMs = refreshIntervalInMs;
+        refreshScheduler.ifPresent(ExecutorService::shutdownNow);
+        refreshScheduler = Optional.empty();
+        if (refreshIntervalInMs > 0) {
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("lucene-searcher-refresh"));
+            scheduler.scheduleWithFixedDelay(this::refreshSearchers, refreshIntervalInMs, refreshIntervalInMs, TimeUnit.MILLISECONDS);
+            refreshScheduler = Optional.of(scheduler);
+        }
+    }
+
+    private void refreshSearchers() {
+        for (NearRealTimeIndex index : indexes.values()) {
+            try {
+                index.refresh();
+            } catch (IOException e) {
+                LOGGER.error("Unable to refresh the index searcher", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void destroy() throws IOException {
+        refreshScheduler.ifPresent(ExecutorService::shutdownNow);
+        refreshScheduler = Optional.empty();
+        for (NearRealTimeIndex index : indexes.values()) {
+            index.close();
+        }
+    }
+
+    private NearRealTimeIndex index(Mailbox mailbox) throws MailboxException {
+        return index(mailbox::getUser);
+    }
+
+    private NearRealTimeIndex index(MailboxSession session) throws MailboxException {
+        return index(() -> session.getUser().getUserName());
+    }
+
+    private NearRealTimeIndex index(Supplier<String> partitionUser) throws MailboxException {
+        if (!partitionDirectoryProvider.isPresent()) {
+            return indexes.get(SHARED_PARTITION);
+        }
+        String user = Optional.ofNullable(partitionUser.get()).orElse(SHARED_PARTITION);
+        NearRealTimeIndex index = indexes.get(user);
+        if (index != null) {
+            return index;
+        }
+        synchronized (indexes) {
+            index = indexes.get(user);
+            if (index == null) {
+                index = openPartition(user);
+                indexes.put(user, index);
+            }
+            return index;
+        }
+    }
+
+    private NearRealTimeIndex openPartition(String user) throws MailboxException {
+        try {
+            Directory directory = partitionDirectoryProvider.get().forUser(user);
+            return new NearRealTimeIndex(new IndexWriter(directory, createConfig(createAnalyzer(lenient), false)));
+        } catch (IOException e) {
+            throw new MailboxException("Unable to open the index of " + user, e);
+        }
+    }
+
+    private boolean searchesNeedUpToDateSearcher() {
+        return refreshIntervalInMs == 0;
+    }
     
     protected IndexWriterConfig createConfig(Analyzer analyzer, boolean dropIndexOnStart) {
         IndexWriterConfig config = new IndexWriterConfig(Version.LUCENE_31, analyzer);
@@ -457,7 +609,7 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
     public Iterator<MessageUid> search(MailboxSession session, Mailbox mailbox, SearchQuery searchQuery) throws MailboxException {
         Preconditions.checkArgument(session != null, "'session' is mandatory");
 
-        return searchMultimap(ImmutableList.of(mailbox.getMailboxId()), searchQuery)
+        return searchMultimap(index(mailbox), ImmutableList.of(mailbox.getMailboxId()), searchQuery)
             .stream()
             .map(SearchResult::getMessageUid)
             .iterator();
@@ -470,43 +622,66 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
             return ImmutableList.of();
         }
 
-        return searchMultimap(mailboxIds, searchQuery)
+        ImmutableList.Builder<SearchResult> results = ImmutableList.builder();
+        for (Map.Entry<NearRealTimeIndex, Collection<MailboxId>> partition : partitions(session, mailboxIds).asMap().entrySet()) {
+            results.addAll(searchMultimap(partition.getKey(), partition.getValue(), searchQuery));
+        }
+        return results.build()
             .stream()
             .map(searchResult -> searchResult.getMessageId().get())
             .filter(SearchUtil.distinct())
             .limit(Long.valueOf(limit).intValue())
             .collect(Guavate.toImmutableList());
     }
-    
-    private List<SearchResult> searchMultimap(Collection<MailboxId> mailboxIds, SearchQuery searchQuery) throws MailboxException {
-        ImmutableList.Builder<SearchResult> results = ImmutableList.builder();
 
+    /**
+     * Groups the given mailboxes by the index holding them. When partitioned by user, mailboxes shared by other users
+     * are held by the partition of their owner.
+     */
+    private ImmutableListMultimap<NearRealTimeIndex, MailboxId> partitions(MailboxSession session, Collection<MailboxId> mailboxIds) throws MailboxException {
+        ImmutableListMultimap.Builder<NearRealTimeIndex, MailboxId> partitions = ImmutableListMultimap.builder();
+        if (!mailboxMapperFactory.isPresent()) {
+            return partitions.putAll(index(session), mailboxIds).build();
+        }
+        MailboxMapper mailboxMapper = mailboxMapperFactory.get().getMailboxMapper(session);
+        for (MailboxId mailboxId : mailboxIds) {
+            partitions.put(index(mailboxMapper.findMailboxById(mailboxId)), mailboxId);
+        }
+        return partitions.build();
+    }
+    
+    private List<SearchResult> searchMultimap(NearRealTimeIndex index, Collection<MailboxId> mailboxIds, SearchQuery searchQuery) throws MailboxException {
         Query inMailboxes = buildQueryFromMailboxes(mailboxIds);
         
-        try (IndexSearcher searcher = new IndexSearcher(IndexReader.open(writer, true))) {
-            BooleanQuery query = new BooleanQuery();
-            query.add(inMailboxes, BooleanClause.Occur.MUST);
-            // Not return flags documents
-            query.add(new PrefixQuery(new Term(FLAGS_FIELD, "")), BooleanClause.Occur.MUST_NOT);
-
-            List<Criterion> crits = searchQuery.getCriterias();
-            for (Criterion crit : crits) {
-                query.add(createQuery(crit, inMailboxes, searchQuery.getRecentMessageUids()), BooleanClause.Occur.MUST);
-            }
-
-            // query for all the documents sorted as specified in the SearchQuery
-            TopDocs docs = searcher.search(query, null, maxQueryResults, createSort(searchQuery.getSorts()));
-            ScoreDoc[] sDocs = docs.scoreDocs;
-            for (ScoreDoc sDoc : sDocs) {
-                Document doc = searcher.doc(sDoc.doc);
-                MessageUid uid = MessageUid.of(Long.valueOf(doc.get(UID_FIELD)));
-                MailboxId mailboxId = mailboxIdFactory.fromString(doc.get(MAILBOX_ID_FIELD));
-                Optional<MessageId> messageId = toMessageId(Optional.ofNullable(doc.get(MESSAGE_ID_FIELD)));
-                results.add(new SearchResult(messageId, mailboxId, uid));
-            }
+        try {
+            return index.search(searcher -> searchMultimap(searcher, inMailboxes, searchQuery), searchesNeedUpToDateSearcher());
         } catch (IOException e) {
             throw new MailboxException("Unable to search the mailbox", e);
         }
+    }
+
+    private List<SearchResult> searchMultimap(IndexSearcher searcher, Query inMailboxes, SearchQuery searchQuery) throws IOException, MailboxException {
+        ImmutableList.Builder<SearchResult> results = ImmutableList.builder();
+        BooleanQuery query = new BooleanQuery();
+        query.add(inMailboxes, BooleanClause.Occur.MUST);
+        // Not return flags documents
+        query.add(new PrefixQuery(new Term(FLAGS_FIELD, "")), BooleanClause.Occur.MUST_NOT);
+
+        List<Criterion> crits = searchQuery.getCriterias();
+        for (Criterion crit : crits) {
+            query.add(createQuery(searcher, crit, inMailboxes, searchQuery.getRecentMessageUids()), BooleanClause.Occur.MUST);
+        }
+
+        // query for all the documents sorted as specified in the SearchQuery
+        TopDocs docs = searcher.search(query, null, maxQueryResults, createSort(searchQuery.getSorts()));
+        ScoreDoc[] sDocs = docs.scoreDocs;
+        for (ScoreDoc sDoc : sDocs) {
+            Document doc = searcher.doc(sDoc.doc);
+            MessageUid uid = MessageUid.of(Long.valueOf(doc.get(UID_FIELD)));
+            MailboxId mailboxId = mailboxIdFactory.fromString(doc.get(MAILBOX_ID_FIELD));
+            Optional<MessageId> messageId = toMessageId(Optional.ofNullable(doc.get(MESSAGE_ID_FIELD)));
+            results.add(new SearchResult(messageId, mailboxId, uid));
+        }
         return results.build();
     }
 
@@ -951,7 +1126,7 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
      * @return query
      * @throws MailboxException
      */
-    private Query createFlagQuery(String flag, boolean isSet, Query inMailboxes, Collection<MessageUid> recentUids) throws MailboxException {
+    private Query createFlagQuery(IndexSearcher searcher, String flag, boolean isSet, Query inMailboxes, Collection<MessageUid> recentUids) throws MailboxException {
         BooleanQuery query = new BooleanQuery();
         
         if (isSet) {   
@@ -967,7 +1142,7 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
         query.add(inMailboxes, BooleanClause.Occur.MUST);
 
 
-        try (IndexSearcher searcher = new IndexSearcher(IndexReader.open(writer, true))) {
+        try {
             Set<MessageUid> uids = new HashSet<>();
 
             // query for all the documents sorted by uid
@@ -1150,24 +1325,24 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
      * @return query
      * @throws UnsupportedSearchException
      */
-    private Query createConjunctionQuery(SearchQuery.ConjunctionCriterion crit, Query inMailboxes, Collection<MessageUid> recentUids) throws UnsupportedSearchException, MailboxException {
+    private Query createConjunctionQuery(IndexSearcher searcher, SearchQuery.ConjunctionCriterion crit, Query inMailboxes, Collection<MessageUid> recentUids) throws UnsupportedSearchException, MailboxException {
         List<Criterion> crits = crit.getCriteria();
         BooleanQuery conQuery = new BooleanQuery();
         switch (crit.getType()) {
         case AND:
             for (Criterion criterion : crits) {
-                conQuery.add(createQuery(criterion, inMailboxes, recentUids), BooleanClause.Occur.MUST);
+                conQuery.add(createQuery(searcher, criterion, inMailboxes, recentUids), BooleanClause.Occur.MUST);
             }
             return conQuery;
         case OR:
             for (Criterion criterion : crits) {
-                conQuery.add(createQuery(criterion, inMailboxes, recentUids), BooleanClause.Occur.SHOULD);
+                conQuery.add(createQuery(searcher, criterion, inMailboxes, recentUids), BooleanClause.Occur.SHOULD);
             }
             return conQuery;
         case NOR:
             BooleanQuery nor = new BooleanQuery();
             for (Criterion criterion : crits) {
-                conQuery.add(createQuery(criterion, inMailboxes, recentUids), BooleanClause.Occur.SHOULD);
+                conQuery.add(createQuery(searcher, criterion, inMailboxes, recentUids), BooleanClause.Occur.SHOULD);
             }
             nor.add(inMailboxes, BooleanClause.Occur.MUST);
 
@@ -1186,7 +1361,7 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
      * @return query
      * @throws UnsupportedSearchException
      */
-    private Query createQuery(Criterion criterion, Query inMailboxes, Collection<MessageUid> recentUids) throws MailboxException {
+    private Query createQuery(IndexSearcher searcher, Criterion criterion, Query inMailboxes, Collection<MessageUid> recentUids) throws MailboxException {
         if (criterion instanceof SearchQuery.InternalDateCriterion) {
             SearchQuery.InternalDateCriterion crit = (SearchQuery.InternalDateCriterion) criterion;
             return createInternalDateQuery(crit);
@@ -1201,13 +1376,13 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
             return createUidQuery(crit);
         } else if (criterion instanceof SearchQuery.FlagCriterion) {
             FlagCriterion crit = (FlagCriterion) criterion;
-            return createFlagQuery(toString(crit.getFlag()), crit.getOperator().isSet(), inMailboxes, recentUids);
+            return createFlagQuery(searcher, toString(crit.getFlag()), crit.getOperator().isSet(), inMailboxes, recentUids);
         } else if (criterion instanceof SearchQuery.AttachmentCriterion) {
             AttachmentCriterion crit = (AttachmentCriterion) criterion;
             return createAttachmentQuery(crit.getOperator().isSet());
         } else if (criterion instanceof SearchQuery.CustomFlagCriterion) {
             CustomFlagCriterion crit = (CustomFlagCriterion) criterion;
-            return createFlagQuery(crit.getFlag(), crit.getOperator().isSet(), inMailboxes, recentUids);
+            return createFlagQuery(searcher, crit.getFlag(), crit.getOperator().isSet(), inMailboxes, recentUids);
         } else if (criterion instanceof SearchQuery.TextCriterion) {
             SearchQuery.TextCriterion crit = (SearchQuery.TextCriterion) criterion;
             return createTextQuery(crit);
@@ -1215,7 +1390,7 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
             return createAllQuery((AllCriterion) criterion);
         } else if (criterion instanceof SearchQuery.ConjunctionCriterion) {
             SearchQuery.ConjunctionCriterion crit = (SearchQuery.ConjunctionCriterion) criterion;
-            return createConjunctionQuery(crit, inMailboxes, recentUids);
+            return createConjunctionQuery(searcher, crit, inMailboxes, recentUids);
         } else if (criterion instanceof SearchQuery.ModSeqCriterion) {
             return createModSeqQuery((SearchQuery.ModSeqCriterion) criterion);
         } else if (criterion instanceof SearchQuery.MimeMessageIDCriterion) {
@@ -1231,8 +1406,10 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
         Document flagsDoc = createFlagsDocument(membership);
 
         try {
-            writer.addDocument(doc);
-            writer.addDocument(flagsDoc);
+            NearRealTimeIndex index = index(mailbox);
+            index.getWriter().addDocument(doc);
+            index.getWriter().addDocument(flagsDoc);
+            index.written(2, maxPendingWrites);
         } catch (IOException e) {
             throw new MailboxException("Unable to add message to index", e);
         }
@@ -1240,46 +1417,67 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
 
     @Override
     public void update(MailboxSession session, Mailbox mailbox, List<UpdatedFlags> updatedFlagsList) throws MailboxException {
-        for (UpdatedFlags updatedFlags : updatedFlagsList) {
-            update(mailbox, updatedFlags.getUid(), updatedFlags.getNewFlags());
+        if (updatedFlagsList.isEmpty()) {
+            return;
         }
-    }
-
-    private void update(Mailbox mailbox, MessageUid uid, Flags f) throws MailboxException {
-        try (IndexSearcher searcher = new IndexSearcher(IndexReader.open(writer, true))) {
-            BooleanQuery query = new BooleanQuery();
-            query.add(new TermQuery(new Term(MAILBOX_ID_FIELD, mailbox.getMailboxId().serialize())), BooleanClause.Occur.MUST);
-            query.add(createQuery(MessageRange.one(uid)), BooleanClause.Occur.MUST);
-            query.add(new PrefixQuery(new Term(FLAGS_FIELD, "")), BooleanClause.Occur.MUST);
-
-            TopDocs docs = searcher.search(query, 100000);
-            ScoreDoc[] sDocs = docs.scoreDocs;
-            for (ScoreDoc sDoc : sDocs) {
-                Document doc = searcher.doc(sDoc.doc);
-
-                if (doc.getFieldable(FLAGS_FIELD) == null) {
-                    doc.removeFields(FLAGS_FIELD);
-                    indexFlags(doc, f);
-
-                    writer.updateDocument(new Term(ID_FIELD, doc.get(ID_FIELD)), doc);
-
+        NearRealTimeIndex index = index(mailbox);
+        try {
+            Set<MessageUid> indexedUids = index.search(searcher -> indexedFlagsDocuments(searcher, mailbox, updatedFlagsList), true);
+
+            int writes = 0;
+            for (UpdatedFlags updatedFlags : updatedFlagsList) {
+                if (indexedUids.contains(updatedFlags.getUid())) {
+                    Document flagsDoc = createFlagsDocument(mailbox.getMailboxId(), updatedFlags.getUid(), updatedFlags.getNewFlags());
+                    index.getWriter().updateDocument(new Term(ID_FIELD, flagsDoc.get(ID_FIELD)), flagsDoc);
+                    writes++;
                 }
             }
+            index.written(writes, maxPendingWrites);
         } catch (IOException e) {
             throw new MailboxException("Unable to add messages in index", e);
         }
     }
 
+    /**
+     * Looks up, in a single query, which of the updated messages have a flags document in the index
+     */
+    private Set<MessageUid> indexedFlagsDocuments(IndexSearcher searcher, Mailbox mailbox, List<UpdatedFlags> updatedFlagsList) throws IOException {
+        Set<MessageUid> updatedUids = updatedFlagsList.stream()
+            .map(UpdatedFlags::getUid)
+            .collect(Guavate.toImmutableSet());
+        MessageUid lowestUid = Collections.min(updatedUids);
+        MessageUid highestUid = Collections.max(updatedUids);
+
+        BooleanQuery query = new BooleanQuery();
+        query.add(new TermQuery(new Term(MAILBOX_ID_FIELD, mailbox.getMailboxId().serialize())), BooleanClause.Occur.MUST);
+        query.add(createQuery(MessageRange.range(lowestUid, highestUid)), BooleanClause.Occur.MUST);
+        query.add(new PrefixQuery(new Term(FLAGS_FIELD, "")), BooleanClause.Occur.MUST);
+
+        Set<MessageUid> indexedUids = new HashSet<>();
+        TopDocs docs = searcher.search(query, Math.max(1, searcher.maxDoc()));
+        for (ScoreDoc sDoc : docs.scoreDocs) {
+            MessageUid uid = MessageUid.of(Long.valueOf(searcher.doc(sDoc.doc).get(UID_FIELD)));
+            if (updatedUids.contains(uid)) {
+                indexedUids.add(uid);
+            }
+        }
+        return indexedUids;
+    }
+
     /**
      * Index the {@link Flags} and add it to the {@link Document}
      */
     private Document createFlagsDocument(MailboxMessage message) {
+        return createFlagsDocument(message.getMailboxId(), message.getUid(), message.createFlags());
+    }
+
+    private Document createFlagsDocument(MailboxId mailboxId, MessageUid uid, Flags flags) {
         Document doc = new Document();
-        doc.add(new Field(ID_FIELD, "flags-" + message.getMailboxId().serialize() + "-" + Long.toString(message.getUid().asLong()), Store.YES, Index.NOT_ANALYZED));
-        doc.add(new Field(MAILBOX_ID_FIELD, message.getMailboxId().serialize(), Store.YES, Index.NOT_ANALYZED));
-        doc.add(new NumericField(UID_FIELD,Store.YES, true).setLongValue(message.getUid().asLong()));
+        doc.add(new Field(ID_FIELD, "flags-" + mailboxId.serialize() + "-" + Long.toString(uid.asLong()), Store.YES, Index.NOT_ANALYZED));
+        doc.add(new Field(MAILBOX_ID_FIELD, mailboxId.serialize(), Store.YES, Index.NOT_ANALYZED));
+        doc.add(new NumericField(UID_FIELD,Store.YES, true).setLongValue(uid.asLong()));
         
-        indexFlags(doc, message.createFlags());
+        indexFlags(doc, flags);
         return doc;
     }
     
@@ -1343,7 +1541,9 @@ public class LuceneMessageSearchIndex extends ListeningMessageSearchIndex {
         query.add(createQuery(range), BooleanClause.Occur.MUST);
         
         try {
-            writer.deleteDocuments(query);
+            NearRealTimeIndex index = index(mailbox);
+            index.getWriter().deleteDocuments(query);
+            index.written(1, maxPendingWrites);
         } catch (IOException e) {
             throw new MailboxException("Unable to delete message from index", e);
         }
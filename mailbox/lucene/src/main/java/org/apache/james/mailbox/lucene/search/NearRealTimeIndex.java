@@ -0,0 +1,107 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.lucene.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
+
+/**
+ * An {@link IndexWriter} together with a near-real-time {@link IndexSearcher} shared by concurrent searches.
+ *
+ * The searcher is only reopened when writes happened since it was last opened, either on demand, once enough writes
+ * are pending, or periodically by the caller.
+ */
+class NearRealTimeIndex implements Closeable {
+
+    @FunctionalInterface
+    interface SearcherFunction<T> {
+        T apply(IndexSearcher searcher) throws IOException, MailboxException;
+    }
+
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final AtomicLong writeGeneration;
+    private final Object refreshLock;
+    private volatile long refreshedGeneration;
+
+    NearRealTimeIndex(IndexWriter writer) throws IOException {
+        this.writer = writer;
+        this.searcherManager = new SearcherManager(writer, true, new SearcherFactory());
+        this.writeGeneration = new AtomicLong();
+        this.refreshLock = new Object();
+        this.refreshedGeneration = 0;
+    }
+
+    IndexWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * To be called once documents were written. Reopens the searcher when at least maxPendingWrites writes are not
+     * visible yet.
+     */
+    void written(int count, int maxPendingWrites) throws IOException {
+        long generation = writeGeneration.addAndGet(count);
+        if (generation - refreshedGeneration >= maxPendingWrites) {
+            refresh();
+        }
+    }
+
+    /**
+     * Reopens the searcher if writes happened since it was last opened.
+     */
+    void refresh() throws IOException {
+        synchronized (refreshLock) {
+            long generation = writeGeneration.get();
+            if (generation > refreshedGeneration) {
+                // Refreshes are serialized by the lock, hence maybeRefresh does not skip because of a concurrent one
+                searcherManager.maybeRefresh();
+                refreshedGeneration = generation;
+            }
+        }
+    }
+
+    /**
+     * @param upToDate true to see every previous write, false to accept the searcher as last refreshed
+     */
+    <T> T search(SearcherFunction<T> function, boolean upToDate) throws IOException, MailboxException {
+        if (upToDate) {
+            refresh();
+        }
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            return function.apply(searcher);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        searcherManager.close();
+    }
+}
@@ -28,17 +28,21 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
 
 import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.inmemory.mail.InMemoryMailboxMapper;
 import org.apache.james.mailbox.mock.MockMailboxSession;
 import org.apache.james.mailbox.model.MailboxACL;
 import org.apache.james.mailbox.model.MailboxId;
 import org.apache.james.mailbox.model.MailboxPath;
 import org.apache.james.mailbox.model.MessageId;
+import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.SearchQuery;
 import org.apache.james.mailbox.model.SearchQuery.AddressType;
 import org.apache.james.mailbox.model.SearchQuery.DateResolution;
@@ -47,6 +51,7 @@ import org.apache.james.mailbox.model.SearchQuery.Sort.Order;
 import org.apache.james.mailbox.model.SearchQuery.Sort.SortClause;
 import org.apache.james.mailbox.model.TestId;
 import org.apache.james.mailbox.model.TestMessageId;
+import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.store.MessageBuilder;
 import org.apache.james.mailbox.store.SimpleMailboxMembership;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
@@ -636,12 +641,131 @@ public class LuceneMailboxMessageSearchIndexTest {
         Iterator<MessageUid> result = index.search(session, mailbox, query);
         assertThat(result).containsExactly(uid3, uid4);
     }
+
+    @Test
+    public void updateShouldIndexFlagsOfSeveralMessages() throws Exception {
+        index.update(session, mailbox, ImmutableList.of(
+            flagsUpdate(uid1, new Flags(Flag.ANSWERED), new Flags(Flag.FLAGGED)),
+            flagsUpdate(uid4, new Flags(Flag.DELETED), new Flags(Flag.FLAGGED))));
+
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.flagIsSet(Flag.FLAGGED));
+        Iterator<MessageUid> result = index.search(session, mailbox, query);
+        assertThat(result).containsExactly(uid1, uid4);
+    }
+
+    @Test
+    public void updateShouldIndexFlagsOfAlreadyUpdatedMessages() throws Exception {
+        index.update(session, mailbox, ImmutableList.of(flagsUpdate(uid1, new Flags(Flag.ANSWERED), new Flags(Flag.FLAGGED))));
+        index.update(session, mailbox, ImmutableList.of(flagsUpdate(uid1, new Flags(Flag.FLAGGED), new Flags(Flag.SEEN))));
+
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.flagIsSet(Flag.SEEN));
+        Iterator<MessageUid> result = index.search(session, mailbox, query);
+        assertThat(result).containsExactly(uid1);
+    }
+
+    @Test
+    public void updateShouldNotIndexFlagsOfUnknownMessages() throws Exception {
+        MessageUid unknownUid = MessageUid.of(42);
+        index.update(session, mailbox, ImmutableList.of(flagsUpdate(unknownUid, new Flags(), new Flags(Flag.FLAGGED))));
+
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.flagIsSet(Flag.FLAGGED));
+        Iterator<MessageUid> result = index.search(session, mailbox, query);
+        assertThat(result).isEmpty();
+    }
+
+    @Test
+    public void searchShouldNotSeeWritesBeforeRefreshWhenRefreshIntervalIsSet() throws Exception {
+        index.setRefreshIntervalInMs(TimeUnit.HOURS.toMillis(1));
+        try {
+            SearchQuery query = new SearchQuery();
+            query.andCriteria(SearchQuery.all());
+            Iterator<MessageUid> result = index.search(session, mailbox, query);
+            assertThat(result).isEmpty();
+        } finally {
+            index.destroy();
+        }
+    }
+
+    @Test
+    public void searchShouldSeeWritesOnceMaxPendingWritesIsReached() throws Exception {
+        index.setRefreshIntervalInMs(TimeUnit.HOURS.toMillis(1));
+        index.setMaxPendingWrites(1);
+        try {
+            index.delete(mailbox, MessageRange.one(uid1));
+
+            SearchQuery query = new SearchQuery();
+            query.andCriteria(SearchQuery.all());
+            Iterator<MessageUid> result = index.search(session, mailbox, query);
+            assertThat(result).containsExactly(uid3, uid4);
+        } finally {
+            index.destroy();
+        }
+    }
+
+    @Test
+    public void partitionedIndexShouldIndexMailboxesInThePartitionOfTheirOwner() throws Exception {
+        Map<String, RAMDirectory> directories = new HashMap<>();
+        InMemoryMailboxMapper mailboxMapper = new InMemoryMailboxMapper();
+        LuceneMessageSearchIndex partitionedIndex = new LuceneMessageSearchIndex(null, any -> mailboxMapper, new TestId.Factory(), new TestMessageId.Factory(),
+            user -> directories.computeIfAbsent(user, any -> new RAMDirectory()), useLenient());
+        Mailbox bobMailbox = createMailbox(mailboxMapper, "bob");
+        Mailbox aliceMailbox = createMailbox(mailboxMapper, "alice");
+        partitionedIndex.add(session, bobMailbox, new SimpleMailboxMembership(id1, bobMailbox.getMailboxId(), uid1, 0, new Date(), 200, new Flags(), "My Body".getBytes(), new HashMap<>()));
+        partitionedIndex.add(session, aliceMailbox, new SimpleMailboxMembership(id2, aliceMailbox.getMailboxId(), uid1, 0, new Date(), 200, new Flags(), "My Body".getBytes(), new HashMap<>()));
+
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.all());
+        assertThat(partitionedIndex.search(new MockMailboxSession("bob"), ImmutableList.of(bobMailbox.getMailboxId()), query, LIMIT))
+            .containsExactly(id1);
+        assertThat(directories).containsOnlyKeys("bob", "alice");
+    }
+
+    @Test
+    public void partitionedIndexShouldSearchMailboxesSharedByOtherUsers() throws Exception {
+        Map<String, RAMDirectory> directories = new HashMap<>();
+        InMemoryMailboxMapper mailboxMapper = new InMemoryMailboxMapper();
+        LuceneMessageSearchIndex partitionedIndex = new LuceneMessageSearchIndex(null, any -> mailboxMapper, new TestId.Factory(), new TestMessageId.Factory(),
+            user -> directories.computeIfAbsent(user, any -> new RAMDirectory()), useLenient());
+        Mailbox bobMailbox = createMailbox(mailboxMapper, "bob");
+        Mailbox aliceMailbox = createMailbox(mailboxMapper, "alice");
+        partitionedIndex.add(session, bobMailbox, new SimpleMailboxMembership(id1, bobMailbox.getMailboxId(), uid1, 0, new Date(), 200, new Flags(), "My Body".getBytes(), new HashMap<>()));
+        partitionedIndex.add(session, aliceMailbox, new SimpleMailboxMembership(id2, aliceMailbox.getMailboxId(), uid1, 0, new Date(), 200, new Flags(), "My Body".getBytes(), new HashMap<>()));
+
+        SearchQuery query = new SearchQuery();
+        query.andCriteria(SearchQuery.all());
+        assertThat(partitionedIndex.search(new MockMailboxSession("bob"), ImmutableList.of(bobMailbox.getMailboxId(), aliceMailbox.getMailboxId()), query, LIMIT))
+            .containsOnly(id1, id2);
+    }
+
+    private Mailbox createMailbox(InMemoryMailboxMapper mailboxMapper, String user) throws Exception {
+        MailboxId mailboxId = mailboxMapper.save(new org.apache.james.mailbox.store.mail.model.impl.SimpleMailbox(MailboxPath.forUser(user, "INBOX"), 42));
+        return mailboxMapper.findMailboxById(mailboxId);
+    }
+
+    private UpdatedFlags flagsUpdate(MessageUid uid, Flags oldFlags, Flags newFlags) {
+        return UpdatedFlags.builder()
+            .uid(uid)
+            .modSeq(42)
+            .oldFlags(oldFlags)
+            .newFlags(newFlags)
+            .build();
+    }
     
     private final class SimpleMailbox implements Mailbox {
         private final TestId id;
+        private final Optional<String> user;
 
         public SimpleMailbox(long id) {
             this.id = TestId.of(id);
+            this.user = Optional.empty();
+        }
+
+        public SimpleMailbox(long id, String user) {
+            this.id = TestId.of(id);
+            this.user = Optional.of(user);
         }
 
         @Override
@@ -670,7 +794,7 @@ public class LuceneMailboxMessageSearchIndexTest {
 
         @Override
         public String getUser() {
-            throw new UnsupportedOperationException("Not supported");
+            return user.orElseThrow(() -> new UnsupportedOperationException("Not supported"));
         }
 
         @Override
@@ -18,23 +18,20 @@
  ****************************************************************/
 package org.apache.james.mailbox.maildir;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -49,12 +46,8 @@ import org.apache.james.mailbox.model.MailboxACL;
 import org.apache.james.mailbox.model.MailboxACL.EntryKey;
 import org.apache.james.mailbox.model.MailboxACL.Rfc4314Rights;
 import org.apache.james.mailbox.model.MailboxPath;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 public class MaildirFolder {
-    private static final Logger LOGGER = LoggerFactory.getLogger(MaildirFolder.class);
-
     public static final String VALIDITY_FILE = "james-uidvalidity";
     public static final String UIDLIST_FILE = "james-uidlist";
     public static final String ACL_FILE = "james-acl";
@@ -76,6 +69,7 @@ public class MaildirFolder {
     private boolean messageNameStrictParse = false;
 
     private final MailboxPathLocker locker;
+    private final UidListIndexCache uidListIndexCache;
 
     private final MailboxPath path;
     
@@ -85,6 +79,16 @@ public class MaildirFolder {
      * @param absPath The absolute path of the mailbox folder
      */
     public MaildirFolder(String absPath, MailboxPath path, MailboxPathLocker locker) {
+        this(absPath, path, locker, new UidListIndexCache());
+    }
+
+    /**
+     * Representation of a maildir folder sharing the index of its uid list with the
+     * other representations of the same folder
+     * @param absPath The absolute path of the mailbox folder
+     * @param uidListIndexCache The cache holding the index of the uid list files
+     */
+    MaildirFolder(String absPath, MailboxPath path, MailboxPathLocker locker, UidListIndexCache uidListIndexCache) {
         this.rootFolder = new File(absPath);
         this.curFolder = new File(rootFolder, CUR);
         this.newFolder = new File(rootFolder, NEW);
@@ -92,6 +96,7 @@ public class MaildirFolder {
         this.uidFile = new File(rootFolder, UIDLIST_FILE);
         this.aclFile = new File(rootFolder, ACL_FILE);
         this.locker = locker;
+        this.uidListIndexCache = uidListIndexCache;
         this.path = path;
         this.lastUid = Optional.empty();
     }
@@ -215,29 +220,22 @@ public class MaildirFolder {
      * @throws MailboxException if there are problems with the uidList file
      */
     private void readLastUid(MailboxSession session) throws MailboxException {
+        boolean uidListExists = uidFile.exists();
         locker.executeWithLock(session, path,
             (LockAwareExecution<Void>) () -> {
-            File uidList = uidFile;
-
-            if (!uidList.exists()) {
+            if (!uidFile.exists()) {
                 createUidFile();
             }
-            try (FileReader fileReader = new FileReader(uidList);
-                 BufferedReader reader = new BufferedReader(fileReader)) {
-
-                String line = reader.readLine();
-                if (line != null) {
-                    readUidListHeader(line);
-                }
+            try {
+                readUidListHeader(uidListIndex());
                 return null;
             } catch (IOException e) {
                 throw new MailboxException("Unable to read last uid", e);
             }
-        }, true);
-        
-        
+        }, !uidListExists);
     }
 
+
     /**
      * Returns the uidValidity of this mailbox
      * @return The uidValidity
@@ -318,35 +316,15 @@ public class MaildirFolder {
     public MaildirMessageName getMessageNameByUid(final MailboxSession session, final MessageUid uid) throws MailboxException {
        
         return locker.executeWithLock(session, path, () -> {
-            File uidList = uidFile;
-            try (FileReader fileReader = new FileReader(uidList);
-                 BufferedReader reader = new BufferedReader(fileReader)) {
-
-                String uidString = String.valueOf(uid.asLong());
-                String line = reader.readLine(); // the header
-                int lineNumber = 1; // already read the first line
-                while ((line = reader.readLine()) != null) {
-                    lineNumber++;
-                    if (!line.equals("")) {
-                        int gap = line.indexOf(" ");
-                        if (gap == -1) {
-                            // there must be some issues in the file if no gap can be found
-                            LOGGER.info("Corrupted entry in uid-file {} line {}", uidList, lineNumber);
-                            continue;
-                        }
-
-                        if (line.substring(0, gap).equals(uidString)) {
-                            return newMaildirMessageName(MaildirFolder.this, line.substring(gap + 1));
-                        }
-                    }
-                }
-
-                // TODO: Is this right!?
-                return null;
+            try {
+                return uidListIndex().getMessageName(uid)
+                    .map(name -> newMaildirMessageName(MaildirFolder.this, name))
+                    // TODO: Is this right!?
+                    .orElse(null);
             } catch (IOException e) {
                 throw new MailboxException("Unable to read messagename for uid " + uid, e);
             }
-        }, true);
+        }, false);
     }
     
     /**
@@ -361,6 +339,17 @@ public class MaildirFolder {
      */
     public SortedMap<MessageUid, MaildirMessageName> getUidMap(final MailboxSession session, final MessageUid from, final MessageUid to)
     throws MailboxException {
+        // the uidList is usually up to date: it is then read from its index under a shared lock
+        Optional<SortedMap<MessageUid, MaildirMessageName>> upToDateUidMap = locker.executeWithLock(session, path, () -> {
+            if (uidFile.isFile() && !isModified()) {
+                return Optional.of(readUidFile(from, to));
+            }
+            return Optional.empty();
+        }, false);
+        if (upToDateUidMap.isPresent()) {
+            return upToDateUidMap.get();
+        }
+
         return locker.executeWithLock(session, path, () -> {
             final SortedMap<MessageUid, MaildirMessageName> uidMap = new TreeMap<>();
 
@@ -378,7 +367,7 @@ public class MaildirFolder {
                     }
                 } else {
                     // the uidList is up to date
-                    uidMap.putAll(readUidFile(session, from, to));
+                    uidMap.putAll(readUidFile(from, to));
                 }
             } else {
                 // the uidList does not exist
@@ -441,74 +430,17 @@ public class MaildirFolder {
      * @throws MailboxException If there is a problem with the uid list file
      */
     public SortedMap<MessageUid, MaildirMessageName> getRecentMessages(final MailboxSession session) throws MailboxException {
-        final String[] recentFiles = getNewFolder().list();
-        final LinkedList<String> lines = new LinkedList<>();
-        final int theLimit = recentFiles.length;
+        final Set<String> recentFiles = new HashSet<>(Arrays.asList(getNewFolder().list()));
         return locker.executeWithLock(session, path, () -> {
             final SortedMap<MessageUid, MaildirMessageName> recentMessages = new TreeMap<>();
 
-            File uidList = uidFile;
-
             try {
-                if (!uidList.isFile()) {
-                    if (!uidList.createNewFile()) {
-                        throw new IOException("Could not create file " + uidList);
-                    }
-                    String[] curFiles = curFolder.list();
-                    String[] newFiles = newFolder.list();
-                    messageCount = curFiles.length + newFiles.length;
-                    String[] allFiles = ArrayUtils.addAll(curFiles, newFiles);
-                    for (String file : allFiles) {
-                        lines.add(String.valueOf(getNextUid().asLong()) + " " + file);
-                    }
-
-                    try (PrintWriter pw = new PrintWriter(uidList)) {
-                        pw.println(createUidListHeader());
-                        for (String line : lines) {
-                            pw.println(line);
-                        }
-                    }
-                } else {
-                    try (FileReader fileReader = new FileReader(uidList);
-                        BufferedReader reader = new BufferedReader(fileReader)) {
-
-                            reader.readLine();
-                            // the first line in the file contains the next uid and message count
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                lines.add(line);
-                            }
-                        }
-                }
-                int counter = 0;
-                String line;
-                while (counter < theLimit) {
-                    // walk backwards as recent files are supposedly recent
-                    try {
-                        line = lines.removeLast();
-                    } catch (NoSuchElementException e) {
-                        break; // the list is empty
-                    }
-                    if (!line.equals("")) {
-                        int gap = line.indexOf(" ");
-                        if (gap == -1) {
-                            // there must be some issues in the file if no gap can be found
-                            // there must be some issues in the file if no gap can be found
-                            LOGGER.info("Corrupted entry in uid-file {} line {}", uidList, lines.size());
-                            continue;
-                        }
-
-                        MessageUid uid = MessageUid.of(Long.valueOf(line.substring(0, gap)));
-                        String name = line.substring(gap + 1, line.length());
-                        for (String recentFile : recentFiles) {
-                            if (recentFile.equals(name)) {
-                                recentMessages.put(uid, newMaildirMessageName(MaildirFolder.this, recentFile));
-                                counter++;
-                                break;
-                            }
-                        }
-                    }
+                if (!uidFile.isFile()) {
+                    createUidFile();
                 }
+                // walk backwards as recent files are supposedly recent
+                uidListIndex().getLastMessageNames(recentFiles::contains, recentFiles.size())
+                    .forEach((uid, name) -> recentMessages.put(uid, newMaildirMessageName(MaildirFolder.this, name)));
             } catch (IOException e) {
                 throw new MailboxException("Unable to read recent messages", e);
             }
@@ -536,12 +468,7 @@ public class MaildirFolder {
             for (String file : allFiles) {
                 uidMap.put(getNextUid(), newMaildirMessageName(MaildirFolder.this, file));
             }
-            try (PrintWriter pw = new PrintWriter(uidList)) {
-                pw.println(createUidListHeader());
-                for (Entry<MessageUid, MaildirMessageName> entry : uidMap.entrySet()) {
-                    pw.println(String.valueOf(entry.getKey().asLong()) + " " + entry.getValue().getFullName());
-                }
-            }
+            writeUidFile(uidMap);
         } catch (IOException e) {
             throw new MailboxException("Unable to create uid file", e);
         }
@@ -551,32 +478,15 @@ public class MaildirFolder {
     
     private Map<MessageUid, MaildirMessageName> updateUidFile() throws MailboxException {
         final Map<MessageUid, MaildirMessageName> uidMap = new TreeMap<>();
-        File uidList = uidFile;
         String[] curFiles = curFolder.list();
         String[] newFiles = newFolder.list();
-        messageCount = curFiles.length + newFiles.length;
-        HashMap<String, MessageUid> reverseUidMap = new HashMap<>(messageCount);
-        try (FileReader fileReader = new FileReader(uidList);
-            BufferedReader reader = new BufferedReader(fileReader)) {
-            String line = reader.readLine();
-            // the first line in the file contains the next uid and message count
-            if (line != null) {
-                readUidListHeader(line);
-            }
-            int lineNumber = 1; // already read the first line
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                if (!line.equals("")) {
-                    int gap = line.indexOf(" ");
-                    if (gap == -1) {
-                        // there must be some issues in the file if no gap can be found
-                        throw new MailboxException("Corrupted entry in uid-file " + uidList + " line " + lineNumber);
-                    }
-                    MessageUid uid = MessageUid.of(Long.valueOf(line.substring(0, gap)));
-                    String name = line.substring(gap + 1, line.length());
-                    reverseUidMap.put(stripMetaFromName(name), uid);
-                }
-            }
+        try {
+            UidListIndex index = uidListIndex();
+            readUidListHeader(index);
+            messageCount = curFiles.length + newFiles.length;
+            HashMap<String, MessageUid> reverseUidMap = new HashMap<>(messageCount);
+            index.getMessageNames(MessageUid.MIN_VALUE, null)
+                .forEach((uid, name) -> reverseUidMap.put(stripMetaFromName(name), uid));
             String[] allFiles = (String[]) ArrayUtils.addAll(curFiles, newFiles);
             for (String file : allFiles) {
                 MaildirMessageName messageName = newMaildirMessageName(MaildirFolder.this, file);
@@ -586,60 +496,45 @@ public class MaildirFolder {
                 }
                 uidMap.put(uid, messageName);
             }
-            try (PrintWriter pw = new PrintWriter(uidList)) {
-                pw.println(createUidListHeader());
-                for (Entry<MessageUid, MaildirMessageName> entry : uidMap.entrySet()) {
-                    pw.println(String.valueOf(entry.getKey().asLong()) + " " + entry.getValue().getFullName());
-                }
-            }
+            writeUidFile(uidMap);
         } catch (IOException e) {
             throw new MailboxException("Unable to update uid file", e);
         }
         return uidMap;
     }
 
-    private Map<MessageUid, MaildirMessageName> readUidFile(MailboxSession session, MessageUid from, MessageUid to) throws MailboxException {
-        final Map<MessageUid, MaildirMessageName> uidMap = new HashMap<>();
-
-        File uidList = uidFile;
-        try (FileReader fileReader = new FileReader(uidList);
-            BufferedReader reader = new BufferedReader(fileReader)) {
-
-            String line = reader.readLine();
-            // the first line in the file contains the next uid and message
-            // count
-            if (line != null) {
-                readUidListHeader(line);
-            }
-            int lineNumber = 1; // already read the first line
-            while ((line = reader.readLine()) != null) {
-                lineNumber++;
-                if (!line.equals("")) {
-                    int gap = line.indexOf(" ");
-
-                    if (gap == -1) {
-                        // there must be some issues in the file if no gap can be found
-                        LOGGER.info("Corrupted entry in uid-file {} line {}", uidList, lineNumber);
-                        continue;
-                    }
-                    
-                    MessageUid uid = MessageUid.of(Long.valueOf(line.substring(0, gap)));
-                    if (uid.compareTo(from) >= 0) {
-                        if (to != null && uid.compareTo(to) > 0) {
-                            break;
-                        }
-                        String name = line.substring(gap + 1, line.length());
-                        uidMap.put(uid, newMaildirMessageName(MaildirFolder.this, name));
-                    }
-                }
-            }
+    private SortedMap<MessageUid, MaildirMessageName> readUidFile(MessageUid from, MessageUid to) throws MailboxException {
+        final SortedMap<MessageUid, MaildirMessageName> uidMap = new TreeMap<>();
+        try {
+            UidListIndex index = uidListIndex();
+            readUidListHeader(index);
+            index.getMessageNames(from, to)
+                .forEach((uid, name) -> uidMap.put(uid, newMaildirMessageName(MaildirFolder.this, name)));
         } catch (IOException e) {
             throw new MailboxException("Unable to read uid file", e);
         }
-        messageCount = uidMap.size();
-
         return uidMap;
     }
+
+    /**
+     * Writes the given uid map to the uid list file and caches its index
+     */
+    private void writeUidFile(Map<MessageUid, MaildirMessageName> uidMap) throws IOException {
+        SortedMap<MessageUid, String> entries = new TreeMap<>();
+        uidMap.forEach((uid, name) -> entries.put(uid, name.getFullName()));
+        writeUidFile(entries);
+    }
+
+    private void writeUidFile(SortedMap<MessageUid, String> entries) throws IOException {
+        uidListIndexCache.put(uidFile, UidListIndex.write(uidFile, lastUid, messageCount, entries));
+    }
+
+    /**
+     * Returns the index of the uid list file, which is read again if it was changed since it was indexed
+     */
+    private UidListIndex uidListIndex() throws IOException {
+        return uidListIndexCache.get(uidFile);
+    }
     
     /**
      * Sorts the given map and returns a subset which is constricted by a lower and an upper limit.
@@ -662,37 +557,12 @@ public class MaildirFolder {
     }
     
     /**
-     * Parses the header line in uid list files.
-     * The format is: version lastUid messageCount (e.g. 1 615 273)
-     * @param line The raw header line
-     * @throws IOException
-     */
-    private void readUidListHeader(String line) throws IOException {
-        if (line == null) {
-            throw new IOException("Header entry in uid-file is null");
-        }
-        int gap1 = line.indexOf(" ");
-        if (gap1 == -1) {
-            // there must be some issues in the file if no gap can be found
-            throw new IOException("Corrupted header entry in uid-file");
-            
-        }
-        int version = Integer.valueOf(line.substring(0, gap1));
-        if (version != 1) {
-            throw new IOException("Cannot read uidlists with versions other than 1.");
-        }
-        int gap2 = line.indexOf(" ", gap1 + 1);
-        lastUid = Optional.of(MessageUid.of(Long.valueOf(line.substring(gap1 + 1, gap2))));
-        messageCount = Integer.valueOf(line.substring(gap2 + 1, line.length()));
-    }
-    
-    /**
-     * Creates a line to put as a header in the uid list file.
-     * @return the line which ought to be the header
+     * Takes the last uid and the message count from the header of the uid list file.
+     * @param index The index of the uid list file
      */
-    private String createUidListHeader() {
-        Long last = lastUid.map(MessageUid::asLong).orElse(0L);
-        return "1 " + String.valueOf(last) + " " + String.valueOf(messageCount);
+    private void readUidListHeader(UidListIndex index) {
+        lastUid = index.getLastUid();
+        messageCount = index.getMessageCount();
     }
     
     /**
@@ -723,49 +593,16 @@ public class MaildirFolder {
             MessageUid uid = null;
             try {
                 if (uidList.isFile()) {
-                    try (FileReader fileReader = new FileReader(uidList);
-                        BufferedReader reader = new BufferedReader(fileReader)) {
-                        String line = reader.readLine();
-                        // the first line in the file contains the next uid and message count
-                        if (line != null) {
-                            readUidListHeader(line);
-                        }
-                        ArrayList<String> lines = new ArrayList<>();
-                        while ((line = reader.readLine()) != null) {
-                            lines.add(line);
-                        }
-                        uid = getNextUid();
-                        lines.add(String.valueOf(uid.asLong()) + " " + name);
-                        messageCount++;
-                        try (PrintWriter pw = new PrintWriter(uidList)) {
-                            pw.println(createUidListHeader());
-                            for (String entry : lines) {
-                                pw.println(entry);
-                            }
-                        }
-                    }
+                    UidListIndex index = uidListIndex();
+                    readUidListHeader(index);
+                    uid = getNextUid();
+                    messageCount++;
+                    uidListIndexCache.put(uidList, index.append(uidList, uid, name, messageCount));
                 } else {
-                    // create the file
-                    if (!uidList.createNewFile()) {
-                        throw new IOException("Could not create file " + uidList);
-                    }
-                    String[] curFiles = curFolder.list();
-                    String[] newFiles = newFolder.list();
-                    messageCount = curFiles.length + newFiles.length;
-                    ArrayList<String> lines = new ArrayList<>();
-                    String[] allFiles = (String[]) ArrayUtils.addAll(curFiles, newFiles);
-                    for (String file : allFiles) {
-                        MessageUid theUid = getNextUid();
-                        lines.add(String.valueOf(theUid.asLong()) + " " + file);
-                        // the listed names already include the message to append
-                        if (file.equals(name)) {
-                            uid = theUid;
-                        }
-                    }
-                    try (PrintWriter pw = new PrintWriter(uidList)) {
-                        pw.println(createUidListHeader());
-                        for (String line : lines) {
-                            pw.println(line);
+                    // create the file, the listed names already include the message to append
+                    for (Entry<MessageUid, MaildirMessageName> entry : createUidFile().entrySet()) {
+                        if (entry.getValue().getFullName().equals(name)) {
+                            uid = entry.getKey();
                         }
                     }
                 }
@@ -790,25 +627,14 @@ public class MaildirFolder {
      */
     public void update(MailboxSession session, final MessageUid uid, final String messageName) throws MailboxException {
         locker.executeWithLock(session, path, (LockAwareExecution<Void>) () -> {
-            File uidList = uidFile;
-            try (FileReader fileReader = new FileReader(uidList);
-                BufferedReader reader = new BufferedReader(fileReader)) {
-
-                String line = reader.readLine();
-                readUidListHeader(line);
-                ArrayList<String> lines = new ArrayList<>();
-                while ((line = reader.readLine()) != null) {
-                    if (uid.equals(MessageUid.of(Long.valueOf(line.substring(0, line.indexOf(" ")))))) {
-                        line = String.valueOf(uid.asLong()) + " " + messageName;
-                    }
-                    lines.add(line);
-                }
-                try (PrintWriter writer = new PrintWriter(uidList)) {
-                    writer.println(createUidListHeader());
-                    for (String entry : lines) {
-                        writer.println(entry);
-                    }
+            try {
+                UidListIndex index = uidListIndex();
+                readUidListHeader(index);
+                SortedMap<MessageUid, String> entries = index.getMessageNames(MessageUid.MIN_VALUE, null);
+                if (entries.containsKey(uid)) {
+                    entries.put(uid, messageName);
                 }
+                writeUidFile(entries);
             } catch (IOException e) {
                 throw new MailboxException("Unable to update msg with uid " + uid, e);
             }
@@ -826,42 +652,19 @@ public class MaildirFolder {
      */
     public MaildirMessageName delete(final MailboxSession session, final MessageUid uid) throws MailboxException {        
         return locker.executeWithLock(session, path, () -> {
-            File uidList = uidFile;
-            MaildirMessageName deletedMessage = null;
-            try (FileReader fileReader = new FileReader(uidList);
-                BufferedReader reader = new BufferedReader(fileReader)) {
-
-                readUidListHeader(reader.readLine());
-
-                // It may be possible that message count is 0 so we should better not try to calculate the size of the ArrayList
-                ArrayList<String> lines = new ArrayList<>();
-                String line;
-                int lineNumber = 0;
-                while ((line = reader.readLine()) != null) {
-                    lineNumber++;
-                    int gap = line.indexOf(" ");
-                    if (gap == -1) {
-                        // there must be some issues in the file if no gap can be found
-                        LOGGER.info("Corrupted entry in uid-file {} line {}", uidList, lineNumber);
-                        continue;
-                    }
-
-                    if (uid.equals(MessageUid.of(Long.valueOf(line.substring(0, line.indexOf(" ")))))) {
-                        deletedMessage = newMaildirMessageName(MaildirFolder.this, line.substring(gap + 1, line.length()));
-                        messageCount--;
-                    } else {
-                        lines.add(line);
-                    }
-                }
-                if (deletedMessage != null) {
-                    FileUtils.forceDelete(deletedMessage.getFile());
-                    try (PrintWriter writer = new PrintWriter(uidList)) {
-                        writer.println(createUidListHeader());
-                        for (String entry : lines) {
-                            writer.println(entry);
-                        }
-                    }
+            try {
+                UidListIndex index = uidListIndex();
+                readUidListHeader(index);
+                Optional<String> deletedName = index.getMessageName(uid);
+                if (!deletedName.isPresent()) {
+                    return null;
                 }
+                MaildirMessageName deletedMessage = newMaildirMessageName(MaildirFolder.this, deletedName.get());
+                messageCount--;
+                FileUtils.forceDelete(deletedMessage.getFile());
+                SortedMap<MessageUid, String> entries = index.getMessageNames(MessageUid.MIN_VALUE, null);
+                entries.remove(uid);
+                writeUidFile(entries);
                 return deletedMessage;
 
             } catch (IOException e) {
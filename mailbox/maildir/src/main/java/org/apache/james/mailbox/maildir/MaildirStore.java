@@ -51,6 +51,7 @@ public class MaildirStore implements UidProvider, ModSeqProvider {
     
     private File maildirRootFile;
     private final MailboxPathLocker locker;
+    private final UidListIndexCache uidListIndexCache;
 
     private boolean messageNameStrictParse = false;
 
@@ -67,6 +68,7 @@ public class MaildirStore implements UidProvider, ModSeqProvider {
     public MaildirStore(String maildirLocation, MailboxPathLocker locker) {
         this.maildirLocation = maildirLocation;
         this.locker = locker;
+        this.uidListIndexCache = new UidListIndexCache();
     }
     
     public MaildirStore(String maildirLocation) {
@@ -84,7 +86,7 @@ public class MaildirStore implements UidProvider, ModSeqProvider {
      * @return The MaildirFolder
      */
     public MaildirFolder createMaildirFolder(Mailbox mailbox) {
-        MaildirFolder mf = new MaildirFolder(getFolderName(mailbox), mailbox.generateAssociatedPath(), locker);
+        MaildirFolder mf = new MaildirFolder(getFolderName(mailbox), mailbox.generateAssociatedPath(), locker, uidListIndexCache);
         mf.setMessageNameStrictParse(isMessageNameStrictParse());
         return mf;
     }
@@ -112,7 +114,7 @@ public class MaildirStore implements UidProvider, ModSeqProvider {
      */
     public Mailbox loadMailbox(MailboxSession session, MailboxPath mailboxPath)
     throws MailboxNotFoundException, MailboxException {
-        MaildirFolder folder = new MaildirFolder(getFolderName(mailboxPath), mailboxPath, locker);
+        MaildirFolder folder = new MaildirFolder(getFolderName(mailboxPath), mailboxPath, locker, uidListIndexCache);
         folder.setMessageNameStrictParse(isMessageNameStrictParse());
         if (!folder.exists()) {
             throw new MailboxNotFoundException(mailboxPath);
@@ -128,7 +130,7 @@ public class MaildirStore implements UidProvider, ModSeqProvider {
      * @throws MailboxException If the mailbox folder doesn't exist or can't be read
      */
     private Mailbox loadMailbox(MailboxSession session, File mailboxFile, MailboxPath mailboxPath) throws MailboxException {
-        MaildirFolder folder = new MaildirFolder(mailboxFile.getAbsolutePath(), mailboxPath, locker);
+        MaildirFolder folder = new MaildirFolder(mailboxFile.getAbsolutePath(), mailboxPath, locker, uidListIndexCache);
         folder.setMessageNameStrictParse(isMessageNameStrictParse());
         try {
             Mailbox loadedMailbox = new SimpleMailbox(mailboxPath, folder.getUidValidity());
@@ -0,0 +1,319 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.maildir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+import org.apache.james.mailbox.MessageUid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Strings;
+
+/**
+ * Immutable in memory index of a {@link MaildirFolder#UIDLIST_FILE} file.
+ *
+ * Uids are kept sorted in a primitive array, so that a message name or a range of uids is found by
+ * binary search instead of parsing the whole file. The index remembers the modification time and the
+ * length of the file it reflects, so that changes done by other processes are detected.
+ *
+ * The header of the files written by this index has a fixed width: a message is then appended by
+ * writing its line at the end of the file and overwriting the header in place. The zero padded
+ * header is still readable by former versions.
+ */
+class UidListIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UidListIndex.class);
+    private static final int VERSION = 1;
+    private static final int LAST_UID_WIDTH = 20;
+    private static final int MESSAGE_COUNT_WIDTH = 10;
+    private static final int FIXED_HEADER_LENGTH = 2 + LAST_UID_WIDTH + 1 + MESSAGE_COUNT_WIDTH;
+    private static final long[] NO_UIDS = new long[0];
+    private static final String[] NO_NAMES = new String[0];
+
+    /**
+     * Read and index the given uid list file
+     *
+     * @throws IOException if the file can not be read or has a corrupted header
+     */
+    static UidListIndex read(File uidFile) throws IOException {
+        long lastModified = uidFile.lastModified();
+        long length = uidFile.length();
+        try (FileReader fileReader = new FileReader(uidFile);
+             BufferedReader reader = new BufferedReader(fileReader)) {
+            String header = reader.readLine();
+            if (header == null) {
+                return new UidListIndex(NO_UIDS, NO_NAMES, 0, 0, 0, false, lastModified, length);
+            }
+            long headerLastUid = parseLastUid(header);
+            int messageCount = parseMessageCount(header);
+
+            long[] uids = new long[Math.max(messageCount, 16)];
+            String[] names = new String[uids.length];
+            int size = 0;
+            boolean sorted = true;
+            int lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int gap = line.indexOf(' ');
+                if (gap == -1) {
+                    // there must be some issues in the file if no gap can be found
+                    LOGGER.info("Corrupted entry in uid-file {} line {}", uidFile, lineNumber);
+                    continue;
+                }
+                if (size == uids.length) {
+                    uids = Arrays.copyOf(uids, size * 2);
+                    names = Arrays.copyOf(names, size * 2);
+                }
+                uids[size] = Long.parseLong(line.substring(0, gap));
+                names[size] = line.substring(gap + 1);
+                if (size > 0 && uids[size] <= uids[size - 1]) {
+                    sorted = false;
+                }
+                size++;
+            }
+            if (!sorted) {
+                return fromMap(toMap(uids, names, size), headerLastUid, messageCount, header.length() == FIXED_HEADER_LENGTH, lastModified, length);
+            }
+            // A crash between appending an entry and updating the header leaves an outdated header
+            long lastUid = size > 0 ? Math.max(headerLastUid, uids[size - 1]) : headerLastUid;
+            return new UidListIndex(uids, names, size, lastUid, messageCount, header.length() == FIXED_HEADER_LENGTH, lastModified, length);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted entry in uid-file " + uidFile, e);
+        }
+    }
+
+    /**
+     * Write the given entries to the uid list file and return their index
+     */
+    static UidListIndex write(File uidFile, Optional<MessageUid> lastUid, int messageCount, SortedMap<MessageUid, String> entries) throws IOException {
+        long last = lastUid.map(MessageUid::asLong).orElse(0L);
+        try (PrintWriter pw = new PrintWriter(uidFile)) {
+            pw.println(header(last, messageCount));
+            for (Entry<MessageUid, String> entry : entries.entrySet()) {
+                pw.println(String.valueOf(entry.getKey().asLong()) + " " + entry.getValue());
+            }
+        }
+        SortedMap<Long, String> longEntries = new TreeMap<>();
+        entries.forEach((uid, name) -> longEntries.put(uid.asLong(), name));
+        return fromMap(longEntries, last, messageCount, true, uidFile.lastModified(), uidFile.length());
+    }
+
+    private static String header(long lastUid, int messageCount) {
+        return VERSION + " "
+            + Strings.padStart(String.valueOf(lastUid), LAST_UID_WIDTH, '0') + " "
+            + Strings.padStart(String.valueOf(messageCount), MESSAGE_COUNT_WIDTH, '0');
+    }
+
+    private static long parseLastUid(String header) throws IOException {
+        int gap1 = header.indexOf(' ');
+        if (gap1 == -1) {
+            // there must be some issues in the file if no gap can be found
+            throw new IOException("Corrupted header entry in uid-file");
+        }
+        int version = Integer.valueOf(header.substring(0, gap1));
+        if (version != VERSION) {
+            throw new IOException("Cannot read uidlists with versions other than 1.");
+        }
+        int gap2 = header.indexOf(' ', gap1 + 1);
+        return Long.valueOf(header.substring(gap1 + 1, gap2));
+    }
+
+    private static int parseMessageCount(String header) {
+        int gap2 = header.indexOf(' ', header.indexOf(' ') + 1);
+        return Integer.valueOf(header.substring(gap2 + 1));
+    }
+
+    private static SortedMap<Long, String> toMap(long[] uids, String[] names, int size) {
+        SortedMap<Long, String> entries = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            entries.put(uids[i], names[i]);
+        }
+        return entries;
+    }
+
+    private static UidListIndex fromMap(SortedMap<Long, String> entries, long headerLastUid, int messageCount,
+                                        boolean fixedWidthHeader, long lastModified, long length) {
+        long[] uids = new long[entries.size()];
+        String[] names = new String[entries.size()];
+        int i = 0;
+        for (Entry<Long, String> entry : entries.entrySet()) {
+            uids[i] = entry.getKey();
+            names[i] = entry.getValue();
+            i++;
+        }
+        long lastUid = i > 0 ? Math.max(headerLastUid, uids[i - 1]) : headerLastUid;
+        return new UidListIndex(uids, names, i, lastUid, messageCount, fixedWidthHeader, lastModified, length);
+    }
+
+    private final long[] uids;
+    private final String[] names;
+    private final int size;
+    private final long lastUid;
+    private final int messageCount;
+    private final boolean fixedWidthHeader;
+    private final long fileLastModified;
+    private final long fileLength;
+    private final AtomicBoolean appendedTo;
+
+    private UidListIndex(long[] uids, String[] names, int size, long lastUid, int messageCount,
+                         boolean fixedWidthHeader, long fileLastModified, long fileLength) {
+        this.uids = uids;
+        this.names = names;
+        this.size = size;
+        this.lastUid = lastUid;
+        this.messageCount = messageCount;
+        this.fixedWidthHeader = fixedWidthHeader;
+        this.fileLastModified = fileLastModified;
+        this.fileLength = fileLength;
+        this.appendedTo = new AtomicBoolean(false);
+    }
+
+    /**
+     * Whether the file is unchanged since it was indexed
+     */
+    boolean isUpToDate(File uidFile) {
+        return uidFile.lastModified() == fileLastModified && uidFile.length() == fileLength;
+    }
+
+    Optional<MessageUid> getLastUid() {
+        if (lastUid == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(MessageUid.of(lastUid));
+    }
+
+    int getMessageCount() {
+        return messageCount;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Optional<String> getMessageName(MessageUid uid) {
+        int position = Arrays.binarySearch(uids, 0, size, uid.asLong());
+        if (position < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(names[position]);
+    }
+
+    /**
+     * Return the names of the messages with a uid between from and to, both included
+     *
+     * @param to the upper uid limit; <code>null</code> disables the upper limit
+     */
+    SortedMap<MessageUid, String> getMessageNames(MessageUid from, MessageUid to) {
+        SortedMap<MessageUid, String> result = new TreeMap<>();
+        int start = insertionPoint(from.asLong());
+        for (int i = start; i < size; i++) {
+            if (to != null && uids[i] > to.asLong()) {
+                break;
+            }
+            result.put(MessageUid.of(uids[i]), names[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Return the names of the messages matching the filter, walking from the highest uid down
+     * until the limit is reached
+     */
+    SortedMap<MessageUid, String> getLastMessageNames(Predicate<String> nameFilter, int limit) {
+        SortedMap<MessageUid, String> result = new TreeMap<>();
+        for (int i = size - 1; i >= 0 && result.size() < limit; i--) {
+            if (nameFilter.test(names[i])) {
+                result.put(MessageUid.of(uids[i]), names[i]);
+            }
+        }
+        return result;
+    }
+
+    private int insertionPoint(long uid) {
+        int position = Arrays.binarySearch(uids, 0, size, uid);
+        if (position < 0) {
+            return -position - 1;
+        }
+        return position;
+    }
+
+    /**
+     * Add an entry to the uid list file and return the resulting index.
+     *
+     * The uid must be greater than all the indexed uids. If the file has a fixed width header, the entry
+     * is appended to the file and the header is overwritten in place, otherwise the whole file is rewritten.
+     */
+    UidListIndex append(File uidFile, MessageUid uid, String name, int newMessageCount) throws IOException {
+        if (!fixedWidthHeader) {
+            SortedMap<MessageUid, String> entries = getMessageNames(MessageUid.MIN_VALUE, null);
+            entries.put(uid, name);
+            return write(uidFile, Optional.of(uid), newMessageCount, entries);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(uidFile, "rw")) {
+            long end = file.length();
+            StringBuilder line = new StringBuilder();
+            if (end > 0) {
+                file.seek(end - 1);
+                if (file.read() != '\n') {
+                    line.append(System.lineSeparator());
+                }
+            }
+            line.append(uid.asLong()).append(' ').append(name).append(System.lineSeparator());
+            file.seek(end);
+            file.write(line.toString().getBytes());
+            // The entry is written before the header, an interrupted append only leaves an outdated header
+            file.seek(0);
+            file.write(header(uid.asLong(), newMessageCount).getBytes());
+        }
+        return appendToIndex(uid.asLong(), name, newMessageCount, uidFile.lastModified(), uidFile.length());
+    }
+
+    /**
+     * Entries are appended in place when the arrays have room left, as only the first index appended
+     * to may share them: indexes derived from an older one get their own copy.
+     */
+    private UidListIndex appendToIndex(long uid, String name, int newMessageCount, long lastModified, long length) {
+        long[] newUids = uids;
+        String[] newNames = names;
+        if (size == uids.length || !appendedTo.compareAndSet(false, true)) {
+            int capacity = Math.max(16, size + (size >> 1) + 1);
+            newUids = Arrays.copyOf(uids, capacity);
+            newNames = Arrays.copyOf(names, capacity);
+        }
+        newUids[size] = uid;
+        newNames[size] = name;
+        return new UidListIndex(newUids, newNames, size + 1, Math.max(lastUid, uid), newMessageCount, true, lastModified, length);
+    }
+}
@@ -0,0 +1,66 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.maildir;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keeps the {@link UidListIndex} of the recently used maildir folders.
+ *
+ * A cached index is only served while the uid list file keeps the modification time and length it had when
+ * it was indexed, otherwise the file is indexed again.
+ */
+class UidListIndexCache {
+    private static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final Cache<File, UidListIndex> indexes;
+
+    UidListIndexCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    UidListIndexCache(long maximumSize) {
+        this.indexes = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .build();
+    }
+
+    /**
+     * Return the index of the given uid list file, reading the file if it changed since it was last indexed
+     *
+     * @throws IOException if the file can not be read
+     */
+    UidListIndex get(File uidFile) throws IOException {
+        UidListIndex cached = indexes.getIfPresent(uidFile);
+        if (cached != null && cached.isUpToDate(uidFile)) {
+            return cached;
+        }
+        UidListIndex index = UidListIndex.read(uidFile);
+        indexes.put(uidFile, index);
+        return index;
+    }
+
+    void put(File uidFile, UidListIndex index) {
+        indexes.put(uidFile, index);
+    }
+}
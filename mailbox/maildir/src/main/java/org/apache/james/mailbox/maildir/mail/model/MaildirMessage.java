@@ -51,6 +51,7 @@ public class MaildirMessage implements Message {
 
     private final MaildirMessageName messageName;
     private int bodyStartOctet;
+    private boolean bodyStartOctetKnown;
     private final PropertyBuilder propertyBuilder = new PropertyBuilder();
     private boolean parsed;
 
@@ -69,7 +70,10 @@ public class MaildirMessage implements Message {
         try {
             tmpMsgIn = new SharedFileInputStream(messageName.getFile());
 
-            bodyStartOctet = bodyStartOctet(tmpMsgIn);
+            if (!bodyStartOctetKnown) {
+                bodyStartOctet = bodyStartOctet(tmpMsgIn);
+                bodyStartOctetKnown = true;
+            }
 
             // Disable line length... This should be handled by the smtp server
             // component and not the parser itself
@@ -250,23 +254,37 @@ public class MaildirMessage implements Message {
         return new FileInputStream(messageName.getFile());
     }
 
+    /**
+     * Return the body of the message, seeking past the headers so that only the read octets of
+     * the body are loaded from the file
+     */
     @Override
     public InputStream getBodyContent() throws IOException {
-        parseMessage();
         FileInputStream body = new FileInputStream(messageName.getFile());
-        IOUtils.skipFully(body, bodyStartOctet);
+        IOUtils.skipFully(body, getBodyStartOctet());
         return body;
 
     }
 
-    private int getBodyStartOctet() {
-        parseMessage();
+    /**
+     * Only scan the headers of the message, as the full parsing of the message is not needed to
+     * locate its body
+     */
+    private synchronized int getBodyStartOctet() {
+        if (!bodyStartOctetKnown) {
+            try (SharedFileInputStream msgIn = new SharedFileInputStream(messageName.getFile())) {
+                bodyStartOctet = bodyStartOctet(msgIn);
+            } catch (IOException e) {
+                // has successfully been parsen when appending, shouldn't give any
+                // problems
+            }
+            bodyStartOctetKnown = true;
+        }
         return bodyStartOctet;
     }
 
     @Override
     public InputStream getHeaderContent() throws IOException {
-        parseMessage();
         long limit = getBodyStartOctet();
         if (limit < 0) {
             limit = 0;
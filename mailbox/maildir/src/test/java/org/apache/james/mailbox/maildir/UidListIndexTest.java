@@ -0,0 +1,161 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailbox.maildir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.james.mailbox.MessageUid;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UidListIndexTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private File uidFile;
+
+    @Before
+    public void setUp() throws Exception {
+        uidFile = tmpFolder.newFile(MaildirFolder.UIDLIST_FILE);
+    }
+
+    @Test
+    public void readShouldParseLegacyFiles() throws Exception {
+        FileUtils.write(uidFile, "1 3 2\n1 first\n3 third\n", StandardCharsets.UTF_8);
+
+        UidListIndex index = UidListIndex.read(uidFile);
+
+        assertThat(index.getLastUid()).contains(MessageUid.of(3));
+        assertThat(index.getMessageCount()).isEqualTo(2);
+        assertThat(index.getMessageName(MessageUid.of(3))).contains("third");
+        assertThat(index.getMessageName(MessageUid.of(2))).isEmpty();
+    }
+
+    @Test
+    public void readShouldSkipCorruptedEntries() throws Exception {
+        FileUtils.write(uidFile, "1 3 2\n1 first\ncorrupted\n\n3 third\n", StandardCharsets.UTF_8);
+
+        assertThat(UidListIndex.read(uidFile).size()).isEqualTo(2);
+    }
+
+    @Test
+    public void readShouldSortUnorderedEntries() throws Exception {
+        FileUtils.write(uidFile, "1 3 2\n3 third\n1 first\n", StandardCharsets.UTF_8);
+
+        assertThat(UidListIndex.read(uidFile).getMessageNames(MessageUid.MIN_VALUE, null).keySet())
+            .containsExactly(MessageUid.of(1), MessageUid.of(3));
+    }
+
+    @Test
+    public void readShouldUseLastEntryWhenHeaderIsOutdated() throws Exception {
+        FileUtils.write(uidFile, "1 2 2\n1 first\n3 third\n", StandardCharsets.UTF_8);
+
+        assertThat(UidListIndex.read(uidFile).getLastUid()).contains(MessageUid.of(3));
+    }
+
+    @Test
+    public void getMessageNamesShouldReturnTheRequestedRange() throws Exception {
+        UidListIndex index = UidListIndex.write(uidFile, Optional.of(MessageUid.of(4)), 4, entries(1, 2, 3, 4));
+
+        assertThat(index.getMessageNames(MessageUid.of(2), MessageUid.of(3)).keySet())
+            .containsExactly(MessageUid.of(2), MessageUid.of(3));
+    }
+
+    @Test
+    public void getLastMessageNamesShouldWalkBackwardsUpToTheLimit() throws Exception {
+        UidListIndex index = UidListIndex.write(uidFile, Optional.of(MessageUid.of(4)), 4, entries(1, 2, 3, 4));
+
+        assertThat(index.getLastMessageNames(name -> !name.equals("name4"), 2).keySet())
+            .containsExactly(MessageUid.of(2), MessageUid.of(3));
+    }
+
+    @Test
+    public void writtenFilesShouldBeReadBack() throws Exception {
+        UidListIndex.write(uidFile, Optional.of(MessageUid.of(5)), 2, entries(1, 5));
+
+        UidListIndex index = UidListIndex.read(uidFile);
+
+        assertThat(index.getLastUid()).contains(MessageUid.of(5));
+        assertThat(index.getMessageCount()).isEqualTo(2);
+        assertThat(index.getMessageNames(MessageUid.MIN_VALUE, null)).isEqualTo(entries(1, 5));
+    }
+
+    @Test
+    public void appendShouldBeVisibleWhenReadingTheFileAgain() throws Exception {
+        UidListIndex index = UidListIndex.write(uidFile, Optional.of(MessageUid.of(2)), 2, entries(1, 2));
+
+        UidListIndex appended = index.append(uidFile, MessageUid.of(3), "name3", 3);
+
+        UidListIndex read = UidListIndex.read(uidFile);
+        assertThat(read.getMessageNames(MessageUid.MIN_VALUE, null)).isEqualTo(entries(1, 2, 3));
+        assertThat(read.getLastUid()).contains(MessageUid.of(3));
+        assertThat(read.getMessageCount()).isEqualTo(3);
+        assertThat(appended.getMessageNames(MessageUid.MIN_VALUE, null)).isEqualTo(entries(1, 2, 3));
+        assertThat(appended.isUpToDate(uidFile)).isTrue();
+    }
+
+    @Test
+    public void appendShouldRewriteLegacyFiles() throws Exception {
+        FileUtils.write(uidFile, "1 1 1\n1 name1\n", StandardCharsets.UTF_8);
+
+        UidListIndex.read(uidFile).append(uidFile, MessageUid.of(2), "name2", 2);
+
+        UidListIndex read = UidListIndex.read(uidFile);
+        assertThat(read.getMessageNames(MessageUid.MIN_VALUE, null)).isEqualTo(entries(1, 2));
+        assertThat(read.getMessageCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void appendShouldNotAlterThePreviousIndex() throws Exception {
+        UidListIndex index = UidListIndex.write(uidFile, Optional.of(MessageUid.of(1)), 1, entries(1));
+
+        index.append(uidFile, MessageUid.of(2), "name2", 2);
+        UidListIndex other = index.append(uidFile, MessageUid.of(3), "name3", 2);
+
+        assertThat(index.getMessageNames(MessageUid.MIN_VALUE, null)).isEqualTo(entries(1));
+        assertThat(other.getMessageName(MessageUid.of(2))).isEmpty();
+    }
+
+    @Test
+    public void isUpToDateShouldDetectExternalChanges() throws Exception {
+        UidListIndex index = UidListIndex.write(uidFile, Optional.of(MessageUid.of(1)), 1, entries(1));
+
+        FileUtils.write(uidFile, "2 name2\n", StandardCharsets.UTF_8, true);
+
+        assertThat(index.isUpToDate(uidFile)).isFalse();
+    }
+
+    private SortedMap<MessageUid, String> entries(long... uids) {
+        SortedMap<MessageUid, String> entries = new TreeMap<>();
+        for (long uid : uids) {
+            entries.put(MessageUid.of(uid), "name" + uid);
+        }
+        return entries;
+    }
+}
@@ -29,8 +29,10 @@ import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
@@ -66,6 +68,7 @@ import org.apache.james.mailbox.model.UpdatedFlags;
 import org.apache.james.mailbox.quota.QuotaManager;
 import org.apache.james.mailbox.quota.QuotaRootResolver;
 import org.apache.james.mailbox.store.event.MailboxEventDispatcher;
+import org.apache.james.mailbox.store.mail.AsyncMessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
@@ -483,10 +486,13 @@ public class StoreMessageManager implements org.apache.james.mailbox.MessageMana
         List<MessageUid> recent;
         Flags permanentFlags = getPermanentFlags(mailboxSession);
         long uidValidity = getMailboxEntity().getUidValidity();
-        MessageUid uidNext = mapperFactory.getMessageMapper(mailboxSession).getLastUid(mailbox)
+        AsyncMessageMapper asyncMessageMapper = mapperFactory.getMessageMapper(mailboxSession).async();
+        CompletableFuture<Optional<MessageUid>> lastUid = asyncMessageMapper.getLastUid(mailbox);
+        CompletableFuture<Long> highestModSeqFuture = asyncMessageMapper.getHighestModSeq(mailbox);
+        MessageUid uidNext = AsyncMessageMapper.join(lastUid)
                 .map(MessageUid::next)
                 .orElse(MessageUid.MIN_VALUE);
-        long highestModSeq = mapperFactory.getMessageMapper(mailboxSession).getHighestModSeq(mailbox);
+        long highestModSeq = AsyncMessageMapper.join(highestModSeqFuture);
         long messageCount;
         long unseenCount;
         MessageUid firstUnseen;
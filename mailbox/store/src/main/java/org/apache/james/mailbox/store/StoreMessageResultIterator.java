@@ -18,10 +18,14 @@
  ****************************************************************/
 package org.apache.james.mailbox.store;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import javax.mail.Flags;
 
@@ -38,6 +42,7 @@ import org.apache.james.mailbox.model.MessageResult;
 import org.apache.james.mailbox.model.MessageResult.FetchGroup;
 import org.apache.james.mailbox.model.MessageResultIterator;
 import org.apache.james.mailbox.model.MimeDescriptor;
+import org.apache.james.mailbox.store.mail.AsyncMessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
@@ -45,31 +50,38 @@ import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.steveash.guavate.Guavate;
 import com.google.common.base.Objects;
 
 public class StoreMessageResultIterator implements MessageResultIterator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StoreMessageResultIterator.class);
 
-    private Iterator<MailboxMessage> next = null;
+    private Iterator<MailboxMessage> next = Collections.emptyIterator();
     private MailboxException exception;
     private final Mailbox mailbox;
     private final FetchGroup group;
     private final MessageUid from;
-    private MessageUid cursor;
+    private Optional<MessageUid> cursor;
+    /**
+     * With a non blocking mapper, the next batch is requested as soon as the current one is read, so that the mapper
+     * fetches it while the current one is consumed. Only one batch is read ahead, bounding the messages held to two
+     * batches. Blocking mappers keep reading one batch at a time.
+     */
+    private CompletableFuture<List<MailboxMessage>> readAhead = null;
     private final MessageUid to;
     private final BatchSizes batchSizes;
     private final Type type;
-    private final MessageMapper mapper;
+    private final AsyncMessageMapper mapper;
     private final FetchType ftype;
 
     public StoreMessageResultIterator(MessageMapper mapper, Mailbox mailbox, MessageRange range, BatchSizes batchSizes, org.apache.james.mailbox.model.MessageResult.FetchGroup group) {
         this.mailbox = mailbox;
         this.group = group;
-        this.mapper = mapper;
+        this.mapper = mapper.async();
         this.from = range.getUidFrom();
-        this.cursor = this.from;
         this.to = range.getUidTo();
+        this.cursor = Optional.of(from).filter(uid -> uid.compareTo(to) <= 0);
         this.batchSizes = batchSizes;
         this.type = range.getType();
         this.ftype = getFetchType(group);
@@ -126,23 +138,45 @@ public class StoreMessageResultIterator implements MessageResultIterator {
 
     @Override
     public boolean hasNext() {
-        if (cursor.compareTo(to) > 0) {
-            return false;
+        if (next.hasNext()) {
+            return true;
         }
-
-        if (next == null || !next.hasNext()) {
-            try {
-                readBatch();
-            } catch (MailboxException e) {
-                this.exception = e;
+        if (readAhead == null) {
+            if (!cursor.isPresent()) {
                 return false;
             }
+            readAhead = readBatch(cursor.get());
         }
-        
+
+        try {
+            List<MailboxMessage> batch = AsyncMessageMapper.join(readAhead);
+            next = batch.iterator();
+            cursor = nextCursor(batch);
+            readAhead = cursor.filter(any -> !mapper.isBlocking())
+                .map(this::readBatch)
+                .orElse(null);
+        } catch (MailboxException e) {
+            this.exception = e;
+            this.cursor = Optional.empty();
+            this.readAhead = null;
+            return false;
+        }
+
         return next.hasNext();
     }
 
-    private void readBatch() throws MailboxException {
+    private Optional<MessageUid> nextCursor(List<MailboxMessage> batch) {
+        if (batch.isEmpty()) {
+            return Optional.empty();
+        }
+        MessageUid lastUid = batch.get(batch.size() - 1).getUid();
+        if (lastUid.compareTo(to) >= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(lastUid.next());
+    }
+
+    private CompletableFuture<List<MailboxMessage>> readBatch(MessageUid cursor) {
         MessageRange range;
         switch (type) {
         default:
@@ -160,7 +194,11 @@ public class StoreMessageResultIterator implements MessageResultIterator {
             range = MessageRange.range(cursor, to);
             break;
         }
-        next = mapper.findInMailbox(mailbox, range, ftype, batchSizeFromFetchType(ftype));
+        int batchSize = batchSizeFromFetchType(ftype);
+        CompletableFuture<Stream<MailboxMessage>> messages = group.getBodyOctetsLimit()
+            .map(bodyOctetsLimit -> mapper.findInMailbox(mailbox, range, ftype, bodyOctetsLimit, batchSize))
+            .orElseGet(() -> mapper.findInMailbox(mailbox, range, ftype, batchSize));
+        return messages.thenApply(stream -> stream.collect(Guavate.toImmutableList()));
     }
 
     private int batchSizeFromFetchType(FetchType fetchType) {
@@ -184,16 +222,11 @@ public class StoreMessageResultIterator implements MessageResultIterator {
         }
         
         final MailboxMessage message = next.next();
-        MessageResult result;
         try {
-            result = ResultUtils.loadMessageResult(message, group);
-            cursor = result.getUid();
+            return ResultUtils.loadMessageResult(message, group);
         } catch (MailboxException e) {
-            result = new UnloadedMessageResult(message, e);
+            return new UnloadedMessageResult(message, e);
         }
-
-        cursor = cursor.next();
-        return result;
     }
 
     @Override
@@ -19,27 +19,193 @@
 
 package org.apache.james.mailbox.store.event;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 
 import javax.annotation.PreDestroy;
 
+import org.apache.james.mailbox.BatchedMailboxListener;
 import org.apache.james.mailbox.Event;
 import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.metrics.api.GaugeRegistry;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.metrics.api.TimeMetric;
+import org.apache.james.util.concurrent.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Delivers events on a fixed set of ordered lanes.
+ *
+ * Events of a given mailbox always go through the same lane and are thus delivered in order, while events of
+ * different mailboxes are delivered in parallel. Lane queues are bounded: once full, the emitting thread waits for room.
+ *
+ * When a lane falls behind, consecutive events of a same mailbox and of a same type waiting for a
+ * {@link BatchedMailboxListener} are handed over to it at once.
+ */
 public class AsynchronousEventDelivery implements EventDelivery {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsynchronousEventDelivery.class);
 
-    private final ExecutorService threadPoolExecutor;
+    public static final String QUEUE_SIZE_METRIC_NAME = "mailbox.event.delivery.queue.size";
+    public static final String LATENCY_METRIC_NAME = "mailbox.event.delivery.latency";
+
+    /**
+     * Listeners can emit events themselves: a lane thread must never wait on a full lane, including its own.
+     */
+    private static final ThreadLocal<Boolean> IS_LANE_THREAD = ThreadLocal.withInitial(() -> false);
+
+    private static class QueuedEvent {
+        private final MailboxListener mailboxListener;
+        private final Event event;
+        private final TimeMetric latency;
+        private final boolean holdsRoom;
+
+        QueuedEvent(MailboxListener mailboxListener, Event event, TimeMetric latency, boolean holdsRoom) {
+            this.mailboxListener = mailboxListener;
+            this.event = event;
+            this.latency = latency;
+            this.holdsRoom = holdsRoom;
+        }
+    }
+
+    /**
+     * Events are only ever delivered by the lane thread, in queue order. Capacity is enforced by a separate semaphore
+     * so that events emitted by lane threads can be queued beyond it, behind the events already waiting.
+     */
+    private class Lane implements Runnable {
+        private final BlockingQueue<QueuedEvent> queue;
+        private final Semaphore room;
+
+        Lane(int capacity) {
+            this.queue = new LinkedBlockingQueue<>();
+            this.room = new Semaphore(capacity);
+        }
+
+        void enqueue(MailboxListener mailboxListener, Event event) {
+            boolean holdsRoom = !IS_LANE_THREAD.get() && waitForRoom();
+            queue.add(new QueuedEvent(mailboxListener, event, metricFactory.timer(LATENCY_METRIC_NAME), holdsRoom));
+        }
+
+        private boolean waitForRoom() {
+            try {
+                room.acquire();
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.warn("Interrupted while waiting for room in the event delivery queue, queueing beyond its capacity");
+                return false;
+            }
+        }
+
+        @Override
+        public void run() {
+            IS_LANE_THREAD.set(true);
+            List<QueuedEvent> batch = new ArrayList<>(configuration.getBatchSize());
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, configuration.getBatchSize() - 1);
+                    room.release((int) batch.stream().filter(queuedEvent -> queuedEvent.holdsRoom).count());
+                    deliverQueued(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private final AsynchronousEventDeliveryConfiguration configuration;
     private final SynchronousEventDelivery synchronousEventDelivery;
+    private final MetricFactory metricFactory;
+    private final Lane[] lanes;
+    private final ExecutorService threadPoolExecutor;
 
     public AsynchronousEventDelivery(int threadPoolSize, SynchronousEventDelivery synchronousEventDelivery) {
-        this.threadPoolExecutor = Executors.newFixedThreadPool(threadPoolSize);
+        this(AsynchronousEventDeliveryConfiguration.builder()
+                .laneCount(threadPoolSize)
+                .build(),
+            synchronousEventDelivery,
+            new NoopMetricFactory(),
+            new NoopGaugeRegistry());
+    }
+
+    public AsynchronousEventDelivery(AsynchronousEventDeliveryConfiguration configuration, SynchronousEventDelivery synchronousEventDelivery,
+                                     MetricFactory metricFactory, GaugeRegistry gaugeRegistry) {
+        this.configuration = configuration;
         this.synchronousEventDelivery = synchronousEventDelivery;
+        this.metricFactory = metricFactory;
+        this.lanes = new Lane[configuration.getLaneCount()];
+        this.threadPoolExecutor = Executors.newFixedThreadPool(configuration.getLaneCount(), new NamedThreadFactory("mailbox-event-delivery"));
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(configuration.getLaneQueueCapacity());
+            threadPoolExecutor.execute(lanes[i]);
+        }
+        gaugeRegistry.register(QUEUE_SIZE_METRIC_NAME, this::queueSize);
     }
 
     @Override
     public void deliver(MailboxListener mailboxListener, Event event) {
-        threadPoolExecutor.submit(() -> synchronousEventDelivery.deliver(mailboxListener, event));
+        lanes[laneIndex(event)].enqueue(mailboxListener, event);
+    }
+
+    /**
+     * Ordering only matters for a given listener and a given mailbox: the events of each listener are regrouped by
+     * mailbox, then delivered in order, coalesced when the listener supports it.
+     */
+    private void deliverQueued(List<QueuedEvent> batch) {
+        Map<MailboxListener, Map<Object, List<Event>>> eventsByListener = new LinkedHashMap<>();
+        for (QueuedEvent queuedEvent : batch) {
+            queuedEvent.latency.stopAndPublish();
+            eventsByListener.computeIfAbsent(queuedEvent.mailboxListener, listener -> new LinkedHashMap<>())
+                .computeIfAbsent(EventBatches.orderingKey(queuedEvent.event), key -> new ArrayList<>())
+                .add(queuedEvent.event);
+        }
+        eventsByListener.forEach((mailboxListener, eventsByOrderingKey) ->
+            eventsByOrderingKey.values()
+                .forEach(events -> deliverInOrder(mailboxListener, events)));
+    }
+
+    private void deliverInOrder(MailboxListener mailboxListener, List<Event> events) {
+        if (mailboxListener instanceof BatchedMailboxListener) {
+            for (List<Event> coalescedEvents : EventBatches.coalesce(events)) {
+                deliverCoalesced((BatchedMailboxListener) mailboxListener, coalescedEvents);
+            }
+        } else {
+            events.forEach(event -> synchronousEventDelivery.deliver(mailboxListener, event));
+        }
+    }
+
+    private void deliverCoalesced(BatchedMailboxListener mailboxListener, List<Event> events) {
+        if (events.size() == 1) {
+            synchronousEventDelivery.deliver(mailboxListener, events.get(0));
+        } else {
+            synchronousEventDelivery.deliverBatch(mailboxListener, events);
+        }
+    }
+
+    private int laneIndex(Event event) {
+        return Math.floorMod(Objects.hashCode(EventBatches.orderingKey(event)), lanes.length);
+    }
+
+    @VisibleForTesting
+    int queueSize() {
+        return Arrays.stream(lanes)
+            .mapToInt(lane -> lane.queue.size())
+            .sum();
     }
 
     @PreDestroy
@@ -0,0 +1,136 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.event;
+
+import java.util.Optional;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+public class AsynchronousEventDeliveryConfiguration {
+
+    public static final int DEFAULT_LANE_COUNT = 8;
+    public static final int DEFAULT_LANE_QUEUE_CAPACITY = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    public static AsynchronousEventDeliveryConfiguration defaultValues() {
+        return builder().build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private Optional<Integer> laneCount;
+        private Optional<Integer> laneQueueCapacity;
+        private Optional<Integer> batchSize;
+
+        private Builder() {
+            laneCount = Optional.empty();
+            laneQueueCapacity = Optional.empty();
+            batchSize = Optional.empty();
+        }
+
+        public Builder laneCount(int laneCount) {
+            Preconditions.checkArgument(laneCount > 0, "'laneCount' must be greater than zero");
+            this.laneCount = Optional.of(laneCount);
+            return this;
+        }
+
+        public Builder laneQueueCapacity(int laneQueueCapacity) {
+            Preconditions.checkArgument(laneQueueCapacity > 0, "'laneQueueCapacity' must be greater than zero");
+            this.laneQueueCapacity = Optional.of(laneQueueCapacity);
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            Preconditions.checkArgument(batchSize > 0, "'batchSize' must be greater than zero");
+            this.batchSize = Optional.of(batchSize);
+            return this;
+        }
+
+        public AsynchronousEventDeliveryConfiguration build() {
+            return new AsynchronousEventDeliveryConfiguration(
+                laneCount.orElse(DEFAULT_LANE_COUNT),
+                laneQueueCapacity.orElse(DEFAULT_LANE_QUEUE_CAPACITY),
+                batchSize.orElse(DEFAULT_BATCH_SIZE));
+        }
+    }
+
+    private final int laneCount;
+    private final int laneQueueCapacity;
+    private final int batchSize;
+
+    private AsynchronousEventDeliveryConfiguration(int laneCount, int laneQueueCapacity, int batchSize) {
+        this.laneCount = laneCount;
+        this.laneQueueCapacity = laneQueueCapacity;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Number of ordered lanes, each of them served by its own thread.
+     */
+    public int getLaneCount() {
+        return laneCount;
+    }
+
+    /**
+     * Maximum number of events waiting for delivery in a lane. Threads emitting events into a full lane wait for room,
+     * except lane threads themselves, whose events are queued beyond this capacity.
+     */
+    public int getLaneQueueCapacity() {
+        return laneQueueCapacity;
+    }
+
+    /**
+     * Maximum number of consecutive events a lane takes from its queue at once.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (o instanceof AsynchronousEventDeliveryConfiguration) {
+            AsynchronousEventDeliveryConfiguration that = (AsynchronousEventDeliveryConfiguration) o;
+
+            return Objects.equal(this.laneCount, that.laneCount)
+                && Objects.equal(this.laneQueueCapacity, that.laneQueueCapacity)
+                && Objects.equal(this.batchSize, that.batchSize);
+        }
+        return false;
+    }
+
+    @Override
+    public final int hashCode() {
+        return Objects.hashCode(laneCount, laneQueueCapacity, batchSize);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("laneCount", laneCount)
+            .add("laneQueueCapacity", laneQueueCapacity)
+            .add("batchSize", batchSize)
+            .toString();
+    }
+}
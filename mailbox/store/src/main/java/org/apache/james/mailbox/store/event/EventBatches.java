@@ -0,0 +1,94 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import org.apache.james.mailbox.Event;
+import org.apache.james.mailbox.MailboxListener;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Groups consecutive events of a same mailbox, of a same type and of a same session, so that they can be delivered
+ * at once to {@link org.apache.james.mailbox.BatchedMailboxListener}.
+ */
+public class EventBatches {
+
+    /**
+     * @return the key events need to be ordered by: the mailbox id of mailbox events, which unlike their path survives
+     * renames, the quota root of quota events
+     */
+    public static Object orderingKey(Event event) {
+        if (event instanceof EventFactory.MailboxAware) {
+            return ((EventFactory.MailboxAware) event).getMailbox().getMailboxId();
+        }
+        if (event instanceof MailboxListener.MailboxEvent) {
+            return ((MailboxListener.MailboxEvent) event).getMailboxPath();
+        }
+        if (event instanceof MailboxListener.QuotaEvent) {
+            return ((MailboxListener.QuotaEvent) event).getQuotaRoot();
+        }
+        return null;
+    }
+
+    /**
+     * Mailbox deletions and renames modify listener registrations, and are thus never coalesced.
+     */
+    public static boolean isCoalescable(Event event) {
+        return !(event instanceof MailboxListener.MailboxDeletion)
+            && !(event instanceof MailboxListener.MailboxRenamed);
+    }
+
+    /**
+     * Listeners handle a batch on behalf of the session of its first event, hence events of different sessions are
+     * never coalesced.
+     */
+    public static boolean areCoalescable(Event event1, Event event2) {
+        return isCoalescable(event1)
+            && event1.getClass().equals(event2.getClass())
+            && Objects.equals(event1.getSession(), event2.getSession())
+            && Objects.equals(orderingKey(event1), orderingKey(event2));
+    }
+
+    /**
+     * Splits the given events in batches of consecutive coalescable events, preserving their order.
+     */
+    public static List<List<Event>> coalesce(List<Event> events) {
+        ImmutableList.Builder<List<Event>> batches = ImmutableList.builder();
+        List<Event> currentBatch = new ArrayList<>();
+        for (Event event : events) {
+            if (!currentBatch.isEmpty() && !areCoalescable(currentBatch.get(0), event)) {
+                batches.add(ImmutableList.copyOf(currentBatch));
+                currentBatch.clear();
+            }
+            currentBatch.add(event);
+        }
+        if (!currentBatch.isEmpty()) {
+            batches.add(ImmutableList.copyOf(currentBatch));
+        }
+        return batches.build();
+    }
+
+    private EventBatches() {
+    }
+}
@@ -191,6 +191,21 @@ public class EventFactory {
         }
     }
 
+    public final class MailboxACLUpdatedImpl extends MailboxListener.MailboxACLUpdated implements MailboxAware {
+
+        private final Mailbox mailbox;
+
+        public MailboxACLUpdatedImpl(MailboxSession session, Mailbox mailbox, ACLDiff aclDiff) {
+            super(session, new StoreMailboxPath(mailbox), aclDiff);
+            this.mailbox = mailbox;
+        }
+
+        @Override
+        public Mailbox getMailbox() {
+            return mailbox;
+        }
+    }
+
     public MailboxListener.Added added(MailboxSession session, SortedMap<MessageUid, MessageMetaData> uids, Mailbox mailbox, Map<MessageUid, MailboxMessage> cachedMessages) {
         return new AddedImpl(session, mailbox, uids, cachedMessages);
     }
@@ -216,8 +231,8 @@ public class EventFactory {
         return new MailboxAddedImpl(session, mailbox);
     }
 
-    public MailboxListener.MailboxACLUpdated aclUpdated(MailboxSession session, MailboxPath mailboxPath, ACLDiff aclDiff) {
-        return new MailboxListener.MailboxACLUpdated(session, mailboxPath, aclDiff);
+    public MailboxListener.MailboxACLUpdated aclUpdated(MailboxSession session, Mailbox mailbox, ACLDiff aclDiff) {
+        return new MailboxACLUpdatedImpl(session, mailbox, aclDiff);
     }
 
     public MessageMoveEvent moved(MailboxSession session, MessageMoves messageMoves, Map<MessageUid, MailboxMessage> messages) {
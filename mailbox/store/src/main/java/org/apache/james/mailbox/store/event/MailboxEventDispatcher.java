@@ -157,8 +157,8 @@ public class MailboxEventDispatcher {
         listener.event(eventFactory.mailboxAdded(session, mailbox));
     }
 
-    public void aclUpdated(MailboxSession session, MailboxPath mailboxPath, ACLDiff aclDiff) {
-        listener.event(eventFactory.aclUpdated(session, mailboxPath, aclDiff));
+    public void aclUpdated(MailboxSession session, Mailbox mailbox, ACLDiff aclDiff) {
+        listener.event(eventFactory.aclUpdated(session, mailbox, aclDiff));
     }
 
     public void moved(MailboxSession session, MessageMoves messageMoves, Map<MessageUid, MailboxMessage> messages) {
@@ -19,8 +19,11 @@
 
 package org.apache.james.mailbox.store.event;
 
+import java.util.List;
+
 import javax.inject.Inject;
 
+import org.apache.james.mailbox.BatchedMailboxListener;
 import org.apache.james.mailbox.Event;
 import org.apache.james.mailbox.MailboxListener;
 import org.apache.james.metrics.api.MetricFactory;
@@ -52,4 +55,20 @@ public class SynchronousEventDelivery implements EventDelivery {
             timer.stopAndPublish();
         }
     }
+
+    /**
+     * Delivers consecutive events of a same mailbox and of a same type at once.
+     */
+    public void deliverBatch(BatchedMailboxListener mailboxListener, List<Event> events) {
+        TimeMetric timer = metricFactory.timer("mailbox-listener-" + mailboxListener.getClass().getSimpleName());
+        try {
+            mailboxListener.events(events);
+        } catch (Throwable throwable) {
+            LOGGER.error("Error while processing listener {} for a batch of {} {}",
+                    mailboxListener.getClass().getCanonicalName(), events.size(), events.get(0).getClass().getCanonicalName(),
+                    throwable);
+        } finally {
+            timer.stopAndPublish();
+        }
+    }
 }
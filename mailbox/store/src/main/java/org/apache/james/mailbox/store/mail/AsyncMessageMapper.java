@@ -0,0 +1,105 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.mail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MailboxCounters;
+import org.apache.james.mailbox.model.MessageMetaData;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.FlagsUpdateCalculator;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+
+/**
+ * Non blocking counterpart of the most used {@link MessageMapper} operations. Failures, including
+ * {@link org.apache.james.mailbox.exception.MailboxException}, are reported by completing the returned futures
+ * exceptionally.
+ *
+ * Obtained through {@link MessageMapper#async()}.
+ */
+public interface AsyncMessageMapper {
+
+    /**
+     * Waits for the given future, rethrowing the {@link MailboxException} it may have been completed with.
+     */
+    static <T> T join(CompletableFuture<T> future) throws MailboxException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof MailboxException) {
+                throw (MailboxException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Whether the operations are run in the calling thread, returning already completed futures. Callers then
+     * gain nothing from issuing operations ahead of time.
+     */
+    default boolean isBlocking() {
+        return false;
+    }
+
+    /**
+     * See {@link MessageMapper#findInMailbox(Mailbox, MessageRange, FetchType, int)}
+     */
+    CompletableFuture<Stream<MailboxMessage>> findInMailbox(Mailbox mailbox, MessageRange set, FetchType type, int limit);
+
+    /**
+     * See {@link MessageMapper#findInMailbox(Mailbox, MessageRange, FetchType, long, int)}
+     */
+    CompletableFuture<Stream<MailboxMessage>> findInMailbox(Mailbox mailbox, MessageRange set, FetchType type, long bodyOctetsLimit, int limit);
+
+    /**
+     * See {@link MessageMapper#add(Mailbox, MailboxMessage)}
+     */
+    CompletableFuture<MessageMetaData> add(Mailbox mailbox, MailboxMessage message);
+
+    /**
+     * See {@link MessageMapper#updateFlags(Mailbox, FlagsUpdateCalculator, MessageRange)}
+     */
+    CompletableFuture<List<UpdatedFlags>> updateFlags(Mailbox mailbox, FlagsUpdateCalculator flagsUpdateCalculator, MessageRange set);
+
+    /**
+     * See {@link MessageMapper#expungeMarkedForDeletionInMailbox(Mailbox, MessageRange)}
+     */
+    CompletableFuture<Map<MessageUid, MessageMetaData>> expungeMarkedForDeletionInMailbox(Mailbox mailbox, MessageRange set);
+
+    CompletableFuture<MailboxCounters> getMailboxCounters(Mailbox mailbox);
+
+    CompletableFuture<Optional<MessageUid>> findFirstUnseenMessageUid(Mailbox mailbox);
+
+    CompletableFuture<List<MessageUid>> findRecentMessageUidsInMailbox(Mailbox mailbox);
+
+    CompletableFuture<Optional<MessageUid>> getLastUid(Mailbox mailbox);
+
+    CompletableFuture<Long> getHighestModSeq(Mailbox mailbox);
+}
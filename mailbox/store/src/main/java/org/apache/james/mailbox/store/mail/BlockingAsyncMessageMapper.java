@@ -0,0 +1,122 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.mail;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MailboxCounters;
+import org.apache.james.mailbox.model.MessageMetaData;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.FlagsUpdateCalculator;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.util.CompletableFutureUtil;
+import org.apache.james.util.streams.Iterators;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * {@link AsyncMessageMapper} for mappers having no non blocking implementation: operations are run in the
+ * calling thread, and already completed futures are returned.
+ */
+public class BlockingAsyncMessageMapper implements AsyncMessageMapper {
+
+    @FunctionalInterface
+    private interface MapperCall<T> {
+        T call() throws MailboxException;
+    }
+
+    private static <T> CompletableFuture<T> run(MapperCall<T> mapperCall) {
+        try {
+            return CompletableFuture.completedFuture(mapperCall.call());
+        } catch (MailboxException | RuntimeException e) {
+            return CompletableFutureUtil.exceptionallyFuture(e);
+        }
+    }
+
+    private final MessageMapper messageMapper;
+
+    public BlockingAsyncMessageMapper(MessageMapper messageMapper) {
+        this.messageMapper = messageMapper;
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<Stream<MailboxMessage>> findInMailbox(Mailbox mailbox, MessageRange set, FetchType type, int limit) {
+        return run(() -> Iterators.toStream(messageMapper.findInMailbox(mailbox, set, type, limit)));
+    }
+
+    @Override
+    public CompletableFuture<Stream<MailboxMessage>> findInMailbox(Mailbox mailbox, MessageRange set, FetchType type, long bodyOctetsLimit, int limit) {
+        return run(() -> Iterators.toStream(messageMapper.findInMailbox(mailbox, set, type, bodyOctetsLimit, limit)));
+    }
+
+    @Override
+    public CompletableFuture<MessageMetaData> add(Mailbox mailbox, MailboxMessage message) {
+        return run(() -> messageMapper.add(mailbox, message));
+    }
+
+    @Override
+    public CompletableFuture<List<UpdatedFlags>> updateFlags(Mailbox mailbox, FlagsUpdateCalculator flagsUpdateCalculator, MessageRange set) {
+        return run(() -> ImmutableList.copyOf(messageMapper.updateFlags(mailbox, flagsUpdateCalculator, set)));
+    }
+
+    @Override
+    public CompletableFuture<Map<MessageUid, MessageMetaData>> expungeMarkedForDeletionInMailbox(Mailbox mailbox, MessageRange set) {
+        return run(() -> messageMapper.expungeMarkedForDeletionInMailbox(mailbox, set));
+    }
+
+    @Override
+    public CompletableFuture<MailboxCounters> getMailboxCounters(Mailbox mailbox) {
+        return run(() -> messageMapper.getMailboxCounters(mailbox));
+    }
+
+    @Override
+    public CompletableFuture<Optional<MessageUid>> findFirstUnseenMessageUid(Mailbox mailbox) {
+        return run(() -> Optional.ofNullable(messageMapper.findFirstUnseenMessageUid(mailbox)));
+    }
+
+    @Override
+    public CompletableFuture<List<MessageUid>> findRecentMessageUidsInMailbox(Mailbox mailbox) {
+        return run(() -> messageMapper.findRecentMessageUidsInMailbox(mailbox));
+    }
+
+    @Override
+    public CompletableFuture<Optional<MessageUid>> getLastUid(Mailbox mailbox) {
+        return run(() -> messageMapper.getLastUid(mailbox));
+    }
+
+    @Override
+    public CompletableFuture<Long> getHighestModSeq(Mailbox mailbox) {
+        return run(() -> messageMapper.getHighestModSeq(mailbox));
+    }
+}
@@ -56,6 +56,18 @@ public interface MessageMapper extends Mapper {
     Iterator<MailboxMessage> findInMailbox(Mailbox mailbox, MessageRange set, FetchType type, int limit)
             throws MailboxException;
 
+    /**
+     * Same as {@link #findInMailbox(Mailbox, MessageRange, FetchType, int)}, but only the bodyOctetsLimit leading octets
+     * of the body of the returned {@link MailboxMessage}'s will be read. Implementations MAY then only load these octets,
+     * while still reporting the real sizes of the messages. Headers are loaded in full.
+     * 
+     * The default implementation loads the whole content.
+     */
+    default Iterator<MailboxMessage> findInMailbox(Mailbox mailbox, MessageRange set, FetchType type, long bodyOctetsLimit, int limit)
+            throws MailboxException {
+        return findInMailbox(mailbox, set, type, limit);
+    }
+
     /**
      * Return a {@link Iterator} which holds the uids for all deleted Messages for the given {@link MessageRange} which are marked for deletion
      * The list must be ordered
@@ -175,6 +187,14 @@ public interface MessageMapper extends Mapper {
      */
     Iterator<MessageUid> listAllMessageUids(Mailbox mailbox) throws MailboxException;
 
+    /**
+     * Return a non blocking view of this {@link MessageMapper}. Implementations backed by an asynchronous storage
+     * should override it: the default one runs the blocking operations in the calling thread.
+     */
+    default AsyncMessageMapper async() {
+        return new BlockingAsyncMessageMapper(this);
+    }
+
     /**
      * Specify what data needs to get filled in a {@link MailboxMessage} before returning it
      * 
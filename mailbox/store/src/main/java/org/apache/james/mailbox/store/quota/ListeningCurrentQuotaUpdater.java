@@ -22,18 +22,23 @@ import java.util.List;
 
 import javax.inject.Inject;
 
+import org.apache.james.mailbox.BatchedMailboxListener;
 import org.apache.james.mailbox.Event;
-import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.MessageUid;
 import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.model.QuotaRoot;
 import org.apache.james.mailbox.quota.QuotaManager;
 import org.apache.james.mailbox.quota.QuotaRootResolver;
+import org.apache.james.mailbox.store.event.EventBatches;
 import org.apache.james.mailbox.store.event.MailboxEventDispatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ListeningCurrentQuotaUpdater implements MailboxListener, QuotaUpdater {
+import com.github.steveash.guavate.Guavate;
+import com.google.common.collect.ImmutableList;
+
+public class ListeningCurrentQuotaUpdater implements BatchedMailboxListener, QuotaUpdater {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ListeningCurrentQuotaUpdater.class);
 
@@ -58,14 +63,8 @@ public class ListeningCurrentQuotaUpdater implements MailboxListener, QuotaUpdat
     @Override
     public void event(Event event) {
         try {
-            if (event instanceof Added) {
-                Added addedEvent = (Added) event;
-                QuotaRoot quotaRoot = quotaRootResolver.getQuotaRoot(addedEvent.getMailboxPath());
-                handleAddedEvent(addedEvent, quotaRoot);
-            } else if (event instanceof Expunged) {
-                Expunged expungedEvent = (Expunged) event;
-                QuotaRoot quotaRoot = quotaRootResolver.getQuotaRoot(expungedEvent.getMailboxPath());
-                handleExpungedEvent(expungedEvent, quotaRoot);
+            if (event instanceof Added || event instanceof Expunged) {
+                handleMetaDataHoldingEvents(ImmutableList.of((MetaDataHoldingEvent) event));
             } else if (event instanceof MailboxDeletion) {
                 MailboxDeletion mailboxDeletionEvent = (MailboxDeletion) event;
                 handleMailboxDeletionEvent(mailboxDeletionEvent);
@@ -75,36 +74,54 @@ public class ListeningCurrentQuotaUpdater implements MailboxListener, QuotaUpdat
         }
     }
 
-    private void handleExpungedEvent(Expunged expunged, QuotaRoot quotaRoot) throws MailboxException {
-        long addedSize = 0;
-        long addedCount = 0;
-        List<MessageUid> uids = expunged.getUids();
-        for (MessageUid uid : uids) {
-            addedSize += expunged.getMetaData(uid).getSize();
-            addedCount++;
-        }
-        // Expunge event can contain no data (expunge performed while no messages marked \Deleted)
-        if (addedCount != 0 && addedSize != 0) {
-            currentQuotaManager.decrease(quotaRoot, addedCount, addedSize);
+    /**
+     * Consecutive additions or expunges of a mailbox result in a single quota update and a single quota event.
+     */
+    @Override
+    public void events(List<Event> events) {
+        for (List<Event> batch : EventBatches.coalesce(events)) {
+            if (batch.size() > 1 && (batch.get(0) instanceof Added || batch.get(0) instanceof Expunged)) {
+                try {
+                    handleMetaDataHoldingEvents(batch.stream()
+                        .map(MetaDataHoldingEvent.class::cast)
+                        .collect(Guavate.toImmutableList()));
+                } catch (MailboxException e) {
+                    LOGGER.error("Error while updating quotas", e);
+                }
+            } else {
+                batch.forEach(this::event);
+            }
         }
-        dispatcher.quota(expunged.getSession(),
-            quotaRoot,
-            quotaManager.getMessageQuota(quotaRoot),
-            quotaManager.getStorageQuota(quotaRoot));
     }
 
-    private void handleAddedEvent(Added added, QuotaRoot quotaRoot) throws MailboxException {
-        long addedSize = 0;
-        long addedCount = 0;
-        List<MessageUid> uids = added.getUids();
-        for (MessageUid uid : uids) {
-            addedSize += added.getMetaData(uid).getSize();
-            addedCount++;
+    /**
+     * @param events non empty additions, or expunges, of a same mailbox
+     */
+    private void handleMetaDataHoldingEvents(List<MetaDataHoldingEvent> events) throws MailboxException {
+        MetaDataHoldingEvent firstEvent = events.get(0);
+        QuotaRoot quotaRoot = quotaRootResolver.getQuotaRoot(firstEvent.getMailboxPath());
+        long size = 0;
+        long count = 0;
+        for (MetaDataHoldingEvent event : events) {
+            List<MessageUid> uids = event.getUids();
+            for (MessageUid uid : uids) {
+                size += event.getMetaData(uid).getSize();
+                count++;
+            }
         }
-        if (addedCount != 0 && addedSize != 0) {
-            currentQuotaManager.increase(quotaRoot, addedCount, addedSize);
+        // Expunge event can contain no data (expunge performed while no messages marked \Deleted)
+        if (count != 0 && size != 0) {
+            if (firstEvent instanceof Added) {
+                currentQuotaManager.increase(quotaRoot, count, size);
+            } else {
+                currentQuotaManager.decrease(quotaRoot, count, size);
+            }
         }
-        dispatcher.quota(added.getSession(),
+        dispatchQuota(firstEvent.getSession(), quotaRoot);
+    }
+
+    private void dispatchQuota(MailboxSession session, QuotaRoot quotaRoot) throws MailboxException {
+        dispatcher.quota(session,
             quotaRoot,
             quotaManager.getMessageQuota(quotaRoot),
             quotaManager.getStorageQuota(quotaRoot));
@@ -0,0 +1,235 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.search;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.apache.james.mailbox.MailboxManager.MessageCapabilities;
+import org.apache.james.mailbox.MailboxManager.SearchCapabilities;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.extractor.TextExtractor;
+import org.apache.james.mailbox.model.MailboxId;
+import org.apache.james.mailbox.model.MessageId;
+import org.apache.james.mailbox.model.MessageRange;
+import org.apache.james.mailbox.model.SearchQuery;
+import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.mail.MailboxMapper;
+import org.apache.james.mailbox.store.mail.MailboxMapperFactory;
+import org.apache.james.mailbox.store.mail.MessageMapper;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
+import org.apache.james.mailbox.store.mail.MessageMapperFactory;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.mailbox.store.search.comparator.CombinedComparator;
+import org.apache.james.mailbox.store.search.index.IndexedMessage;
+import org.apache.james.mailbox.store.search.index.IndexedQuery;
+import org.apache.james.mailbox.store.search.index.MailboxIndex;
+
+import com.github.fge.lambdas.Throwing;
+import com.github.steveash.guavate.Guavate;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+
+/**
+ * {@link MessageSearchIndex} evaluating queries against an in memory {@link MailboxIndex} per mailbox.
+ *
+ * The index of a mailbox is loaded on its first search, then maintained from mailbox events. Criteria on flags, UIDs,
+ * dates, sizes, modseqs, attachments and common headers are answered from the index: only messages the index can not
+ * decide on (full text or complex header criteria) are fetched, and matched the same way
+ * {@link SimpleMessageSearchIndex} does.
+ *
+ * At most maxIndexedMailboxes indexes are kept in memory. The least recently used ones are evicted, and loaded again
+ * on their next search.
+ *
+ * Indexes only follow the events of this JVM: messages written by another process or node are missed until the index
+ * of their mailbox is evicted. Only use it when every write goes through this mailbox manager, like with the memory
+ * implementation.
+ */
+public class IndexedMessageSearchIndex extends ListeningMessageSearchIndex {
+    public static final long DEFAULT_MAX_INDEXED_MAILBOXES = 1000;
+
+    private final MailboxMapperFactory mailboxMapperFactory;
+    private final TextExtractor textExtractor;
+    private final Map<MailboxId, MailboxIndex> indexes;
+
+    @Inject
+    public IndexedMessageSearchIndex(MessageMapperFactory messageMapperFactory, MailboxMapperFactory mailboxMapperFactory, TextExtractor textExtractor) {
+        this(messageMapperFactory, mailboxMapperFactory, textExtractor, DEFAULT_MAX_INDEXED_MAILBOXES);
+    }
+
+    public IndexedMessageSearchIndex(MessageMapperFactory messageMapperFactory, MailboxMapperFactory mailboxMapperFactory, TextExtractor textExtractor, long maxIndexedMailboxes) {
+        super(messageMapperFactory);
+        Preconditions.checkArgument(maxIndexedMailboxes > 0, "'maxIndexedMailboxes' should be strictly positive");
+        this.mailboxMapperFactory = mailboxMapperFactory;
+        this.textExtractor = textExtractor;
+        this.indexes = CacheBuilder.newBuilder()
+            .maximumSize(maxIndexedMailboxes)
+            .<MailboxId, MailboxIndex>build()
+            .asMap();
+    }
+
+    @Override
+    public ListenerType getType() {
+        return ListenerType.EACH_NODE;
+    }
+
+    @Override
+    public EnumSet<SearchCapabilities> getSupportedCapabilities(EnumSet<MessageCapabilities> messageCapabilities) {
+        return EnumSet.of(SearchCapabilities.MultimailboxSearch,
+            SearchCapabilities.Text,
+            SearchCapabilities.Attachment,
+            SearchCapabilities.PartialEmailMatch,
+            SearchCapabilities.AttachmentFileName);
+    }
+
+    @Override
+    public Iterator<MessageUid> search(MailboxSession session, Mailbox mailbox, SearchQuery searchQuery) throws MailboxException {
+        Preconditions.checkArgument(session != null, "'session' is mandatory");
+        return Iterators.transform(searchResults(session, mailbox, searchQuery), SearchResult::getMessageUid);
+    }
+
+    @Override
+    public List<MessageId> search(MailboxSession session, Collection<MailboxId> mailboxIds, SearchQuery searchQuery, long limit) throws MailboxException {
+        MailboxMapper mailboxMapper = mailboxMapperFactory.getMailboxMapper(session);
+
+        // Mailboxes are searched lazily, until enough distinct messages are found
+        Iterator<SearchResult> results = Iterators.concat(Iterators.transform(mailboxIds.iterator(),
+            Throwing.function((MailboxId mailboxId) -> searchResults(session, mailboxMapper.findMailboxById(mailboxId), searchQuery))
+                .sneakyThrow()::apply));
+
+        return ImmutableList.copyOf(Iterators.limit(
+            Iterators.filter(
+                Iterators.transform(results, searchResult -> searchResult.getMessageId().get()),
+                SearchUtil.distinct()::test),
+            Long.valueOf(limit).intValue()));
+    }
+
+    private Iterator<SearchResult> searchResults(MailboxSession session, Mailbox mailbox, SearchQuery searchQuery) throws MailboxException {
+        IndexedQuery query = IndexedQuery.compile(searchQuery);
+        MessageMapper mapper = getFactory().getMessageMapper(session);
+        MailboxIndex index = loadedIndex(mapper, mailbox);
+
+        List<IndexedQuery.Hit> hits = index.read(query::hits);
+        Set<MessageUid> verifiedUids = verify(mapper, mailbox, searchQuery, query, hits);
+        List<IndexedQuery.Hit> matchingHits = hits.stream()
+            .filter(hit -> hit.isDecided() || verifiedUids.contains(hit.getUid()))
+            .collect(Guavate.toImmutableList());
+
+        if (query.isSortedByIndex()) {
+            return Iterators.transform(matchingHits.iterator(),
+                hit -> new SearchResult(hit.getMessageId(), mailbox.getMailboxId(), hit.getUid()));
+        }
+        return sortedResults(mapper, mailbox, searchQuery, matchingHits);
+    }
+
+    private MailboxIndex loadedIndex(MessageMapper mapper, Mailbox mailbox) throws MailboxException {
+        MailboxIndex index = indexes.computeIfAbsent(mailbox.getMailboxId(), any -> new MailboxIndex());
+        try {
+            index.loadIfNeeded(() -> mapper.findInMailbox(mailbox, MessageRange.all(), FetchType.Headers, UNLIMITED));
+        } catch (MailboxException e) {
+            indexes.remove(mailbox.getMailboxId(), index);
+            throw e;
+        }
+        return index;
+    }
+
+    /**
+     * Matches the undecided hits against their messages.
+     *
+     * @return UIDs of the undecided hits that do match
+     */
+    private Set<MessageUid> verify(MessageMapper mapper, Mailbox mailbox, SearchQuery searchQuery, IndexedQuery query, List<IndexedQuery.Hit> hits) throws MailboxException {
+        Set<MessageUid> undecidedUids = hits.stream()
+            .filter(hit -> !hit.isDecided())
+            .map(IndexedQuery.Hit::getUid)
+            .collect(Guavate.toImmutableSet());
+        if (undecidedUids.isEmpty()) {
+            return ImmutableSet.of();
+        }
+
+        FetchType fetchType = query.getResidualFetchType().orElse(FetchType.Metadata);
+        Iterator<MailboxMessage> undecidedMessages = Iterators.filter(
+            fetch(mapper, mailbox, undecidedUids, fetchType),
+            message -> undecidedUids.contains(message.getUid()));
+        return ImmutableList.copyOf(new MessageSearches(undecidedMessages, searchQuery, textExtractor).iterator())
+            .stream()
+            .map(SearchResult::getMessageUid)
+            .collect(Guavate.toImmutableSet());
+    }
+
+    private Iterator<SearchResult> sortedResults(MessageMapper mapper, Mailbox mailbox, SearchQuery searchQuery, List<IndexedQuery.Hit> hits) throws MailboxException {
+        Set<MessageUid> uids = hits.stream()
+            .map(IndexedQuery.Hit::getUid)
+            .collect(Guavate.toImmutableSet());
+        if (uids.isEmpty()) {
+            return ImmutableList.<SearchResult>of().iterator();
+        }
+
+        return ImmutableList.copyOf(Iterators.filter(fetch(mapper, mailbox, uids, FetchType.Headers), message -> uids.contains(message.getUid())))
+            .stream()
+            .sorted(CombinedComparator.create(searchQuery.getSorts()))
+            .map(message -> new SearchResult(Optional.of(message.getMessageId()), mailbox.getMailboxId(), message.getUid()))
+            .iterator();
+    }
+
+    private Iterator<MailboxMessage> fetch(MessageMapper mapper, Mailbox mailbox, Collection<MessageUid> uids, FetchType fetchType) throws MailboxException {
+        List<MessageRange> ranges = MessageRange.toRanges(uids);
+        return Iterators.concat(Iterators.transform(ranges.iterator(),
+            Throwing.function((MessageRange range) -> mapper.findInMailbox(mailbox, range, fetchType, UNLIMITED)).sneakyThrow()::apply));
+    }
+
+    @Override
+    public void add(MailboxSession session, Mailbox mailbox, MailboxMessage message) throws MailboxException {
+        Optional<MailboxIndex> index = Optional.ofNullable(indexes.get(mailbox.getMailboxId()));
+        if (index.isPresent()) {
+            index.get().add(IndexedMessage.from(message));
+        }
+    }
+
+    @Override
+    public void delete(MailboxSession session, Mailbox mailbox, List<MessageUid> expungedUids) throws MailboxException {
+        Optional.ofNullable(indexes.get(mailbox.getMailboxId()))
+            .ifPresent(index -> index.delete(expungedUids));
+    }
+
+    @Override
+    public void deleteAll(MailboxSession session, Mailbox mailbox) throws MailboxException {
+        indexes.remove(mailbox.getMailboxId());
+    }
+
+    @Override
+    public void update(MailboxSession session, Mailbox mailbox, List<UpdatedFlags> updatedFlagsList) throws MailboxException {
+        Optional.ofNullable(indexes.get(mailbox.getMailboxId()))
+            .ifPresent(index -> index.update(updatedFlagsList));
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.james.mailbox.store.search;
 import java.util.List;
 import java.util.Optional;
 
+import org.apache.james.mailbox.BatchedMailboxListener;
 import org.apache.james.mailbox.Event;
 import org.apache.james.mailbox.MailboxListener;
 import org.apache.james.mailbox.MailboxSession;
@@ -28,6 +29,7 @@ import org.apache.james.mailbox.MessageUid;
 import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.event.EventBatches;
 import org.apache.james.mailbox.store.event.EventFactory;
 import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
 import org.apache.james.mailbox.store.mail.MessageMapperFactory;
@@ -36,13 +38,15 @@ import org.apache.james.mailbox.store.mail.model.MailboxMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.steveash.guavate.Guavate;
+
 /**
  * {@link MessageSearchIndex} which needs to get registered as global {@link MailboxListener} and so get
  * notified about message changes. This will then allow to update the underlying index.
- * 
  *
+ * Batches of flag updates or expunges of a mailbox are applied with a single index update.
  */
-public abstract class ListeningMessageSearchIndex implements MessageSearchIndex, MailboxListener {
+public abstract class ListeningMessageSearchIndex implements MessageSearchIndex, BatchedMailboxListener {
     private static final Logger LOGGER = LoggerFactory.getLogger(ListeningMessageSearchIndex.class);
 
     public static final int UNLIMITED = -1;
@@ -84,20 +88,10 @@ public abstract class ListeningMessageSearchIndex implements MessageSearchIndex,
                     }
                 } else if (event instanceof EventFactory.ExpungedImpl) {
                     EventFactory.ExpungedImpl expunged = (EventFactory.ExpungedImpl) event;
-                    try {
-                        delete(session, expunged.getMailbox(), expunged.getUids());
-                    } catch (MailboxException e) {
-                        LOGGER.error("Unable to deleted messages {} from index for mailbox {}", expunged.getUids(), expunged.getMailbox(), e);
-                    }
+                    deleteMessages(session, expunged.getMailbox(), expunged.getUids());
                 } else if (event instanceof EventFactory.FlagsUpdatedImpl) {
                     EventFactory.FlagsUpdatedImpl flagsUpdated = (EventFactory.FlagsUpdatedImpl) event;
-                    final Mailbox mailbox = flagsUpdated.getMailbox();
-
-                    try {
-                        update(session, mailbox, flagsUpdated.getUpdatedFlags());
-                    } catch (MailboxException e) {
-                        LOGGER.error("Unable to update flags in index for mailbox {}", mailbox, e);
-                    }
+                    updateFlags(session, flagsUpdated.getMailbox(), flagsUpdated.getUpdatedFlags());
                 }
             } else if (event instanceof EventFactory.MailboxDeletionImpl) {
                 deleteAll(session, ((EventFactory.MailboxDeletionImpl) event).getMailbox());
@@ -107,6 +101,44 @@ public abstract class ListeningMessageSearchIndex implements MessageSearchIndex,
         }
     }
 
+    @Override
+    public void events(List<Event> events) {
+        for (List<Event> batch : EventBatches.coalesce(events)) {
+            Event firstEvent = batch.get(0);
+            if (batch.size() > 1 && firstEvent instanceof EventFactory.ExpungedImpl) {
+                deleteMessages(firstEvent.getSession(),
+                    ((EventFactory.ExpungedImpl) firstEvent).getMailbox(),
+                    batch.stream()
+                        .flatMap(event -> ((EventFactory.ExpungedImpl) event).getUids().stream())
+                        .collect(Guavate.toImmutableList()));
+            } else if (batch.size() > 1 && firstEvent instanceof EventFactory.FlagsUpdatedImpl) {
+                updateFlags(firstEvent.getSession(),
+                    ((EventFactory.FlagsUpdatedImpl) firstEvent).getMailbox(),
+                    batch.stream()
+                        .flatMap(event -> ((EventFactory.FlagsUpdatedImpl) event).getUpdatedFlags().stream())
+                        .collect(Guavate.toImmutableList()));
+            } else {
+                batch.forEach(this::event);
+            }
+        }
+    }
+
+    private void deleteMessages(MailboxSession session, Mailbox mailbox, List<MessageUid> expungedUids) {
+        try {
+            delete(session, mailbox, expungedUids);
+        } catch (MailboxException e) {
+            LOGGER.error("Unable to deleted messages {} from index for mailbox {}", expungedUids, mailbox, e);
+        }
+    }
+
+    private void updateFlags(MailboxSession session, Mailbox mailbox, List<UpdatedFlags> updatedFlagsList) {
+        try {
+            update(session, mailbox, updatedFlagsList);
+        } catch (MailboxException e) {
+            LOGGER.error("Unable to update flags in index for mailbox {}", mailbox, e);
+        }
+    }
+
     private Optional<MailboxMessage> retrieveMailboxMessage(MailboxSession session, EventFactory.AddedImpl added, Mailbox mailbox, MessageUid next) {
         Optional<MailboxMessage> firstChoice = Optional.ofNullable(added.getAvailableMessages().get(next));
         if (firstChoice.isPresent()) {
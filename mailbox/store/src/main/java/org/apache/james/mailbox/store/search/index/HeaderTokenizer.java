@@ -0,0 +1,77 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.search.index;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Splits header values into upper cased tokens made of letters and digits.
+ *
+ * Values are upper cased the same way {@link org.apache.james.mailbox.store.search.MessageSearches} does before
+ * matching them, so that a searched text made only of letters and digits is contained in a header value if and only if
+ * it is contained in one of its tokens.
+ */
+public class HeaderTokenizer {
+
+    public static String normalize(String value) {
+        return value.toUpperCase(Locale.US);
+    }
+
+    public static List<String> tokenize(String normalizedValue) {
+        ImmutableList.Builder<String> tokens = ImmutableList.builder();
+        int start = -1;
+        for (int i = 0; i < normalizedValue.length(); i++) {
+            boolean tokenChar = Character.isLetterOrDigit(normalizedValue.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.add(normalizedValue.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(normalizedValue.substring(start));
+        }
+        return tokens.build();
+    }
+
+    public static boolean isSingleToken(String normalizedValue) {
+        if (normalizedValue.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < normalizedValue.length(); i++) {
+            if (!Character.isLetterOrDigit(normalizedValue.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean startsWithToken(String normalizedValue) {
+        return !normalizedValue.isEmpty() && Character.isLetterOrDigit(normalizedValue.charAt(0));
+    }
+
+    public static boolean endsWithToken(String normalizedValue) {
+        return !normalizedValue.isEmpty() && Character.isLetterOrDigit(normalizedValue.charAt(normalizedValue.length() - 1));
+    }
+}
@@ -0,0 +1,136 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.search.index;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MessageId;
+import org.apache.james.mailbox.model.MessageResult.Header;
+import org.apache.james.mailbox.store.ResultUtils;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.apache.james.mime4j.util.MimeUtil;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+
+/**
+ * The part of a {@link MailboxMessage} kept by a {@link MailboxIndex}.
+ */
+public class IndexedMessage {
+
+    public static IndexedMessage from(MailboxMessage message) throws MailboxException {
+        boolean hasAttachment = message.getProperties()
+            .stream()
+            .anyMatch(PropertyBuilder.isHasAttachmentProperty());
+
+        return new IndexedMessage(message.getUid(),
+            Optional.ofNullable(message.getMessageId()),
+            message.getInternalDate().getTime(),
+            message.getFullContentOctets(),
+            message.getModSeq(),
+            message.createFlags(),
+            hasAttachment,
+            indexedHeaders(message));
+    }
+
+    private static ListMultimap<String, String> indexedHeaders(MailboxMessage message) throws MailboxException {
+        try {
+            ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+            for (Header header : ResultUtils.createHeaders(message)) {
+                String name = header.getName().toLowerCase(Locale.US);
+                if (MailboxIndex.INDEXED_HEADERS.contains(name)) {
+                    String value = Optional.ofNullable(MimeUtil.unscrambleHeaderValue(header.getValue())).orElse("");
+                    headers.put(name, HeaderTokenizer.normalize(value));
+                }
+            }
+            return headers.build();
+        } catch (IOException e) {
+            throw new MailboxException("Unable to read headers of message " + message.getUid(), e);
+        }
+    }
+
+    private final MessageUid uid;
+    private final Optional<MessageId> messageId;
+    private final long internalDate;
+    private final long size;
+    private final long modSeq;
+    private final Flags flags;
+    private final boolean hasAttachment;
+    private final ListMultimap<String, String> headers;
+
+    IndexedMessage(MessageUid uid, Optional<MessageId> messageId, long internalDate, long size, long modSeq,
+                   Flags flags, boolean hasAttachment, ListMultimap<String, String> headers) {
+        this.uid = uid;
+        this.messageId = messageId;
+        this.internalDate = internalDate;
+        this.size = size;
+        this.modSeq = modSeq;
+        this.flags = flags;
+        this.hasAttachment = hasAttachment;
+        this.headers = headers;
+    }
+
+    public MessageUid getUid() {
+        return uid;
+    }
+
+    public Optional<MessageId> getMessageId() {
+        return messageId;
+    }
+
+    public long getInternalDate() {
+        return internalDate;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getModSeq() {
+        return modSeq;
+    }
+
+    public Flags getFlags() {
+        return flags;
+    }
+
+    public boolean hasAttachment() {
+        return hasAttachment;
+    }
+
+    /**
+     * @return the normalized values of the indexed headers, by lower cased header name
+     */
+    public ListMultimap<String, String> getHeaders() {
+        return headers;
+    }
+
+    List<String> getHeaderValues(String name) {
+        return headers.get(name);
+    }
+}
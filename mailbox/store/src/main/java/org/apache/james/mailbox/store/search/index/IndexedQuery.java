@@ -0,0 +1,560 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.search.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TimeZone;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.UnsupportedSearchException;
+import org.apache.james.mailbox.model.MessageId;
+import org.apache.james.mailbox.model.SearchQuery;
+import org.apache.james.mailbox.model.SearchQuery.Criterion;
+import org.apache.james.mailbox.model.SearchQuery.DateResolution;
+import org.apache.james.mailbox.model.SearchQuery.Sort;
+import org.apache.james.mailbox.model.SearchQuery.Sort.SortClause;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
+
+import com.github.steveash.guavate.Guavate;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A {@link SearchQuery} compiled once against the columns of a {@link MailboxIndex}.
+ *
+ * Evaluating it yields the documents known to match, and the candidate documents that might match. The later need to be
+ * checked against the actual messages, which are to be fetched with {@link #getResidualFetchType()}: this is the case
+ * for full text criteria, or header criteria the index can only narrow down.
+ */
+public class IndexedQuery {
+
+    /**
+     * Documents matching a criterion: matches are certain, candidates include the matches and the documents that could
+     * not be decided from the index.
+     */
+    public static class Evaluation {
+        private final BitSet matches;
+        private final BitSet candidates;
+
+        Evaluation(BitSet matches, BitSet candidates) {
+            this.matches = matches;
+            this.candidates = candidates;
+        }
+
+        static Evaluation exact(BitSet matches) {
+            return new Evaluation(matches, matches);
+        }
+
+        public BitSet getMatches() {
+            return matches;
+        }
+
+        public BitSet getCandidates() {
+            return candidates;
+        }
+
+        /**
+         * @return the candidates that still need to be checked against the messages
+         */
+        public BitSet getUndecided() {
+            BitSet undecided = (BitSet) candidates.clone();
+            undecided.andNot(matches);
+            return undecided;
+        }
+
+        public boolean isExact() {
+            return matches.equals(candidates);
+        }
+    }
+
+    /**
+     * A candidate document, resolved to its message.
+     */
+    public static class Hit {
+        private final MessageUid uid;
+        private final Optional<MessageId> messageId;
+        private final boolean decided;
+
+        Hit(MessageUid uid, Optional<MessageId> messageId, boolean decided) {
+            this.uid = uid;
+            this.messageId = messageId;
+            this.decided = decided;
+        }
+
+        public MessageUid getUid() {
+            return uid;
+        }
+
+        public Optional<MessageId> getMessageId() {
+            return messageId;
+        }
+
+        /**
+         * @return true if this message is known to match, false if it needs to be checked against the actual message
+         */
+        public boolean isDecided() {
+            return decided;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Node {
+        Evaluation evaluate(MailboxIndex index);
+    }
+
+    private static final ImmutableSet<SortClause> INDEXED_SORT_CLAUSES = ImmutableSet.of(SortClause.Uid, SortClause.Arrival, SortClause.Size);
+
+    public static IndexedQuery compile(SearchQuery query) throws UnsupportedSearchException {
+        Compiler compiler = new Compiler(query);
+        Node root = compiler.and(query.getCriterias());
+        return new IndexedQuery(root, compiler.residualFetchType, query.getSorts());
+    }
+
+    private final Node root;
+    private final Optional<FetchType> residualFetchType;
+    private final List<Sort> sorts;
+    private final boolean sortedByIndex;
+
+    private IndexedQuery(Node root, Optional<FetchType> residualFetchType, List<Sort> sorts) {
+        this.root = root;
+        this.residualFetchType = residualFetchType;
+        this.sorts = ImmutableList.copyOf(sorts);
+        this.sortedByIndex = sorts.stream()
+            .allMatch(sort -> INDEXED_SORT_CLAUSES.contains(sort.getSortClause()));
+    }
+
+    /**
+     * To be called from {@link MailboxIndex#read(Function)}
+     */
+    public Evaluation evaluate(MailboxIndex index) {
+        return root.evaluate(index);
+    }
+
+    /**
+     * Resolves the candidate documents to their messages, to be called from
+     * {@link MailboxIndex#read(Function)}
+     *
+     * @return the hits, ordered as requested by the query if {@link #isSortedByIndex()}, by UID otherwise
+     */
+    public List<Hit> hits(MailboxIndex index) {
+        Evaluation evaluation = evaluate(index);
+        BitSet candidates = evaluation.getCandidates();
+        return orderedDocs(index, candidates)
+            .mapToObj(doc -> new Hit(MessageUid.of(index.uid(doc)), index.messageId(doc), evaluation.getMatches().get(doc)))
+            .collect(Guavate.toImmutableList());
+    }
+
+    private IntStream orderedDocs(MailboxIndex index, BitSet docs) {
+        if (!sortedByIndex || sorts.stream().allMatch(sort -> sort.getSortClause() == SortClause.Uid && !sort.isReverse())) {
+            return docs.stream();
+        }
+        Sort firstSort = sorts.get(0);
+        if (sorts.size() == 1 && !firstSort.isReverse() && firstSort.getSortClause() == SortClause.Arrival) {
+            return Arrays.stream(index.docsByInternalDate()).filter(docs::get);
+        }
+        if (sorts.size() == 1 && !firstSort.isReverse() && firstSort.getSortClause() == SortClause.Size) {
+            return Arrays.stream(index.docsBySize()).filter(docs::get);
+        }
+        // Documents are streamed in UID order, and the sort is stable: ties are ordered by UID, as MessageSearches does
+        return docs.stream()
+            .boxed()
+            .sorted(docComparator(index))
+            .mapToInt(Integer::intValue);
+    }
+
+    private Comparator<Integer> docComparator(MailboxIndex index) {
+        return sorts.stream()
+            .map(sort -> {
+                Comparator<Integer> comparator = Comparator.comparingLong(doc -> sortValue(index, sort.getSortClause(), doc));
+                if (sort.isReverse()) {
+                    return comparator.reversed();
+                }
+                return comparator;
+            })
+            .reduce(Comparator::thenComparing)
+            .orElse((doc1, doc2) -> 0);
+    }
+
+    private long sortValue(MailboxIndex index, SortClause sortClause, int doc) {
+        switch (sortClause) {
+            case Arrival:
+                return index.internalDate(doc);
+            case Size:
+                return index.size(doc);
+            default:
+                return index.uid(doc);
+        }
+    }
+
+    /**
+     * @return true if hits are ordered by the index, false if they need to be sorted against the actual messages
+     */
+    public boolean isSortedByIndex() {
+        return sortedByIndex;
+    }
+
+    /**
+     * @return the fetch type needed to check undecided candidates, empty if the index decides every criterion
+     */
+    public Optional<FetchType> getResidualFetchType() {
+        return residualFetchType;
+    }
+
+    private static class Compiler {
+        private final SearchQuery query;
+        private Optional<FetchType> residualFetchType;
+
+        Compiler(SearchQuery query) {
+            this.query = query;
+            this.residualFetchType = Optional.empty();
+        }
+
+        private Node and(List<Criterion> criteria) throws UnsupportedSearchException {
+            List<Node> nodes = compileAll(criteria);
+            return index -> {
+                BitSet matches = (BitSet) index.live().clone();
+                BitSet candidates = (BitSet) index.live().clone();
+                for (Node node : nodes) {
+                    Evaluation evaluation = node.evaluate(index);
+                    matches.and(evaluation.getMatches());
+                    candidates.and(evaluation.getCandidates());
+                }
+                return new Evaluation(matches, candidates);
+            };
+        }
+
+        private Node or(List<Criterion> criteria) throws UnsupportedSearchException {
+            List<Node> nodes = compileAll(criteria);
+            return index -> {
+                BitSet matches = new BitSet();
+                BitSet candidates = new BitSet();
+                for (Node node : nodes) {
+                    Evaluation evaluation = node.evaluate(index);
+                    matches.or(evaluation.getMatches());
+                    candidates.or(evaluation.getCandidates());
+                }
+                return new Evaluation(matches, candidates);
+            };
+        }
+
+        private Node nor(List<Criterion> criteria) throws UnsupportedSearchException {
+            Node or = or(criteria);
+            return index -> {
+                Evaluation evaluation = or.evaluate(index);
+                return new Evaluation(complement(index, evaluation.getCandidates()), complement(index, evaluation.getMatches()));
+            };
+        }
+
+        private List<Node> compileAll(List<Criterion> criteria) throws UnsupportedSearchException {
+            ImmutableList.Builder<Node> nodes = ImmutableList.builder();
+            for (Criterion criterion : criteria) {
+                nodes.add(compile(criterion));
+            }
+            return nodes.build();
+        }
+
+        private Node compile(Criterion criterion) throws UnsupportedSearchException {
+            if (criterion instanceof SearchQuery.InternalDateCriterion) {
+                return internalDate(((SearchQuery.InternalDateCriterion) criterion).getOperator());
+            } else if (criterion instanceof SearchQuery.SizeCriterion) {
+                SearchQuery.NumericOperator operator = ((SearchQuery.SizeCriterion) criterion).getOperator();
+                return numeric(operator, MailboxIndex::size);
+            } else if (criterion instanceof SearchQuery.ModSeqCriterion) {
+                SearchQuery.NumericOperator operator = ((SearchQuery.ModSeqCriterion) criterion).getOperator();
+                return numeric(operator, MailboxIndex::modSeq);
+            } else if (criterion instanceof SearchQuery.HeaderCriterion) {
+                return header((SearchQuery.HeaderCriterion) criterion);
+            } else if (criterion instanceof SearchQuery.MimeMessageIDCriterion) {
+                return header(((SearchQuery.MimeMessageIDCriterion) criterion).asHeaderCriterion());
+            } else if (criterion instanceof SearchQuery.UidCriterion) {
+                return uid((SearchQuery.UidCriterion) criterion);
+            } else if (criterion instanceof SearchQuery.FlagCriterion) {
+                return flag((SearchQuery.FlagCriterion) criterion);
+            } else if (criterion instanceof SearchQuery.CustomFlagCriterion) {
+                return customFlag((SearchQuery.CustomFlagCriterion) criterion);
+            } else if (criterion instanceof SearchQuery.AttachmentCriterion) {
+                boolean isSet = ((SearchQuery.AttachmentCriterion) criterion).getOperator().isSet();
+                return index -> Evaluation.exact(booleanColumn(index, index.hasAttachment(), isSet));
+            } else if (criterion instanceof SearchQuery.TextCriterion) {
+                return undecided(FetchType.Full);
+            } else if (criterion instanceof SearchQuery.AllCriterion) {
+                return index -> Evaluation.exact((BitSet) index.live().clone());
+            } else if (criterion instanceof SearchQuery.ConjunctionCriterion) {
+                SearchQuery.ConjunctionCriterion conjunction = (SearchQuery.ConjunctionCriterion) criterion;
+                switch (conjunction.getType()) {
+                    case AND:
+                        return and(conjunction.getCriteria());
+                    case OR:
+                        return or(conjunction.getCriteria());
+                    case NOR:
+                        return nor(conjunction.getCriteria());
+                    default:
+                        return index -> Evaluation.exact(new BitSet());
+                }
+            }
+            throw new UnsupportedSearchException();
+        }
+
+        private Node undecided(FetchType fetchType) {
+            requireResidualFetch(fetchType);
+            return index -> new Evaluation(new BitSet(), (BitSet) index.live().clone());
+        }
+
+        private Node narrowed(FetchType fetchType, Function<MailboxIndex, BitSet> candidates) {
+            requireResidualFetch(fetchType);
+            return index -> new Evaluation(new BitSet(), candidates.apply(index));
+        }
+
+        private void requireResidualFetch(FetchType fetchType) {
+            if (!residualFetchType.isPresent() || residualFetchType.get().ordinal() < fetchType.ordinal()) {
+                residualFetchType = Optional.of(fetchType);
+            }
+        }
+
+        private Node numeric(SearchQuery.NumericOperator operator, ColumnReader column) throws UnsupportedSearchException {
+            long value = operator.getValue();
+            switch (operator.getType()) {
+                case LESS_THAN:
+                    return index -> Evaluation.exact(scan(index, column, columnValue -> columnValue < value));
+                case GREATER_THAN:
+                    return index -> Evaluation.exact(scan(index, column, columnValue -> columnValue > value));
+                case EQUALS:
+                    return index -> Evaluation.exact(scan(index, column, columnValue -> columnValue == value));
+                default:
+                    throw new UnsupportedSearchException();
+            }
+        }
+
+        private Node internalDate(SearchQuery.DateOperator operator) throws UnsupportedSearchException {
+            Optional<int[]> calendarField = bucketField(operator.getDateResultion());
+            if (!calendarField.isPresent()) {
+                // Finer resolutions rely on a 12 hours clock formatting, that does not map to time ranges
+                return undecided(FetchType.Metadata);
+            }
+            long start = bucketStart(operator.getDate().getTime(), calendarField.get());
+            long end = bucketEnd(start, calendarField.get()[0]);
+            switch (operator.getType()) {
+                case ON:
+                    return index -> Evaluation.exact(scan(index, MailboxIndex::internalDate, date -> date >= start && date < end));
+                case BEFORE:
+                    return index -> Evaluation.exact(scan(index, MailboxIndex::internalDate, date -> date < start));
+                case AFTER:
+                    return index -> Evaluation.exact(scan(index, MailboxIndex::internalDate, date -> date >= end));
+                default:
+                    throw new UnsupportedSearchException();
+            }
+        }
+
+        private Optional<int[]> bucketField(DateResolution resolution) {
+            switch (resolution) {
+                case Year:
+                    return Optional.of(new int[] {Calendar.YEAR, Calendar.MONTH, Calendar.DAY_OF_MONTH});
+                case Month:
+                    return Optional.of(new int[] {Calendar.MONTH, Calendar.DAY_OF_MONTH});
+                case Day:
+                    return Optional.of(new int[] {Calendar.DAY_OF_MONTH});
+                default:
+                    return Optional.empty();
+            }
+        }
+
+        private long bucketStart(long time, int[] fields) {
+            Calendar calendar = gmtCalendar(time);
+            for (int i = 1; i < fields.length; i++) {
+                calendar.set(fields[i], calendar.getActualMinimum(fields[i]));
+            }
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            return calendar.getTimeInMillis();
+        }
+
+        private long bucketEnd(long start, int field) {
+            Calendar calendar = gmtCalendar(start);
+            calendar.add(field, 1);
+            return calendar.getTimeInMillis();
+        }
+
+        private Calendar gmtCalendar(long time) {
+            Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"), Locale.ENGLISH);
+            calendar.setTimeInMillis(time);
+            return calendar;
+        }
+
+        private Node uid(SearchQuery.UidCriterion criterion) {
+            SearchQuery.UidRange[] ranges = criterion.getOperator().getRange();
+            return index -> {
+                BitSet result = new BitSet();
+                for (SearchQuery.UidRange range : ranges) {
+                    result.or(index.docsInUidRange(range.getLowValue().asLong(), range.getHighValue().asLong()));
+                }
+                return Evaluation.exact(result);
+            };
+        }
+
+        private Node flag(SearchQuery.FlagCriterion criterion) {
+            boolean isSet = criterion.getOperator().isSet();
+            Flags.Flag flag = criterion.getFlag();
+            if (flag == Flags.Flag.RECENT) {
+                List<MessageUid> recentUids = ImmutableList.copyOf(query.getRecentMessageUids());
+                return index -> {
+                    BitSet recent = new BitSet();
+                    recentUids.forEach(uid -> index.liveDoc(uid).ifPresent(recent::set));
+                    return Evaluation.exact(booleanColumn(index, recent, isSet));
+                };
+            }
+            if (MailboxIndex.INDEXED_SYSTEM_FLAGS.contains(flag)) {
+                return index -> Evaluation.exact(booleanColumn(index, index.systemFlag(flag), isSet));
+            }
+            return index -> Evaluation.exact(new BitSet());
+        }
+
+        private Node customFlag(SearchQuery.CustomFlagCriterion criterion) {
+            boolean isSet = criterion.getOperator().isSet();
+            String flag = criterion.getFlag();
+            return index -> Evaluation.exact(booleanColumn(index, index.userFlag(flag).orElse(new BitSet()), isSet));
+        }
+
+        private Node header(SearchQuery.HeaderCriterion criterion) throws UnsupportedSearchException {
+            String headerName = criterion.getHeaderName().toLowerCase(Locale.US);
+            SearchQuery.HeaderOperator operator = criterion.getOperator();
+            boolean indexed = MailboxIndex.INDEXED_HEADERS.contains(headerName);
+
+            if (operator instanceof SearchQuery.ExistsOperator) {
+                if (indexed) {
+                    return index -> Evaluation.exact(presence(index, headerName));
+                }
+                return undecided(FetchType.Headers);
+            } else if (operator instanceof SearchQuery.ContainsOperator) {
+                if (indexed) {
+                    return contains(headerName, HeaderTokenizer.normalize(((SearchQuery.ContainsOperator) operator).getValue()));
+                }
+                return undecided(FetchType.Headers);
+            } else if (operator instanceof SearchQuery.AddressOperator || operator instanceof SearchQuery.DateOperator) {
+                if (indexed) {
+                    return narrowed(FetchType.Headers, index -> presence(index, headerName));
+                }
+                return undecided(FetchType.Headers);
+            }
+            throw new UnsupportedSearchException();
+        }
+
+        private Node contains(String headerName, String text) {
+            if (text.isEmpty()) {
+                return index -> Evaluation.exact(presence(index, headerName));
+            }
+            if (HeaderTokenizer.isSingleToken(text)) {
+                // An alphanumeric text is contained in a value if and only if it is contained in one of its tokens
+                return index -> Evaluation.exact(postings(index, headerName, key -> key.contains(text)));
+            }
+
+            List<String> tokens = HeaderTokenizer.tokenize(text);
+            boolean startsWithToken = HeaderTokenizer.startsWithToken(text);
+            boolean endsWithToken = HeaderTokenizer.endsWithToken(text);
+            return narrowed(FetchType.Headers, index -> {
+                BitSet candidates = presence(index, headerName);
+                for (int i = 0; i < tokens.size(); i++) {
+                    String token = tokens.get(i);
+                    boolean leftBounded = i > 0 || !startsWithToken;
+                    boolean rightBounded = i < tokens.size() - 1 || !endsWithToken;
+                    candidates.and(postings(index, headerName, tokenMatcher(token, leftBounded, rightBounded)));
+                }
+                return candidates;
+            });
+        }
+
+        private Predicate<String> tokenMatcher(String token, boolean leftBounded, boolean rightBounded) {
+            if (leftBounded && rightBounded) {
+                return token::equals;
+            } else if (leftBounded) {
+                return key -> key.startsWith(token);
+            } else if (rightBounded) {
+                return key -> key.endsWith(token);
+            }
+            return key -> key.contains(token);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        long read(MailboxIndex index, int doc);
+    }
+
+    private static BitSet scan(MailboxIndex index, ColumnReader column, LongPredicate predicate) {
+        BitSet result = new BitSet();
+        BitSet live = index.live();
+        for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+            if (predicate.test(column.read(index, doc))) {
+                result.set(doc);
+            }
+        }
+        return result;
+    }
+
+    private static BitSet booleanColumn(MailboxIndex index, BitSet column, boolean isSet) {
+        if (isSet) {
+            BitSet result = (BitSet) column.clone();
+            result.and(index.live());
+            return result;
+        }
+        return complement(index, column);
+    }
+
+    private static BitSet complement(MailboxIndex index, BitSet bitSet) {
+        BitSet result = (BitSet) index.live().clone();
+        result.andNot(bitSet);
+        return result;
+    }
+
+    private static BitSet presence(MailboxIndex index, String headerName) {
+        BitSet result = index.headerPresence(headerName)
+            .map(bitSet -> (BitSet) bitSet.clone())
+            .orElse(new BitSet());
+        result.and(index.live());
+        return result;
+    }
+
+    private static BitSet postings(MailboxIndex index, String headerName, Predicate<String> keyMatcher) {
+        NavigableMap<String, BitSet> dictionary = index.headerTokens(headerName);
+        BitSet result = new BitSet();
+        for (Map.Entry<String, BitSet> entry : dictionary.entrySet()) {
+            if (keyMatcher.test(entry.getKey())) {
+                result.or(entry.getValue());
+            }
+        }
+        result.and(index.live());
+        return result;
+    }
+}
@@ -0,0 +1,475 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.search.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MessageId;
+import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * In memory, column oriented index of the messages of a mailbox.
+ *
+ * Each message is given a document number, allocated in UID order. Dates, sizes, modseqs and UIDs are held in
+ * primitive columns, flags in bitmaps, and the values of a few commonly searched headers in a per header token
+ * dictionary. Expunged documents are only unset from the live bitmap, and the index is compacted once they outnumber
+ * live ones: header postings of expunged documents are only dropped by compaction, so lookups need to be intersected
+ * with the live bitmap.
+ *
+ * Updates received while the index is being loaded are queued, then applied on top of the loaded messages.
+ */
+public class MailboxIndex {
+
+    @FunctionalInterface
+    public interface MessageLoader {
+        Iterator<MailboxMessage> load() throws MailboxException;
+    }
+
+    public static final ImmutableSet<String> INDEXED_HEADERS = ImmutableSet.of(
+        "from", "sender", "reply-to", "to", "cc", "bcc", "subject", "message-id", "in-reply-to", "references");
+    public static final ImmutableList<Flags.Flag> INDEXED_SYSTEM_FLAGS = ImmutableList.of(
+        Flags.Flag.ANSWERED, Flags.Flag.DELETED, Flags.Flag.DRAFT, Flags.Flag.FLAGGED, Flags.Flag.SEEN);
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MINIMUM_DELETED_FOR_COMPACTION = 64;
+
+    private final ReadWriteLock lock;
+    private final Object loadingLock;
+    private final List<Consumer<MailboxIndex>> pendingUpdates;
+    private volatile boolean loaded;
+
+    private int docCount;
+    private long[] uids;
+    private long[] internalDates;
+    private long[] sizes;
+    private long[] modSeqs;
+    private MessageId[] messageIds;
+    private BitSet live;
+    private BitSet hasAttachment;
+    private Map<Flags.Flag, BitSet> systemFlags;
+    private Map<String, BitSet> userFlags;
+    private Map<String, BitSet> headerPresence;
+    private Map<String, TreeMap<String, BitSet>> headerTokens;
+
+    private volatile int[] docsByInternalDate;
+    private volatile int[] docsBySize;
+
+    public MailboxIndex() {
+        this.lock = new ReentrantReadWriteLock();
+        this.loadingLock = new Object();
+        this.pendingUpdates = new ArrayList<>();
+        this.loaded = false;
+        reset(INITIAL_CAPACITY);
+    }
+
+    private void reset(int capacity) {
+        docCount = 0;
+        uids = new long[capacity];
+        internalDates = new long[capacity];
+        sizes = new long[capacity];
+        modSeqs = new long[capacity];
+        messageIds = new MessageId[capacity];
+        live = new BitSet();
+        hasAttachment = new BitSet();
+        systemFlags = new HashMap<>();
+        INDEXED_SYSTEM_FLAGS.forEach(flag -> systemFlags.put(flag, new BitSet()));
+        userFlags = new HashMap<>();
+        headerPresence = new HashMap<>();
+        headerTokens = new HashMap<>();
+        invalidateSortedColumns();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Loads the messages of the mailbox, unless already done. Concurrent callers wait for the loading to complete.
+     */
+    public void loadIfNeeded(MessageLoader loader) throws MailboxException {
+        if (loaded) {
+            return;
+        }
+        synchronized (loadingLock) {
+            if (loaded) {
+                return;
+            }
+            List<IndexedMessage> messages = new ArrayList<>();
+            Iterator<MailboxMessage> iterator = loader.load();
+            while (iterator.hasNext()) {
+                messages.add(IndexedMessage.from(iterator.next()));
+            }
+            messages.sort(Comparator.comparing(IndexedMessage::getUid));
+
+            lock.writeLock().lock();
+            try {
+                messages.forEach(this::insert);
+                pendingUpdates.forEach(update -> update.accept(this));
+                pendingUpdates.clear();
+                loaded = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void add(IndexedMessage message) {
+        write(index -> index.insert(message));
+    }
+
+    public void delete(Collection<MessageUid> expungedUids) {
+        write(index -> index.remove(expungedUids));
+    }
+
+    public void update(List<UpdatedFlags> updatedFlagsList) {
+        write(index -> updatedFlagsList.forEach(index::updateFlags));
+    }
+
+    /**
+     * Runs the given reader while holding the read lock. The reader should not keep references to the mutable
+     * structures of the index.
+     */
+    public <T> T read(Function<MailboxIndex, T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.apply(this);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Consumer<MailboxIndex> update) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                update.accept(this);
+            } else {
+                pendingUpdates.add(update);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(IndexedMessage message) {
+        long uid = message.getUid().asLong();
+        int existingDoc = findDoc(uid);
+        if (existingDoc >= 0) {
+            clearDoc(existingDoc);
+            setDoc(existingDoc, message);
+            return;
+        }
+        boolean outOfOrder = docCount > 0 && uids[docCount - 1] > uid;
+        ensureCapacity(docCount + 1);
+        int doc = docCount++;
+        uids[doc] = uid;
+        setDoc(doc, message);
+        if (outOfOrder) {
+            compact();
+        }
+    }
+
+    private void setDoc(int doc, IndexedMessage message) {
+        live.set(doc);
+        internalDates[doc] = message.getInternalDate();
+        sizes[doc] = message.getSize();
+        modSeqs[doc] = message.getModSeq();
+        messageIds[doc] = message.getMessageId().orElse(null);
+        hasAttachment.set(doc, message.hasAttachment());
+        setFlags(doc, message.getFlags());
+        message.getHeaders().forEach((name, value) -> {
+            headerPresence.computeIfAbsent(name, any -> new BitSet()).set(doc);
+            TreeMap<String, BitSet> dictionary = headerTokens.computeIfAbsent(name, any -> new TreeMap<>());
+            HeaderTokenizer.tokenize(value)
+                .forEach(token -> dictionary.computeIfAbsent(token, any -> new BitSet()).set(doc));
+        });
+        invalidateSortedColumns();
+    }
+
+    private void clearDoc(int doc) {
+        live.clear(doc);
+        hasAttachment.clear(doc);
+        systemFlags.values().forEach(bitSet -> bitSet.clear(doc));
+        userFlags.values().forEach(bitSet -> bitSet.clear(doc));
+        messageIds[doc] = null;
+        invalidateSortedColumns();
+    }
+
+    private void setFlags(int doc, Flags flags) {
+        INDEXED_SYSTEM_FLAGS.forEach(flag -> systemFlags.get(flag).set(doc, flags.contains(flag)));
+        userFlags.values().forEach(bitSet -> bitSet.clear(doc));
+        for (String userFlag : flags.getUserFlags()) {
+            userFlags.computeIfAbsent(userFlag, any -> new BitSet()).set(doc);
+        }
+    }
+
+    private void remove(Collection<MessageUid> expungedUids) {
+        for (MessageUid uid : expungedUids) {
+            int doc = findDoc(uid.asLong());
+            if (doc >= 0 && live.get(doc)) {
+                clearDoc(doc);
+            }
+        }
+        int deletedCount = docCount - live.cardinality();
+        if (deletedCount >= MINIMUM_DELETED_FOR_COMPACTION && deletedCount > docCount / 2) {
+            compact();
+        }
+    }
+
+    private void updateFlags(UpdatedFlags updatedFlags) {
+        int doc = findDoc(updatedFlags.getUid().asLong());
+        if (doc >= 0 && live.get(doc)) {
+            setFlags(doc, updatedFlags.getNewFlags());
+            modSeqs[doc] = updatedFlags.getModSeq();
+        }
+    }
+
+    /**
+     * Renumbers live documents in UID order, dropping expunged ones.
+     */
+    @VisibleForTesting
+    void compact() {
+        int[] liveDocs = live.stream()
+            .boxed()
+            .sorted(Comparator.comparingLong(doc -> uids[doc]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+        int[] newDocs = new int[docCount];
+        Arrays.fill(newDocs, -1);
+        for (int i = 0; i < liveDocs.length; i++) {
+            newDocs[liveDocs[i]] = i;
+        }
+
+        int capacity = Math.max(INITIAL_CAPACITY, liveDocs.length);
+        uids = remap(uids, liveDocs, capacity);
+        internalDates = remap(internalDates, liveDocs, capacity);
+        sizes = remap(sizes, liveDocs, capacity);
+        modSeqs = remap(modSeqs, liveDocs, capacity);
+        MessageId[] newMessageIds = new MessageId[capacity];
+        for (int i = 0; i < liveDocs.length; i++) {
+            newMessageIds[i] = messageIds[liveDocs[i]];
+        }
+        messageIds = newMessageIds;
+        docCount = liveDocs.length;
+
+        live = remap(live, newDocs);
+        hasAttachment = remap(hasAttachment, newDocs);
+        systemFlags.replaceAll((flag, bitSet) -> remap(bitSet, newDocs));
+        userFlags = remapAndPrune(userFlags, newDocs);
+        headerPresence = remapAndPrune(headerPresence, newDocs);
+        Map<String, TreeMap<String, BitSet>> newHeaderTokens = new HashMap<>();
+        headerTokens.forEach((name, dictionary) -> {
+            TreeMap<String, BitSet> newDictionary = new TreeMap<>(remapAndPrune(dictionary, newDocs));
+            if (!newDictionary.isEmpty()) {
+                newHeaderTokens.put(name, newDictionary);
+            }
+        });
+        headerTokens = newHeaderTokens;
+        invalidateSortedColumns();
+    }
+
+    private static long[] remap(long[] column, int[] liveDocs, int capacity) {
+        long[] result = new long[capacity];
+        for (int i = 0; i < liveDocs.length; i++) {
+            result[i] = column[liveDocs[i]];
+        }
+        return result;
+    }
+
+    private static BitSet remap(BitSet bitSet, int[] newDocs) {
+        BitSet result = new BitSet();
+        bitSet.stream()
+            .filter(doc -> doc < newDocs.length && newDocs[doc] >= 0)
+            .forEach(doc -> result.set(newDocs[doc]));
+        return result;
+    }
+
+    private static Map<String, BitSet> remapAndPrune(Map<String, BitSet> bitSets, int[] newDocs) {
+        Map<String, BitSet> result = new HashMap<>();
+        bitSets.forEach((key, bitSet) -> {
+            BitSet remapped = remap(bitSet, newDocs);
+            if (!remapped.isEmpty()) {
+                result.put(key, remapped);
+            }
+        });
+        return result;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > uids.length) {
+            int newCapacity = Math.max(capacity, uids.length + (uids.length >> 1));
+            uids = Arrays.copyOf(uids, newCapacity);
+            internalDates = Arrays.copyOf(internalDates, newCapacity);
+            sizes = Arrays.copyOf(sizes, newCapacity);
+            modSeqs = Arrays.copyOf(modSeqs, newCapacity);
+            messageIds = Arrays.copyOf(messageIds, newCapacity);
+        }
+    }
+
+    private void invalidateSortedColumns() {
+        docsByInternalDate = null;
+        docsBySize = null;
+    }
+
+    private int findDoc(long uid) {
+        int position = Arrays.binarySearch(uids, 0, docCount, uid);
+        if (position < 0) {
+            return -1;
+        }
+        return position;
+    }
+
+    // Accessors below are meant to be called from read(...)
+
+    int docCount() {
+        return docCount;
+    }
+
+    BitSet live() {
+        return live;
+    }
+
+    long uid(int doc) {
+        return uids[doc];
+    }
+
+    long internalDate(int doc) {
+        return internalDates[doc];
+    }
+
+    long size(int doc) {
+        return sizes[doc];
+    }
+
+    long modSeq(int doc) {
+        return modSeqs[doc];
+    }
+
+    Optional<MessageId> messageId(int doc) {
+        return Optional.ofNullable(messageIds[doc]);
+    }
+
+    BitSet hasAttachment() {
+        return hasAttachment;
+    }
+
+    BitSet systemFlag(Flags.Flag flag) {
+        return systemFlags.get(flag);
+    }
+
+    Optional<BitSet> userFlag(String flag) {
+        return Optional.ofNullable(userFlags.get(flag));
+    }
+
+    Optional<BitSet> headerPresence(String lowerCaseName) {
+        return Optional.ofNullable(headerPresence.get(lowerCaseName));
+    }
+
+    NavigableMap<String, BitSet> headerTokens(String lowerCaseName) {
+        return Optional.<NavigableMap<String, BitSet>>ofNullable(headerTokens.get(lowerCaseName))
+            .orElse(new TreeMap<>());
+    }
+
+    /**
+     * @return the live documents whose UID is within the given bounds, inclusive
+     */
+    BitSet docsInUidRange(long lowUid, long highUid) {
+        int from = Arrays.binarySearch(uids, 0, docCount, lowUid);
+        if (from < 0) {
+            from = -from - 1;
+        }
+        int to = Arrays.binarySearch(uids, 0, docCount, highUid);
+        if (to < 0) {
+            to = -to - 1;
+        } else {
+            to++;
+        }
+        BitSet result = new BitSet();
+        if (from < to) {
+            result.set(from, to);
+            result.and(live);
+        }
+        return result;
+    }
+
+    Optional<Integer> liveDoc(MessageUid uid) {
+        int doc = findDoc(uid.asLong());
+        if (doc >= 0 && live.get(doc)) {
+            return Optional.of(doc);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return the live documents sorted by internal date, ties being ordered by UID
+     */
+    int[] docsByInternalDate() {
+        int[] result = docsByInternalDate;
+        if (result == null) {
+            result = sortLiveDocs(internalDates);
+            docsByInternalDate = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return the live documents sorted by size, ties being ordered by UID
+     */
+    int[] docsBySize() {
+        int[] result = docsBySize;
+        if (result == null) {
+            result = sortLiveDocs(sizes);
+            docsBySize = result;
+        }
+        return result;
+    }
+
+    private int[] sortLiveDocs(long[] column) {
+        return live.stream()
+            .boxed()
+            .sorted(Comparator.<Integer>comparingLong(doc -> column[doc]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+}
@@ -42,6 +42,8 @@ import org.apache.james.mailbox.model.MessageRange;
 import org.apache.james.mailbox.model.MessageResult.FetchGroup;
 import org.apache.james.mailbox.model.TestId;
 import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.mail.AsyncMessageMapper;
+import org.apache.james.mailbox.store.mail.BlockingAsyncMessageMapper;
 import org.apache.james.mailbox.store.mail.MessageMapper;
 import org.apache.james.mailbox.store.mail.model.DefaultMessageId;
 import org.apache.james.mailbox.store.mail.model.Mailbox;
@@ -66,10 +68,11 @@ public class StoreMailboxMessageResultIteratorTest {
         }
     }
 
-    private final class TestMessageMapper implements MessageMapper {
+    private class TestMessageMapper implements MessageMapper {
         
 
         private final MessageRange messageRange;
+        private int findInMailboxCalls = 0;
 
         public TestMessageMapper(MessageRange messageRange) {
             this.messageRange = messageRange;
@@ -102,7 +105,7 @@ public class StoreMailboxMessageResultIteratorTest {
         public Iterator<MailboxMessage> findInMailbox(Mailbox mailbox, MessageRange set,
                                                               org.apache.james.mailbox.store.mail.MessageMapper.FetchType type, int limit)
                 throws MailboxException {
-            
+            findInMailboxCalls++;
             List<MailboxMessage> messages = new ArrayList<>();
             for (MessageUid uid: Iterables.limit(set, limit)) {
                 if (messageRange.includes(uid)) {
@@ -191,6 +194,22 @@ public class StoreMailboxMessageResultIteratorTest {
         }
     }
 
+    private final class NonBlockingTestMessageMapper extends TestMessageMapper {
+        public NonBlockingTestMessageMapper(MessageRange messageRange) {
+            super(messageRange);
+        }
+
+        @Override
+        public AsyncMessageMapper async() {
+            return new BlockingAsyncMessageMapper(this) {
+                @Override
+                public boolean isBlocking() {
+                    return false;
+                }
+            };
+        }
+    }
+
     @Test
     public void testBatching() {
         MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(10));
@@ -201,6 +220,51 @@ public class StoreMailboxMessageResultIteratorTest {
             .containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
     }
 
+    @Test
+    public void hasNextShouldReadAheadASingleBatchWithANonBlockingMapper() {
+        MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(10));
+        BatchSizes batchSize = BatchSizes.uniqueBatchSize(3);
+        TestMessageMapper mapper = new NonBlockingTestMessageMapper(MessageRange.all());
+        StoreMessageResultIterator it = new StoreMessageResultIterator(mapper, null, range, batchSize, new TestFetchGroup());
+
+        it.hasNext();
+        it.next();
+        it.next();
+        it.next();
+        assertThat(mapper.findInMailboxCalls).isEqualTo(2);
+
+        it.hasNext();
+        assertThat(mapper.findInMailboxCalls).isEqualTo(3);
+    }
+
+    @Test
+    public void hasNextShouldNotReadAheadWithABlockingMapper() {
+        MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(10));
+        BatchSizes batchSize = BatchSizes.uniqueBatchSize(3);
+        TestMessageMapper mapper = new TestMessageMapper(MessageRange.all());
+        StoreMessageResultIterator it = new StoreMessageResultIterator(mapper, null, range, batchSize, new TestFetchGroup());
+
+        it.hasNext();
+        it.next();
+        it.next();
+        it.next();
+        assertThat(mapper.findInMailboxCalls).isEqualTo(1);
+
+        it.hasNext();
+        assertThat(mapper.findInMailboxCalls).isEqualTo(2);
+    }
+
+    @Test
+    public void iterationShouldStopAfterTheLastRequestedUid() {
+        MessageRange range = MessageRange.range(MessageUid.of(1), MessageUid.of(6));
+        BatchSizes batchSize = BatchSizes.uniqueBatchSize(3);
+        TestMessageMapper mapper = new TestMessageMapper(MessageRange.all());
+        StoreMessageResultIterator it = new StoreMessageResultIterator(mapper, null, range, batchSize, new TestFetchGroup());
+
+        assertThat(it).hasSize(6);
+        assertThat(mapper.findInMailboxCalls).isEqualTo(2);
+    }
+
     @Test
     public void nextShouldReturnFirstElement() {
         MessageRange range = MessageUid.of(1).toRange();
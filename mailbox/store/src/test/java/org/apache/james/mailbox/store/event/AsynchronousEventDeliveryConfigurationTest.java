@@ -0,0 +1,72 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class AsynchronousEventDeliveryConfigurationTest {
+
+    @Rule
+    public ExpectedException expectedException = ExpectedException.none();
+
+    @Test
+    public void shouldRespectJavaBeanContract() {
+        EqualsVerifier.forClass(AsynchronousEventDeliveryConfiguration.class).verify();
+    }
+
+    @Test
+    public void defaultValuesShouldReturnDefaultForEachParameters() {
+        AsynchronousEventDeliveryConfiguration configuration = AsynchronousEventDeliveryConfiguration.defaultValues();
+
+        assertThat(configuration.getLaneCount()).isEqualTo(AsynchronousEventDeliveryConfiguration.DEFAULT_LANE_COUNT);
+        assertThat(configuration.getLaneQueueCapacity()).isEqualTo(AsynchronousEventDeliveryConfiguration.DEFAULT_LANE_QUEUE_CAPACITY);
+        assertThat(configuration.getBatchSize()).isEqualTo(AsynchronousEventDeliveryConfiguration.DEFAULT_BATCH_SIZE);
+    }
+
+    @Test
+    public void laneCountShouldThrowWhenZero() {
+        expectedException.expect(IllegalArgumentException.class);
+
+        AsynchronousEventDeliveryConfiguration.builder()
+            .laneCount(0);
+    }
+
+    @Test
+    public void laneQueueCapacityShouldThrowWhenZero() {
+        expectedException.expect(IllegalArgumentException.class);
+
+        AsynchronousEventDeliveryConfiguration.builder()
+            .laneQueueCapacity(0);
+    }
+
+    @Test
+    public void batchSizeShouldThrowWhenZero() {
+        expectedException.expect(IllegalArgumentException.class);
+
+        AsynchronousEventDeliveryConfiguration.builder()
+            .batchSize(0);
+    }
+}
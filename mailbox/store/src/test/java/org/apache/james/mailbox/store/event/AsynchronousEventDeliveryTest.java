@@ -19,20 +19,30 @@
 
 package org.apache.james.mailbox.store.event;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.james.mailbox.BatchedMailboxListener;
+import org.apache.james.mailbox.Event;
 import org.apache.james.mailbox.MailboxListener;
 import org.apache.james.mailbox.mock.MockMailboxSession;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
 import org.apache.james.metrics.api.NoopMetricFactory;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+
 public class AsynchronousEventDeliveryTest {
 
     private static final int ONE_MINUTE = (int) TimeUnit.MINUTES.toMillis(1);
@@ -76,4 +86,176 @@ public class AsynchronousEventDeliveryTest {
         verify(mailboxListener, timeout(ONE_MINUTE).times(operationCount)).event(event);
     }
 
+    @Test
+    public void deliverShouldDeliverInEmissionOrderWithinAMailbox() throws Exception {
+        MailboxPath mailboxPath = MailboxPath.forUser("user", "INBOX");
+        int eventCount = 100;
+        List<Event> emittedEvents = new CopyOnWriteArrayList<>();
+        RecordingMailboxListener recordingListener = new RecordingMailboxListener(eventCount);
+        for (int i = 0; i < eventCount; i++) {
+            MailboxListener.MailboxEvent event = new MailboxListener.MailboxEvent(null, mailboxPath) {};
+            emittedEvents.add(event);
+            asynchronousEventDelivery.deliver(recordingListener, event);
+        }
+
+        assertThat(recordingListener.awaitDeliveries()).isTrue();
+        assertThat(recordingListener.deliveredEvents).containsExactlyElementsOf(emittedEvents);
+    }
+
+    @Test
+    public void deliverShouldPreserveOrderWhenListenersEmitIntoAFullLane() throws Exception {
+        asynchronousEventDelivery.stop();
+        asynchronousEventDelivery = new AsynchronousEventDelivery(
+            AsynchronousEventDeliveryConfiguration.builder()
+                .laneCount(1)
+                .laneQueueCapacity(1)
+                .build(),
+            new SynchronousEventDelivery(new NoopMetricFactory()),
+            new NoopMetricFactory(),
+            new NoopGaugeRegistry());
+        MailboxPath mailboxPath = MailboxPath.forUser("user", "INBOX");
+        int eventCount = 10;
+        List<Event> emittedEvents = new CopyOnWriteArrayList<>();
+        RecordingMailboxListener recordingListener = new RecordingMailboxListener(eventCount);
+        MailboxListener emittingListener = new MailboxListener() {
+            @Override
+            public ListenerType getType() {
+                return ListenerType.ONCE;
+            }
+
+            @Override
+            public void event(Event event) {
+                for (int i = 0; i < eventCount; i++) {
+                    MailboxListener.MailboxEvent emittedEvent = mailboxEvent(mailboxPath);
+                    emittedEvents.add(emittedEvent);
+                    asynchronousEventDelivery.deliver(recordingListener, emittedEvent);
+                }
+            }
+        };
+
+        asynchronousEventDelivery.deliver(emittingListener, mailboxEvent(mailboxPath));
+
+        assertThat(recordingListener.awaitDeliveries()).isTrue();
+        assertThat(recordingListener.deliveredEvents).containsExactlyElementsOf(emittedEvents);
+    }
+
+    @Test
+    public void queueSizeShouldReturnTheNumberOfPendingEvents() throws Exception {
+        BlockingMailboxListener blockingListener = new BlockingMailboxListener();
+        MailboxListener.MailboxEvent event = new MailboxListener.MailboxEvent(null, null) {};
+
+        try {
+            asynchronousEventDelivery.deliver(blockingListener, event);
+            assertThat(blockingListener.awaitStarted()).isTrue();
+            asynchronousEventDelivery.deliver(blockingListener, event);
+            asynchronousEventDelivery.deliver(blockingListener, event);
+
+            assertThat(asynchronousEventDelivery.queueSize()).isEqualTo(2);
+        } finally {
+            blockingListener.release();
+        }
+    }
+
+    @Test
+    public void deliverShouldCoalesceQueuedEventsOfAMailboxForBatchedMailboxListeners() throws Exception {
+        MailboxPath mailboxPath = MailboxPath.forUser("user", "INBOX");
+        BlockingMailboxListener blockingListener = new BlockingMailboxListener();
+        BatchRecordingMailboxListener batchedListener = new BatchRecordingMailboxListener();
+        MailboxListener.MailboxEvent event1 = mailboxEvent(mailboxPath);
+        MailboxListener.MailboxEvent event2 = mailboxEvent(mailboxPath);
+
+        try {
+            asynchronousEventDelivery.deliver(blockingListener, event1);
+            assertThat(blockingListener.awaitStarted()).isTrue();
+            asynchronousEventDelivery.deliver(batchedListener, event1);
+            asynchronousEventDelivery.deliver(batchedListener, event2);
+        } finally {
+            blockingListener.release();
+        }
+
+        assertThat(batchedListener.awaitDelivery()).isTrue();
+        assertThat(batchedListener.batches).containsExactly(ImmutableList.of(event1, event2));
+    }
+
+    private MailboxListener.MailboxEvent mailboxEvent(MailboxPath mailboxPath) {
+        return new MailboxListener.MailboxEvent(null, mailboxPath) {};
+    }
+
+    private static class BatchRecordingMailboxListener implements BatchedMailboxListener {
+        private final List<List<Event>> batches = new CopyOnWriteArrayList<>();
+        private final CountDownLatch delivered = new CountDownLatch(1);
+
+        boolean awaitDelivery() throws InterruptedException {
+            return delivered.await(ONE_MINUTE, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public ListenerType getType() {
+            return ListenerType.ONCE;
+        }
+
+        @Override
+        public void events(List<Event> events) {
+            batches.add(events);
+            delivered.countDown();
+        }
+
+        @Override
+        public void event(Event event) {
+            events(ImmutableList.of(event));
+        }
+    }
+
+    private static class RecordingMailboxListener implements MailboxListener {
+        private final List<Event> deliveredEvents;
+        private final CountDownLatch expectedDeliveries;
+
+        RecordingMailboxListener(int expectedDeliveryCount) {
+            this.deliveredEvents = new CopyOnWriteArrayList<>();
+            this.expectedDeliveries = new CountDownLatch(expectedDeliveryCount);
+        }
+
+        boolean awaitDeliveries() throws InterruptedException {
+            return expectedDeliveries.await(ONE_MINUTE, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public ListenerType getType() {
+            return ListenerType.ONCE;
+        }
+
+        @Override
+        public void event(Event event) {
+            deliveredEvents.add(event);
+            expectedDeliveries.countDown();
+        }
+    }
+
+    private static class BlockingMailboxListener implements MailboxListener {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        boolean awaitStarted() throws InterruptedException {
+            return started.await(ONE_MINUTE, TimeUnit.MILLISECONDS);
+        }
+
+        void release() {
+            released.countDown();
+        }
+
+        @Override
+        public ListenerType getType() {
+            return ListenerType.ONCE;
+        }
+
+        @Override
+        public void event(Event event) {
+            started.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
 }
@@ -0,0 +1,110 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.mock.MockMailboxSession;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.model.TestId;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailbox;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class EventBatchesTest {
+
+    private static final MailboxPath MAILBOX_PATH = MailboxPath.forUser("user", "INBOX");
+    private static final MailboxPath OTHER_MAILBOX_PATH = MailboxPath.forUser("user", "other");
+    private static final long UID_VALIDITY = 42;
+    private static final TestId MAILBOX_ID = TestId.of(18);
+
+    @Test
+    public void coalesceShouldGroupConsecutiveEventsOfASameMailboxAndType() {
+        MailboxListener.MailboxEvent event1 = mailboxEvent(MAILBOX_PATH);
+        MailboxListener.MailboxEvent event2 = mailboxEvent(MAILBOX_PATH);
+
+        assertThat(EventBatches.coalesce(ImmutableList.of(event1, event2)))
+            .containsExactly(ImmutableList.of(event1, event2));
+    }
+
+    @Test
+    public void coalesceShouldSplitEventsOfDifferentMailboxes() {
+        MailboxListener.MailboxEvent event1 = mailboxEvent(MAILBOX_PATH);
+        MailboxListener.MailboxEvent event2 = mailboxEvent(OTHER_MAILBOX_PATH);
+        MailboxListener.MailboxEvent event3 = mailboxEvent(MAILBOX_PATH);
+
+        assertThat(EventBatches.coalesce(ImmutableList.of(event1, event2, event3)))
+            .containsExactly(ImmutableList.of(event1), ImmutableList.of(event2), ImmutableList.of(event3));
+    }
+
+    @Test
+    public void coalesceShouldSplitEventsOfDifferentTypes() {
+        MailboxListener.MailboxEvent event1 = mailboxEvent(MAILBOX_PATH);
+        MailboxListener.MailboxEvent event2 = new MailboxListener.MailboxAdded(null, MAILBOX_PATH);
+
+        assertThat(EventBatches.coalesce(ImmutableList.of(event1, event2)))
+            .containsExactly(ImmutableList.of(event1), ImmutableList.of(event2));
+    }
+
+    @Test
+    public void coalesceShouldSplitEventsOfDifferentSessions() {
+        MailboxListener.MailboxEvent event1 = mailboxEvent(new MockMailboxSession("user"), MAILBOX_PATH);
+        MailboxListener.MailboxEvent event2 = mailboxEvent(new MockMailboxSession("user"), MAILBOX_PATH);
+
+        assertThat(EventBatches.coalesce(ImmutableList.of(event1, event2)))
+            .containsExactly(ImmutableList.of(event1), ImmutableList.of(event2));
+    }
+
+    @Test
+    public void coalesceShouldNotGroupMailboxDeletions() {
+        MailboxListener.MailboxDeletion event1 = new MailboxListener.MailboxDeletion(null, MAILBOX_PATH, null, null, null);
+        MailboxListener.MailboxDeletion event2 = new MailboxListener.MailboxDeletion(null, MAILBOX_PATH, null, null, null);
+
+        assertThat(EventBatches.coalesce(ImmutableList.of(event1, event2)))
+            .containsExactly(ImmutableList.of(event1), ImmutableList.of(event2));
+    }
+
+    @Test
+    public void orderingKeyShouldNotChangeWhenAMailboxIsRenamed() {
+        EventFactory eventFactory = new EventFactory();
+        SimpleMailbox mailbox = new SimpleMailbox(MAILBOX_PATH, UID_VALIDITY, MAILBOX_ID);
+        SimpleMailbox renamedMailbox = new SimpleMailbox(OTHER_MAILBOX_PATH, UID_VALIDITY, MAILBOX_ID);
+
+        assertThat(EventBatches.orderingKey(eventFactory.mailboxRenamed(null, MAILBOX_PATH, renamedMailbox)))
+            .isEqualTo(EventBatches.orderingKey(eventFactory.mailboxAdded(null, mailbox)))
+            .isEqualTo(MAILBOX_ID);
+    }
+
+    @Test
+    public void coalesceShouldReturnEmptyWhenNoEvents() {
+        assertThat(EventBatches.coalesce(ImmutableList.of())).isEmpty();
+    }
+
+    private MailboxListener.MailboxEvent mailboxEvent(MailboxPath mailboxPath) {
+        return mailboxEvent(null, mailboxPath);
+    }
+
+    private MailboxListener.MailboxEvent mailboxEvent(MailboxSession session, MailboxPath mailboxPath) {
+        return new MailboxListener.MailboxEvent(session, mailboxPath) {};
+    }
+}
@@ -0,0 +1,82 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.mail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Optional;
+import java.util.concurrent.CompletionException;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.store.mail.model.Mailbox;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BlockingAsyncMessageMapperTest {
+    private static final MessageUid MESSAGE_UID = MessageUid.of(42);
+
+    private MessageMapper messageMapper;
+    private Mailbox mailbox;
+    private BlockingAsyncMessageMapper testee;
+
+    @Before
+    public void setUp() {
+        messageMapper = mock(MessageMapper.class);
+        mailbox = mock(Mailbox.class);
+        testee = new BlockingAsyncMessageMapper(messageMapper);
+    }
+
+    @Test
+    public void getLastUidShouldReturnTheValueOfTheUnderlyingMapper() throws Exception {
+        when(messageMapper.getLastUid(mailbox)).thenReturn(Optional.of(MESSAGE_UID));
+
+        assertThat(testee.getLastUid(mailbox).join()).contains(MESSAGE_UID);
+    }
+
+    @Test
+    public void findFirstUnseenMessageUidShouldReturnEmptyWhenTheUnderlyingMapperReturnsNull() throws Exception {
+        when(messageMapper.findFirstUnseenMessageUid(mailbox)).thenReturn(null);
+
+        assertThat(testee.findFirstUnseenMessageUid(mailbox).join()).isEmpty();
+    }
+
+    @Test
+    public void failuresShouldCompleteTheFutureExceptionally() throws Exception {
+        MailboxException exception = new MailboxException("failure");
+        when(messageMapper.getHighestModSeq(mailbox)).thenThrow(exception);
+
+        assertThatThrownBy(() -> testee.getHighestModSeq(mailbox).join())
+            .isInstanceOf(CompletionException.class)
+            .hasMessageContaining("failure");
+    }
+
+    @Test
+    public void joinShouldRethrowMailboxExceptions() throws Exception {
+        MailboxException exception = new MailboxException("failure");
+        when(messageMapper.getHighestModSeq(mailbox)).thenThrow(exception);
+
+        assertThatThrownBy(() -> AsyncMessageMapper.join(testee.getHighestModSeq(mailbox)))
+            .isSameAs(exception);
+    }
+}
@@ -22,6 +22,7 @@ package org.apache.james.mailbox.store.quota;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
@@ -44,6 +45,7 @@ import org.apache.james.mailbox.store.mail.model.DefaultMessageId;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
 public class ListeningCurrentQuotaUpdaterTest {
@@ -76,6 +78,24 @@ public class ListeningCurrentQuotaUpdaterTest {
         verify(mockedCurrentQuotaManager).increase(QUOTA_ROOT, 2, 2 * SIZE);
     }
 
+    @Test
+    public void batchOfAddedEventsShouldIncreaseCurrentQuotaValuesOnce() throws Exception {
+        MailboxListener.Added added1 = mock(MailboxListener.Added.class);
+        when(added1.getMetaData(MessageUid.of(36))).thenReturn(new SimpleMessageMetaData(MessageUid.of(36),0,new Flags(), SIZE, new Date(), new DefaultMessageId()));
+        when(added1.getUids()).thenReturn(Lists.newArrayList(MessageUid.of(36)));
+        when(added1.getMailboxPath()).thenReturn(MAILBOX_PATH);
+        MailboxListener.Added added2 = mock(MailboxListener.Added.class);
+        when(added2.getMetaData(MessageUid.of(38))).thenReturn(new SimpleMessageMetaData(MessageUid.of(38),0,new Flags(), SIZE, new Date(), new DefaultMessageId()));
+        when(added2.getUids()).thenReturn(Lists.newArrayList(MessageUid.of(38)));
+        when(added2.getMailboxPath()).thenReturn(MAILBOX_PATH);
+        when(mockedQuotaRootResolver.getQuotaRoot(MAILBOX_PATH)).thenReturn(QUOTA_ROOT);
+
+        testee.events(ImmutableList.of(added1, added2));
+
+        verify(mockedCurrentQuotaManager).increase(QUOTA_ROOT, 2, 2 * SIZE);
+        verifyNoMoreInteractions(mockedCurrentQuotaManager);
+    }
+
     @Test
     public void expungedEventShouldDecreaseCurrentQuotaValues() throws Exception {
         MailboxListener.Expunged expunged = mock(MailboxListener.Expunged.class);
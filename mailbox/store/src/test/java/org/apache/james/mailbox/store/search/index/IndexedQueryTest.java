@@ -0,0 +1,206 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailbox.store.search.index;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import javax.mail.Flags;
+import javax.mail.util.SharedByteArrayInputStream;
+
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.model.SearchQuery;
+import org.apache.james.mailbox.model.TestId;
+import org.apache.james.mailbox.model.UpdatedFlags;
+import org.apache.james.mailbox.store.mail.MessageMapper.FetchType;
+import org.apache.james.mailbox.store.mail.model.DefaultMessageId;
+import org.apache.james.mailbox.store.mail.model.MailboxMessage;
+import org.apache.james.mailbox.store.mail.model.impl.PropertyBuilder;
+import org.apache.james.mailbox.store.mail.model.impl.SimpleMailboxMessage;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.steveash.guavate.Guavate;
+import com.google.common.collect.ImmutableList;
+
+public class IndexedQueryTest {
+    private static final MessageUid UID_1 = MessageUid.of(1);
+    private static final MessageUid UID_2 = MessageUid.of(2);
+    private static final MessageUid UID_3 = MessageUid.of(3);
+
+    private MailboxIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new MailboxIndex();
+        index.loadIfNeeded(() -> ImmutableList.of(
+                message(UID_2, "From: bob@domain.tld\r\nSubject: Weekly report\r\n", new Flags(Flags.Flag.SEEN), 200),
+                message(UID_1, "From: alice@domain.tld\r\nSubject: Hello world\r\n", new Flags(), 100),
+                message(UID_3, "To: bob@domain.tld\r\n", new Flags("custom"), 300))
+            .iterator());
+    }
+
+    @Test
+    public void allShouldReturnEveryMessageInUidOrder() throws Exception {
+        assertThat(search(new SearchQuery(SearchQuery.all())))
+            .containsExactly(UID_1, UID_2, UID_3);
+    }
+
+    @Test
+    public void flagCriterionShouldBeDecidedByTheIndex() throws Exception {
+        SearchQuery query = new SearchQuery(SearchQuery.flagIsSet(Flags.Flag.SEEN));
+
+        assertThat(IndexedQuery.compile(query).getResidualFetchType()).isEmpty();
+        assertThat(search(query)).containsExactly(UID_2);
+    }
+
+    @Test
+    public void customFlagIsUnsetShouldReturnMessagesWithoutIt() throws Exception {
+        assertThat(search(new SearchQuery(SearchQuery.flagIsUnSet("custom"))))
+            .containsExactly(UID_1, UID_2);
+    }
+
+    @Test
+    public void sizeCriterionShouldBeDecidedByTheIndex() throws Exception {
+        assertThat(search(new SearchQuery(SearchQuery.sizeGreaterThan(150))))
+            .containsExactly(UID_2, UID_3);
+    }
+
+    @Test
+    public void singleTokenHeaderContainsShouldBeDecidedByTheIndex() throws Exception {
+        SearchQuery query = new SearchQuery(SearchQuery.headerContains("Subject", "repo"));
+
+        assertThat(IndexedQuery.compile(query).getResidualFetchType()).isEmpty();
+        assertThat(search(query)).containsExactly(UID_2);
+    }
+
+    @Test
+    public void multiTokenHeaderContainsShouldOnlyNarrowCandidates() throws Exception {
+        SearchQuery query = new SearchQuery(SearchQuery.headerContains("From", "bob@domain"));
+        IndexedQuery indexedQuery = IndexedQuery.compile(query);
+
+        List<IndexedQuery.Hit> hits = index.read(indexedQuery::hits);
+
+        assertThat(indexedQuery.getResidualFetchType()).contains(FetchType.Headers);
+        assertThat(hits).extracting(IndexedQuery.Hit::getUid).containsExactly(UID_2);
+        assertThat(hits).extracting(IndexedQuery.Hit::isDecided).containsExactly(false);
+    }
+
+    @Test
+    public void headerExistsShouldBeDecidedByTheIndex() throws Exception {
+        assertThat(search(new SearchQuery(SearchQuery.headerExists("To"))))
+            .containsExactly(UID_3);
+    }
+
+    @Test
+    public void notShouldComplementDecidedMatches() throws Exception {
+        assertThat(search(new SearchQuery(SearchQuery.not(SearchQuery.headerExists("Subject")))))
+            .containsExactly(UID_3);
+    }
+
+    @Test
+    public void textCriterionShouldRequireFullMessages() throws Exception {
+        SearchQuery query = new SearchQuery(SearchQuery.bodyContains("anything"));
+
+        assertThat(IndexedQuery.compile(query).getResidualFetchType()).contains(FetchType.Full);
+    }
+
+    @Test
+    public void sortShouldBeAppliedByTheIndex() throws Exception {
+        SearchQuery query = new SearchQuery(SearchQuery.all());
+        query.setSorts(ImmutableList.of(new SearchQuery.Sort(SearchQuery.Sort.SortClause.Size, SearchQuery.Sort.Order.REVERSE)));
+
+        assertThat(search(query)).containsExactly(UID_3, UID_2, UID_1);
+    }
+
+    @Test
+    public void deletedMessagesShouldNotBeReturned() throws Exception {
+        index.delete(ImmutableList.of(UID_2));
+
+        assertThat(search(new SearchQuery(SearchQuery.headerContains("Subject", "report"))))
+            .isEmpty();
+    }
+
+    @Test
+    public void compactionShouldPreserveResults() throws Exception {
+        index.delete(ImmutableList.of(UID_1));
+        index.compact();
+
+        assertThat(search(new SearchQuery(SearchQuery.headerContains("From", "bob"))))
+            .containsExactly(UID_2);
+    }
+
+    @Test
+    public void flagUpdatesShouldBeIndexed() throws Exception {
+        index.update(ImmutableList.of(UpdatedFlags.builder()
+            .uid(UID_1)
+            .oldFlags(new Flags())
+            .newFlags(new Flags(Flags.Flag.FLAGGED))
+            .modSeq(42)
+            .build()));
+
+        assertThat(search(new SearchQuery(SearchQuery.flagIsSet(Flags.Flag.FLAGGED))))
+            .containsExactly(UID_1);
+    }
+
+    @Test
+    public void updatesReceivedBeforeLoadingShouldBeAppliedAfterIt() throws Exception {
+        MailboxIndex notLoadedIndex = new MailboxIndex();
+        notLoadedIndex.delete(ImmutableList.of(UID_1));
+
+        notLoadedIndex.loadIfNeeded(() -> ImmutableList.of(
+                message(UID_1, "Subject: first\r\n", new Flags(), 100),
+                message(UID_2, "Subject: second\r\n", new Flags(), 100))
+            .iterator());
+
+        assertThat(search(notLoadedIndex, new SearchQuery(SearchQuery.all())))
+            .containsExactly(UID_2);
+    }
+
+    private List<MessageUid> search(SearchQuery query) throws Exception {
+        return search(index, query);
+    }
+
+    private List<MessageUid> search(MailboxIndex index, SearchQuery query) throws Exception {
+        IndexedQuery indexedQuery = IndexedQuery.compile(query);
+        return index.read(indexedQuery::hits)
+            .stream()
+            .filter(IndexedQuery.Hit::isDecided)
+            .map(IndexedQuery.Hit::getUid)
+            .collect(Guavate.toImmutableList());
+    }
+
+    private MailboxMessage message(MessageUid uid, String headers, Flags flags, long size) {
+        String content = headers + "\r\nBody\r\n";
+        SimpleMailboxMessage message = new SimpleMailboxMessage(new DefaultMessageId(),
+            new Date(),
+            size,
+            headers.length() + 2,
+            new SharedByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+            flags,
+            new PropertyBuilder(),
+            TestId.of(1));
+        message.setUid(uid);
+        return message;
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.apache.james.imap.api;
 
+import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
@@ -34,6 +35,8 @@ public class ImapConfiguration {
     public static final boolean DEFAULT_ENABLE_IDLE = true;
     public static final long DEFAULT_HEARTBEAT_INTERVAL_IN_SECONDS = 2 * 60;
     public static final TimeUnit DEFAULT_HEARTBEAT_INTERVAL_UNIT = TimeUnit.SECONDS;
+    public static final long DEFAULT_FETCH_MAX_PENDING_BYTES = 4 * 1024 * 1024;
+    public static final Duration DEFAULT_FETCH_PENDING_WRITES_TIMEOUT = Duration.ofMinutes(1);
 
     public static Builder builder() {
         return new Builder();
@@ -51,6 +54,8 @@ public class ImapConfiguration {
         private Optional<Boolean> enableIdle;
         private ImmutableSet<String> disabledCaps;
         private Optional<Boolean> isCondstoreEnable;
+        private Optional<Long> fetchMaxPendingBytes;
+        private Optional<Duration> fetchPendingWritesTimeout;
 
         private Builder() {
             this.idleTimeInterval = Optional.empty();
@@ -58,6 +63,8 @@ public class ImapConfiguration {
             this.enableIdle = Optional.empty();
             this.disabledCaps = ImmutableSet.of();
             this.isCondstoreEnable = Optional.empty();
+            this.fetchMaxPendingBytes = Optional.empty();
+            this.fetchPendingWritesTimeout = Optional.empty();
         }
 
         public Builder idleTimeInterval(long idleTimeInterval) {
@@ -96,6 +103,18 @@ public class ImapConfiguration {
             return this;
         }
 
+        public Builder fetchMaxPendingBytes(long fetchMaxPendingBytes) {
+            Preconditions.checkArgument(fetchMaxPendingBytes > 0, "The maximum pending bytes of a fetch should be positive");
+            this.fetchMaxPendingBytes = Optional.of(fetchMaxPendingBytes);
+            return this;
+        }
+
+        public Builder fetchPendingWritesTimeout(Duration fetchPendingWritesTimeout) {
+            Preconditions.checkArgument(!fetchPendingWritesTimeout.isNegative() && !fetchPendingWritesTimeout.isZero(), "The pending writes timeout of a fetch should be positive");
+            this.fetchPendingWritesTimeout = Optional.of(fetchPendingWritesTimeout);
+            return this;
+        }
+
         public ImapConfiguration build() {
             ImmutableSet<String> normalizeDisableCaps = disabledCaps.stream()
                     .filter(Builder::noBlankString)
@@ -106,7 +125,9 @@ public class ImapConfiguration {
                     idleTimeInterval.orElse(DEFAULT_HEARTBEAT_INTERVAL_IN_SECONDS),
                     idleTimeIntervalUnit.orElse(DEFAULT_HEARTBEAT_INTERVAL_UNIT),
                     normalizeDisableCaps,
-                    isCondstoreEnable.orElse(DEFAULT_CONDSTORE_DISABLE));
+                    isCondstoreEnable.orElse(DEFAULT_CONDSTORE_DISABLE),
+                    fetchMaxPendingBytes.orElse(DEFAULT_FETCH_MAX_PENDING_BYTES),
+                    fetchPendingWritesTimeout.orElse(DEFAULT_FETCH_PENDING_WRITES_TIMEOUT));
         }
     }
 
@@ -115,13 +136,17 @@ public class ImapConfiguration {
     private final ImmutableSet<String> disabledCaps;
     private final boolean enableIdle;
     private final boolean isCondstoreEnable;
+    private final long fetchMaxPendingBytes;
+    private final Duration fetchPendingWritesTimeout;
 
-    private ImapConfiguration(boolean enableIdle, long idleTimeInterval, TimeUnit idleTimeIntervalUnit, ImmutableSet<String> disabledCaps, boolean isCondstoreEnable) {
+    private ImapConfiguration(boolean enableIdle, long idleTimeInterval, TimeUnit idleTimeIntervalUnit, ImmutableSet<String> disabledCaps, boolean isCondstoreEnable, long fetchMaxPendingBytes, Duration fetchPendingWritesTimeout) {
         this.enableIdle = enableIdle;
         this.idleTimeInterval = idleTimeInterval;
         this.idleTimeIntervalUnit = idleTimeIntervalUnit;
         this.disabledCaps = disabledCaps;
         this.isCondstoreEnable = isCondstoreEnable;
+        this.fetchMaxPendingBytes = fetchMaxPendingBytes;
+        this.fetchPendingWritesTimeout = fetchPendingWritesTimeout;
     }
 
     public long getIdleTimeInterval() {
@@ -144,6 +169,22 @@ public class ImapConfiguration {
         return isCondstoreEnable;
     }
 
+    /**
+     * Amount of FETCH response bytes which may be written to the client but not yet flushed
+     * before the FETCH processing waits for the client to read them.
+     */
+    public long getFetchMaxPendingBytes() {
+        return fetchMaxPendingBytes;
+    }
+
+    /**
+     * Time given to a client to read enough of its pending FETCH responses before it is
+     * disconnected.
+     */
+    public Duration getFetchPendingWritesTimeout() {
+        return fetchPendingWritesTimeout;
+    }
+
     @Override
     public final boolean equals(Object obj) {
         if (obj instanceof ImapConfiguration) {
@@ -152,14 +193,16 @@ public class ImapConfiguration {
                 && Objects.equal(that.getIdleTimeInterval(), idleTimeInterval)
                 && Objects.equal(that.getIdleTimeIntervalUnit(), idleTimeIntervalUnit)
                 && Objects.equal(that.getDisabledCaps(), disabledCaps)
-                && Objects.equal(that.isCondstoreEnable(), isCondstoreEnable);
+                && Objects.equal(that.isCondstoreEnable(), isCondstoreEnable)
+                && Objects.equal(that.getFetchMaxPendingBytes(), fetchMaxPendingBytes)
+                && Objects.equal(that.getFetchPendingWritesTimeout(), fetchPendingWritesTimeout);
         }
         return false;
     }
 
     @Override
     public final int hashCode() {
-        return Objects.hashCode(enableIdle, idleTimeInterval, idleTimeIntervalUnit, disabledCaps, isCondstoreEnable);
+        return Objects.hashCode(enableIdle, idleTimeInterval, idleTimeIntervalUnit, disabledCaps, isCondstoreEnable, fetchMaxPendingBytes, fetchPendingWritesTimeout);
     }
 
     @Override
@@ -170,6 +213,8 @@ public class ImapConfiguration {
                 .add("idleTimeIntervalUnit", idleTimeIntervalUnit)
                 .add("disabledCaps", disabledCaps)
                 .add("isCondstoreEnable", isCondstoreEnable)
+                .add("fetchMaxPendingBytes", fetchMaxPendingBytes)
+                .add("fetchPendingWritesTimeout", fetchPendingWritesTimeout)
                 .toString();
     }
 }
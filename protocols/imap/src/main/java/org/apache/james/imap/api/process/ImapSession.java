@@ -19,6 +19,8 @@
 
 package org.apache.james.imap.api.process;
 
+import java.time.Duration;
+
 import org.apache.james.imap.api.ImapSessionState;
 
 /**
@@ -165,4 +167,19 @@ public interface ImapSession {
      */
     boolean isPlainAuthDisallowed();
 
+    /**
+     * Wait until at most the given amount of bytes, written to the client by the
+     * responses of this session, are still waiting to be flushed. This lets long
+     * responses like FETCH follow the pace at which the client reads them instead of
+     * queuing them in memory.
+     * 
+     * The client is disconnected when it does not read enough of its responses
+     * within the given timeout.
+     * 
+     * @param maxPendingBytes
+     * @param timeout
+     * @return false if the client can not be written to anymore
+     */
+    boolean awaitPendingWrites(long maxPendingBytes, Duration timeout);
+
 }
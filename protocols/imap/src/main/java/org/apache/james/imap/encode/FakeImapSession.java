@@ -22,6 +22,8 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.james.imap.api.ImapSessionState;
+import java.time.Duration;
+
 import org.apache.james.imap.api.process.ImapLineHandler;
 import org.apache.james.imap.api.process.ImapSession;
 import org.apache.james.imap.api.process.SelectedMailbox;
@@ -127,6 +129,11 @@ public class FakeImapSession implements ImapSession {
         return false;
     }
 
+    @Override
+    public boolean awaitPendingWrites(long maxPendingBytes, Duration timeout) {
+        return true;
+    }
+
     @Override
     public boolean isTLSActive() {
         return false;
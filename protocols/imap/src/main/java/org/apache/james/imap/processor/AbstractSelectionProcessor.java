@@ -41,6 +41,7 @@ import org.apache.james.imap.message.request.AbstractMailboxSelectionRequest;
 import org.apache.james.imap.message.response.ExistsResponse;
 import org.apache.james.imap.message.response.RecentResponse;
 import org.apache.james.imap.processor.base.SelectedMailboxImpl;
+import org.apache.james.imap.processor.base.SharedMailboxStateRegistry;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.mailbox.MailboxSession;
 import org.apache.james.mailbox.MessageManager;
@@ -65,14 +66,21 @@ abstract class AbstractSelectionProcessor<M extends AbstractMailboxSelectionRequ
     final StatusResponseFactory statusResponseFactory;
 
     private final boolean openReadOnly;
+    private final SharedMailboxStateRegistry sharedMailboxStateRegistry;
     private static final List<String> CAPS = ImmutableList.of(ImapConstants.SUPPORTS_QRESYNC, ImapConstants.SUPPORTS_CONDSTORE);
 
     
     public AbstractSelectionProcessor(Class<M> acceptableClass, ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory statusResponseFactory, boolean openReadOnly,
             MetricFactory metricFactory) {
+        this(acceptableClass, next, mailboxManager, statusResponseFactory, openReadOnly, metricFactory, new SharedMailboxStateRegistry(mailboxManager));
+    }
+
+    public AbstractSelectionProcessor(Class<M> acceptableClass, ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory statusResponseFactory, boolean openReadOnly,
+            MetricFactory metricFactory, SharedMailboxStateRegistry sharedMailboxStateRegistry) {
         super(acceptableClass, next, mailboxManager, statusResponseFactory, metricFactory);
         this.statusResponseFactory = statusResponseFactory;
         this.openReadOnly = openReadOnly;
+        this.sharedMailboxStateRegistry = sharedMailboxStateRegistry;
 
     }
 
@@ -407,7 +415,7 @@ abstract class AbstractSelectionProcessor<M extends AbstractMailboxSelectionRequ
             if (currentMailbox != null) {
                 getStatusResponseFactory().untaggedOk(HumanReadableText.QRESYNC_CLOSED, ResponseCode.closed());
             }
-            session.selected(new SelectedMailboxImpl(getMailboxManager(),  session, mailboxPath));
+            session.selected(new SelectedMailboxImpl(getMailboxManager(), session, mailboxPath, sharedMailboxStateRegistry));
 
             sessionMailbox = session.getSelected();
             
@@ -26,6 +26,7 @@ import org.apache.james.imap.api.message.UidRange;
 import org.apache.james.imap.api.message.response.StatusResponseFactory;
 import org.apache.james.imap.api.process.ImapProcessor;
 import org.apache.james.imap.message.request.ExamineRequest;
+import org.apache.james.imap.processor.base.SharedMailboxStateRegistry;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.metrics.api.MetricFactory;
 import org.apache.james.util.MDCBuilder;
@@ -37,6 +38,11 @@ public class ExamineProcessor extends AbstractSelectionProcessor<ExamineRequest>
         super(ExamineRequest.class, next, mailboxManager, statusResponseFactory, true, metricFactory);
     }
 
+    public ExamineProcessor(ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory statusResponseFactory,
+            MetricFactory metricFactory, SharedMailboxStateRegistry sharedMailboxStateRegistry) {
+        super(ExamineRequest.class, next, mailboxManager, statusResponseFactory, true, metricFactory, sharedMailboxStateRegistry);
+    }
+
     @Override
     protected Closeable addContextToMDC(ExamineRequest message) {
         return MDCBuilder.create()
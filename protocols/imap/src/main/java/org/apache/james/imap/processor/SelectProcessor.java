@@ -26,6 +26,7 @@ import org.apache.james.imap.api.message.UidRange;
 import org.apache.james.imap.api.message.response.StatusResponseFactory;
 import org.apache.james.imap.api.process.ImapProcessor;
 import org.apache.james.imap.message.request.SelectRequest;
+import org.apache.james.imap.processor.base.SharedMailboxStateRegistry;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.metrics.api.MetricFactory;
 import org.apache.james.util.MDCBuilder;
@@ -37,6 +38,11 @@ public class SelectProcessor extends AbstractSelectionProcessor<SelectRequest> {
         super(SelectRequest.class, next, mailboxManager, statusResponseFactory, false, metricFactory);
     }
 
+    public SelectProcessor(ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory statusResponseFactory,
+            MetricFactory metricFactory, SharedMailboxStateRegistry sharedMailboxStateRegistry) {
+        super(SelectRequest.class, next, mailboxManager, statusResponseFactory, false, metricFactory, sharedMailboxStateRegistry);
+    }
+
     @Override
     protected Closeable addContextToMDC(SelectRequest message) {
         return MDCBuilder.create()
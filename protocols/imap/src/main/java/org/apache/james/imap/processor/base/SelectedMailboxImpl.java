@@ -24,9 +24,11 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListSet;
 
 import javax.mail.Flags;
 import javax.mail.Flags.Flag;
@@ -38,28 +40,26 @@ import org.apache.james.mailbox.Event;
 import org.apache.james.mailbox.MailboxListener;
 import org.apache.james.mailbox.MailboxManager;
 import org.apache.james.mailbox.MailboxSession;
-import org.apache.james.mailbox.MessageManager;
 import org.apache.james.mailbox.MessageUid;
 import org.apache.james.mailbox.exception.MailboxException;
 import org.apache.james.mailbox.model.MailboxPath;
-import org.apache.james.mailbox.model.SearchQuery;
 import org.apache.james.mailbox.model.UpdatedFlags;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import com.google.common.collect.ImmutableList;
 
 /**
  * Default implementation of {@link SelectedMailbox}
+ *
+ * The uids and applicable flags of the mailbox are held by a {@link SharedMailboxState} shared with the other
+ * sessions selecting the same mailbox. Expunged messages the client was not yet notified of are kept aside, so that
+ * message sequence numbers stay stable for this session until the EXPUNGE responses are sent.
  */
 public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener {
-    private static final Logger LOGGER = LoggerFactory.getLogger(SelectedMailboxImpl.class);
 
     private final Set<MessageUid> recentUids = new TreeSet<>();
 
     private boolean recentUidRemoved = false;
 
-    private final MailboxManager mailboxManager;
+    private final SharedMailboxStateRegistry sharedMailboxStateRegistry;
+    private final SharedMailboxState sharedMailboxState;
 
     private MailboxPath path;
 
@@ -69,34 +69,27 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener {
     private final Set<MessageUid> flagUpdateUids = new TreeSet<>();
     private final Flags.Flag uninterestingFlag = Flags.Flag.RECENT;
     private final Set<MessageUid> expungedUids = new TreeSet<>();
-    private final UidMsnConverter uidMsnConverter;
+    private final NavigableSet<MessageUid> pendingExpungedUids = new ConcurrentSkipListSet<>();
 
     private boolean isDeletedByOtherSession = false;
     private boolean sizeChanged = false;
     private boolean silentFlagChanges = false;
-    private final Flags applicableFlags;
 
     private boolean applicableFlagsChanged;
 
-    public SelectedMailboxImpl(MailboxManager mailboxManager, ImapSession session, MailboxPath path) throws MailboxException {
+    public SelectedMailboxImpl(MailboxManager mailboxManager, ImapSession session, MailboxPath path,
+                               SharedMailboxStateRegistry sharedMailboxStateRegistry) throws MailboxException {
         this.session = session;
         this.sessionId = ImapSessionUtils.getMailboxSession(session).getSessionId();
-        this.mailboxManager = mailboxManager;
-        
+        this.sharedMailboxStateRegistry = sharedMailboxStateRegistry;
+
         // Ignore events from our session
         setSilentFlagChanges(true);
         this.path = path;
 
         MailboxSession mailboxSession = ImapSessionUtils.getMailboxSession(session);
 
-        uidMsnConverter = new UidMsnConverter();
-
-        mailboxManager.addListener(path, this, mailboxSession);
-
-        MessageManager messageManager = mailboxManager.getMailbox(path, mailboxSession);
-        applicableFlags = messageManager.getApplicableFlags(mailboxSession);
-        uidMsnConverter.addAll(ImmutableList.copyOf(
-            messageManager.search(new SearchQuery(SearchQuery.all()), mailboxSession)));
+        this.sharedMailboxState = sharedMailboxStateRegistry.acquire(path, mailboxSession, this);
     }
 
     @Override
@@ -105,26 +98,32 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener {
     }
 
     @Override
-    public synchronized Optional<MessageUid> getFirstUid() {
-        return uidMsnConverter.getFirstUid();
+    public Optional<MessageUid> getFirstUid() {
+        return sharedMailboxState.readUids(sharedUids -> {
+            if (pendingExpungedUids.isEmpty()) {
+                return sharedUids.getFirstUid();
+            }
+            return uid(sharedUids, UidMsnConverter.FIRST_MSN);
+        });
     }
 
     @Override
-    public synchronized Optional<MessageUid> getLastUid() {
-        return uidMsnConverter.getLastUid();
+    public Optional<MessageUid> getLastUid() {
+        return sharedMailboxState.readUids(sharedUids -> {
+            if (pendingExpungedUids.isEmpty()) {
+                return sharedUids.getLastUid();
+            }
+            return uid(sharedUids, (int) existsCount(sharedUids));
+        });
     }
 
     @Override
     public synchronized void deselect() {
         MailboxSession mailboxSession = ImapSessionUtils.getMailboxSession(session);
 
-        try {
-            mailboxManager.removeListener(path, this, mailboxSession);
-        } catch (MailboxException e) {
-            LOGGER.error("Unable to remove listener {} from mailbox while closing it", this, e);
-        }
-        
-        uidMsnConverter.clear();
+        sharedMailboxStateRegistry.release(sharedMailboxState, mailboxSession, this);
+
+        pendingExpungedUids.clear();
         flagUpdateUids.clear();
 
         expungedUids.clear();
@@ -193,9 +192,11 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener {
 
     @Override
     public synchronized  int remove(MessageUid uid) {
-        final int result = msn(uid);
-        uidMsnConverter.remove(uid);
-        return result;
+        return sharedMailboxState.readUids(sharedUids -> {
+            int result = msn(sharedUids, uid);
+            pendingExpungedUids.remove(uid);
+            return result;
+        });
     }
 
     private boolean interestingFlags(UpdatedFlags updated) {
@@ -292,8 +293,8 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener {
     }
 
     @Override
-    public synchronized Flags getApplicableFlags() {
-        return new Flags(applicableFlags);
+    public Flags getApplicableFlags() {
+        return sharedMailboxState.getApplicableFlags();
     }
 
     
@@ -309,6 +310,10 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener {
     }
 
     
+    synchronized void applicableFlagsChanged() {
+        applicableFlagsChanged = true;
+    }
+
     @Override
     public synchronized void event(Event event) {
 
@@ -329,7 +334,6 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener {
                     final List<MessageUid> uids = ((Added) mailboxEvent).getUids();
                     SelectedMailbox sm = session.getSelected();
                     for (MessageUid uid : uids) {
-                        uidMsnConverter.addUid(uid);
                         if (sm != null) {
                             sm.addRecent(uid);
                         }
@@ -368,28 +372,8 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener {
    
                         }
                     }
-                    
-                    int size = applicableFlags.getUserFlags().length;
-                    FlagsUpdated updatedF = (FlagsUpdated) messageEvent;
-                    List<UpdatedFlags> flags = updatedF.getUpdatedFlags();
-   
-                    for (UpdatedFlags flag : flags) {
-                        applicableFlags.add(flag.getNewFlags());
-   
-                    }
-   
-                    // \RECENT is not a applicable flag in imap so remove it
-                    // from the list
-                    applicableFlags.remove(Flags.Flag.RECENT);
-   
-                    if (size < applicableFlags.getUserFlags().length) {
-                        applicableFlagsChanged = true;
-                    }
-                    
-                    
                 } else if (messageEvent instanceof Expunged) {
                     expungedUids.addAll(messageEvent.getUids());
-                    
                 }
             } else if (mailboxEvent instanceof MailboxDeletion) {
                 if (eventSessionId != sessionId) {
@@ -402,23 +386,63 @@ public class SelectedMailboxImpl implements SelectedMailbox, MailboxListener {
         }
     }
 
+    /**
+     * Called by the {@link SharedMailboxState} under its uids write lock, while removing these uids from the shared
+     * state. Must thus not wait on this session.
+     */
+    void addPendingExpungedUids(Collection<MessageUid> uids) {
+        pendingExpungedUids.addAll(uids);
+    }
+
     @Override
-    public synchronized int msn(MessageUid uid) {
-        return uidMsnConverter.getMsn(uid).orElse(NO_SUCH_MESSAGE);
+    public int msn(MessageUid uid) {
+        return sharedMailboxState.readUids(sharedUids -> msn(sharedUids, uid));
+    }
+
+    private int msn(UidMsnConverter sharedUids, MessageUid uid) {
+        if (pendingExpungedUids.isEmpty()) {
+            return sharedUids.getMsn(uid).orElse(NO_SUCH_MESSAGE);
+        }
+
+        if (!sharedUids.contains(uid) && !pendingExpungedUids.contains(uid)) {
+            return NO_SUCH_MESSAGE;
+        }
+        return sharedUids.countLowerThan(uid) + pendingExpungedUids.headSet(uid).size() + UidMsnConverter.FIRST_MSN;
     }
 
     @Override
-    public synchronized Optional<MessageUid> uid(int msn) {
+    public Optional<MessageUid> uid(int msn) {
         if (msn == NO_SUCH_MESSAGE) {
             return Optional.empty();
         }
+        return sharedMailboxState.readUids(sharedUids -> uid(sharedUids, msn));
+    }
+
+    private Optional<MessageUid> uid(UidMsnConverter sharedUids, int msn) {
+        if (pendingExpungedUids.isEmpty()) {
+            return sharedUids.getUid(msn);
+        }
 
-        return uidMsnConverter.getUid(msn);
+        int lowerPendingCount = 0;
+        for (MessageUid pendingUid : pendingExpungedUids) {
+            int pendingMsn = sharedUids.countLowerThan(pendingUid) + lowerPendingCount + UidMsnConverter.FIRST_MSN;
+            if (pendingMsn == msn) {
+                return Optional.of(pendingUid);
+            }
+            if (pendingMsn > msn) {
+                break;
+            }
+            lowerPendingCount++;
+        }
+        return sharedUids.getUid(msn - lowerPendingCount);
     }
 
-    
     @Override
-    public synchronized long existsCount() {
-        return uidMsnConverter.getNumMessage();
+    public long existsCount() {
+        return sharedMailboxState.readUids(this::existsCount);
+    }
+
+    private long existsCount(UidMsnConverter sharedUids) {
+        return sharedUids.getNumMessage() + pendingExpungedUids.size();
     }
 }
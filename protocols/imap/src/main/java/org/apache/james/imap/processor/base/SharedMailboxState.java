@@ -0,0 +1,209 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imap.processor.base;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import javax.mail.Flags;
+
+import org.apache.james.mailbox.Event;
+import org.apache.james.mailbox.MailboxListener;
+import org.apache.james.mailbox.MailboxManager;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.MessageManager;
+import org.apache.james.mailbox.MessageUid;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MailboxId;
+import org.apache.james.mailbox.model.MailboxPath;
+import org.apache.james.mailbox.model.SearchQuery;
+import org.apache.james.mailbox.model.UpdatedFlags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * State of a mailbox shared by all the sessions selecting it on this node: the uids of its messages and its
+ * applicable flags.
+ *
+ * A single {@link MailboxListener} is registered per mailbox, and forwards the events to the subscribed
+ * {@link SelectedMailboxImpl}, which only track their own deltas (recent, expunged and flag updates).
+ *
+ * Expunged uids are removed from the shared state and recorded as pending by every subscriber at once, under the uids
+ * write lock: subscribers resolving message sequence numbers under the read lock thus never see a partially applied
+ * expunge. Each subscriber then keeps these uids in its view of the mailbox until the expunge is notified to its client.
+ */
+public class SharedMailboxState implements MailboxListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SharedMailboxState.class);
+
+    private final MailboxManager mailboxManager;
+    private final MailboxId mailboxId;
+    private final UidMsnConverter uidMsnConverter;
+    private final ReadWriteLock uidsLock;
+    private final Flags applicableFlags;
+    private final Set<SelectedMailboxImpl> subscribers;
+    private final Object initializationLock;
+    private volatile MailboxPath path;
+    private boolean initialized;
+    private int referenceCount;
+
+    SharedMailboxState(MailboxManager mailboxManager, MailboxId mailboxId, MailboxPath path) {
+        this.mailboxManager = mailboxManager;
+        this.mailboxId = mailboxId;
+        this.path = path;
+        this.uidMsnConverter = new UidMsnConverter();
+        this.uidsLock = new ReentrantReadWriteLock();
+        this.applicableFlags = new Flags();
+        this.subscribers = new CopyOnWriteArraySet<>();
+        this.initializationLock = new Object();
+        this.initialized = false;
+        this.referenceCount = 0;
+    }
+
+    @Override
+    public ListenerType getType() {
+        return ListenerType.MAILBOX;
+    }
+
+    void initialize(MailboxSession mailboxSession) throws MailboxException {
+        synchronized (initializationLock) {
+            if (initialized) {
+                return;
+            }
+            mailboxManager.addListener(path, this, mailboxSession);
+            try {
+                MessageManager messageManager = mailboxManager.getMailbox(path, mailboxSession);
+                Flags mailboxApplicableFlags = messageManager.getApplicableFlags(mailboxSession);
+                synchronized (applicableFlags) {
+                    applicableFlags.add(mailboxApplicableFlags);
+                }
+                List<MessageUid> uids = ImmutableList.copyOf(
+                    messageManager.search(new SearchQuery(SearchQuery.all()), mailboxSession));
+                writeUids(() -> uidMsnConverter.addAll(uids));
+                initialized = true;
+            } catch (MailboxException e) {
+                mailboxManager.removeListener(path, this, mailboxSession);
+                throw e;
+            }
+        }
+    }
+
+    void close(MailboxSession mailboxSession) {
+        try {
+            mailboxManager.removeListener(path, this, mailboxSession);
+        } catch (MailboxException e) {
+            LOGGER.error("Unable to remove listener {} from mailbox while closing it", this, e);
+        }
+    }
+
+    MailboxId getMailboxId() {
+        return mailboxId;
+    }
+
+    void subscribe(SelectedMailboxImpl selectedMailbox) {
+        subscribers.add(selectedMailbox);
+    }
+
+    void unsubscribe(SelectedMailboxImpl selectedMailbox) {
+        subscribers.remove(selectedMailbox);
+    }
+
+    /**
+     * Reference counting is guarded by the owning {@link SharedMailboxStateRegistry}.
+     */
+    void retain() {
+        referenceCount++;
+    }
+
+    int release() {
+        return --referenceCount;
+    }
+
+    /**
+     * Reads the uids of the mailbox while no event modifies them. The reader must not block.
+     */
+    <T> T readUids(Function<UidMsnConverter, T> reader) {
+        uidsLock.readLock().lock();
+        try {
+            return reader.apply(uidMsnConverter);
+        } finally {
+            uidsLock.readLock().unlock();
+        }
+    }
+
+    private void writeUids(Runnable writer) {
+        uidsLock.writeLock().lock();
+        try {
+            writer.run();
+        } finally {
+            uidsLock.writeLock().unlock();
+        }
+    }
+
+    Flags getApplicableFlags() {
+        synchronized (applicableFlags) {
+            return new Flags(applicableFlags);
+        }
+    }
+
+    @Override
+    public void event(Event event) {
+        if (event instanceof MailboxEvent) {
+            mailboxEvent((MailboxEvent) event);
+        }
+    }
+
+    private void mailboxEvent(MailboxEvent mailboxEvent) {
+        if (mailboxEvent instanceof Added) {
+            writeUids(() -> ((Added) mailboxEvent).getUids().forEach(uidMsnConverter::addUid));
+        } else if (mailboxEvent instanceof Expunged) {
+            List<MessageUid> expungedUids = ((Expunged) mailboxEvent).getUids();
+            writeUids(() -> {
+                subscribers.forEach(subscriber -> subscriber.addPendingExpungedUids(expungedUids));
+                uidMsnConverter.removeAll(expungedUids);
+            });
+        } else if (mailboxEvent instanceof FlagsUpdated) {
+            if (updateApplicableFlags((FlagsUpdated) mailboxEvent)) {
+                subscribers.forEach(SelectedMailboxImpl::applicableFlagsChanged);
+            }
+        } else if (mailboxEvent instanceof MailboxRenamed) {
+            path = ((MailboxRenamed) mailboxEvent).getNewPath();
+        }
+
+        subscribers.forEach(subscriber -> subscriber.event(mailboxEvent));
+    }
+
+    private boolean updateApplicableFlags(FlagsUpdated flagsUpdated) {
+        synchronized (applicableFlags) {
+            int size = applicableFlags.getUserFlags().length;
+            for (UpdatedFlags updatedFlags : flagsUpdated.getUpdatedFlags()) {
+                applicableFlags.add(updatedFlags.getNewFlags());
+            }
+            // \RECENT is not a applicable flag in imap so remove it from the list
+            applicableFlags.remove(Flags.Flag.RECENT);
+            return size < applicableFlags.getUserFlags().length;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imap.processor.base;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.james.mailbox.MailboxManager;
+import org.apache.james.mailbox.MailboxSession;
+import org.apache.james.mailbox.exception.MailboxException;
+import org.apache.james.mailbox.model.MailboxId;
+import org.apache.james.mailbox.model.MailboxPath;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Node wide, reference counted, registry of the {@link SharedMailboxState} of the currently selected mailboxes.
+ *
+ * The first selection of a mailbox loads its state, later selections reuse it. The state is discarded, and its
+ * listener unregistered, once the last session selecting the mailbox deselects it.
+ */
+public class SharedMailboxStateRegistry {
+    private final MailboxManager mailboxManager;
+    private final Map<MailboxId, SharedMailboxState> states;
+
+    public SharedMailboxStateRegistry(MailboxManager mailboxManager) {
+        this.mailboxManager = mailboxManager;
+        this.states = new HashMap<>();
+    }
+
+    SharedMailboxState acquire(MailboxPath path, MailboxSession mailboxSession, SelectedMailboxImpl subscriber) throws MailboxException {
+        MailboxId mailboxId = mailboxManager.getMailbox(path, mailboxSession).getId();
+        SharedMailboxState state;
+        synchronized (this) {
+            state = states.computeIfAbsent(mailboxId, id -> new SharedMailboxState(mailboxManager, id, path));
+            state.retain();
+            state.subscribe(subscriber);
+        }
+        try {
+            state.initialize(mailboxSession);
+            return state;
+        } catch (MailboxException e) {
+            release(state, mailboxSession, subscriber);
+            throw e;
+        }
+    }
+
+    void release(SharedMailboxState state, MailboxSession mailboxSession, SelectedMailboxImpl subscriber) {
+        boolean unused;
+        synchronized (this) {
+            state.unsubscribe(subscriber);
+            unused = state.release() == 0;
+            if (unused) {
+                states.remove(state.getMailboxId(), state);
+            }
+        }
+        if (unused) {
+            state.close(mailboxSession);
+        }
+    }
+
+    @VisibleForTesting
+    synchronized int sharedStateCount() {
+        return states.size();
+    }
+}
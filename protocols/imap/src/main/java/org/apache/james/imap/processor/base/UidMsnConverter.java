@@ -19,96 +19,231 @@
 
 package org.apache.james.imap.processor.base;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
-import java.util.TreeSet;
+import java.util.concurrent.locks.StampedLock;
 
 import org.apache.james.mailbox.MessageUid;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 
+/**
+ * Maps message sequence numbers to uids for a selected mailbox.
+ *
+ * Uids are kept as a sorted array of primitive longs. Reads are optimistic and do not block, writes are serialized.
+ */
 public class UidMsnConverter {
 
     public static final int FIRST_MSN = 1;
+    private static final long[] EMPTY = new long[0];
+    private static final int MINIMUM_CAPACITY = 16;
+    private static final int SHRINK_FACTOR = 4;
 
-    @VisibleForTesting final ArrayList<MessageUid> uids;
+    @FunctionalInterface
+    private interface SnapshotReader<T> {
+        T read(long[] uids, int size);
+    }
+
+    private final StampedLock lock;
+    @VisibleForTesting long[] uids;
+    @VisibleForTesting int size;
 
     public UidMsnConverter() {
-        this.uids = Lists.newArrayList();
+        this.lock = new StampedLock();
+        this.uids = EMPTY;
+        this.size = 0;
     }
 
-    public synchronized void addAll(List<MessageUid> addedUids) {
-        TreeSet<MessageUid> tmp = new TreeSet<>();
-        tmp.addAll(uids);
-        tmp.addAll(addedUids);
-        uids.clear();
-        uids.addAll(tmp);
+    public void addAll(List<MessageUid> addedUids) {
+        long[] sortedAddedUids = addedUids.stream()
+            .mapToLong(MessageUid::asLong)
+            .sorted()
+            .distinct()
+            .toArray();
+
+        long stamp = lock.writeLock();
+        try {
+            merge(sortedAddedUids);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    public synchronized Optional<Integer> getMsn(MessageUid uid) {
-        int position = Collections.binarySearch(uids, uid);
-        if (position < 0) {
-            return Optional.empty();
+    private void merge(long[] sortedAddedUids) {
+        long[] merged = new long[Math.max(MINIMUM_CAPACITY, size + sortedAddedUids.length)];
+        int mergedSize = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size || j < sortedAddedUids.length) {
+            long next;
+            if (j == sortedAddedUids.length || (i < size && uids[i] <= sortedAddedUids[j])) {
+                next = uids[i++];
+            } else {
+                next = sortedAddedUids[j++];
+            }
+            if (mergedSize == 0 || merged[mergedSize - 1] != next) {
+                merged[mergedSize++] = next;
+            }
         }
-        return Optional.of(position + 1);
+        uids = merged;
+        size = mergedSize;
+    }
+
+    public Optional<Integer> getMsn(MessageUid uid) {
+        return read((uids, size) -> {
+            int position = Arrays.binarySearch(uids, 0, size, uid.asLong());
+            if (position < 0) {
+                return Optional.empty();
+            }
+            return Optional.of(position + 1);
+        });
+    }
+
+    /**
+     * @return the number of known uids strictly lower than the given one
+     */
+    public int countLowerThan(MessageUid uid) {
+        return read((uids, size) -> {
+            int position = Arrays.binarySearch(uids, 0, size, uid.asLong());
+            if (position < 0) {
+                return -position - 1;
+            }
+            return position;
+        });
+    }
+
+    public boolean contains(MessageUid uid) {
+        return read((uids, size) -> Arrays.binarySearch(uids, 0, size, uid.asLong()) >= 0);
     }
 
-    public synchronized Optional<MessageUid> getUid(int msn) {
-        if (msn <= uids.size() && msn > 0) {
-            return Optional.of(uids.get(msn - 1));
+    public Optional<MessageUid> getUid(int msn) {
+        return read((uids, size) -> uidAt(uids, size, msn));
+    }
+
+    private static Optional<MessageUid> uidAt(long[] uids, int size, int msn) {
+        if (msn <= size && msn > 0) {
+            return Optional.of(MessageUid.of(uids[msn - 1]));
         }
         return Optional.empty();
     }
 
-    public synchronized Optional<MessageUid> getLastUid() {
-        if (uids.isEmpty()) {
-            return Optional.empty();
-        }
-        return getUid(getLastMsn());
+    public Optional<MessageUid> getLastUid() {
+        return read((uids, size) -> uidAt(uids, size, size));
     }
 
-    public synchronized Optional<MessageUid> getFirstUid() {
+    public Optional<MessageUid> getFirstUid() {
         return getUid(FIRST_MSN);
     }
 
-    public synchronized int getNumMessage() {
-        return uids.size();
+    public int getNumMessage() {
+        return read((uids, size) -> size);
     }
 
-    public synchronized void remove(MessageUid uid) {
-        uids.remove(uid);
+    public void remove(MessageUid uid) {
+        long stamp = lock.writeLock();
+        try {
+            int position = Arrays.binarySearch(uids, 0, size, uid.asLong());
+            if (position >= 0) {
+                System.arraycopy(uids, position + 1, uids, position, size - position - 1);
+                size--;
+                shrinkIfNeeded();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    public synchronized boolean isEmpty() {
-        return uids.isEmpty();
+    /**
+     * Removes all the given uids in a single pass over the mapping.
+     */
+    public void removeAll(Collection<MessageUid> removedUids) {
+        long[] sortedRemovedUids = removedUids.stream()
+            .mapToLong(MessageUid::asLong)
+            .sorted()
+            .toArray();
+
+        long stamp = lock.writeLock();
+        try {
+            int keptCount = 0;
+            int j = 0;
+            for (int i = 0; i < size; i++) {
+                while (j < sortedRemovedUids.length && sortedRemovedUids[j] < uids[i]) {
+                    j++;
+                }
+                if (j == sortedRemovedUids.length || sortedRemovedUids[j] != uids[i]) {
+                    uids[keptCount++] = uids[i];
+                }
+            }
+            size = keptCount;
+            shrinkIfNeeded();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
     }
 
-    public synchronized void clear() {
-        uids.clear();
+    public boolean isEmpty() {
+        return getNumMessage() == 0;
     }
 
-    public synchronized void addUid(MessageUid uid) {
-        if (uids.contains(uid)) {
-            return;
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            uids = EMPTY;
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
         }
-        if (isLastUid(uid)) {
-            uids.add(uid);
-        } else {
-            uids.add(uid);
-            Collections.sort(uids);
+    }
+
+    public void addUid(MessageUid uid) {
+        long stamp = lock.writeLock();
+        try {
+            int position = Arrays.binarySearch(uids, 0, size, uid.asLong());
+            if (position >= 0) {
+                return;
+            }
+            int insertionPoint = -position - 1;
+            ensureCapacity(size + 1);
+            System.arraycopy(uids, insertionPoint, uids, insertionPoint + 1, size - insertionPoint);
+            uids[insertionPoint] = uid.asLong();
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
         }
     }
 
-    private boolean isLastUid(MessageUid uid) {
-        Optional<MessageUid> lastUid = getLastUid();
-        return !lastUid.isPresent() ||
-            lastUid.get().compareTo(uid) < 0;
+    private void ensureCapacity(int capacity) {
+        if (capacity > uids.length) {
+            int newCapacity = Math.max(MINIMUM_CAPACITY, Math.max(capacity, uids.length + (uids.length >> 1)));
+            uids = Arrays.copyOf(uids, newCapacity);
+        }
     }
 
-    private int getLastMsn() {
-        return getNumMessage();
+    private void shrinkIfNeeded() {
+        if (uids.length > MINIMUM_CAPACITY && size < uids.length / SHRINK_FACTOR) {
+            uids = Arrays.copyOf(uids, Math.max(MINIMUM_CAPACITY, size * 2));
+        }
+    }
+
+    /**
+     * Optimistically reads the current state, and falls back to a read lock if a write happened meanwhile.
+     */
+    private <T> T read(SnapshotReader<T> reader) {
+        long stamp = lock.tryOptimisticRead();
+        long[] currentUids = uids;
+        int currentSize = Math.min(size, currentUids.length);
+        T result = reader.read(currentUids, currentSize);
+        if (lock.validate(stamp)) {
+            return result;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return reader.read(uids, size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
     }
 }
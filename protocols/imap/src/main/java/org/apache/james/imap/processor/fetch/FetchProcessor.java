@@ -20,11 +20,14 @@
 package org.apache.james.imap.processor.fetch;
 
 import java.io.Closeable;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import org.apache.james.imap.api.ImapCommand;
+import org.apache.james.imap.api.ImapConfiguration;
 import org.apache.james.imap.api.ImapConstants;
 import org.apache.james.imap.api.ImapSessionUtils;
 import org.apache.james.imap.api.display.HumanReadableText;
@@ -58,11 +61,22 @@ import org.slf4j.LoggerFactory;
 public class FetchProcessor extends AbstractMailboxProcessor<FetchRequest> {
     private static final Logger LOGGER = LoggerFactory.getLogger(FetchProcessor.class);
 
+    private long maxPendingBytes = ImapConfiguration.DEFAULT_FETCH_MAX_PENDING_BYTES;
+    private Duration pendingWritesTimeout = ImapConfiguration.DEFAULT_FETCH_PENDING_WRITES_TIMEOUT;
+
     public FetchProcessor(ImapProcessor next, MailboxManager mailboxManager, StatusResponseFactory factory,
             MetricFactory metricFactory) {
         super(FetchRequest.class, next, mailboxManager, factory, metricFactory);
     }
 
+    @Override
+    public void configure(ImapConfiguration imapConfiguration) {
+        super.configure(imapConfiguration);
+
+        this.maxPendingBytes = imapConfiguration.getFetchMaxPendingBytes();
+        this.pendingWritesTimeout = imapConfiguration.getFetchPendingWritesTimeout();
+    }
+
     @Override
     protected void doProcess(FetchRequest request, ImapSession session, String tag, ImapCommand command, Responder responder) {
         final boolean useUids = request.isUseUids();
@@ -139,6 +153,13 @@ public class FetchProcessor extends AbstractMailboxProcessor<FetchRequest> {
      * Process the given message ranges by fetch them and pass them to the
      * {@link org.apache.james.imap.api.process.ImapProcessor.Responder}
      * 
+     * Responses are streamed: once written, a response is no longer referenced
+     * here, and the processing waits for the session to flush what exceeds
+     * the configured maximum of pending bytes before fetching further messages.
+     * While the client reads the last responses of a mapper batch, the next
+     * batch is already being fetched, but the whole mailbox content is never
+     * queued in memory.
+     * 
      * @param session
      * @param mailbox
      * @param ranges
@@ -165,6 +186,10 @@ public class FetchProcessor extends AbstractMailboxProcessor<FetchRequest> {
                 try {
                     final FetchResponse response = builder.build(fetch, result, mailbox, session, useUids);
                     responder.respond(response);
+                    if (!session.awaitPendingWrites(maxPendingBytes, pendingWritesTimeout)) {
+                        LOGGER.debug("Client connection can not be written to anymore, stop fetching messages");
+                        return;
+                    }
                 } catch (MessageRangeException e) {
                     // we can't for whatever reason find the message so
                     // just skip it and log it to debug
@@ -227,9 +252,40 @@ public class FetchProcessor extends AbstractMailboxProcessor<FetchRequest> {
 
             }
         }
+        bodyOctetsLimit(fetch).ifPresent(result::setBodyOctetsLimit);
         return result;
     }
 
+    /**
+     * When the message content is only requested through partial fetches of the base
+     * body or text, like <code>BODY[]&lt;0.1024&gt;</code> or <code>BODY[TEXT]&lt;0.1024&gt;</code>,
+     * the end of the last requested range bounds the number of body octets to read.
+     * Requests for the body structure or for message parts need the whole content.
+     */
+    private Optional<Long> bodyOctetsLimit(FetchData fetch) {
+        Collection<BodyFetchElement> bodyElements = fetch.getBodyElements();
+        if (fetch.isBody() || fetch.isBodyStructure() || bodyElements == null) {
+            return Optional.empty();
+        }
+        Optional<Long> limit = Optional.empty();
+        for (BodyFetchElement element : bodyElements) {
+            final int sectionType = element.getSectionType();
+            final int[] path = element.getPath();
+            final boolean isBase = (path == null || path.length == 0);
+            if (!isBase) {
+                return Optional.empty();
+            }
+            if (sectionType == BodyFetchElement.CONTENT || sectionType == BodyFetchElement.TEXT) {
+                if (element.getFirstOctet() == null || element.getNumberOfOctets() == null) {
+                    return Optional.empty();
+                }
+                long lastOctet = element.getFirstOctet() + element.getNumberOfOctets();
+                limit = Optional.of(Math.max(lastOctet, limit.orElse(0L)));
+            }
+        }
+        return limit;
+    }
+
     private void addContent(FetchGroupImpl result, int[] path, boolean isBase, int content) {
         if (isBase) {
             result.or(content);
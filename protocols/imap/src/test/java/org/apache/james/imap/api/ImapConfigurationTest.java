@@ -21,6 +21,7 @@ package org.apache.james.imap.api;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Rule;
@@ -185,4 +186,52 @@ public class ImapConfigurationTest {
 
         assertThat(imapConfiguration.isCondstoreEnable()).isFalse();
    }
-}
\ No newline at end of file
+
+    @Test
+    public void fetchMaxPendingBytesShouldHaveADefaultValue() {
+        ImapConfiguration imapConfiguration = ImapConfiguration.builder().build();
+
+        assertThat(imapConfiguration.getFetchMaxPendingBytes()).isEqualTo(ImapConfiguration.DEFAULT_FETCH_MAX_PENDING_BYTES);
+    }
+
+    @Test
+    public void fetchMaxPendingBytesShouldReturnSetValue() {
+        ImapConfiguration imapConfiguration = ImapConfiguration.builder()
+                .fetchMaxPendingBytes(1024)
+                .build();
+
+        assertThat(imapConfiguration.getFetchMaxPendingBytes()).isEqualTo(1024);
+    }
+
+    @Test
+    public void fetchMaxPendingBytesShouldThrowWhenZero() {
+        expectedException.expect(IllegalArgumentException.class);
+
+        ImapConfiguration.builder()
+                .fetchMaxPendingBytes(0);
+    }
+
+    @Test
+    public void fetchPendingWritesTimeoutShouldHaveADefaultValue() {
+        ImapConfiguration imapConfiguration = ImapConfiguration.builder().build();
+
+        assertThat(imapConfiguration.getFetchPendingWritesTimeout()).isEqualTo(ImapConfiguration.DEFAULT_FETCH_PENDING_WRITES_TIMEOUT);
+    }
+
+    @Test
+    public void fetchPendingWritesTimeoutShouldReturnSetValue() {
+        ImapConfiguration imapConfiguration = ImapConfiguration.builder()
+                .fetchPendingWritesTimeout(Duration.ofSeconds(30))
+                .build();
+
+        assertThat(imapConfiguration.getFetchPendingWritesTimeout()).isEqualTo(Duration.ofSeconds(30));
+    }
+
+    @Test
+    public void fetchPendingWritesTimeoutShouldThrowWhenZero() {
+        expectedException.expect(IllegalArgumentException.class);
+
+        ImapConfiguration.builder()
+                .fetchPendingWritesTimeout(Duration.ZERO);
+    }
+}
@@ -115,7 +115,7 @@ public class MailboxEventAnalyserTest {
         when(messageManager.getMessages(any(), any(), any()))
             .thenReturn(new SingleMessageResultIterator(messageResult));
 
-        testee = new SelectedMailboxImpl(mailboxManager, imapSession, MAILBOX_PATH);
+        testee = new SelectedMailboxImpl(mailboxManager, imapSession, MAILBOX_PATH, new SharedMailboxStateRegistry(mailboxManager));
     }
 
     @Test
@@ -24,6 +24,8 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Date;
@@ -53,6 +55,7 @@ import org.apache.james.mailbox.store.mail.model.Mailbox;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -112,7 +115,8 @@ public class SelectedMailboxImplTest {
         SelectedMailboxImpl selectedMailbox = new SelectedMailboxImpl(
             mailboxManager,
             imapSession,
-            mailboxPath);
+            mailboxPath,
+            new SharedMailboxStateRegistry(mailboxManager));
 
         assertThat(selectedMailbox.getLastUid().get()).isEqualTo(EMITTED_EVENT_UID);
     }
@@ -127,13 +131,55 @@ public class SelectedMailboxImplTest {
         new SelectedMailboxImpl(
             mailboxManager,
             imapSession,
-            mailboxPath);
+            mailboxPath,
+            new SharedMailboxStateRegistry(mailboxManager));
 
         assertThat(successCount.get())
             .as("Get the incremented value in case of successful event processing.")
             .isEqualTo(1);
     }
 
+    @Test
+    public void selectionsOfTheSameMailboxShouldShareASingleListener() throws Exception {
+        SharedMailboxStateRegistry registry = new SharedMailboxStateRegistry(mailboxManager);
+
+        SelectedMailboxImpl selectedMailbox1 = new SelectedMailboxImpl(mailboxManager, imapSession, mailboxPath, registry);
+        SelectedMailboxImpl selectedMailbox2 = new SelectedMailboxImpl(mailboxManager, imapSession, mailboxPath, registry);
+
+        verify(mailboxManager, times(1)).addListener(eq(mailboxPath), any(MailboxListener.class), any(MailboxSession.class));
+        assertThat(registry.sharedStateCount()).isEqualTo(1);
+
+        selectedMailbox1.deselect();
+        verify(mailboxManager, times(0)).removeListener(eq(mailboxPath), any(MailboxListener.class), any(MailboxSession.class));
+
+        selectedMailbox2.deselect();
+        verify(mailboxManager, times(1)).removeListener(eq(mailboxPath), any(MailboxListener.class), any(MailboxSession.class));
+        assertThat(registry.sharedStateCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void expungedMessagesShouldKeepTheirMsnUntilNotifiedToEachSession() throws Exception {
+        SharedMailboxStateRegistry registry = new SharedMailboxStateRegistry(mailboxManager);
+        SelectedMailboxImpl selectedMailbox1 = new SelectedMailboxImpl(mailboxManager, imapSession, mailboxPath, registry);
+        SelectedMailboxImpl selectedMailbox2 = new SelectedMailboxImpl(mailboxManager, imapSession, mailboxPath, registry);
+        ArgumentCaptor<MailboxListener> listenerCaptor = ArgumentCaptor.forClass(MailboxListener.class);
+        verify(mailboxManager).addListener(eq(mailboxPath), listenerCaptor.capture(), any(MailboxSession.class));
+
+        MessageUid uid1 = MessageUid.of(1);
+        listenerCaptor.getValue().event(new EventFactory().expunged(mock(MailboxSession.class),
+            ImmutableMap.of(uid1, new SimpleMessageMetaData(uid1, MOD_SEQ, new Flags(), SIZE, new Date(), new DefaultMessageId())),
+            mailbox));
+
+        assertThat(selectedMailbox1.remove(uid1)).isEqualTo(1);
+        assertThat(selectedMailbox1.existsCount()).isEqualTo(1);
+        assertThat(selectedMailbox1.msn(MessageUid.of(3))).isEqualTo(1);
+
+        assertThat(selectedMailbox2.existsCount()).isEqualTo(2);
+        assertThat(selectedMailbox2.msn(MessageUid.of(3))).isEqualTo(2);
+        assertThat(selectedMailbox2.uid(1)).contains(uid1);
+        assertThat(selectedMailbox2.expungedUids()).containsOnly(uid1);
+    }
+
     private Answer<Iterator<MessageUid>> delayedSearchAnswer() {
         return invocation -> {
             Thread.sleep(1000);
@@ -363,6 +363,43 @@ public class UidMsnConverterTest {
             .isEqualTo(ImmutableMap.of(1, messageUid1));
     }
 
+    @Test
+    public void removeAllShouldKeepAMonoticMSNToUIDConversionMapping() {
+        testee.addAll(ImmutableList.of(messageUid1, messageUid2, messageUid3, messageUid4));
+
+        testee.removeAll(ImmutableList.of(messageUid3, messageUid1));
+
+        assertThat(mapTesteeInternalDataToMsnByUid())
+            .isEqualTo(ImmutableMap.of(
+                1, messageUid2,
+                2, messageUid4));
+    }
+
+    @Test
+    public void removeAllShouldIgnoreUnknownUids() {
+        testee.addAll(ImmutableList.of(messageUid1, messageUid3));
+
+        testee.removeAll(ImmutableList.of(messageUid2, messageUid4));
+
+        assertThat(mapTesteeInternalDataToMsnByUid())
+            .isEqualTo(ImmutableMap.of(
+                1, messageUid1,
+                2, messageUid3));
+    }
+
+    @Test
+    public void addUidShouldKeepMappingWhenGrowingAndShrinking() {
+        for (int i = 1; i <= 100; i++) {
+            testee.addUid(MessageUid.of(i));
+        }
+        for (int i = 1; i < 100; i++) {
+            testee.remove(MessageUid.of(i));
+        }
+
+        assertThat(mapTesteeInternalDataToMsnByUid())
+            .isEqualTo(ImmutableMap.of(1, MessageUid.of(100)));
+    }
+
     @Test
     public void addAndRemoveShouldLeadToMonoticMSNToUIDConversionWhenMixed() throws Exception {
         int initialCount = 1000;
@@ -433,8 +470,8 @@ public class UidMsnConverterTest {
 
     private Map<Integer, MessageUid> mapTesteeInternalDataToMsnByUid() {
         ImmutableMap.Builder<Integer, MessageUid> result = ImmutableMap.builder();
-        for (int i = 0; i < testee.uids.size(); i++) {
-            result.put(i + 1, testee.uids.get(i));
+        for (int i = 0; i < testee.size; i++) {
+            result.put(i + 1, MessageUid.of(testee.uids[i]));
         }
         return result.build();
     }
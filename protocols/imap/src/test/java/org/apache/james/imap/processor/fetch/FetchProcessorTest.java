@@ -0,0 +1,96 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imap.processor.fetch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import org.apache.james.imap.api.message.BodyFetchElement;
+import org.apache.james.imap.api.message.FetchData;
+import org.apache.james.imap.api.message.response.StatusResponseFactory;
+import org.apache.james.imap.api.process.ImapProcessor;
+import org.apache.james.mailbox.MailboxManager;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FetchProcessorTest {
+    private static final boolean PEEK = true;
+    private static final int[] BASE = null;
+
+    private FetchProcessor testee;
+
+    @Before
+    public void setUp() {
+        testee = new FetchProcessor(mock(ImapProcessor.class), mock(MailboxManager.class),
+            mock(StatusResponseFactory.class), new NoopMetricFactory());
+    }
+
+    @Test
+    public void getFetchGroupShouldLimitBodyOctetsOfPartialContentFetch() {
+        FetchData fetch = new FetchData();
+        fetch.add(new BodyFetchElement("BODY[]", BodyFetchElement.CONTENT, BASE, null, 10L, 1024L), PEEK);
+
+        assertThat(testee.getFetchGroup(fetch).getBodyOctetsLimit()).contains(1034L);
+    }
+
+    @Test
+    public void getFetchGroupShouldUseTheEndOfTheLastRequestedRange() {
+        FetchData fetch = new FetchData();
+        fetch.add(new BodyFetchElement("BODY[]", BodyFetchElement.CONTENT, BASE, null, 0L, 100L), PEEK);
+        fetch.add(new BodyFetchElement("BODY[TEXT]", BodyFetchElement.TEXT, BASE, null, 0L, 1024L), PEEK);
+
+        assertThat(testee.getFetchGroup(fetch).getBodyOctetsLimit()).contains(1024L);
+    }
+
+    @Test
+    public void getFetchGroupShouldNotLimitBodyOctetsWhenOnlyHeadersAreFetched() {
+        FetchData fetch = new FetchData();
+        fetch.add(new BodyFetchElement("BODY[HEADER]", BodyFetchElement.HEADER, BASE, null, null, null), PEEK);
+
+        assertThat(testee.getFetchGroup(fetch).getBodyOctetsLimit()).isEmpty();
+    }
+
+    @Test
+    public void getFetchGroupShouldNotLimitBodyOctetsWhenAWholeContentIsFetched() {
+        FetchData fetch = new FetchData();
+        fetch.add(new BodyFetchElement("BODY[]", BodyFetchElement.CONTENT, BASE, null, 0L, 100L), PEEK);
+        fetch.add(BodyFetchElement.createRFC822Text(), PEEK);
+
+        assertThat(testee.getFetchGroup(fetch).getBodyOctetsLimit()).isEmpty();
+    }
+
+    @Test
+    public void getFetchGroupShouldNotLimitBodyOctetsWhenBodyStructureIsFetched() {
+        FetchData fetch = new FetchData();
+        fetch.setBodyStructure(true);
+        fetch.add(new BodyFetchElement("BODY[]", BodyFetchElement.CONTENT, BASE, null, 0L, 100L), PEEK);
+
+        assertThat(testee.getFetchGroup(fetch).getBodyOctetsLimit()).isEmpty();
+    }
+
+    @Test
+    public void getFetchGroupShouldNotLimitBodyOctetsWhenAPartIsFetched() {
+        FetchData fetch = new FetchData();
+        fetch.add(new BodyFetchElement("BODY[1]", BodyFetchElement.CONTENT, new int[] {1}, null, 0L, 100L), PEEK);
+
+        assertThat(testee.getFetchGroup(fetch).getBodyOctetsLimit()).isEmpty();
+    }
+}
@@ -18,16 +18,73 @@
  ****************************************************************/
 package org.apache.james.blob.api;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 
+import com.google.common.base.Preconditions;
+import com.google.common.io.ByteSource;
+
 public interface BlobStore {
 
     CompletableFuture<BlobId> save(byte[] data);
 
+    /**
+     * Saves the content of the given stream.
+     *
+     * Implementations backed by a remote storage should avoid materializing the whole content in memory.
+     */
     CompletableFuture<BlobId> save(InputStream data);
 
+    /**
+     * Saves a content whose identifier was already computed by the caller, typically while spooling it.
+     *
+     * The given identifier needs to be the one this store would compute for this content, otherwise the returned
+     * future fails with an {@link IllegalArgumentException}. Implementations identifying blobs by their content should
+     * override this method to avoid spooling the content again, but need to check the identifier before writing it.
+     */
+    default CompletableFuture<BlobId> save(BlobId blobId, ByteSource content) {
+        try {
+            return save(content.openStream())
+                .thenApply(savedBlobId -> {
+                    Preconditions.checkArgument(savedBlobId.equals(blobId), "%s does not identify the given content", blobId.asString());
+                    return savedBlobId;
+                });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Tells whether a blob is stored under the given identifier. A blob is only reported once its save completed.
+     */
+    CompletableFuture<Boolean> exists(BlobId blobId);
+
     CompletableFuture<byte[]> readBytes(BlobId blobId);
 
+    /**
+     * Reads at most the maxLength leading bytes of the given blob.
+     *
+     * Implementations storing blobs in several parts should only fetch the parts holding these bytes.
+     */
+    default CompletableFuture<byte[]> readBytes(BlobId blobId, long maxLength) {
+        return readBytes(blobId)
+            .thenApply(bytes -> truncate(bytes, maxLength));
+    }
+
+    static byte[] truncate(byte[] bytes, long maxLength) {
+        if (bytes.length <= maxLength) {
+            return bytes;
+        }
+        return Arrays.copyOf(bytes, (int) maxLength);
+    }
+
+    /**
+     * Reads the content of the given blob.
+     *
+     * Implementations backed by a remote storage should fetch the content lazily, as the returned stream is consumed.
+     */
     InputStream read(BlobId blobId);
 }
@@ -0,0 +1,196 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.blob.api;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.FileBackedOutputStream;
+
+/**
+ * {@link BlobStore} decorator skipping the writes of blobs already stored.
+ *
+ * Relies on the content addressing of {@link HashBlobId}: the identifier of a blob is computed locally, then:
+ *
+ *  - it is compared with a bounded LRU of the identifiers this node recently stored. As blobs are never deleted, such
+ *  an identifier can safely be returned without writing the content again.
+ *  - otherwise a Bloom filter of all the identifiers this node stored tells whether the delegate may already hold the
+ *  blob. Only then is the delegate asked whether the blob exists, and the write skipped if it does. The Bloom filter
+ *  never skips a write on its own: it only spares an existence check, which would be wasted, for contents this node
+ *  never stored. Blobs stored by other nodes, or before a restart, are thus written again, like without deduplication.
+ *
+ * Concurrent saves of the same content are coalesced into a single write.
+ *
+ * Streamed contents are spooled, and hashed at the same time, off the caller thread. The delegate is then handed the
+ * spooled content along with its identifier, so that it does not need to hash it again.
+ */
+public class DeduplicatingBlobStore implements BlobStore {
+    public static final long DEFAULT_MAXIMUM_CACHED_BLOB_IDS = 100_000;
+    // Past this many identifiers, false positives of the Bloom filter lead to more useless existence checks
+    private static final long BLOOM_FILTER_INSERTIONS_PER_CACHED_BLOB_ID = 10;
+    private static final double BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY = 0.01;
+    private static final int IN_MEMORY_SPOOL_THRESHOLD = 100 * 1024;
+    private static final boolean RESET_ON_FINALIZE = true;
+
+    private final BlobStore delegate;
+    private final HashBlobId.Factory blobIdFactory;
+    private final Cache<BlobId, Boolean> storedBlobIds;
+    private final BloomFilter<CharSequence> mayBeStoredBlobIds;
+    private final ConcurrentHashMap<BlobId, CompletableFuture<BlobId>> pendingSaves;
+
+    public DeduplicatingBlobStore(BlobStore delegate, HashBlobId.Factory blobIdFactory, long maximumCachedBlobIds) {
+        Preconditions.checkArgument(maximumCachedBlobIds > 0, "maximumCachedBlobIds needs to be strictly positive");
+        this.delegate = delegate;
+        this.blobIdFactory = blobIdFactory;
+        this.storedBlobIds = CacheBuilder.newBuilder()
+            .maximumSize(maximumCachedBlobIds)
+            .build();
+        this.mayBeStoredBlobIds = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+            maximumCachedBlobIds * BLOOM_FILTER_INSERTIONS_PER_CACHED_BLOB_ID,
+            BLOOM_FILTER_FALSE_POSITIVE_PROBABILITY);
+        this.pendingSaves = new ConcurrentHashMap<>();
+    }
+
+    public DeduplicatingBlobStore(BlobStore delegate, HashBlobId.Factory blobIdFactory) {
+        this(delegate, blobIdFactory, DEFAULT_MAXIMUM_CACHED_BLOB_IDS);
+    }
+
+    @Override
+    public CompletableFuture<BlobId> save(byte[] data) {
+        Preconditions.checkNotNull(data);
+
+        return saveIfUnknown(blobIdFactory.forPayload(data), () -> delegate.save(data));
+    }
+
+    @Override
+    public CompletableFuture<BlobId> save(InputStream data) {
+        Preconditions.checkNotNull(data);
+
+        FileBackedOutputStream spool = new FileBackedOutputStream(IN_MEMORY_SPOOL_THRESHOLD, RESET_ON_FINALIZE);
+        return CompletableFuture.supplyAsync(() -> spool(data, spool))
+            .thenCompose(blobId -> saveIfUnknown(blobId, () -> delegate.save(blobId, spool.asByteSource())))
+            .whenComplete((result, error) -> resetQuietly(spool));
+    }
+
+    private HashBlobId spool(InputStream data, FileBackedOutputStream spool) {
+        try {
+            HashingOutputStream hashingOutputStream = new HashingOutputStream(Hashing.sha256(), spool);
+            ByteStreams.copy(data, hashingOutputStream);
+            hashingOutputStream.close();
+            return blobIdFactory.from(hashingOutputStream.hash().toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void resetQuietly(FileBackedOutputStream spool) {
+        try {
+            spool.reset();
+        } catch (IOException e) {
+            // Temporary file will be deleted upon finalization
+        }
+    }
+
+    private CompletableFuture<BlobId> saveIfUnknown(BlobId blobId, Supplier<CompletableFuture<BlobId>> save) {
+        if (storedBlobIds.getIfPresent(blobId) != null) {
+            return CompletableFuture.completedFuture(blobId);
+        }
+
+        CompletableFuture<BlobId> pendingSave = new CompletableFuture<>();
+        CompletableFuture<BlobId> concurrentSave = pendingSaves.putIfAbsent(blobId, pendingSave);
+        if (concurrentSave != null) {
+            return concurrentSave;
+        }
+
+        try {
+            saveIfNotStored(blobId, save).whenComplete((savedBlobId, error) -> {
+                pendingSaves.remove(blobId, pendingSave);
+                if (error != null) {
+                    pendingSave.completeExceptionally(error);
+                } else {
+                    if (savedBlobId.equals(blobId)) {
+                        storedBlobIds.put(blobId, true);
+                        mayBeStoredBlobIds.put(blobId.asString());
+                    }
+                    pendingSave.complete(savedBlobId);
+                }
+            });
+        } catch (RuntimeException e) {
+            pendingSaves.remove(blobId, pendingSave);
+            pendingSave.completeExceptionally(e);
+        }
+        return pendingSave;
+    }
+
+    private CompletableFuture<BlobId> saveIfNotStored(BlobId blobId, Supplier<CompletableFuture<BlobId>> save) {
+        if (!mayBeStoredBlobIds.mightContain(blobId.asString())) {
+            return save.get();
+        }
+        return delegate.exists(blobId)
+            .thenCompose(exists -> {
+                if (exists) {
+                    return CompletableFuture.completedFuture(blobId);
+                }
+                return save.get();
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(BlobId blobId) {
+        if (storedBlobIds.getIfPresent(blobId) != null) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return delegate.exists(blobId);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> readBytes(BlobId blobId) {
+        return delegate.readBytes(blobId);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> readBytes(BlobId blobId, long maxLength) {
+        return delegate.readBytes(blobId, maxLength);
+    }
+
+    @Override
+    public InputStream read(BlobId blobId) {
+        return delegate.read(blobId);
+    }
+
+    @VisibleForTesting
+    long cachedBlobIdCount() {
+        return storedBlobIds.size();
+    }
+}
@@ -31,6 +31,7 @@ import org.apache.commons.io.IOUtils;
 import org.junit.jupiter.api.Test;
 
 import com.google.common.base.Strings;
+import com.google.common.io.ByteSource;
 
 public interface BlobStoreContract {
 
@@ -83,6 +84,38 @@ public interface BlobStoreContract {
         assertThat(blobId).isEqualTo(blobIdFactory().from("31f7a65e315586ac198bd798b6629ce4903d0899476d5741a9f32e2e521b6a66"));
     }
 
+    @Test
+    default void saveWithBlobIdShouldSaveTheGivenContent() throws Exception {
+        byte[] data = Strings.repeat("0123456789\n", 1000).getBytes(StandardCharsets.UTF_8);
+        BlobId expectedBlobId = blobIdFactory().forPayload(data);
+
+        BlobId blobId = testee().save(expectedBlobId, ByteSource.wrap(data)).join();
+
+        assertThat(blobId).isEqualTo(expectedBlobId);
+        assertThat(testee().readBytes(blobId).join()).isEqualTo(data);
+    }
+
+    @Test
+    default void saveWithBlobIdShouldFailWhenTheBlobIdDoesNotIdentifyTheContent() throws Exception {
+        byte[] data = "toto".getBytes(StandardCharsets.UTF_8);
+        BlobId otherBlobId = blobIdFactory().forPayload("other".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> testee().save(otherBlobId, ByteSource.wrap(data)).join())
+            .hasCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    default void existsShouldReturnFalseWhenNoExisting() throws Exception {
+        assertThat(testee().exists(blobIdFactory().from("unknown")).join()).isFalse();
+    }
+
+    @Test
+    default void existsShouldReturnTrueWhenSaved() throws Exception {
+        BlobId blobId = testee().save("toto".getBytes(StandardCharsets.UTF_8)).join();
+
+        assertThat(testee().exists(blobId).join()).isTrue();
+    }
+
     @Test
     default void readBytesShouldBeEmptyWhenNoExisting() throws IOException {
         byte[] bytes = testee().readBytes(blobIdFactory().from("unknown")).join();
@@ -120,6 +153,42 @@ public interface BlobStoreContract {
         assertThat(new String(bytes, StandardCharsets.UTF_8)).isEqualTo(bigString);
     }
 
+    @Test
+    default void readBytesWithMaxLengthShouldBeEmptyWhenNoExisting() throws IOException {
+        byte[] bytes = testee().readBytes(blobIdFactory().from("unknown"), 10).join();
+
+        assertThat(bytes).isEmpty();
+    }
+
+    @Test
+    default void readBytesWithMaxLengthShouldReturnLeadingBytes() throws IOException {
+        BlobId blobId = testee().save("toto".getBytes(StandardCharsets.UTF_8)).join();
+
+        byte[] bytes = testee().readBytes(blobId, 2).join();
+
+        assertThat(new String(bytes, StandardCharsets.UTF_8)).isEqualTo("to");
+    }
+
+    @Test
+    default void readBytesWithMaxLengthShouldReturnWholeDataWhenShorter() throws IOException {
+        BlobId blobId = testee().save("toto".getBytes(StandardCharsets.UTF_8)).join();
+
+        byte[] bytes = testee().readBytes(blobId, 10).join();
+
+        assertThat(new String(bytes, StandardCharsets.UTF_8)).isEqualTo("toto");
+    }
+
+    @Test
+    default void readBytesWithMaxLengthShouldReturnLeadingBytesOfBigSavedData() throws IOException {
+        // 12 MB of text
+        String bigString = Strings.repeat("0123456789\r\n", 1024 * 1024);
+        BlobId blobId = testee().save(bigString.getBytes(StandardCharsets.UTF_8)).join();
+
+        byte[] bytes = testee().readBytes(blobId, 1024 * 1024 + 5).join();
+
+        assertThat(new String(bytes, StandardCharsets.UTF_8)).isEqualTo(bigString.substring(0, 1024 * 1024 + 5));
+    }
+
     @Test
     default void readShouldBeEmptyWhenNoExistingStream() throws IOException {
         InputStream stream = testee().read(blobIdFactory().from("unknown"));
@@ -159,4 +228,27 @@ public interface BlobStoreContract {
 
         assertThat(read).hasSameContentAs(new ByteArrayInputStream(bytes));
     }
+
+    @Test
+    default void readShouldReturnBigSavedInputStream() throws IOException {
+        // 12 MB of text
+        String bigString = Strings.repeat("0123456789\r\n", 1024 * 1024);
+        byte[] bytes = bigString.getBytes(StandardCharsets.UTF_8);
+        BlobId blobId = testee().save(new ByteArrayInputStream(bytes)).join();
+
+        InputStream read = testee().read(blobId);
+
+        assertThat(read).hasSameContentAs(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    default void saveInputStreamShouldReturnSameBlobIdThanSaveBytes() throws IOException {
+        String longString = Strings.repeat("0123456789\n", 1000);
+        byte[] bytes = longString.getBytes(StandardCharsets.UTF_8);
+
+        BlobId blobIdOfBytes = testee().save(bytes).join();
+        BlobId blobIdOfInputStream = testee().save(new ByteArrayInputStream(bytes)).join();
+
+        assertThat(blobIdOfInputStream).isEqualTo(blobIdOfBytes);
+    }
 }
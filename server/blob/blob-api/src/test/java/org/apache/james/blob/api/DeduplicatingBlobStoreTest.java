@@ -0,0 +1,195 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.blob.api;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.io.ByteSource;
+
+class DeduplicatingBlobStoreTest {
+    private static final HashBlobId.Factory BLOB_ID_FACTORY = new HashBlobId.Factory();
+    private static final byte[] DATA = "toto".getBytes(StandardCharsets.UTF_8);
+    private static final BlobId BLOB_ID = BLOB_ID_FACTORY.forPayload(DATA);
+
+    private BlobStore delegate;
+    private DeduplicatingBlobStore testee;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(BlobStore.class);
+        when(delegate.save(any(byte[].class))).thenReturn(CompletableFuture.completedFuture(BLOB_ID));
+        when(delegate.save(any(BlobId.class), any(ByteSource.class))).thenReturn(CompletableFuture.completedFuture(BLOB_ID));
+        testee = new DeduplicatingBlobStore(delegate, BLOB_ID_FACTORY);
+    }
+
+    @Test
+    void saveShouldReturnBlobIdOfTheContent() {
+        assertThat(testee.save(DATA).join()).isEqualTo(BLOB_ID);
+    }
+
+    @Test
+    void saveShouldNotWriteTwiceTheSameContent() {
+        testee.save(DATA).join();
+        testee.save(DATA).join();
+
+        verify(delegate, times(1)).save(any(byte[].class));
+    }
+
+    @Test
+    void saveInputStreamShouldNotWriteTwiceTheSameContent() {
+        testee.save(new ByteArrayInputStream(DATA)).join();
+        BlobId blobId = testee.save(new ByteArrayInputStream(DATA)).join();
+
+        assertThat(blobId).isEqualTo(BLOB_ID);
+        verify(delegate, times(1)).save(any(BlobId.class), any(ByteSource.class));
+    }
+
+    @Test
+    void saveInputStreamShouldHandTheSpooledContentAndItsBlobIdToTheDelegate() {
+        AtomicReference<byte[]> savedContent = new AtomicReference<>();
+        when(delegate.save(any(BlobId.class), any(ByteSource.class))).thenAnswer(invocation -> {
+            savedContent.set(invocation.<ByteSource>getArgument(1).read());
+            return CompletableFuture.completedFuture(invocation.getArgument(0));
+        });
+
+        assertThat(testee.save(new ByteArrayInputStream(DATA)).join()).isEqualTo(BLOB_ID);
+        verify(delegate).save(eq(BLOB_ID), any(ByteSource.class));
+        verify(delegate, times(0)).save(any(InputStream.class));
+        assertThat(savedContent.get()).isEqualTo(DATA);
+    }
+
+    @Test
+    void saveInputStreamShouldNotReadTheStreamOnTheCallerThread() {
+        AtomicReference<Thread> readingThread = new AtomicReference<>();
+        InputStream data = new ByteArrayInputStream(DATA) {
+            @Override
+            public synchronized int read(byte[] bytes, int offset, int length) {
+                readingThread.set(Thread.currentThread());
+                return super.read(bytes, offset, length);
+            }
+        };
+
+        testee.save(data).join();
+
+        assertThat(readingThread.get()).isNotNull().isNotEqualTo(Thread.currentThread());
+    }
+
+    @Test
+    void saveInputStreamShouldNotWriteContentAlreadySavedAsBytes() {
+        testee.save(DATA).join();
+        testee.save(new ByteArrayInputStream(DATA)).join();
+
+        verify(delegate, times(0)).save(any(BlobId.class), any(ByteSource.class));
+    }
+
+    @Test
+    void concurrentSavesOfTheSameContentShouldBeCoalesced() {
+        CompletableFuture<BlobId> pendingWrite = new CompletableFuture<>();
+        when(delegate.save(any(byte[].class))).thenReturn(pendingWrite);
+
+        CompletableFuture<BlobId> firstSave = testee.save(DATA);
+        CompletableFuture<BlobId> secondSave = testee.save(DATA);
+        pendingWrite.complete(BLOB_ID);
+
+        assertThat(firstSave.join()).isEqualTo(BLOB_ID);
+        assertThat(secondSave.join()).isEqualTo(BLOB_ID);
+        verify(delegate, times(1)).save(any(byte[].class));
+    }
+
+    @Test
+    void failedSaveShouldNotBeCached() {
+        CompletableFuture<BlobId> failedWrite = new CompletableFuture<>();
+        failedWrite.completeExceptionally(new RuntimeException());
+        when(delegate.save(any(byte[].class)))
+            .thenReturn(failedWrite)
+            .thenReturn(CompletableFuture.completedFuture(BLOB_ID));
+
+        assertThatThrownBy(() -> testee.save(DATA).join())
+            .hasCauseInstanceOf(RuntimeException.class);
+        assertThat(testee.save(DATA).join()).isEqualTo(BLOB_ID);
+        verify(delegate, times(2)).save(any(byte[].class));
+    }
+
+    @Test
+    void saveShouldNotCheckExistenceOfContentsNeverStored() {
+        testee.save(DATA).join();
+
+        verify(delegate, never()).exists(any());
+    }
+
+    @Test
+    void saveShouldNotWriteContentEvictedFromTheCacheWhenItExists() {
+        testee = new DeduplicatingBlobStore(delegate, BLOB_ID_FACTORY, 1);
+        when(delegate.save(any(byte[].class))).thenAnswer(invocation ->
+            CompletableFuture.completedFuture(BLOB_ID_FACTORY.forPayload(invocation.getArgument(0))));
+        when(delegate.exists(BLOB_ID)).thenReturn(CompletableFuture.completedFuture(true));
+
+        testee.save(DATA).join();
+        testee.save("other".getBytes(StandardCharsets.UTF_8)).join();
+        BlobId blobId = testee.save(DATA).join();
+
+        assertThat(blobId).isEqualTo(BLOB_ID);
+        verify(delegate).exists(BLOB_ID);
+        verify(delegate, times(1)).save(DATA);
+    }
+
+    @Test
+    void saveShouldWriteContentEvictedFromTheCacheWhenItDoesNotExist() {
+        testee = new DeduplicatingBlobStore(delegate, BLOB_ID_FACTORY, 1);
+        when(delegate.save(any(byte[].class))).thenAnswer(invocation ->
+            CompletableFuture.completedFuture(BLOB_ID_FACTORY.forPayload(invocation.getArgument(0))));
+        when(delegate.exists(BLOB_ID)).thenReturn(CompletableFuture.completedFuture(false));
+
+        testee.save(DATA).join();
+        testee.save("other".getBytes(StandardCharsets.UTF_8)).join();
+        testee.save(DATA).join();
+
+        verify(delegate, times(2)).save(DATA);
+    }
+
+    @Test
+    void cacheShouldBeBounded() {
+        testee = new DeduplicatingBlobStore(delegate, BLOB_ID_FACTORY, 1);
+        when(delegate.save(any(byte[].class))).thenAnswer(invocation ->
+            CompletableFuture.completedFuture(BLOB_ID_FACTORY.forPayload(invocation.getArgument(0))));
+
+        testee.save(DATA).join();
+        testee.save("other".getBytes(StandardCharsets.UTF_8)).join();
+
+        assertThat(testee.cachedBlobIdCount()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,133 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.blob.cache;
+
+import java.io.File;
+import java.util.Objects;
+import java.util.Optional;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+public class BlobCacheConfiguration {
+    public static final long DEFAULT_DISK_CACHE_SIZE_IN_BYTES = 1024L * 1024 * 1024;
+    public static final long DEFAULT_HEAP_CACHE_SIZE_IN_BYTES = 16L * 1024 * 1024;
+    public static final int DEFAULT_HEAP_BLOB_MAX_SIZE_IN_BYTES = 8 * 1024;
+
+    public static class Builder {
+        private Optional<File> cacheDirectory = Optional.empty();
+        private Optional<Long> diskCacheSizeInBytes = Optional.empty();
+        private Optional<Long> heapCacheSizeInBytes = Optional.empty();
+        private Optional<Integer> heapBlobMaxSizeInBytes = Optional.empty();
+
+        public Builder cacheDirectory(File value) {
+            Preconditions.checkNotNull(value);
+            this.cacheDirectory = Optional.of(value);
+            return this;
+        }
+
+        public Builder diskCacheSizeInBytes(long value) {
+            Preconditions.checkArgument(value > 0, "diskCacheSizeInBytes needs to be strictly positive");
+            this.diskCacheSizeInBytes = Optional.of(value);
+            return this;
+        }
+
+        public Builder heapCacheSizeInBytes(long value) {
+            Preconditions.checkArgument(value > 0, "heapCacheSizeInBytes needs to be strictly positive");
+            this.heapCacheSizeInBytes = Optional.of(value);
+            return this;
+        }
+
+        public Builder heapBlobMaxSizeInBytes(int value) {
+            Preconditions.checkArgument(value >= 0, "heapBlobMaxSizeInBytes needs to be positive");
+            this.heapBlobMaxSizeInBytes = Optional.of(value);
+            return this;
+        }
+
+        public BlobCacheConfiguration build() {
+            Preconditions.checkState(cacheDirectory.isPresent(), "'cacheDirectory' is mandatory");
+
+            return new BlobCacheConfiguration(cacheDirectory.get(),
+                diskCacheSizeInBytes.orElse(DEFAULT_DISK_CACHE_SIZE_IN_BYTES),
+                heapCacheSizeInBytes.orElse(DEFAULT_HEAP_CACHE_SIZE_IN_BYTES),
+                heapBlobMaxSizeInBytes.orElse(DEFAULT_HEAP_BLOB_MAX_SIZE_IN_BYTES));
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private final File cacheDirectory;
+    private final long diskCacheSizeInBytes;
+    private final long heapCacheSizeInBytes;
+    private final int heapBlobMaxSizeInBytes;
+
+    private BlobCacheConfiguration(File cacheDirectory, long diskCacheSizeInBytes, long heapCacheSizeInBytes, int heapBlobMaxSizeInBytes) {
+        this.cacheDirectory = cacheDirectory;
+        this.diskCacheSizeInBytes = diskCacheSizeInBytes;
+        this.heapCacheSizeInBytes = heapCacheSizeInBytes;
+        this.heapBlobMaxSizeInBytes = heapBlobMaxSizeInBytes;
+    }
+
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public long getDiskCacheSizeInBytes() {
+        return diskCacheSizeInBytes;
+    }
+
+    public long getHeapCacheSizeInBytes() {
+        return heapCacheSizeInBytes;
+    }
+
+    public int getHeapBlobMaxSizeInBytes() {
+        return heapBlobMaxSizeInBytes;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (o instanceof BlobCacheConfiguration) {
+            BlobCacheConfiguration that = (BlobCacheConfiguration) o;
+
+            return Objects.equals(this.cacheDirectory, that.cacheDirectory)
+                && Objects.equals(this.diskCacheSizeInBytes, that.diskCacheSizeInBytes)
+                && Objects.equals(this.heapCacheSizeInBytes, that.heapCacheSizeInBytes)
+                && Objects.equals(this.heapBlobMaxSizeInBytes, that.heapBlobMaxSizeInBytes);
+        }
+        return false;
+    }
+
+    @Override
+    public final int hashCode() {
+        return Objects.hash(cacheDirectory, diskCacheSizeInBytes, heapCacheSizeInBytes, heapBlobMaxSizeInBytes);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("cacheDirectory", cacheDirectory)
+            .add("diskCacheSizeInBytes", diskCacheSizeInBytes)
+            .add("heapCacheSizeInBytes", heapCacheSizeInBytes)
+            .add("heapBlobMaxSizeInBytes", heapBlobMaxSizeInBytes)
+            .toString();
+    }
+}
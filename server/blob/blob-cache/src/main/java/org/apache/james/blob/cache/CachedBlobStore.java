@@ -0,0 +1,432 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.blob.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.james.blob.api.BlobId;
+import org.apache.james.blob.api.BlobStore;
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.common.primitives.Ints;
+
+/**
+ * {@link BlobStore} decorator keeping recently saved and read blobs in a local two tiers cache:
+ *
+ *  - blobs smaller than {@link BlobCacheConfiguration#getHeapBlobMaxSizeInBytes()}, typically message headers, are
+ *  kept on heap.
+ *  - other blobs are stored as files in a dedicated subdirectory of
+ *  {@link BlobCacheConfiguration#getCacheDirectory()}, and read through memory mapping.
+ *
+ * Heap cached blobs are copied when cached and when read, as callers may modify their arrays.
+ *
+ * Both tiers are size bounded and evict least recently used blobs first. The dedicated subdirectory is emptied upon
+ * creation, as its index is only kept in memory. Other files of the configured directory are left untouched.
+ */
+public class CachedBlobStore implements BlobStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachedBlobStore.class);
+    @VisibleForTesting
+    static final String CACHE_SUBDIRECTORY = "james-blob-cache";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    // A single segment keeps the bound on the disk usage accurate
+    private static final int DISK_CACHE_CONCURRENCY_LEVEL = 1;
+
+    private final BlobStore backend;
+    private final BlobCacheConfiguration configuration;
+    private final Path cacheDirectory;
+    private final Cache<BlobId, byte[]> heapCache;
+    private final Cache<BlobId, Path> diskCache;
+    private final Metric heapHitMetric;
+    private final Metric diskHitMetric;
+    private final Metric missMetric;
+
+    public CachedBlobStore(BlobStore backend, BlobCacheConfiguration configuration, MetricFactory metricFactory) throws IOException {
+        this.backend = backend;
+        this.configuration = configuration;
+        this.cacheDirectory = configuration.getCacheDirectory().toPath().resolve(CACHE_SUBDIRECTORY);
+        this.heapHitMetric = metricFactory.generate("blobStore.cache.heap.hit");
+        this.diskHitMetric = metricFactory.generate("blobStore.cache.disk.hit");
+        this.missMetric = metricFactory.generate("blobStore.cache.miss");
+
+        Files.createDirectories(cacheDirectory);
+        FileUtils.cleanDirectory(cacheDirectory.toFile());
+
+        this.heapCache = CacheBuilder.newBuilder()
+            .maximumWeight(configuration.getHeapCacheSizeInBytes())
+            .<BlobId, byte[]>weigher((blobId, bytes) -> bytes.length)
+            .build();
+        RemovalListener<BlobId, Path> deleteEvictedFile = notification -> {
+            if (notification.getCause() != RemovalCause.REPLACED) {
+                deleteQuietly(notification.getValue());
+            }
+        };
+        this.diskCache = CacheBuilder.newBuilder()
+            .concurrencyLevel(DISK_CACHE_CONCURRENCY_LEVEL)
+            .maximumWeight(configuration.getDiskCacheSizeInBytes())
+            .<BlobId, Path>weigher((blobId, path) -> Ints.saturatedCast(path.toFile().length()))
+            .removalListener(deleteEvictedFile)
+            .build();
+    }
+
+    @Override
+    public CompletableFuture<BlobId> save(byte[] data) {
+        Preconditions.checkNotNull(data);
+
+        return backend.save(data)
+            .thenApply(blobId -> {
+                cache(blobId, data);
+                return blobId;
+            });
+    }
+
+    @Override
+    public CompletableFuture<BlobId> save(InputStream data) {
+        Preconditions.checkNotNull(data);
+
+        Path temporaryFile = temporaryFile();
+        OutputStream spool = openSpool(temporaryFile);
+        InputStream teeInputStream = new TeeInputStream(data, spool);
+        return backend.save(teeInputStream)
+            .whenComplete((blobId, error) -> {
+                IOUtils.closeQuietly(spool);
+                if (error == null && isExhausted(teeInputStream)) {
+                    promote(blobId, temporaryFile);
+                } else {
+                    deleteQuietly(temporaryFile);
+                }
+            });
+    }
+
+    @Override
+    public CompletableFuture<BlobId> save(BlobId blobId, ByteSource content) {
+        Preconditions.checkNotNull(content);
+
+        return backend.save(blobId, content)
+            .thenApply(savedBlobId -> {
+                cache(savedBlobId, content);
+                return savedBlobId;
+            });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> exists(BlobId blobId) {
+        if (heapCache.getIfPresent(blobId) != null || diskCache.getIfPresent(blobId) != null) {
+            return CompletableFuture.completedFuture(true);
+        }
+        return backend.exists(blobId);
+    }
+
+    @Override
+    public CompletableFuture<byte[]> readBytes(BlobId blobId) {
+        Optional<byte[]> heapCached = readFromHeap(blobId);
+        if (heapCached.isPresent()) {
+            return CompletableFuture.completedFuture(heapCached.get().clone());
+        }
+        Optional<ByteBuffer> diskCached = readFromDisk(blobId);
+        if (diskCached.isPresent()) {
+            ByteBuffer byteBuffer = diskCached.get();
+            byte[] bytes = new byte[byteBuffer.remaining()];
+            byteBuffer.get(bytes);
+            return CompletableFuture.completedFuture(bytes);
+        }
+
+        missMetric.increment();
+        return backend.readBytes(blobId)
+            .thenApply(bytes -> {
+                if (bytes.length > 0) {
+                    cache(blobId, bytes);
+                }
+                return bytes;
+            });
+    }
+
+    /**
+     * Leading bytes are served from the cache when the whole blob is cached, but a partial read
+     * is not cached as it would be mistaken for the whole blob.
+     */
+    @Override
+    public CompletableFuture<byte[]> readBytes(BlobId blobId, long maxLength) {
+        Optional<byte[]> heapCached = readFromHeap(blobId);
+        if (heapCached.isPresent()) {
+            byte[] bytes = heapCached.get();
+            return CompletableFuture.completedFuture(Arrays.copyOf(bytes, (int) Math.min(bytes.length, maxLength)));
+        }
+        Optional<ByteBuffer> diskCached = readFromDisk(blobId);
+        if (diskCached.isPresent()) {
+            ByteBuffer byteBuffer = diskCached.get();
+            byte[] bytes = new byte[(int) Math.min(byteBuffer.remaining(), maxLength)];
+            byteBuffer.get(bytes);
+            return CompletableFuture.completedFuture(bytes);
+        }
+
+        missMetric.increment();
+        return backend.readBytes(blobId, maxLength);
+    }
+
+    @Override
+    public InputStream read(BlobId blobId) {
+        Optional<InputStream> cached = readFromHeap(blobId)
+            .map(bytes -> (InputStream) new ByteArrayInputStream(bytes));
+        if (!cached.isPresent()) {
+            cached = readFromDisk(blobId)
+                .map(ByteBufferInputStream::new);
+        }
+
+        return cached.orElseGet(() -> {
+            missMetric.increment();
+            return new CachingInputStream(blobId, backend.read(blobId));
+        });
+    }
+
+    private Optional<byte[]> readFromHeap(BlobId blobId) {
+        Optional<byte[]> bytes = Optional.ofNullable(heapCache.getIfPresent(blobId));
+        bytes.ifPresent(any -> heapHitMetric.increment());
+        return bytes;
+    }
+
+    private Optional<ByteBuffer> readFromDisk(BlobId blobId) {
+        Optional<ByteBuffer> byteBuffer = Optional.ofNullable(diskCache.getIfPresent(blobId))
+            .flatMap(path -> map(blobId, path));
+        byteBuffer.ifPresent(any -> diskHitMetric.increment());
+        return byteBuffer;
+    }
+
+    private Optional<ByteBuffer> map(BlobId blobId, Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mappedByteBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return Optional.of(mappedByteBuffer);
+        } catch (NoSuchFileException e) {
+            diskCache.invalidate(blobId);
+            return Optional.empty();
+        } catch (IOException e) {
+            LOGGER.warn("Could not read cached blob {}", blobId.asString(), e);
+            diskCache.invalidate(blobId);
+            return Optional.empty();
+        }
+    }
+
+    private void cache(BlobId blobId, byte[] data) {
+        if (data.length <= configuration.getHeapBlobMaxSizeInBytes()) {
+            heapCache.put(blobId, data.clone());
+            return;
+        }
+        Path temporaryFile = temporaryFile();
+        try {
+            Files.write(temporaryFile, data);
+            promote(blobId, temporaryFile);
+        } catch (IOException e) {
+            LOGGER.warn("Could not cache blob {}", blobId.asString(), e);
+            deleteQuietly(temporaryFile);
+        }
+    }
+
+    private void cache(BlobId blobId, ByteSource content) {
+        Path temporaryFile = temporaryFile();
+        try (InputStream inputStream = content.openStream()) {
+            Files.copy(inputStream, temporaryFile);
+            promote(blobId, temporaryFile);
+        } catch (IOException e) {
+            LOGGER.warn("Could not cache blob {}", blobId.asString(), e);
+            deleteQuietly(temporaryFile);
+        }
+    }
+
+    private void promote(BlobId blobId, Path temporaryFile) {
+        try {
+            if (Files.size(temporaryFile) <= configuration.getHeapBlobMaxSizeInBytes()) {
+                heapCache.put(blobId, Files.readAllBytes(temporaryFile));
+                deleteQuietly(temporaryFile);
+                return;
+            }
+            Path cachedFile = cachedFile(blobId);
+            Files.move(temporaryFile, cachedFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            diskCache.put(blobId, cachedFile);
+        } catch (IOException e) {
+            LOGGER.warn("Could not cache blob {}", blobId.asString(), e);
+            deleteQuietly(temporaryFile);
+        }
+    }
+
+    private Path cachedFile(BlobId blobId) {
+        String fileName = Hashing.sha256().hashString(blobId.asString(), StandardCharsets.UTF_8).toString();
+        return cacheDirectory.resolve(fileName);
+    }
+
+    private Path temporaryFile() {
+        return cacheDirectory.resolve(UUID.randomUUID().toString() + TEMPORARY_FILE_SUFFIX);
+    }
+
+    private OutputStream openSpool(Path temporaryFile) {
+        try {
+            return Files.newOutputStream(temporaryFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isExhausted(InputStream inputStream) {
+        try {
+            return inputStream.read() == IOUtils.EOF;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.warn("Could not delete cached blob file {}", path, e);
+        }
+    }
+
+    @VisibleForTesting
+    long heapCachedBlobCount() {
+        return heapCache.size();
+    }
+
+    @VisibleForTesting
+    long diskCachedBlobCount() {
+        return diskCache.size();
+    }
+
+    /**
+     * Copies the content read from the backend into the cache directory, and promotes it into the cache once it had
+     * been entirely read. Partially read content is discarded upon close.
+     */
+    private class CachingInputStream extends TeeInputStream {
+        private final BlobId blobId;
+        private final Path temporaryFile;
+        private final OutputStream spool;
+        private long readBytes;
+        private boolean exhausted;
+        private boolean closed;
+
+        private CachingInputStream(BlobId blobId, InputStream input) {
+            this(blobId, input, temporaryFile());
+        }
+
+        private CachingInputStream(BlobId blobId, InputStream input, Path temporaryFile) {
+            this(blobId, input, temporaryFile, openSpool(temporaryFile));
+        }
+
+        private CachingInputStream(BlobId blobId, InputStream input, Path temporaryFile, OutputStream spool) {
+            super(input, spool);
+            this.blobId = blobId;
+            this.temporaryFile = temporaryFile;
+            this.spool = spool;
+            this.readBytes = 0;
+            this.exhausted = false;
+            this.closed = false;
+        }
+
+        @Override
+        protected void afterRead(int n) {
+            if (n == IOUtils.EOF) {
+                exhausted = true;
+            } else {
+                readBytes += n;
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                IOUtils.closeQuietly(spool);
+                if (exhausted && readBytes > 0) {
+                    promote(blobId, temporaryFile);
+                } else {
+                    deleteQuietly(temporaryFile);
+                }
+            }
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer byteBuffer;
+
+        private ByteBufferInputStream(ByteBuffer byteBuffer) {
+            this.byteBuffer = byteBuffer;
+        }
+
+        @Override
+        public int read() {
+            if (!byteBuffer.hasRemaining()) {
+                return IOUtils.EOF;
+            }
+            return byteBuffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!byteBuffer.hasRemaining()) {
+                return IOUtils.EOF;
+            }
+            int readLength = Math.min(length, byteBuffer.remaining());
+            byteBuffer.get(bytes, offset, readLength);
+            return readLength;
+        }
+
+        @Override
+        public int available() {
+            return byteBuffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.blob.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.james.blob.api.BlobId;
+import org.apache.james.blob.api.BlobStore;
+import org.apache.james.blob.api.BlobStoreContract;
+import org.apache.james.blob.api.HashBlobId;
+import org.apache.james.blob.memory.MemoryBlobStore;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteSource;
+
+class CachedBlobStoreTest implements BlobStoreContract {
+    private static final HashBlobId.Factory BLOB_ID_FACTORY = new HashBlobId.Factory();
+    private static final int HEAP_BLOB_MAX_SIZE = 1024;
+    private static final byte[] SMALL_DATA = "toto".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BIG_DATA = Strings.repeat("0123456789\n", 1000).getBytes(StandardCharsets.UTF_8);
+
+    private File cacheDirectory;
+    private MemoryBlobStore backend;
+    private CachedBlobStore testee;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        cacheDirectory = Files.createTempDirectory("blob-cache").toFile();
+        backend = new MemoryBlobStore(BLOB_ID_FACTORY);
+        testee = new CachedBlobStore(backend,
+            BlobCacheConfiguration.builder()
+                .cacheDirectory(cacheDirectory)
+                .heapBlobMaxSizeInBytes(HEAP_BLOB_MAX_SIZE)
+                .build(),
+            new NoopMetricFactory());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        FileUtils.deleteDirectory(cacheDirectory);
+    }
+
+    @Override
+    public BlobStore testee() {
+        return testee;
+    }
+
+    @Override
+    public BlobId.Factory blobIdFactory() {
+        return BLOB_ID_FACTORY;
+    }
+
+    @Test
+    void saveShouldKeepSmallBlobsOnHeap() {
+        testee.save(SMALL_DATA).join();
+
+        assertThat(testee.heapCachedBlobCount()).isEqualTo(1);
+        assertThat(testee.diskCachedBlobCount()).isEqualTo(0);
+    }
+
+    @Test
+    void saveShouldKeepBigBlobsOnDisk() {
+        testee.save(BIG_DATA).join();
+
+        assertThat(testee.heapCachedBlobCount()).isEqualTo(0);
+        assertThat(testee.diskCachedBlobCount()).isEqualTo(1);
+    }
+
+    @Test
+    void saveInputStreamShouldKeepBigBlobsOnDisk() throws Exception {
+        BlobId blobId = testee.save(new ByteArrayInputStream(BIG_DATA)).join();
+
+        assertThat(testee.diskCachedBlobCount()).isEqualTo(1);
+        assertThat(testee.read(blobId)).hasSameContentAs(new ByteArrayInputStream(BIG_DATA));
+    }
+
+    @Test
+    void saveWithBlobIdShouldPopulateCache() {
+        BlobId blobId = testee.save(BLOB_ID_FACTORY.forPayload(BIG_DATA), ByteSource.wrap(BIG_DATA)).join();
+
+        assertThat(testee.diskCachedBlobCount()).isEqualTo(1);
+        assertThat(testee.readBytes(blobId).join()).isEqualTo(BIG_DATA);
+    }
+
+    @Test
+    void modifyingTheSavedArrayShouldNotAlterTheCache() {
+        byte[] data = SMALL_DATA.clone();
+        BlobId blobId = testee.save(data).join();
+
+        data[0] = 'x';
+
+        assertThat(testee.readBytes(blobId).join()).isEqualTo(SMALL_DATA);
+    }
+
+    @Test
+    void modifyingTheReadArrayShouldNotAlterTheCache() {
+        BlobId blobId = testee.save(SMALL_DATA).join();
+
+        testee.readBytes(blobId).join()[0] = 'x';
+        testee.readBytes(blobId, 2).join()[0] = 'x';
+
+        assertThat(testee.readBytes(blobId).join()).isEqualTo(SMALL_DATA);
+    }
+
+    @Test
+    void readBytesShouldPopulateCacheOnMiss() {
+        BlobId blobId = backend.save(BIG_DATA).join();
+
+        testee.readBytes(blobId).join();
+
+        assertThat(testee.diskCachedBlobCount()).isEqualTo(1);
+    }
+
+    @Test
+    void readShouldPopulateCacheWhenFullyRead() throws Exception {
+        BlobId blobId = backend.save(BIG_DATA).join();
+
+        try (InputStream inputStream = testee.read(blobId)) {
+            IOUtils.toByteArray(inputStream);
+        }
+
+        assertThat(testee.diskCachedBlobCount()).isEqualTo(1);
+        assertThat(testee.readBytes(blobId).join()).isEqualTo(BIG_DATA);
+    }
+
+    @Test
+    void readShouldNotPopulateCacheWhenPartiallyRead() throws Exception {
+        BlobId blobId = backend.save(BIG_DATA).join();
+
+        try (InputStream inputStream = testee.read(blobId)) {
+            inputStream.read(new byte[10]);
+        }
+
+        assertThat(testee.diskCachedBlobCount()).isEqualTo(0);
+        assertThat(cachedFiles()).isEmpty();
+    }
+
+    @Test
+    void readShouldNotCacheUnknownBlobs() throws Exception {
+        try (InputStream inputStream = testee.read(BLOB_ID_FACTORY.from("unknown"))) {
+            IOUtils.toByteArray(inputStream);
+        }
+        testee.readBytes(BLOB_ID_FACTORY.from("unknown")).join();
+
+        assertThat(testee.heapCachedBlobCount()).isEqualTo(0);
+        assertThat(testee.diskCachedBlobCount()).isEqualTo(0);
+    }
+
+    @Test
+    void diskCacheShouldEvictAndDeleteFilesWhenFull() {
+        testee = cacheOver(backend, BIG_DATA.length);
+
+        testee.save(BIG_DATA).join();
+        testee.save(Strings.repeat("9876543210\n", 1000).getBytes(StandardCharsets.UTF_8)).join();
+
+        assertThat(testee.diskCachedBlobCount()).isEqualTo(1);
+        assertThat(cachedFiles()).hasSize(1);
+    }
+
+    @Test
+    void creationShouldDiscardPreviouslyCachedFiles() {
+        testee.save(BIG_DATA).join();
+
+        testee = cacheOver(backend, BIG_DATA.length);
+
+        assertThat(cachedFiles()).isEmpty();
+    }
+
+    @Test
+    void creationShouldNotDeleteOtherFilesOfTheCacheDirectory() throws Exception {
+        File otherFile = new File(cacheDirectory, "other");
+        FileUtils.writeByteArrayToFile(otherFile, SMALL_DATA);
+
+        testee = cacheOver(backend, BIG_DATA.length);
+
+        assertThat(otherFile).hasBinaryContent(SMALL_DATA);
+    }
+
+    private String[] cachedFiles() {
+        return new File(cacheDirectory, CachedBlobStore.CACHE_SUBDIRECTORY).list();
+    }
+
+    private CachedBlobStore cacheOver(BlobStore backend, long diskCacheSize) {
+        try {
+            return new CachedBlobStore(backend,
+                BlobCacheConfiguration.builder()
+                    .cacheDirectory(cacheDirectory)
+                    .heapBlobMaxSizeInBytes(HEAP_BLOB_MAX_SIZE)
+                    .diskCacheSizeInBytes(diskCacheSize)
+                    .build(),
+                new NoopMetricFactory());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -24,11 +24,17 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.Pipe;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.IntStream;
@@ -43,7 +49,6 @@ import org.apache.james.backends.cassandra.utils.CassandraAsyncExecutor;
 import org.apache.james.blob.api.BlobId;
 import org.apache.james.blob.api.BlobStore;
 import org.apache.james.blob.api.HashBlobId;
-import org.apache.james.blob.api.ObjectStoreException;
 import org.apache.james.blob.cassandra.BlobTable.BlobParts;
 import org.apache.james.blob.cassandra.utils.DataChunker;
 import org.apache.james.util.FluentFutureStream;
@@ -55,15 +60,22 @@ import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
 import com.github.fge.lambdas.Throwing;
-import com.github.fge.lambdas.consumers.ConsumerChainer;
 import com.github.steveash.guavate.Guavate;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteSource;
+import com.google.common.io.FileBackedOutputStream;
 import com.google.common.primitives.Bytes;
 
 public class CassandraBlobsDAO implements BlobStore {
     private static final Logger LOGGER = LoggerFactory.getLogger(CassandraBlobsDAO.class);
+    private static final int READ_AHEAD_PART_COUNT = 4;
+    private static final int WRITE_AHEAD_PART_COUNT = 4;
+    private static final boolean RESET_ON_FINALIZE = true;
+
     private final CassandraAsyncExecutor cassandraAsyncExecutor;
     private final PreparedStatement insert;
     private final PreparedStatement insertPart;
@@ -157,6 +169,17 @@ public class CassandraBlobsDAO implements BlobStore {
             .setInt(BlobTable.NUMBER_OF_CHUNK, numberOfChunk));
     }
 
+    /**
+     * Parts are written before the blob row referencing them: a blob is only reported once all its parts are written.
+     */
+    @Override
+    public CompletableFuture<Boolean> exists(BlobId blobId) {
+        return cassandraAsyncExecutor.executeSingleRow(
+            select.bind()
+                .setString(BlobTable.ID, blobId.asString()))
+            .thenApply(Optional::isPresent);
+    }
+
     @Override
     public CompletableFuture<byte[]> readBytes(BlobId blobId) {
         return cassandraAsyncExecutor.executeSingleRow(
@@ -166,6 +189,38 @@ public class CassandraBlobsDAO implements BlobStore {
             .thenApply(this::concatenateDataParts);
     }
 
+    /**
+     * Parts are read one after the other, and only until maxLength bytes are available: a preview of a
+     * big blob only fetches its first parts.
+     */
+    @Override
+    public CompletableFuture<byte[]> readBytes(BlobId blobId, long maxLength) {
+        return cassandraAsyncExecutor.executeSingleRow(
+            select.bind()
+                .setString(BlobTable.ID, blobId.asString()))
+            .thenCompose(blobRowOptional -> blobRowOptional
+                .map(blobRow -> readLeadingParts(blobId, 0, blobRow.getInt(BlobTable.NUMBER_OF_CHUNK), maxLength, new ByteArrayOutputStream()))
+                .orElseGet(() -> {
+                    LOGGER.warn("Could not retrieve blob metadata for {}", blobId);
+                    return CompletableFuture.completedFuture(new byte[0]);
+                }));
+    }
+
+    private CompletableFuture<byte[]> readLeadingParts(BlobId blobId, int position, int numOfChunk, long maxLength, ByteArrayOutputStream readData) {
+        if (position >= numOfChunk || readData.size() >= maxLength) {
+            return CompletableFuture.completedFuture(BlobStore.truncate(readData.toByteArray(), maxLength));
+        }
+        return readPart(blobId, position)
+            .thenCompose(blobPart -> {
+                OptionalUtils.executeIfEmpty(
+                        blobPart.row,
+                        () -> LOGGER.warn("Missing blob part for blobId {} and position {}", blobPart.blobId, blobPart.position))
+                    .map(this::rowToData)
+                    .ifPresent(data -> readData.write(data, 0, data.length));
+                return readLeadingParts(blobId, position + 1, numOfChunk, maxLength, readData);
+            });
+    }
+
     private CompletableFuture<Stream<BlobPart>> toDataParts(Optional<Row> blobRowOptional, BlobId blobId) {
         return blobRowOptional.map(blobRow -> {
             int numOfChunk = blobRow.getInt(BlobTable.NUMBER_OF_CHUNK);
@@ -221,23 +276,61 @@ public class CassandraBlobsDAO implements BlobStore {
 
     @Override
     public InputStream read(BlobId blobId) {
-        try {
-            Pipe pipe = Pipe.open();
-            ConsumerChainer<ByteBuffer> consumer = Throwing.consumer(
-                bytes -> {
-                    try (Pipe.SinkChannel sink = pipe.sink()) {
-                        sink.write(bytes);
-                    }
-                }
-            );
-            readBytes(blobId)
-                .thenApply(ByteBuffer::wrap)
-                .thenAccept(consumer.sneakyThrow());
-            return Channels.newInputStream(pipe.source());
-        } catch (IOException cause) {
-            throw new ObjectStoreException(
-                "Failed to convert CompletableFuture<byte[]> to InputStream",
-                cause);
+        int numOfChunk = cassandraAsyncExecutor.executeSingleRow(
+            select.bind()
+                .setString(BlobTable.ID, blobId.asString()))
+            .join()
+            .map(row -> row.getInt(BlobTable.NUMBER_OF_CHUNK))
+            .orElseGet(() -> {
+                LOGGER.warn("Could not retrieve blob metadata for {}", blobId);
+                return 0;
+            });
+
+        return new SequenceInputStream(new BlobPartsEnumeration(blobId, numOfChunk));
+    }
+
+    /**
+     * Reads the parts of a blob lazily, fetching at most {@link #READ_AHEAD_PART_COUNT} parts in advance.
+     */
+    private class BlobPartsEnumeration implements Enumeration<InputStream> {
+        private final BlobId blobId;
+        private final int numOfChunk;
+        private final Deque<CompletableFuture<BlobPart>> prefetchedParts;
+        private int nextPositionToFetch;
+
+        private BlobPartsEnumeration(BlobId blobId, int numOfChunk) {
+            this.blobId = blobId;
+            this.numOfChunk = numOfChunk;
+            this.prefetchedParts = new ArrayDeque<>();
+            this.nextPositionToFetch = 0;
+            fillReadAheadWindow();
+        }
+
+        @Override
+        public boolean hasMoreElements() {
+            return !prefetchedParts.isEmpty();
+        }
+
+        @Override
+        public InputStream nextElement() {
+            if (prefetchedParts.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            BlobPart blobPart = prefetchedParts.poll().join();
+            fillReadAheadWindow();
+
+            return OptionalUtils.executeIfEmpty(
+                    blobPart.row,
+                    () -> LOGGER.warn("Missing blob part for blobId {} and position {}", blobPart.blobId, blobPart.position))
+                .map(row -> (InputStream) new ByteArrayInputStream(rowToData(row)))
+                .orElse(new ByteArrayInputStream(new byte[0]));
+        }
+
+        private void fillReadAheadWindow() {
+            while (prefetchedParts.size() < READ_AHEAD_PART_COUNT && nextPositionToFetch < numOfChunk) {
+                prefetchedParts.add(readPart(blobId, nextPositionToFetch));
+                nextPositionToFetch++;
+            }
         }
     }
 
@@ -245,7 +338,72 @@ public class CassandraBlobsDAO implements BlobStore {
     public CompletableFuture<BlobId> save(InputStream data) {
         Preconditions.checkNotNull(data);
         return CompletableFuture
-            .supplyAsync(Throwing.supplier(() -> IOUtils.toByteArray(data)).sneakyThrow())
-            .thenCompose(this::save);
+            .supplyAsync(Throwing.supplier(() -> saveStreaming(data)).sneakyThrow());
+    }
+
+    /**
+     * The content is spooled once to compute its hash, which is also the blob identifier, then written part by part.
+     *
+     * Only the {@link CassandraConfiguration#getBlobPartSize()} first bytes are kept on heap while spooling, bigger
+     * contents are backed by a temporary file. At most {@link #WRITE_AHEAD_PART_COUNT} parts are being written
+     * concurrently.
+     */
+    private BlobId saveStreaming(InputStream data) throws IOException {
+        FileBackedOutputStream spool = new FileBackedOutputStream(configuration.getBlobPartSize(), RESET_ON_FINALIZE);
+        try {
+            HashingOutputStream hashingOutputStream = new HashingOutputStream(Hashing.sha256(), spool);
+            IOUtils.copy(data, hashingOutputStream);
+            hashingOutputStream.close();
+            HashBlobId blobId = blobIdFactory.from(hashingOutputStream.hash().toString());
+
+            return saveSpooled(blobId, spool.asByteSource());
+        } finally {
+            spool.reset();
+        }
+    }
+
+    /**
+     * The content was already spooled by the caller: it is only read once more to check that the given identifier is
+     * its hash, then its parts are written.
+     */
+    @Override
+    public CompletableFuture<BlobId> save(BlobId blobId, ByteSource content) {
+        Preconditions.checkNotNull(blobId);
+        Preconditions.checkNotNull(content);
+        HashBlobId hashBlobId = blobIdFactory.from(blobId.asString());
+        return CompletableFuture
+            .supplyAsync(Throwing.supplier(() -> {
+                checkIdentifies(hashBlobId, content);
+                return saveSpooled(hashBlobId, content);
+            }).sneakyThrow());
+    }
+
+    private void checkIdentifies(HashBlobId blobId, ByteSource content) throws IOException {
+        String hash = content.hash(Hashing.sha256()).toString();
+        Preconditions.checkArgument(hash.equals(blobId.asString()), "%s does not identify the given content", blobId.asString());
+    }
+
+    private BlobId saveSpooled(HashBlobId blobId, ByteSource content) throws IOException {
+        int numberOfChunk = saveBlobParts(content, blobId);
+        saveBlobPartsReferences(blobId, numberOfChunk).join();
+        return blobId;
+    }
+
+    private int saveBlobParts(ByteSource data, HashBlobId blobId) throws IOException {
+        try (InputStream inputStream = data.openStream()) {
+            Deque<CompletableFuture<Void>> pendingWrites = new ArrayDeque<>();
+            int numberOfChunk = 0;
+            Iterator<Pair<Integer, ByteBuffer>> chunks = dataChunker.chunk(inputStream, configuration.getBlobPartSize()).iterator();
+            while (chunks.hasNext()) {
+                if (pendingWrites.size() >= WRITE_AHEAD_PART_COUNT) {
+                    pendingWrites.poll().join();
+                }
+                Pair<Integer, ByteBuffer> chunk = chunks.next();
+                pendingWrites.add(writePart(chunk.getRight(), blobId, chunk.getKey()));
+                numberOfChunk++;
+            }
+            CompletableFuture.allOf(pendingWrites.toArray(new CompletableFuture[0])).join();
+            return numberOfChunk;
+        }
     }
 }
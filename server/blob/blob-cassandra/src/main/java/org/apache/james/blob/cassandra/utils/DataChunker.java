@@ -19,10 +19,21 @@
 
 package org.apache.james.blob.cassandra.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
 
 import com.google.common.base.Preconditions;
@@ -49,4 +60,61 @@ public class DataChunker {
         return Stream.of(Pair.of(index, ByteBuffer.wrap(data, offset, data.length - offset)));
     }
 
+    /**
+     * Lazily splits the content of the given stream in chunks of at most chunkSize bytes.
+     *
+     * Only one chunk is read at a time, allowing callers to process arbitrary large content without
+     * holding it entirely in memory. As for {@link #chunk(byte[], int)}, an empty input results in a
+     * single empty chunk.
+     *
+     * The returned stream is not thread safe, and wraps {@link IOException} into {@link UncheckedIOException}.
+     */
+    public Stream<Pair<Integer, ByteBuffer>> chunk(InputStream data, int chunkSize) {
+        Preconditions.checkNotNull(data);
+        Preconditions.checkArgument(chunkSize > 0, "ChunkSize can not be negative");
+
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(new ChunkIterator(data, chunkSize), Spliterator.ORDERED | Spliterator.NONNULL),
+            false);
+    }
+
+    private static class ChunkIterator implements Iterator<Pair<Integer, ByteBuffer>> {
+        private final InputStream data;
+        private final int chunkSize;
+        private int index;
+        private Optional<ByteBuffer> nextChunk;
+
+        private ChunkIterator(InputStream data, int chunkSize) {
+            this.data = data;
+            this.chunkSize = chunkSize;
+            this.index = 0;
+            this.nextChunk = Optional.of(readChunk());
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextChunk.isPresent();
+        }
+
+        @Override
+        public Pair<Integer, ByteBuffer> next() {
+            ByteBuffer chunk = nextChunk.orElseThrow(NoSuchElementException::new);
+            nextChunk = Optional.of(readChunk())
+                .filter(ByteBuffer::hasRemaining);
+            return Pair.of(index++, chunk);
+        }
+
+        private ByteBuffer readChunk() {
+            try {
+                byte[] buffer = new byte[chunkSize];
+                int read = IOUtils.read(data, buffer);
+                if (read < chunkSize) {
+                    return ByteBuffer.wrap(Arrays.copyOf(buffer, read));
+                }
+                return ByteBuffer.wrap(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
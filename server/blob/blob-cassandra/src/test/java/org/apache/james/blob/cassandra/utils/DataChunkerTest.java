@@ -22,6 +22,8 @@ package org.apache.james.blob.cassandra.utils;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.stream.Stream;
@@ -46,7 +48,7 @@ public class DataChunkerTest {
 
     @Test
     public void chunkShouldThrowOnNullData() {
-        assertThatThrownBy(() -> testee.chunk(null, CHUNK_SIZE))
+        assertThatThrownBy(() -> testee.chunk((byte[]) null, CHUNK_SIZE))
             .isInstanceOf(NullPointerException.class);
     }
 
@@ -107,4 +109,50 @@ public class DataChunkerTest {
                 Pair.of(1, ByteBuffer.wrap(part2))));
     }
 
+    @Test
+    public void chunkStreamShouldThrowOnNullData() {
+        assertThatThrownBy(() -> testee.chunk((InputStream) null, CHUNK_SIZE))
+            .isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    public void chunkStreamShouldThrowOnZeroChunkSize() {
+        int chunkSize = 0;
+        assertThatThrownBy(() -> testee.chunk(new ByteArrayInputStream(new byte[0]), chunkSize))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void chunkStreamShouldReturnOneEmptyArrayWhenInputEmpty() {
+        Stream<Pair<Integer, ByteBuffer>> chunks = testee.chunk(new ByteArrayInputStream(new byte[0]), CHUNK_SIZE);
+        ByteBuffer emptyBuffer = ByteBuffer.wrap(new byte[0]);
+        assertThat(chunks)
+            .containsExactly(Pair.of(0, emptyBuffer));
+    }
+
+    @Test
+    public void chunkStreamShouldReturnOneArrayWhenInputEqualsChunkSize() {
+        byte[] data = "1234567890".getBytes(StandardCharsets.UTF_8);
+        assertThat(data.length).isEqualTo(CHUNK_SIZE);
+
+        Stream<Pair<Integer, ByteBuffer>> chunks = testee.chunk(new ByteArrayInputStream(data), CHUNK_SIZE);
+
+        assertThat(chunks)
+            .containsExactly(Pair.of(0, ByteBuffer.wrap(data)));
+    }
+
+    @Test
+    public void chunkStreamShouldReturnSeveralArrayWhenInputBiggerThanChunkSize() {
+        byte[] part1 = "1234567890".getBytes(StandardCharsets.UTF_8);
+        byte[] part2 = "12345".getBytes(StandardCharsets.UTF_8);
+        byte[] data = Bytes.concat(part1, part2);
+
+        Stream<Pair<Integer, ByteBuffer>> chunks = testee.chunk(new ByteArrayInputStream(data), CHUNK_SIZE);
+
+        assertThat(chunks)
+            .containsExactly(
+                Pair.of(0, ByteBuffer.wrap(part1)),
+                Pair.of(1, ByteBuffer.wrap(part2)));
+    }
+
 }
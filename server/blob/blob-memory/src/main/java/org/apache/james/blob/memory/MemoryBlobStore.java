@@ -61,6 +61,11 @@ public class MemoryBlobStore implements BlobStore {
         }
     }
 
+    @Override
+    public CompletableFuture<Boolean> exists(BlobId blobId) {
+        return CompletableFuture.completedFuture(blobs.containsKey(blobId));
+    }
+
     @Override
     public CompletableFuture<byte[]> readBytes(BlobId blobId) {
         return CompletableFuture.completedFuture(retrieveStoredValue(blobId));
@@ -111,6 +111,12 @@ public class ObjectStorageBlobsDAO implements BlobStore {
         return blobIdFactory.from(hashingInputStream.hash().toString());
     }
 
+    @Override
+    public CompletableFuture<Boolean> exists(BlobId blobId) {
+        return CompletableFuture
+            .supplyAsync(() -> blobStore.blobExists(containerName.value(), blobId.asString()));
+    }
+
     @Override
     public CompletableFuture<byte[]> readBytes(BlobId blobId) {
         return CompletableFuture
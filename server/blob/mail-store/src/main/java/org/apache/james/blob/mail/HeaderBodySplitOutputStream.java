@@ -0,0 +1,113 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.blob.mail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.output.ByteArrayOutputStream;
+
+/**
+ * {@link OutputStream} splitting, in a single pass, the written message into its header part
+ * (up to and including the first empty line) and its body part.
+ *
+ * As for {@link org.apache.james.util.BodyOffsetInputStream}, a message without empty line is
+ * considered as having only a body.
+ *
+ *  IMPORTANT: This class is not thread-safe!
+ */
+class HeaderBodySplitOutputStream extends OutputStream {
+    private static final byte[] HEADER_SEPARATOR = {'\r', '\n', '\r', '\n'};
+
+    private final ByteArrayOutputStream header;
+    private final ByteArrayOutputStream body;
+    private int matchedSeparatorBytes;
+    private boolean inBody;
+
+    HeaderBodySplitOutputStream() {
+        this.header = new ByteArrayOutputStream();
+        this.body = new ByteArrayOutputStream();
+        this.matchedSeparatorBytes = 0;
+        this.inBody = false;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (inBody) {
+            body.write(b, off, len);
+            return;
+        }
+        int headerEnd = findHeaderEnd(b, off, len);
+        if (headerEnd == -1) {
+            header.write(b, off, len);
+        } else {
+            inBody = true;
+            header.write(b, off, headerEnd - off);
+            body.write(b, headerEnd, off + len - headerEnd);
+        }
+    }
+
+    private int findHeaderEnd(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            matchedSeparatorBytes = nextMatchedSeparatorBytes(b[i]);
+            if (matchedSeparatorBytes == HEADER_SEPARATOR.length) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private int nextMatchedSeparatorBytes(byte b) {
+        if (b == HEADER_SEPARATOR[matchedSeparatorBytes]) {
+            return matchedSeparatorBytes + 1;
+        }
+        if (b == HEADER_SEPARATOR[0]) {
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * The returned stream is backed by the buffers of this output stream, no copy is involved.
+     */
+    InputStream getHeader() {
+        if (!inBody) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        return header.toInputStream();
+    }
+
+    /**
+     * The returned stream is backed by the buffers of this output stream, no copy is involved.
+     */
+    InputStream getBody() {
+        if (!inBody) {
+            return header.toInputStream();
+        }
+        return body.toInputStream();
+    }
+}
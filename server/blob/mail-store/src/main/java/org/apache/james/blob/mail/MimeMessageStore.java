@@ -19,17 +19,13 @@
 
 package org.apache.james.blob.mail;
 
-import static org.apache.commons.io.output.NullOutputStream.NULL_OUTPUT_STREAM;
 import static org.apache.james.blob.mail.MimeMessagePartsId.BODY_BLOB_TYPE;
 import static org.apache.james.blob.mail.MimeMessagePartsId.HEADER_BLOB_TYPE;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.SequenceInputStream;
-import java.nio.ByteBuffer;
-import java.util.Map;
+import java.util.Iterator;
 import java.util.Properties;
 import java.util.stream.Stream;
 
@@ -38,15 +34,12 @@ import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.internet.MimeMessage;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.james.blob.api.BlobStore;
 import org.apache.james.blob.api.Store;
 import org.apache.james.blob.api.Store.BlobType;
-import org.apache.james.util.BodyOffsetInputStream;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
 
 public class MimeMessageStore {
 
@@ -71,82 +64,63 @@ public class MimeMessageStore {
         @Override
         public Stream<Pair<BlobType, InputStream>> encode(MimeMessage message) {
             try {
-                byte[] messageAsArray = messageToArray(message);
-                int bodyStartOctet = computeBodyStartOctet(messageAsArray);
+                HeaderBodySplitOutputStream splitOutputStream = new HeaderBodySplitOutputStream();
+                message.writeTo(splitOutputStream);
                 return Stream.of(
-                    Pair.of(HEADER_BLOB_TYPE, new ByteArrayInputStream(getHeaderBytes(messageAsArray, bodyStartOctet))),
-                    Pair.of(BODY_BLOB_TYPE, new ByteArrayInputStream(getBodyBytes(messageAsArray, bodyStartOctet))));
+                    Pair.of(HEADER_BLOB_TYPE, splitOutputStream.getHeader()),
+                    Pair.of(BODY_BLOB_TYPE, splitOutputStream.getBody()));
             } catch (MessagingException | IOException e) {
                 throw new RuntimeException(e);
             }
         }
-
-        private static byte[] messageToArray(MimeMessage message) throws IOException, MessagingException {
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            message.writeTo(byteArrayOutputStream);
-            return byteArrayOutputStream.toByteArray();
-        }
-
-        private static byte[] getHeaderBytes(byte[] messageContentAsArray, int bodyStartOctet) {
-            ByteBuffer headerContent = ByteBuffer.wrap(messageContentAsArray, 0, bodyStartOctet);
-            byte[] headerBytes = new byte[bodyStartOctet];
-            headerContent.get(headerBytes);
-            return headerBytes;
-        }
-
-        private static byte[] getBodyBytes(byte[] messageContentAsArray, int bodyStartOctet) {
-            if (bodyStartOctet < messageContentAsArray.length) {
-                ByteBuffer bodyContent = ByteBuffer.wrap(messageContentAsArray,
-                    bodyStartOctet,
-                    messageContentAsArray.length - bodyStartOctet);
-                byte[] bodyBytes = new byte[messageContentAsArray.length - bodyStartOctet];
-                bodyContent.get(bodyBytes);
-                return bodyBytes;
-            } else {
-                return new byte[] {};
-            }
-        }
-
-        private static int computeBodyStartOctet(byte[] messageAsArray) throws IOException {
-            try (BodyOffsetInputStream bodyOffsetInputStream =
-                     new BodyOffsetInputStream(new ByteArrayInputStream(messageAsArray))) {
-                consume(bodyOffsetInputStream);
-
-                if (bodyOffsetInputStream.getBodyStartOffset() == -1) {
-                    return 0;
-                }
-                return (int) bodyOffsetInputStream.getBodyStartOffset();
-            }
-        }
-
-        private static void consume(InputStream in) throws IOException {
-            IOUtils.copy(in, NULL_OUTPUT_STREAM);
-        }
     }
 
     static class MimeMessageDecoder implements Store.Impl.Decoder<MimeMessage> {
         @Override
         public MimeMessage decode(Stream<Pair<BlobType, byte[]>> streams) {
             Preconditions.checkNotNull(streams);
-            Map<BlobType,byte[]> pairs = streams.collect(ImmutableMap.toImmutableMap(Pair::getLeft, Pair::getRight));
-            Preconditions.checkArgument(pairs.containsKey(HEADER_BLOB_TYPE));
-            Preconditions.checkArgument(pairs.containsKey(BODY_BLOB_TYPE));
-
-            return toMimeMessage(
-                new SequenceInputStream(
-                    new ByteArrayInputStream(pairs.get(HEADER_BLOB_TYPE)),
-                    new ByteArrayInputStream(pairs.get(BODY_BLOB_TYPE))));
+            byte[] header = null;
+            byte[] body = null;
+            for (Iterator<Pair<BlobType, byte[]>> iterator = streams.iterator(); iterator.hasNext();) {
+                Pair<BlobType, byte[]> pair = iterator.next();
+                if (pair.getLeft().equals(HEADER_BLOB_TYPE)) {
+                    header = pair.getRight();
+                } else if (pair.getLeft().equals(BODY_BLOB_TYPE)) {
+                    body = pair.getRight();
+                }
+            }
+            Preconditions.checkArgument(header != null);
+            Preconditions.checkArgument(body != null);
+
+            return toMimeMessage(header, body);
         }
 
-        private MimeMessage toMimeMessage(InputStream inputStream) {
+        private MimeMessage toMimeMessage(byte[] header, byte[] body) {
             try {
-                return new MimeMessage(Session.getInstance(new Properties()), inputStream);
+                if (header.length == 0) {
+                    return new MimeMessage(Session.getInstance(new Properties()), new ByteArrayInputStream(body));
+                }
+                return new StoredMimeMessage(header, body);
             } catch (MessagingException e) {
                 throw new RuntimeException(e);
             }
         }
     }
 
+    /**
+     * Equivalent to parsing the concatenation of the header and body parts, but reuses the
+     * retrieved body array as the message content instead of copying it.
+     */
+    private static class StoredMimeMessage extends MimeMessage {
+        StoredMimeMessage(byte[] header, byte[] body) throws MessagingException {
+            super(Session.getInstance(new Properties()));
+            this.headers = createInternetHeaders(new ByteArrayInputStream(header));
+            this.content = body;
+            this.modified = false;
+            this.saved = true;
+        }
+    }
+
     public static Factory factory(BlobStore blobStore) {
         return new Factory(blobStore);
     }
@@ -0,0 +1,91 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.blob.mail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HeaderBodySplitOutputStreamTest {
+    private HeaderBodySplitOutputStream testee;
+
+    @BeforeEach
+    void setUp() {
+        testee = new HeaderBodySplitOutputStream();
+    }
+
+    @Test
+    void headerShouldContainSeparator() throws Exception {
+        testee.write("Subject: test\r\n\r\nbody".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(asString(testee.getHeader())).isEqualTo("Subject: test\r\n\r\n");
+    }
+
+    @Test
+    void bodyShouldContainContentAfterSeparator() throws Exception {
+        testee.write("Subject: test\r\n\r\nbody\r\n\r\nend".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(asString(testee.getBody())).isEqualTo("body\r\n\r\nend");
+    }
+
+    @Test
+    void separatorShouldBeDetectedAcrossWrites() throws Exception {
+        testee.write("Subject: test\r".getBytes(StandardCharsets.US_ASCII));
+        testee.write('\n');
+        testee.write("\r".getBytes(StandardCharsets.US_ASCII));
+        testee.write("\nbody".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(asString(testee.getHeader())).isEqualTo("Subject: test\r\n\r\n");
+        assertThat(asString(testee.getBody())).isEqualTo("body");
+    }
+
+    @Test
+    void separatorShouldBeDetectedAfterPartialMatch() throws Exception {
+        testee.write("Subject: test\r\n\r\r\n\r\nbody".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(asString(testee.getHeader())).isEqualTo("Subject: test\r\n\r\r\n\r\n");
+        assertThat(asString(testee.getBody())).isEqualTo("body");
+    }
+
+    @Test
+    void bodyShouldBeEmptyWhenNothingAfterSeparator() throws Exception {
+        testee.write("Subject: test\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(asString(testee.getBody())).isEmpty();
+    }
+
+    @Test
+    void contentShouldBeConsideredAsBodyWhenNoSeparator() throws Exception {
+        testee.write("Subject: test\r\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertThat(asString(testee.getHeader())).isEmpty();
+        assertThat(asString(testee.getBody())).isEqualTo("Subject: test\r\n");
+    }
+
+    private String asString(InputStream inputStream) throws IOException {
+        return IOUtils.toString(inputStream, StandardCharsets.US_ASCII);
+    }
+}
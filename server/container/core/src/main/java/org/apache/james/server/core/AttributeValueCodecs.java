@@ -0,0 +1,172 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.server.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Date;
+
+import org.apache.james.core.MailAddress;
+
+/**
+ * {@link AttributeValueCodec}s registered by default in {@link MailCodec}.
+ */
+public final class AttributeValueCodecs {
+
+    public static final AttributeValueCodec<String> STRING = new AttributeValueCodec<String>() {
+        @Override
+        public Class<String> getType() {
+            return String.class;
+        }
+
+        @Override
+        public void encode(String value, DataOutput out) throws IOException {
+            MailCodec.writeString(out, value);
+        }
+
+        @Override
+        public String decode(DataInput in) throws IOException {
+            return MailCodec.readString(in);
+        }
+    };
+
+    public static final AttributeValueCodec<Long> LONG = new AttributeValueCodec<Long>() {
+        @Override
+        public Class<Long> getType() {
+            return Long.class;
+        }
+
+        @Override
+        public void encode(Long value, DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long decode(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    public static final AttributeValueCodec<Integer> INTEGER = new AttributeValueCodec<Integer>() {
+        @Override
+        public Class<Integer> getType() {
+            return Integer.class;
+        }
+
+        @Override
+        public void encode(Integer value, DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer decode(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    public static final AttributeValueCodec<Boolean> BOOLEAN = new AttributeValueCodec<Boolean>() {
+        @Override
+        public Class<Boolean> getType() {
+            return Boolean.class;
+        }
+
+        @Override
+        public void encode(Boolean value, DataOutput out) throws IOException {
+            out.writeBoolean(value);
+        }
+
+        @Override
+        public Boolean decode(DataInput in) throws IOException {
+            return in.readBoolean();
+        }
+    };
+
+    public static final AttributeValueCodec<byte[]> BYTES = new AttributeValueCodec<byte[]>() {
+        @Override
+        public Class<byte[]> getType() {
+            return byte[].class;
+        }
+
+        @Override
+        public void encode(byte[] value, DataOutput out) throws IOException {
+            MailCodec.writeBytes(out, value);
+        }
+
+        @Override
+        public byte[] decode(DataInput in) throws IOException {
+            return MailCodec.readBytes(in);
+        }
+    };
+
+    public static final AttributeValueCodec<Date> DATE = new AttributeValueCodec<Date>() {
+        @Override
+        public Class<Date> getType() {
+            return Date.class;
+        }
+
+        @Override
+        public void encode(Date value, DataOutput out) throws IOException {
+            out.writeLong(value.getTime());
+        }
+
+        @Override
+        public Date decode(DataInput in) throws IOException {
+            return new Date(in.readLong());
+        }
+    };
+
+    public static final AttributeValueCodec<URL> URL = new AttributeValueCodec<URL>() {
+        @Override
+        public Class<URL> getType() {
+            return URL.class;
+        }
+
+        @Override
+        public void encode(URL value, DataOutput out) throws IOException {
+            MailCodec.writeString(out, value.toExternalForm());
+        }
+
+        @Override
+        public URL decode(DataInput in) throws IOException {
+            return new URL(MailCodec.readString(in));
+        }
+    };
+
+    public static final AttributeValueCodec<MailAddress> MAIL_ADDRESS = new AttributeValueCodec<MailAddress>() {
+        @Override
+        public Class<MailAddress> getType() {
+            return MailAddress.class;
+        }
+
+        @Override
+        public void encode(MailAddress value, DataOutput out) throws IOException {
+            MailCodec.writeSender(out, value);
+        }
+
+        @Override
+        public MailAddress decode(DataInput in) throws IOException {
+            return MailCodec.readSender(in);
+        }
+    };
+
+    private AttributeValueCodecs() {
+    }
+}
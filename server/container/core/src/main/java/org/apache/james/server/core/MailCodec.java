@@ -0,0 +1,433 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.server.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.mail.internet.AddressException;
+
+import org.apache.james.core.MailAddress;
+import org.apache.mailet.Mail;
+import org.apache.mailet.PerRecipientHeaders;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Compact binary representation of the envelope of a {@link Mail}, that is everything but its message.
+ * <p>
+ * Every payload starts with a magic byte, a format version and the kind of payload, so that readers can tell
+ * it apart from data written with Java serialization (see {@link #isEncoded(byte[])}) and reject formats they
+ * do not know.
+ * <p>
+ * Attribute values are encoded by the {@link AttributeValueCodec} registered for their exact class. Values of
+ * other classes fall back to Java serialization. Additional codecs can be registered through {@link #builder()};
+ * the tag of a codec is part of the stored data and must never be reassigned.
+ */
+public class MailCodec {
+
+    public static class Builder {
+        private final Map<Integer, AttributeValueCodec<?>> codecsByTag = new HashMap<>();
+
+        private Builder() {
+            register(1, AttributeValueCodecs.STRING);
+            register(2, AttributeValueCodecs.LONG);
+            register(3, AttributeValueCodecs.INTEGER);
+            register(4, AttributeValueCodecs.BOOLEAN);
+            register(5, AttributeValueCodecs.BYTES);
+            register(6, AttributeValueCodecs.DATE);
+            register(7, AttributeValueCodecs.URL);
+            register(8, AttributeValueCodecs.MAIL_ADDRESS);
+        }
+
+        public Builder register(int tag, AttributeValueCodec<?> codec) {
+            Preconditions.checkArgument(tag > NULL_TAG && tag < SERIALIZED_TAG, "Attribute codec tag must be between 1 and 126");
+            Preconditions.checkArgument(!codecsByTag.containsKey(tag), "Attribute codec tag %s is already registered", tag);
+            Preconditions.checkArgument(codecsByTag.values().stream().noneMatch(registered -> registered.getType() == codec.getType()),
+                "An attribute codec is already registered for %s", codec.getType());
+            codecsByTag.put(tag, codec);
+            return this;
+        }
+
+        public MailCodec build() {
+            return new MailCodec(codecsByTag);
+        }
+    }
+
+    public static final MailCodec DEFAULT = builder().build();
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return true when the given bytes were produced by a {@link MailCodec}
+     */
+    public static boolean isEncoded(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+
+    private static final byte MAGIC = (byte) 0xCA;
+    private static final byte VERSION = 1;
+    private static final int HEADER_LENGTH = 3;
+
+    private static final byte MAIL = 1;
+    private static final byte ATTRIBUTES = 2;
+    private static final byte ATTRIBUTE_VALUE = 3;
+    private static final byte PER_RECIPIENT_HEADERS = 4;
+
+    private static final byte NO_SENDER = 0;
+    private static final byte NULL_SENDER = 1;
+    private static final byte SENDER = 2;
+
+    private static final int NULL_TAG = 0;
+    private static final int SERIALIZED_TAG = 127;
+
+    private final Map<Integer, AttributeValueCodec<?>> codecsByTag;
+    private final Map<Class<?>, Integer> tagsByType;
+
+    private MailCodec(Map<Integer, AttributeValueCodec<?>> codecsByTag) {
+        this.codecsByTag = new HashMap<>(codecsByTag);
+        this.tagsByType = new HashMap<>();
+        codecsByTag.forEach((tag, codec) -> tagsByType.put(codec.getType(), tag));
+    }
+
+    /**
+     * Encodes the envelope of the given mail. Its message is not included.
+     */
+    public byte[] encode(Mail mail) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeHeader(out, MAIL);
+            writeString(out, mail.getName());
+            writeString(out, mail.getState());
+            writeString(out, mail.getErrorMessage());
+            writeSender(out, mail.getSender());
+            writeRecipients(out, mail.getRecipients());
+            writeString(out, mail.getRemoteHost());
+            writeString(out, mail.getRemoteAddr());
+            writeDate(out, mail.getLastUpdated());
+            writeAttributes(out, attributes(mail));
+            writePerRecipientHeaders(out, mail.getPerRecipientSpecificHeaders());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes an envelope produced by {@link #encode(Mail)}. The returned mail has no message.
+     */
+    public MailImpl decode(byte[] bytes) throws IOException {
+        try (DataInputStream in = open(bytes, MAIL)) {
+            MailImpl mail = new MailImpl();
+            mail.setName(readString(in));
+            mail.setState(readString(in));
+            mail.setErrorMessage(readString(in));
+            mail.setSender(readSender(in));
+            List<MailAddress> recipients = readRecipients(in);
+            if (recipients != null) {
+                mail.setRecipients(recipients);
+            }
+            mail.setRemoteHost(readString(in));
+            mail.setRemoteAddr(readString(in));
+            mail.setLastUpdated(readDate(in));
+            readAttributes(in).forEach(mail::setAttribute);
+            mail.addAllSpecificHeaderForRecipient(readPerRecipientHeaders(in));
+            return mail;
+        }
+    }
+
+    public byte[] encodeAttributes(Mail mail) throws IOException {
+        return encodeAttributes(attributes(mail));
+    }
+
+    public byte[] encodeAttributes(Map<String, ? extends Serializable> attributes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeHeader(out, ATTRIBUTES);
+            writeAttributes(out, attributes);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Map<String, Serializable> decodeAttributes(byte[] bytes) throws IOException {
+        try (DataInputStream in = open(bytes, ATTRIBUTES)) {
+            return readAttributes(in);
+        }
+    }
+
+    public byte[] encodeAttributeValue(Serializable value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeHeader(out, ATTRIBUTE_VALUE);
+            writeAttributeValue(out, value);
+        }
+        return bytes.toByteArray();
+    }
+
+    public Serializable decodeAttributeValue(byte[] bytes) throws IOException {
+        try (DataInputStream in = open(bytes, ATTRIBUTE_VALUE)) {
+            return readAttributeValue(in);
+        }
+    }
+
+    public byte[] encodePerRecipientHeaders(PerRecipientHeaders headers) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeHeader(out, PER_RECIPIENT_HEADERS);
+            writePerRecipientHeaders(out, headers);
+        }
+        return bytes.toByteArray();
+    }
+
+    public PerRecipientHeaders decodePerRecipientHeaders(byte[] bytes) throws IOException {
+        try (DataInputStream in = open(bytes, PER_RECIPIENT_HEADERS)) {
+            return readPerRecipientHeaders(in);
+        }
+    }
+
+    private void writeHeader(DataOutput out, byte kind) throws IOException {
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(kind);
+    }
+
+    private DataInputStream open(byte[] bytes, byte expectedKind) throws IOException {
+        if (!isEncoded(bytes)) {
+            throw new IOException("Not a mail codec payload");
+        }
+        if (bytes[1] != VERSION) {
+            throw new IOException("Unsupported mail codec version " + bytes[1]);
+        }
+        if (bytes[2] != expectedKind) {
+            throw new IOException("Unexpected mail codec payload kind " + bytes[2] + ", expecting " + expectedKind);
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH));
+    }
+
+    private Map<String, Serializable> attributes(Mail mail) {
+        Map<String, Serializable> attributes = new LinkedHashMap<>();
+        Iterator<String> names = mail.getAttributeNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            attributes.put(name, mail.getAttribute(name));
+        }
+        return attributes;
+    }
+
+    private void writeAttributes(DataOutput out, Map<String, ? extends Serializable> attributes) throws IOException {
+        out.writeInt(attributes.size());
+        for (Map.Entry<String, ? extends Serializable> attribute : attributes.entrySet()) {
+            writeString(out, attribute.getKey());
+            writeAttributeValue(out, attribute.getValue());
+        }
+    }
+
+    private Map<String, Serializable> readAttributes(DataInput in) throws IOException {
+        int count = in.readInt();
+        Map<String, Serializable> attributes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = readString(in);
+            attributes.put(name, readAttributeValue(in));
+        }
+        return attributes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeAttributeValue(DataOutput out, Serializable value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_TAG);
+            return;
+        }
+        Integer tag = tagsByType.get(value.getClass());
+        if (tag != null) {
+            out.writeByte(tag);
+            ((AttributeValueCodec<Serializable>) codecsByTag.get(tag)).encode(value, out);
+            return;
+        }
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(serialized)) {
+            objectOut.writeObject(value);
+        }
+        out.writeByte(SERIALIZED_TAG);
+        writeBytes(out, serialized.toByteArray());
+    }
+
+    private Serializable readAttributeValue(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        if (tag == NULL_TAG) {
+            return null;
+        }
+        if (tag == SERIALIZED_TAG) {
+            try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                return (Serializable) objectIn.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unable to read attribute value", e);
+            }
+        }
+        AttributeValueCodec<?> codec = codecsByTag.get(tag);
+        if (codec == null) {
+            throw new IOException("No attribute codec registered for tag " + tag);
+        }
+        return codec.decode(in);
+    }
+
+    static void writeSender(DataOutput out, MailAddress sender) throws IOException {
+        if (sender == null) {
+            out.writeByte(NO_SENDER);
+        } else if (sender.isNullSender()) {
+            out.writeByte(NULL_SENDER);
+        } else {
+            out.writeByte(SENDER);
+            writeString(out, sender.asString());
+        }
+    }
+
+    static MailAddress readSender(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NO_SENDER:
+                return null;
+            case NULL_SENDER:
+                return MailAddress.nullSender();
+            case SENDER:
+                return readAddress(in);
+            default:
+                throw new IOException("Unknown sender type " + type);
+        }
+    }
+
+    private static void writeRecipients(DataOutput out, Collection<MailAddress> recipients) throws IOException {
+        if (recipients == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(recipients.size());
+        for (MailAddress recipient : recipients) {
+            writeString(out, recipient.asString());
+        }
+    }
+
+    private static List<MailAddress> readRecipients(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count == -1) {
+            return null;
+        }
+        List<MailAddress> recipients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            recipients.add(readAddress(in));
+        }
+        return recipients;
+    }
+
+    private static void writePerRecipientHeaders(DataOutput out, PerRecipientHeaders headers) throws IOException {
+        Collection<Map.Entry<MailAddress, PerRecipientHeaders.Header>> entries = headers.getHeadersByRecipient().entries();
+        out.writeInt(entries.size());
+        for (Map.Entry<MailAddress, PerRecipientHeaders.Header> entry : entries) {
+            writeString(out, entry.getKey().asString());
+            writeString(out, entry.getValue().getName());
+            writeString(out, entry.getValue().getValue());
+        }
+    }
+
+    private static PerRecipientHeaders readPerRecipientHeaders(DataInput in) throws IOException {
+        PerRecipientHeaders headers = new PerRecipientHeaders();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            MailAddress recipient = readAddress(in);
+            headers.addHeaderForRecipient(PerRecipientHeaders.Header.builder()
+                    .name(readString(in))
+                    .value(readString(in)),
+                recipient);
+        }
+        return headers;
+    }
+
+    private static void writeDate(DataOutput out, Date date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.getTime());
+        }
+    }
+
+    private static Date readDate(DataInput in) throws IOException {
+        if (in.readBoolean()) {
+            return new Date(in.readLong());
+        }
+        return null;
+    }
+
+    private static MailAddress readAddress(DataInput in) throws IOException {
+        String address = readString(in);
+        try {
+            return new MailAddress(address);
+        } catch (AddressException e) {
+            throw new IOException("Invalid address " + address, e);
+        }
+    }
+
+    /**
+     * Writes a nullable string as its UTF-8 length followed by its UTF-8 bytes. Unlike
+     * {@link DataOutput#writeUTF(String)} the length is not limited to 64KB.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static byte[] readBytes(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,118 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.server.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.james.core.MailAddress;
+import org.apache.mailet.PerRecipientHeaders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link MailCodec} with the Java serialization of {@link MailImpl} for a typical queued envelope.
+ *
+ * Run it with the main method of this class from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MailCodecBenchmark {
+
+    private MailImpl mail;
+    private byte[] encoded;
+    private byte[] serialized;
+
+    @Setup
+    public void setUp() throws Exception {
+        mail = MailImpl.builder()
+            .name("Mail1532512413251-42")
+            .sender("sender@james.apache.org")
+            .recipients("rcpt1@james.apache.org", "rcpt2@james.apache.org", "rcpt3@james.apache.org")
+            .state("transport")
+            .build();
+        mail.setRemoteHost("smtp.james.apache.org");
+        mail.setRemoteAddr("192.168.0.1");
+        mail.setAttribute("org.apache.james.SMTPAuthUser", "sender");
+        mail.setAttribute("org.apache.james.AuthUserSession", true);
+        mail.setAttribute("RemoteDeliveryRetryCount", 3);
+        mail.setAttribute("org.apache.james.queue.nextDelivery", System.currentTimeMillis());
+        mail.addSpecificHeaderForRecipient(PerRecipientHeaders.Header.builder().name("Delivered-To").value("rcpt1@james.apache.org").build(),
+            new MailAddress("rcpt1@james.apache.org"));
+
+        encoded = MailCodec.DEFAULT.encode(mail);
+        serialized = serialize();
+    }
+
+    @Benchmark
+    public byte[] encodeWithMailCodec() throws IOException {
+        return MailCodec.DEFAULT.encode(mail);
+    }
+
+    @Benchmark
+    public byte[] encodeWithJavaSerialization() throws IOException {
+        return serialize();
+    }
+
+    @Benchmark
+    public MailImpl decodeWithMailCodec() throws IOException {
+        return MailCodec.DEFAULT.decode(encoded);
+    }
+
+    @Benchmark
+    public Object decodeWithJavaSerialization() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+
+    private byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(mail);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(MailCodecBenchmark.class.getSimpleName())
+            .build())
+            .run();
+    }
+}
@@ -0,0 +1,220 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.server.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.apache.james.core.MailAddress;
+import org.apache.mailet.PerRecipientHeaders;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class MailCodecTest {
+
+    private static class Point implements Serializable {
+        private final int x;
+        private final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static final AttributeValueCodec<Point> POINT_CODEC = new AttributeValueCodec<Point>() {
+        @Override
+        public Class<Point> getType() {
+            return Point.class;
+        }
+
+        @Override
+        public void encode(Point value, DataOutput out) throws IOException {
+            out.writeInt(value.x);
+            out.writeInt(value.y);
+        }
+
+        @Override
+        public Point decode(DataInput in) throws IOException {
+            return new Point(in.readInt(), in.readInt());
+        }
+    };
+
+    private MailImpl mail() throws Exception {
+        MailImpl mail = MailImpl.builder()
+            .name("name")
+            .sender("sender@domain.com")
+            .recipients("rcpt1@domain.com", "rcpt2@domain.com")
+            .state("state")
+            .errorMessage("error")
+            .build();
+        mail.setRemoteHost("remote.domain.com");
+        mail.setRemoteAddr("10.0.0.1");
+        mail.setLastUpdated(new Date(1500000000000L));
+        mail.addSpecificHeaderForRecipient(PerRecipientHeaders.Header.builder().name("X-Header").value("value").build(),
+            new MailAddress("rcpt1@domain.com"));
+        return mail;
+    }
+
+    @Test
+    public void decodeShouldReturnTheEncodedEnvelope() throws Exception {
+        MailImpl mail = mail();
+        mail.setAttribute("string", "value");
+        mail.setAttribute("long", 42L);
+        mail.setAttribute("integer", 12);
+        mail.setAttribute("boolean", true);
+        mail.setAttribute("date", new Date(1500000000000L));
+        mail.setAttribute("url", new URL("http://james.apache.org/"));
+        mail.setAttribute("address", new MailAddress("any@domain.com"));
+        mail.setAttribute("list", new ArrayList<>(ImmutableList.of("a", "b")));
+
+        MailImpl decoded = MailCodec.DEFAULT.decode(MailCodec.DEFAULT.encode(mail));
+
+        assertThat(decoded.getName()).isEqualTo("name");
+        assertThat(decoded.getSender()).isEqualTo(new MailAddress("sender@domain.com"));
+        assertThat(decoded.getRecipients()).containsExactly(new MailAddress("rcpt1@domain.com"), new MailAddress("rcpt2@domain.com"));
+        assertThat(decoded.getState()).isEqualTo("state");
+        assertThat(decoded.getErrorMessage()).isEqualTo("error");
+        assertThat(decoded.getRemoteHost()).isEqualTo("remote.domain.com");
+        assertThat(decoded.getRemoteAddr()).isEqualTo("10.0.0.1");
+        assertThat(decoded.getLastUpdated()).isEqualTo(new Date(1500000000000L));
+        assertThat(decoded.getPerRecipientSpecificHeaders()).isEqualTo(mail.getPerRecipientSpecificHeaders());
+        assertThat(decoded.getAttribute("string")).isEqualTo("value");
+        assertThat(decoded.getAttribute("long")).isEqualTo(42L);
+        assertThat(decoded.getAttribute("integer")).isEqualTo(12);
+        assertThat(decoded.getAttribute("boolean")).isEqualTo(true);
+        assertThat(decoded.getAttribute("date")).isEqualTo(new Date(1500000000000L));
+        assertThat(decoded.getAttribute("url")).isEqualTo(new URL("http://james.apache.org/"));
+        assertThat(decoded.getAttribute("address")).isEqualTo(new MailAddress("any@domain.com"));
+        assertThat(decoded.getAttribute("list")).isEqualTo(ImmutableList.of("a", "b"));
+    }
+
+    @Test
+    public void decodeShouldPreserveNullSender() throws Exception {
+        MailImpl mail = mail();
+        mail.setSender(MailAddress.nullSender());
+
+        assertThat(MailCodec.DEFAULT.decode(MailCodec.DEFAULT.encode(mail)).getSender().isNullSender()).isTrue();
+    }
+
+    @Test
+    public void decodeShouldPreserveMissingSender() throws Exception {
+        MailImpl mail = mail();
+        mail.setSender(null);
+
+        assertThat(MailCodec.DEFAULT.decode(MailCodec.DEFAULT.encode(mail)).getSender()).isNull();
+    }
+
+    @Test
+    public void encodeShouldBeSmallerThanJavaSerialization() throws Exception {
+        MailImpl mail = mail();
+        mail.setAttribute("string", "value");
+        mail.setAttribute("long", 42L);
+
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(mail);
+        }
+
+        assertThat(MailCodec.DEFAULT.encode(mail).length).isLessThan(serialized.size());
+    }
+
+    @Test
+    public void registeredCodecsShouldBeUsedForTheirType() throws Exception {
+        MailCodec codec = MailCodec.builder()
+            .register(100, POINT_CODEC)
+            .build();
+
+        byte[] encoded = codec.encodeAttributeValue(new Point(3, 4));
+        Point decoded = (Point) codec.decodeAttributeValue(encoded);
+
+        assertThat(encoded).hasSize(3 + 1 + 8);
+        assertThat(decoded.x).isEqualTo(3);
+        assertThat(decoded.y).isEqualTo(4);
+    }
+
+    @Test
+    public void decodeShouldFailWhenTagIsNotRegistered() throws Exception {
+        byte[] encoded = MailCodec.builder()
+            .register(100, POINT_CODEC)
+            .build()
+            .encodeAttributeValue(new Point(3, 4));
+
+        assertThatThrownBy(() -> MailCodec.DEFAULT.decodeAttributeValue(encoded))
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void registerShouldRejectAlreadyUsedTags() {
+        assertThatThrownBy(() -> MailCodec.builder().register(1, POINT_CODEC))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void registerShouldRejectAlreadyHandledTypes() {
+        assertThatThrownBy(() -> MailCodec.builder().register(100, AttributeValueCodecs.STRING))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void registerShouldRejectReservedTags() {
+        assertThatThrownBy(() -> MailCodec.builder().register(127, POINT_CODEC))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void decodeAttributesShouldReturnEncodedAttributes() throws Exception {
+        byte[] encoded = MailCodec.DEFAULT.encodeAttributes(ImmutableMap.of("a", "b", "c", 1L));
+
+        assertThat(MailCodec.DEFAULT.decodeAttributes(encoded)).containsExactly(
+            entry("a", "b"),
+            entry("c", 1L));
+    }
+
+    @Test
+    public void decodeShouldRejectAnotherKindOfPayload() throws Exception {
+        byte[] encoded = MailCodec.DEFAULT.encodeAttributes(ImmutableMap.of("a", "b"));
+
+        assertThatThrownBy(() -> MailCodec.DEFAULT.decode(encoded))
+            .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void isEncodedShouldBeFalseForJavaSerialization() throws Exception {
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(serialized)) {
+            out.writeObject(mail());
+        }
+
+        assertThat(MailCodec.isEncoded(serialized.toByteArray())).isFalse();
+    }
+}
@@ -23,30 +23,55 @@ import java.util.List;
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.james.backends.cassandra.components.CassandraModule;
 import org.apache.james.lifecycle.api.Configurable;
+import org.apache.james.metrics.api.GaugeRegistry;
 import org.apache.james.rrt.api.RecipientRewriteTable;
 import org.apache.james.rrt.cassandra.CassandraRRTModule;
 import org.apache.james.rrt.cassandra.CassandraRecipientRewriteTable;
+import org.apache.james.rrt.lib.CachingRecipientRewriteTable;
+import org.apache.james.rrt.lib.InVMMappingChangeNotifier;
+import org.apache.james.rrt.lib.MappingChangeNotifier;
+import org.apache.james.rrt.lib.RecipientRewriteTableCacheConfiguration;
 import org.apache.james.server.core.configuration.ConfigurationProvider;
 import org.apache.james.utils.ConfigurationPerformer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
+import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.Singleton;
 import com.google.inject.multibindings.Multibinder;
 
 public class CassandraRecipientRewriteTableModule extends AbstractModule {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CassandraRecipientRewriteTableModule.class);
 
     @Override
     public void configure() {
         bind(CassandraRecipientRewriteTable.class).in(Scopes.SINGLETON);
-        bind(RecipientRewriteTable.class).to(CassandraRecipientRewriteTable.class);
+        bind(InVMMappingChangeNotifier.class).in(Scopes.SINGLETON);
+        bind(MappingChangeNotifier.class).to(InVMMappingChangeNotifier.class);
         Multibinder<CassandraModule> cassandraDataDefinitions = Multibinder.newSetBinder(binder(), CassandraModule.class);
         cassandraDataDefinitions.addBinding().toInstance(CassandraRRTModule.MODULE);
         Multibinder.newSetBinder(binder(), ConfigurationPerformer.class).addBinding().to(CassandraRecipientRewriteTablePerformer.class);
     }
 
+    @Provides
+    @Singleton
+    RecipientRewriteTable provideRecipientRewriteTable(CassandraRecipientRewriteTable cassandraRecipientRewriteTable,
+                                                       MappingChangeNotifier mappingChangeNotifier,
+                                                       ConfigurationProvider configurationProvider,
+                                                       GaugeRegistry gaugeRegistry) throws ConfigurationException {
+        RecipientRewriteTableCacheConfiguration cacheConfiguration =
+            RecipientRewriteTableCacheConfiguration.from(configurationProvider.getConfiguration("recipientrewritetable"));
+        if (cacheConfiguration.isEnabled()) {
+            LOGGER.info("Recipient rewrite table cache has been enabled: {}", cacheConfiguration);
+            return new CachingRecipientRewriteTable(cassandraRecipientRewriteTable, mappingChangeNotifier, cacheConfiguration, gaugeRegistry);
+        }
+        return cassandraRecipientRewriteTable;
+    }
+
     @Singleton
     public static class CassandraRecipientRewriteTablePerformer implements ConfigurationPerformer {
 
@@ -21,11 +21,15 @@ package org.apache.james.modules.mailbox;
 
 import org.apache.james.backends.cassandra.components.CassandraModule;
 import org.apache.james.blob.api.BlobStore;
+import org.apache.james.blob.api.DeduplicatingBlobStore;
+import org.apache.james.blob.api.HashBlobId;
 import org.apache.james.blob.cassandra.CassandraBlobModule;
 import org.apache.james.blob.cassandra.CassandraBlobsDAO;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
 import com.google.inject.Scopes;
+import com.google.inject.Singleton;
 import com.google.inject.multibindings.Multibinder;
 
 public class CassandraObjectStoreModule extends AbstractModule {
@@ -33,9 +37,13 @@ public class CassandraObjectStoreModule extends AbstractModule {
     protected void configure() {
         bind(CassandraBlobsDAO.class).in(Scopes.SINGLETON);
 
-        bind(BlobStore.class).to(CassandraBlobsDAO.class);
-
         Multibinder<CassandraModule> cassandraDataDefinitions = Multibinder.newSetBinder(binder(), CassandraModule.class);
         cassandraDataDefinitions.addBinding().toInstance(CassandraBlobModule.MODULE);
     }
+
+    @Provides
+    @Singleton
+    BlobStore provideBlobStore(CassandraBlobsDAO cassandraBlobsDAO, HashBlobId.Factory blobIdFactory) {
+        return new DeduplicatingBlobStore(cassandraBlobsDAO, blobIdFactory);
+    }
 }
@@ -25,9 +25,11 @@ import java.util.Optional;
 import javax.inject.Inject;
 
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.apache.james.lifecycle.api.Configurable;
 import org.apache.james.mailbox.MailboxListener;
 import org.apache.james.mailbox.store.event.AsynchronousEventDelivery;
+import org.apache.james.mailbox.store.event.AsynchronousEventDeliveryConfiguration;
 import org.apache.james.mailbox.store.event.DefaultDelegatingMailboxListener;
 import org.apache.james.mailbox.store.event.DelegatingMailboxListener;
 import org.apache.james.mailbox.store.event.EventDelivery;
@@ -36,6 +38,7 @@ import org.apache.james.mailbox.store.event.MailboxListenerRegistry;
 import org.apache.james.mailbox.store.event.MixedEventDelivery;
 import org.apache.james.mailbox.store.event.SynchronousEventDelivery;
 import org.apache.james.mailbox.store.quota.ListeningCurrentQuotaUpdater;
+import org.apache.james.metrics.api.GaugeRegistry;
 import org.apache.james.metrics.api.MetricFactory;
 import org.apache.james.server.core.configuration.ConfigurationProvider;
 import org.apache.james.utils.ConfigurationPerformer;
@@ -49,8 +52,6 @@ import com.google.inject.multibindings.Multibinder;
 
 public class DefaultEventModule extends AbstractModule {
 
-    private static final int DEFAULT_POOL_SIZE = 8;
-
     @Override
     protected void configure() {
         bind(DefaultDelegatingMailboxListener.class).in(Scopes.SINGLETON);
@@ -70,22 +71,27 @@ public class DefaultEventModule extends AbstractModule {
 
     @Provides
     @Singleton
-    EventDelivery provideEventDelivery(ConfigurationProvider configurationProvider, MetricFactory metricFactory) {
-        int poolSize = retrievePoolSize(configurationProvider);
-
+    EventDelivery provideEventDelivery(ConfigurationProvider configurationProvider, MetricFactory metricFactory, GaugeRegistry gaugeRegistry) {
         SynchronousEventDelivery synchronousEventDelivery = new SynchronousEventDelivery(metricFactory);
         return new MixedEventDelivery(
-            new AsynchronousEventDelivery(poolSize, synchronousEventDelivery),
+            new AsynchronousEventDelivery(retrieveAsynchronousEventDeliveryConfiguration(configurationProvider),
+                synchronousEventDelivery, metricFactory, gaugeRegistry),
             synchronousEventDelivery);
     }
 
-    private int retrievePoolSize(ConfigurationProvider configurationProvider) {
+    private AsynchronousEventDeliveryConfiguration retrieveAsynchronousEventDeliveryConfiguration(ConfigurationProvider configurationProvider) {
         try {
-            return Optional.ofNullable(configurationProvider.getConfiguration("listeners")
-                .getInteger("poolSize", null))
-                .orElse(DEFAULT_POOL_SIZE);
+            HierarchicalConfiguration configuration = configurationProvider.getConfiguration("listeners");
+            AsynchronousEventDeliveryConfiguration.Builder builder = AsynchronousEventDeliveryConfiguration.builder();
+            Optional.ofNullable(configuration.getInteger("poolSize", null))
+                .ifPresent(builder::laneCount);
+            Optional.ofNullable(configuration.getInteger("queueCapacity", null))
+                .ifPresent(builder::laneQueueCapacity);
+            Optional.ofNullable(configuration.getInteger("batchSize", null))
+                .ifPresent(builder::batchSize);
+            return builder.build();
         } catch (ConfigurationException e) {
-            return DEFAULT_POOL_SIZE;
+            return AsynchronousEventDeliveryConfiguration.defaultValues();
         }
     }
 
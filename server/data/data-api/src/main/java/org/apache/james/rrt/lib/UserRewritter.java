@@ -37,8 +37,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.steveash.guavate.Guavate;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 @FunctionalInterface
 public interface UserRewritter extends Serializable {
@@ -81,6 +87,33 @@ public interface UserRewritter extends Serializable {
 
         private static final int REGEX = 0;
         private static final int PARAMETERIZED_STRING = 1;
+        private static final int COMPILED_MAPPINGS_MAX_SIZE = 10000;
+
+        private static class CompiledRegexMapping {
+            static CompiledRegexMapping compile(String mapping) {
+                List<String> parts = ImmutableList.copyOf(Splitter.on(':').split(mapping));
+                if (parts.size() != 2) {
+                    throw new PatternSyntaxException("Regex should be formatted as <regular-expression>:<parameterized-string>", mapping, 0);
+                }
+                return new CompiledRegexMapping(Pattern.compile(parts.get(REGEX)), parts.get(PARAMETERIZED_STRING));
+            }
+
+            private final Pattern pattern;
+            private final String parameterizedString;
+
+            private CompiledRegexMapping(Pattern pattern, String parameterizedString) {
+                this.pattern = pattern;
+                this.parameterizedString = parameterizedString;
+            }
+        }
+
+        /**
+         * Mappings are re-instantiated each time they are read from the underlying storage: sharing compiled
+         * mappings avoids parsing and compiling every regex mapping of a source on each lookup.
+         */
+        private static final LoadingCache<String, CompiledRegexMapping> COMPILED_MAPPINGS = CacheBuilder.newBuilder()
+            .maximumSize(COMPILED_MAPPINGS_MAX_SIZE)
+            .build(CacheLoader.from(CompiledRegexMapping::compile));
 
         @Override
         public UserRewritter generateUserRewriter(String mapping) {
@@ -102,21 +135,26 @@ public interface UserRewritter extends Serializable {
          * (.*)@(.*):${1}@tld
          */
         public Optional<String> regexMap(MailAddress address, String mapping) {
-            List<String> parts = ImmutableList.copyOf(Splitter.on(':').split(mapping));
-            if (parts.size() != 2) {
-                throw new PatternSyntaxException("Regex should be formatted as <regular-expression>:<parameterized-string>", mapping, 0);
-            }
-
-            Pattern pattern = Pattern.compile(parts.get(REGEX));
-            Matcher match = pattern.matcher(address.asString());
+            CompiledRegexMapping compiledMapping = compiledMapping(mapping);
+            Matcher match = compiledMapping.pattern.matcher(address.asString());
 
             if (match.matches()) {
                 ImmutableList<String> parameters = listMatchingGroups(match);
-                return Optional.of(replaceParameters(parts.get(PARAMETERIZED_STRING), parameters));
+                return Optional.of(replaceParameters(compiledMapping.parameterizedString, parameters));
             }
             return Optional.empty();
         }
 
+        private CompiledRegexMapping compiledMapping(String mapping) {
+            Preconditions.checkNotNull(mapping);
+            try {
+                return COMPILED_MAPPINGS.getUnchecked(mapping);
+            } catch (UncheckedExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw e;
+            }
+        }
+
         private ImmutableList<String> listMatchingGroups(Matcher match) {
             return IntStream
                 .rangeClosed(1, match.groupCount())
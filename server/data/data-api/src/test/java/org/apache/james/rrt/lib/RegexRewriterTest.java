@@ -90,4 +90,25 @@ class RegexRewriterTest {
         assertThat(new UserRewritter.RegexRewriter().regexMap(mailAddress, "prefix_(.*)_(.*)@test:admin@${1}.${1}"))
             .contains("admin@abc.abc");
     }
+
+    @Test
+    void regexMapShouldThrowOnInvalidRegexWhenCalledSeveralTimes() {
+        assertThatThrownBy(() -> new UserRewritter.RegexRewriter().regexMap(new MailAddress("abc@test"), "(abc:admin@test"))
+            .isInstanceOf(PatternSyntaxException.class);
+        assertThatThrownBy(() -> new UserRewritter.RegexRewriter().regexMap(new MailAddress("abc@test"), "(abc:admin@test"))
+            .isInstanceOf(PatternSyntaxException.class);
+    }
+
+    @Test
+    void regexMapShouldRewriteEachAddressWhenMappingIsReused() throws Exception {
+        UserRewritter.RegexRewriter rewriter = new UserRewritter.RegexRewriter();
+        String mapping = "prefix_(.*)@test:admin@${1}";
+
+        assertThat(rewriter.regexMap(new MailAddress("prefix_abc@test"), mapping))
+            .contains("admin@abc");
+        assertThat(rewriter.regexMap(new MailAddress("prefix_def@test"), mapping))
+            .contains("admin@def");
+        assertThat(rewriter.regexMap(new MailAddress("other@test"), mapping))
+            .isEmpty();
+    }
 }
@@ -40,6 +40,7 @@ import org.apache.james.mailrepository.api.MailKey;
 import org.apache.james.mailrepository.lib.AbstractMailRepository;
 import org.apache.james.repository.file.FilePersistentObjectRepository;
 import org.apache.james.repository.file.FilePersistentStreamRepository;
+import org.apache.james.server.core.MailCodec;
 import org.apache.james.server.core.MimeMessageCopyOnWriteProxy;
 import org.apache.james.server.core.MimeMessageWrapper;
 import org.apache.mailet.Mail;
@@ -215,15 +216,15 @@ public class FileMailRepository extends AbstractMailRepository {
             }
         }
         // Always save the header information
-        objectRepository.put(key, mc);
+        objectRepository.put(key, MailCodec.DEFAULT.encode(mc));
     }
 
     @Override
     public Mail retrieve(MailKey key) throws MessagingException {
         try {
-            Mail mc;
+            Object envelope;
             try {
-                mc = (Mail) objectRepository.get(key.asString());
+                envelope = objectRepository.get(key.asString());
             } catch (RuntimeException re) {
                 if (re.getCause() instanceof Error) {
                     LOGGER.warn("Error when retrieving mail, not deleting: {}", re, re);
@@ -233,6 +234,8 @@ public class FileMailRepository extends AbstractMailRepository {
                 }
                 return null;
             }
+            // Mails stored before the introduction of MailCodec were serialized as a whole
+            Mail mc = envelope instanceof byte[] ? MailCodec.DEFAULT.decode((byte[]) envelope) : (Mail) envelope;
             MimeMessageStreamRepositorySource source = new MimeMessageStreamRepositorySource(streamRepository, destination, key.asString());
             mc.setMessage(new MimeMessageCopyOnWriteProxy(source));
 
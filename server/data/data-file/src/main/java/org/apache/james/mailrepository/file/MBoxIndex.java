@@ -0,0 +1,332 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailrepository.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Offsets of the messages of a mbox file.
+ *
+ * Each message is located by the byte range of its separator line and of its body. Messages are keyed, as
+ * they always were in {@link MBoxMailRepository}, by the SHA-256 fingerprint of their body, lines being read
+ * as ISO-8859-1 and terminated by a single line feed.
+ *
+ * The index remembers the modification time and the length of the file it reflects, so that a file changed
+ * by another process is indexed again.
+ */
+class MBoxIndex {
+    private static final Pattern SEPARATOR = Pattern.compile("^From (.*) (.*):(.*):(.*)$");
+    private static final int LF = '\n';
+    private static final int CR = '\r';
+
+    static class Entry {
+        private final String key;
+        private final long separatorStart;
+        private final long bodyStart;
+        private final long end;
+
+        Entry(String key, long separatorStart, long bodyStart, long end) {
+            this.key = key;
+            this.separatorStart = separatorStart;
+            this.bodyStart = bodyStart;
+            this.end = end;
+        }
+
+        String getKey() {
+            return key;
+        }
+
+        private Entry moveTo(long newSeparatorStart) {
+            return new Entry(key, newSeparatorStart, newSeparatorStart + bodyStart - separatorStart, newSeparatorStart + end - separatorStart);
+        }
+    }
+
+    static MBoxIndex empty() {
+        return new MBoxIndex(ImmutableList.of(), 0, 0);
+    }
+
+    /**
+     * Read the whole mbox file and index its messages
+     */
+    static MBoxIndex build(File mbox) throws IOException {
+        long length = mbox.length();
+        long lastModified = mbox.lastModified();
+        return new MBoxIndex(scan(mbox, 0, length), length, lastModified);
+    }
+
+    private static List<Entry> scan(File mbox, long from, long length) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (FileInputStream fileInputStream = new FileInputStream(mbox);
+             InputStream in = new BufferedInputStream(fileInputStream)) {
+            if (in.skip(from) != from) {
+                throw new IOException("Unable to skip to offset " + from + " of " + mbox);
+            }
+            LineReader reader = new LineReader(in, from);
+            boolean inMessage = false;
+            boolean emptyBody = true;
+            long separatorStart = 0;
+            long bodyStart = 0;
+            Hasher hasher = null;
+            byte[] line;
+            while (reader.position < length && (line = reader.readLine()) != null) {
+                if (isSeparator(line)) {
+                    if (inMessage) {
+                        entries.add(new Entry(hasher.hash().toString(), separatorStart, bodyStart, reader.lineStart));
+                    }
+                    inMessage = true;
+                    emptyBody = true;
+                    separatorStart = reader.lineStart;
+                    bodyStart = reader.position;
+                    hasher = Hashing.sha256().newHasher();
+                } else if (inMessage) {
+                    for (byte b : line) {
+                        hasher.putChar((char) (b & 0xFF));
+                    }
+                    hasher.putChar('\n');
+                    emptyBody = false;
+                }
+            }
+            if (inMessage && !emptyBody) {
+                // process last message
+                entries.add(new Entry(hasher.hash().toString(), separatorStart, bodyStart, reader.position));
+            }
+        }
+        return entries;
+    }
+
+    private static boolean isSeparator(byte[] line) {
+        if (line.length < 5 || line[0] != 'F') {
+            return false;
+        }
+        return SEPARATOR.matcher(latin1(line)).matches();
+    }
+
+    private static String latin1(byte[] bytes) {
+        char[] chars = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i] = (char) (bytes[i] & 0xFF);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reads lines the way {@link java.io.RandomAccessFile#readLine()} does: a line is terminated by a line feed,
+     * a carriage return or both.
+     */
+    private static class LineReader {
+        private final InputStream in;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private long position;
+        private long lineStart;
+
+        LineReader(InputStream in, long position) {
+            this.in = in;
+            this.position = position;
+        }
+
+        byte[] readLine() throws IOException {
+            buffer.reset();
+            lineStart = position;
+            int c;
+            while ((c = in.read()) != -1) {
+                position++;
+                if (c == LF) {
+                    return buffer.toByteArray();
+                }
+                if (c == CR) {
+                    in.mark(1);
+                    if (in.read() == LF) {
+                        position++;
+                    } else {
+                        in.reset();
+                    }
+                    return buffer.toByteArray();
+                }
+                buffer.write(c);
+            }
+            if (position == lineStart) {
+                return null;
+            }
+            return buffer.toByteArray();
+        }
+    }
+
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByKey;
+    private final long fileLength;
+    private final long fileLastModified;
+
+    private MBoxIndex(List<Entry> entries, long fileLength, long fileLastModified) {
+        this.entries = ImmutableList.copyOf(entries);
+        this.entriesByKey = new LinkedHashMap<>();
+        // identical messages share their key, the last one wins
+        entries.forEach(entry -> entriesByKey.put(entry.key, entry));
+        this.fileLength = fileLength;
+        this.fileLastModified = fileLastModified;
+    }
+
+    /**
+     * Whether the file is unchanged since it was indexed
+     */
+    boolean isUpToDate(File mbox) {
+        return mbox.length() == fileLength && mbox.lastModified() == fileLastModified;
+    }
+
+    /**
+     * The keys of the indexed messages, in the order of the file
+     */
+    Set<String> keys() {
+        return ImmutableSet.copyOf(entriesByKey.keySet());
+    }
+
+    int size() {
+        return entriesByKey.size();
+    }
+
+    Optional<Entry> get(String key) {
+        return Optional.ofNullable(entriesByKey.get(key));
+    }
+
+    /**
+     * Index the messages appended to the file since it was indexed.
+     *
+     * The file is indexed again when it does not only differ by appended messages.
+     */
+    MBoxIndex extend(File mbox) throws IOException {
+        long length = mbox.length();
+        long lastModified = mbox.lastModified();
+        if (length < fileLength || !endsAtLineBoundary(mbox)) {
+            return build(mbox);
+        }
+        List<Entry> extended = new ArrayList<>(entries);
+        extended.addAll(scan(mbox, fileLength, length));
+        return new MBoxIndex(extended, length, lastModified);
+    }
+
+    private boolean endsAtLineBoundary(File mbox) throws IOException {
+        if (fileLength == 0) {
+            return true;
+        }
+        if (entries.isEmpty() || entries.get(entries.size() - 1).end != fileLength) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(mbox.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer lastByte = channel.map(FileChannel.MapMode.READ_ONLY, fileLength - 1, 1);
+            byte b = lastByte.get();
+            return b == LF || b == CR;
+        }
+    }
+
+    /**
+     * Read the body of a message from a memory mapped region of the file, with the lines terminated by a single
+     * line feed
+     */
+    String readBody(File mbox, Entry entry) throws IOException {
+        long length = entry.end - entry.bodyStart;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Message at offset " + entry.bodyStart + " of " + mbox + " is too large");
+        }
+        try (FileChannel channel = FileChannel.open(mbox.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, entry.bodyStart, length);
+            StringBuilder text = new StringBuilder((int) length);
+            boolean lineTerminated = true;
+            while (body.hasRemaining()) {
+                int c = body.get() & 0xFF;
+                if (c == CR) {
+                    if (body.hasRemaining() && body.get(body.position()) == LF) {
+                        body.get();
+                    }
+                    text.append('\n');
+                    lineTerminated = true;
+                } else if (c == LF) {
+                    text.append('\n');
+                    lineTerminated = true;
+                } else {
+                    text.append((char) c);
+                    lineTerminated = false;
+                }
+            }
+            if (!lineTerminated) {
+                text.append('\n');
+            }
+            return text.toString();
+        }
+    }
+
+    /**
+     * Remove the messages with the given keys in a single pass: the kept messages are copied to the work file,
+     * which then replaces the mbox file.
+     *
+     * @return the index of the compacted file
+     */
+    MBoxIndex remove(File mbox, File workFile, Collection<String> keys) throws IOException {
+        Set<String> removedKeys = new HashSet<>(keys);
+        List<Entry> kept = new ArrayList<>();
+        long position = 0;
+        try (FileChannel in = FileChannel.open(mbox.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(workFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Entry entry : entries) {
+                if (removedKeys.contains(entry.key)) {
+                    continue;
+                }
+                long length = entry.end - entry.separatorStart;
+                long transferred = 0;
+                while (transferred < length) {
+                    long count = in.transferTo(entry.separatorStart + transferred, length - transferred, out);
+                    if (count <= 0) {
+                        throw new IOException("Unexpected end of file " + mbox);
+                    }
+                    transferred += count;
+                }
+                kept.add(entry.moveTo(position));
+                position += length;
+            }
+        }
+        FileUtils.forceDelete(mbox);
+        if (!workFile.renameTo(mbox)) {
+            throw new IOException("Failed to rename file " + workFile + " -> " + mbox);
+        }
+        return new MBoxIndex(kept, mbox.length(), mbox.lastModified());
+    }
+}
@@ -22,9 +22,9 @@
  * 1. Currently, iterating through the message collection does not
  *    preserve the order in the file.  Change this with some form of
  *    OrderedMap.  There is a suitable class in Jakarta Commons
- *    Collections.
+ *    Collections. - DONE.
  *
- * 2. Optimize the remove operation.
+ * 2. Optimize the remove operation. - DONE.
  *
  * 3. Don't load entire message into memory.  This would mean computing
  *    the hash during I/O streaming, rather than loading entire message
@@ -56,12 +56,10 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Locale;
+import java.util.Optional;
 import java.util.Properties;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import javax.mail.MessagingException;
 import javax.mail.Session;
@@ -78,9 +76,7 @@ import org.apache.mailet.Mail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.fge.lambdas.Throwing;
 import com.google.common.collect.ImmutableList;
-import com.google.common.hash.Hashing;
 
 /**
  * Implementation of a MailRepository using UNIX mbox files.
@@ -105,14 +101,15 @@ import com.google.common.hash.Hashing;
  * <p>
  * Implementation notes:
  * <p>
- * This class keeps an internal store of the mbox file When the internal mbox
- * file is updated (added/deleted) then the file will be re-read from disk and
- * then written back. This is a bit inefficent but means that the file on disk
- * should be correct.
+ * This class keeps an index of the offsets of the messages in the mbox file.
+ * The index is built the first time the file is read, extended when messages
+ * are stored, and built again when the file is changed by someone else. A
+ * message is retrieved by reading its byte range from a memory mapped region
+ * of the file. Removing messages copies the kept ones to a work file in a
+ * single pass, which then replaces the mbox file.
  * <p>
  * The mbox store is mainly meant to be used as a one-way street. Storing new
- * emails is very fast (append to file) whereas reading them (via POP3) is
- * slower (read from disk and parse). Therefore this implementation is best
+ * emails is very fast (append to file). Therefore this implementation is best
  * suited to people who wish to use the mbox format for taking data out of James
  * and into something else (IMAP server or mail list displayer)
  *
@@ -131,21 +128,12 @@ public class MBoxMailRepository implements MailRepository, Configurable {
     static final String WORKEXT = ".work";
     static final int LOCKSLEEPDELAY = 2000; // 2 second back off in the event of a problem with the lock file
     static final int MAXSLEEPTIMES = 100; //
-    // The hash table will be loaded with a initial capacity of filelength/MLISTPRESIZEFACTOR
-    static final long MLISTPRESIZEFACTOR = 10 * 1024; 
-    // Set up a hashtable to have a meaningful default
-    static final long DEFAULTMLISTCAPACITY = 20; 
-    
-    /**
-     * Whether line buffering is turned used.
-     */
-    private static boolean BUFFERING = true;
 
     /**
-     * The internal list of emails.
+     * The index of the emails in the mbox file.
      * The key is an adapted SHA-256 fingerprint of the email body.
      */
-    private Hashtable<String, Long> mList = null;
+    private MBoxIndex index = null;
     /**
      * The filename to read & write the mbox from/to
      */
@@ -153,23 +141,13 @@ public class MBoxMailRepository implements MailRepository, Configurable {
 
     private boolean fifo;
 
-    /**
-     * A callback used when a message is read from the mbox file
-     */
-    public interface MessageAction {
-        boolean isComplete(); // *** Not valid until AFTER each call to messageAction(...)!
-
-        MimeMessage messageAction(String messageSeparator, String bodyText, long messageStart);
-    }
-
     @Override
     public void configure(HierarchicalConfiguration configuration) throws ConfigurationException {
         /*
       The repository configuration
      */
         String destination;
-        this.mList = null;
-        BUFFERING = configuration.getBoolean("[@BUFFERING]", true);
+        this.index = null;
         fifo = configuration.getBoolean("[@FIFO]", false);
         destination = configuration.getString("[@destinationURL]");
         if (destination.charAt(destination.length() - 1) == '/') {
@@ -235,243 +213,29 @@ public class MBoxMailRepository implements MailRepository, Configurable {
     }
 
     /**
-     * Generate a hex representation of a SHA-256 checksum on the email body
-     */
-    private String generateKeyValue(String emailBody) {
-        return Hashing.sha256().hashUnencodedChars(emailBody).toString();
-    }
-
-    /**
-     * Parse the mbox file.
-     * 
-     * @param ins
-     *            The random access file to load. Note that the file may or may
-     *            not start at offset 0 in the file
-     * @param messAct
-     *            The action to take when a message is found
-     */
-    private MimeMessage parseMboxFile(RandomAccessFile ins, MessageAction messAct) {
-        LOGGER.debug("Start parsing {}", mboxFile);
-        try {
-
-            Pattern sepMatchPattern = Pattern.compile("^From (.*) (.*):(.*):(.*)$");
-
-            int c;
-            boolean inMessage = false;
-            StringBuffer messageBuffer = new StringBuffer();
-            String previousMessageSeparator = null;
-            boolean foundSep;
-
-            long prevMessageStart = ins.getFilePointer();
-            if (BUFFERING) {
-                String line;
-                while ((line = ins.readLine()) != null) {
-                    foundSep = sepMatchPattern.matcher(line).matches();
-
-                    if (foundSep && inMessage) {
-                        MimeMessage endResult = messAct.messageAction(previousMessageSeparator, messageBuffer.toString(), prevMessageStart);
-                        if (messAct.isComplete()) {
-                            // I've got what I want so just exit
-                            return endResult;
-                        }
-                        previousMessageSeparator = line;
-                        prevMessageStart = ins.getFilePointer() - line.length();
-                        messageBuffer = new StringBuffer();
-                        inMessage = true;
-                    }
-                    // Only done at the start (first header)
-                    if (foundSep && !inMessage) {
-                        previousMessageSeparator = line;
-                        inMessage = true;
-                    }
-                    if (!foundSep && inMessage) {
-                        messageBuffer.append(line).append("\n");
-                    }
-                }
-            } else {
-                StringBuffer line = new StringBuffer();
-                while ((c = ins.read()) != -1) {
-                    if (c == 10) {
-                        foundSep = sepMatchPattern.matcher(line).matches();
-                        if (foundSep && inMessage) {
-                            MimeMessage endResult = messAct.messageAction(previousMessageSeparator, messageBuffer.toString(), prevMessageStart);
-                            if (messAct.isComplete()) {
-                                // I've got what I want so just exit
-                                return endResult;
-                            }
-                            previousMessageSeparator = line.toString();
-                            prevMessageStart = ins.getFilePointer() - line.length();
-                            messageBuffer = new StringBuffer();
-                            inMessage = true;
-                        }
-                        // Only done at the start (first header)
-                        if (foundSep && !inMessage) {
-                            previousMessageSeparator = line.toString();
-                            inMessage = true;
-                        }
-                        if (!foundSep) {
-                            messageBuffer.append(line).append((char) c);
-                        }
-                        line = new StringBuffer(); // Reset buffer
-                    } else {
-                        line.append((char) c);
-                    }
-                }
-            }
-
-            if (messageBuffer.length() != 0) {
-                // process last message
-                return messAct.messageAction(previousMessageSeparator, messageBuffer.toString(), prevMessageStart);
-            }
-        } catch (IOException ioEx) {
-            LOGGER.error("Unable to write file (General I/O problem) {}", mboxFile, ioEx);
-        } catch (PatternSyntaxException e) {
-            LOGGER.error("Bad regex passed {}", mboxFile, e);
-        } finally {
-            LOGGER.debug("Finished parsing {}", mboxFile);
-        }
-        return null;
-    }
-
-    /**
-     * Find a given message<br>
-     * This method will first use selectMessage(key) to see if the key/offset
-     * combination allows us to skip parts of the file and only load the message
-     * we are interested in
-     * 
-     * @param key
-     *            The key of the message to find
-     */
-    private MimeMessage findMessage(String key) {
-        MimeMessage foundMessage;
-
-        // See if we can get the message by using the cache position first
-        foundMessage = selectMessage(key);
-        if (foundMessage == null) {
-            // If the message is not found something has changed from
-            // the cache. The cache may have been invalidated by
-            // another method, or the file may have been replaced from
-            // underneath us. Reload the cache, and try again.
-            mList = null;
-            loadKeys();
-            foundMessage = selectMessage(key);
-        }
-        return foundMessage;
-    }
-
-    /**
-     * Quickly find a message by using the stored message offsets
-     * 
-     * @param key
-     *            The key of the message to find
-     */
-    private MimeMessage selectMessage(final String key) {
-        MimeMessage foundMessage = null;
-        // Can we find the key first
-        if (mList == null || !mList.containsKey(key)) {
-            // Not initiailised so no point looking
-            LOGGER.debug("mList - key not found {}", mboxFile);
-            return foundMessage;
-        }
-        long messageStart = mList.get(key);
-        LOGGER.debug("Load message starting at offset {} from file {}", messageStart, mboxFile);
-        // Now try and find the position in the file
-        RandomAccessFile ins = null;
-        try {
-            ins = new RandomAccessFile(mboxFile, "r");
-            if (messageStart != 0) {
-                ins.seek(messageStart - 1);
-            }
-            MessageAction op = new MessageAction() {
-                @Override
-                public boolean isComplete() {
-                    return true;
-                }
-
-                @Override
-                public MimeMessage messageAction(String messageSeparator, String bodyText, long messageStart) {
-                    if (key.equals(generateKeyValue(bodyText))) {
-                        LOGGER.debug("{} Located message. Returning MIME message", this.getClass().getName());
-                        return convertTextToMimeMessage(bodyText);
-                    }
-                    return null;
-                }
-            };
-            foundMessage = this.parseMboxFile(ins, op);
-        } catch (FileNotFoundException e) {
-            LOGGER.error("Unable to save(open) file (File not found) {}", mboxFile, e);
-        } catch (IOException e) {
-            LOGGER.error("Unable to write file (General I/O problem) {}", mboxFile, e);
-        } finally {
-            if (foundMessage == null) {
-                LOGGER.debug("select - message not found {}", mboxFile);
-            }
-            if (ins != null) {
-                try {
-                    ins.close();
-                } catch (IOException e) {
-                    LOGGER.error("Unable to close file (General I/O problem) {}", mboxFile, e);
-                }
-            }
-        }
-        return foundMessage;
-    }
-
-    /**
-     * Load the message keys and file pointer offsets from disk
+     * Return the index of the mbox file, building it if the file changed since it was last indexed
      */
-    private synchronized void loadKeys() {
-        if (mList != null) {
-            return;
+    private synchronized MBoxIndex loadIndex() {
+        File mbox = new File(mboxFile);
+        if (index != null && index.isUpToDate(mbox)) {
+            return index;
         }
-        RandomAccessFile ins = null;
         try {
-            ins = new RandomAccessFile(mboxFile, "r");
-            long initialCapacity = (ins.length() > MLISTPRESIZEFACTOR ? ins.length() / MLISTPRESIZEFACTOR : 0);
-            if (initialCapacity < DEFAULTMLISTCAPACITY) {
-                initialCapacity = DEFAULTMLISTCAPACITY;
-            }
-            if (initialCapacity > Integer.MAX_VALUE) {
-                initialCapacity = Integer.MAX_VALUE - 1;
-            }
-            this.mList = new Hashtable<>((int) initialCapacity);
-            this.parseMboxFile(ins, new MessageAction() {
-                @Override
-                public boolean isComplete() {
-                    return false;
-                }
-
-                @Override
-                public MimeMessage messageAction(String messageSeparator, String bodyText, long messageStart) {
-                    String key = generateKeyValue(bodyText);
-                    mList.put(key, messageStart);
-                    LOGGER.debug("Key {} at {}", key, messageStart);
-
-                    return null;
-                }
-            });
-            // System.out.println("Done Load keys!");
+            index = MBoxIndex.build(mbox);
         } catch (FileNotFoundException e) {
             LOGGER.error("Unable to save(open) file (File not found) {}", mboxFile, e);
-            this.mList = new Hashtable<>((int) DEFAULTMLISTCAPACITY);
+            index = MBoxIndex.empty();
         } catch (IOException e) {
             LOGGER.error("Unable to write file (General I/O problem) {}", mboxFile, e);
-        } finally {
-            if (ins != null) {
-                try {
-                    ins.close();
-                } catch (IOException e) {
-                    LOGGER.error("Unable to close file (General I/O problem) {}", mboxFile, e);
-                }
-            }
+            index = MBoxIndex.empty();
         }
+        return index;
     }
 
     @Override
     public MailKey store(Mail mc) {
         LOGGER.debug("Will store message to file {}", mboxFile);
 
-        this.mList = null;
         // Now make up the from header
         String fromHeader = null;
         String message = null;
@@ -488,64 +252,96 @@ public class MBoxMailRepository implements MailRepository, Configurable {
             LOGGER.error("Unable to parse mime message for {}", mboxFile, e);
         }
         // And save only the new stuff to disk
-        RandomAccessFile saveFile;
-        try {
-            saveFile = new RandomAccessFile(mboxFile, "rw");
+        append(fromHeader, message);
+        return MailKey.forMail(mc);
+    }
+
+    private synchronized void append(String fromHeader, String message) {
+        File mbox = new File(mboxFile);
+        MBoxIndex previous = index;
+        if (previous != null && !previous.isUpToDate(mbox)) {
+            previous = null;
+        }
+        index = null;
+        try (RandomAccessFile saveFile = new RandomAccessFile(mboxFile, "rw")) {
             saveFile.seek(saveFile.length()); // Move to the end
             saveFile.writeBytes((fromHeader + "\n"));
             saveFile.writeBytes((message + "\n"));
-            saveFile.close();
         } catch (FileNotFoundException e) {
             LOGGER.error("Unable to save(open) file (File not found) {}", mboxFile, e);
+            return;
         } catch (IOException e) {
             LOGGER.error("Unable to write file (General I/O problem) {}", mboxFile, e);
+            return;
+        }
+        if (previous != null) {
+            // only the stored message needs to be indexed
+            try {
+                index = previous.extend(mbox);
+            } catch (IOException e) {
+                LOGGER.error("Unable to index file (General I/O problem) {}", mboxFile, e);
+            }
         }
-        return MailKey.forMail(mc);
     }
 
     @Override
     public Iterator<MailKey> list() {
-        ArrayList<String> keys = loadKeysAsArray();
-
-        if (!keys.isEmpty()) {
-            // find the first message. This is a trick to make sure that if
-            // the file is changed out from under us, we will detect it and
-            // correct for it BEFORE we return the iterator.
-            findMessage(keys.iterator().next());
-        }
+        ArrayList<String> keys = new ArrayList<>(loadIndex().keys());
 
         LOGGER.debug("{} keys to be iterated over.", keys.size());
         if (fifo) {
-            Collections.sort(keys); // Keys is a HashSet; impose FIFO for apps that need it
+            Collections.sort(keys); // impose FIFO for apps that need it
         }
         return keys.stream()
             .map(MailKey::new)
             .iterator();
     }
 
-    private ArrayList<String> loadKeysAsArray() {
-        loadKeys();
-        return new ArrayList<>(mList.keySet());
-    }
-
     @Override
     public Mail retrieve(MailKey key) throws MessagingException {
-
-        loadKeys();
-        MailImpl res;
-
         MimeMessage foundMessage = findMessage(key.asString());
         if (foundMessage == null) {
             LOGGER.error("found message is null!");
             return null;
         }
-        res = new MailImpl();
+        MailImpl res = new MailImpl();
         res.setMessage(foundMessage);
         res.setName(key.asString());
         LOGGER.debug("Retrieving entry for key {}", key);
         return res;
     }
 
+    /**
+     * Find a given message by reading the byte range the index associates with its key
+     *
+     * @param key
+     *            The key of the message to find
+     */
+    private MimeMessage findMessage(String key) {
+        return readMessage(key)
+            .map(this::convertTextToMimeMessage)
+            .orElse(null);
+    }
+
+    /**
+     * Read the raw text of a given message. This holds the repository lock so that removals can not compact the mbox
+     * file between the index lookup and the read.
+     */
+    private synchronized Optional<String> readMessage(String key) {
+        MBoxIndex currentIndex = loadIndex();
+        Optional<MBoxIndex.Entry> entry = currentIndex.get(key);
+        if (!entry.isPresent()) {
+            LOGGER.debug("select - message not found {}", mboxFile);
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(currentIndex.readBody(new File(mboxFile), entry.get()));
+        } catch (IOException e) {
+            LOGGER.error("Unable to read file (General I/O problem) {}", mboxFile, e);
+            return Optional.empty();
+        }
+    }
+
     @Override
     public void remove(Mail mail) {
         ArrayList<Mail> remArray = new ArrayList<>();
@@ -600,70 +396,22 @@ public class MBoxMailRepository implements MailRepository, Configurable {
     @Override
     public void remove(final Collection<Mail> mails) {
         LOGGER.debug("Removing entry for key {}", mails);
-        // The plan is as follows:
-        // Attempt to locate the message in the file
-        // by reading through the
-        // once we've done that then seek to the file
-        try {
-            RandomAccessFile ins = new RandomAccessFile(mboxFile, "r"); // The source
-            final RandomAccessFile outputFile = new RandomAccessFile(mboxFile + WORKEXT, "rw"); // The destination
-            parseMboxFile(ins, new MessageAction() {
-                @Override
-                public boolean isComplete() {
-                    return false;
-                }
-
-                @Override
-                public MimeMessage messageAction(String messageSeparator, String bodyText, long messageStart) {
-                    // Write out the messages as we go, until we reach the key
-                    // we want
-                    try {
-                        String currentKey = generateKeyValue(bodyText);
-                        boolean foundKey = false;
-                        Iterator<Mail> mailList = mails.iterator();
-                        String key;
-                        while (mailList.hasNext()) {
-                            // Attempt to find the current key in the array
-                            key = mailList.next().getName();
-                            if (key.equals(currentKey)) {
-                                // Don't write the message to disk
-                                foundKey = true;
-                                break;
-                            }
-                        }
-                        if (!foundKey) {
-                            // We didn't find the key in the array so we will
-                            // keep it
-                            outputFile.writeBytes(messageSeparator + "\n");
-                            outputFile.writeBytes(bodyText);
-
-                        }
-                    } catch (IOException e) {
-                        LOGGER.error("Unable to write file (General I/O problem) {}", mboxFile, e);
-                    }
-                    return null;
-                }
-            });
-            ins.close();
-            outputFile.close();
-            // Delete the old mbox file
-            File mbox = new File(mboxFile);
-            FileUtils.forceDelete(mbox);
-            // And rename the lock file to be the new mbox
-            mbox = new File(mboxFile + WORKEXT);
-            if (!mbox.renameTo(new File(mboxFile))) {
-                throw new IOException("Failed to rename file " + mbox + " -> " + mboxFile);
-            }
-
-            // Now delete the keys in mails from the main hash
-            Iterator<Mail> mailList = mails.iterator();
-            String key;
-            while (mailList.hasNext()) {
-                // Attempt to find the current key in the array
-                key = mailList.next().getName();
-                mList.remove(key);
-            }
+        removeKeys(mails.stream()
+            .map(Mail::getName)
+            .collect(ImmutableList.toImmutableList()));
+    }
 
+    /**
+     * Remove the messages with the given keys in a single compaction of the mbox file
+     */
+    private synchronized void removeKeys(Collection<String> keys) {
+        MBoxIndex currentIndex = loadIndex();
+        if (keys.stream().noneMatch(key -> currentIndex.get(key).isPresent())) {
+            return;
+        }
+        index = null;
+        try {
+            index = currentIndex.remove(new File(mboxFile), new File(mboxFile + WORKEXT), keys);
         } catch (FileNotFoundException e) {
             LOGGER.error("Unable to save(open) file (File not found) {}", mboxFile, e);
         } catch (IOException e) {
@@ -673,18 +421,17 @@ public class MBoxMailRepository implements MailRepository, Configurable {
 
     @Override
     public void remove(MailKey key) throws MessagingException {
-        loadKeys();
         try {
             lockMBox();
         } catch (Exception e) {
             LOGGER.error("Lock failed!", e);
             return; // No lock, so exit
         }
-        ArrayList<Mail> keys = new ArrayList<>();
-        keys.add(retrieve(key));
-
-        this.remove(keys);
-        unlockMBox();
+        try {
+            removeKeys(ImmutableList.of(key.asString()));
+        } finally {
+            unlockMBox();
+        }
     }
 
     @Override
@@ -699,12 +446,21 @@ public class MBoxMailRepository implements MailRepository, Configurable {
 
     @Override
     public long size() {
-        return loadKeysAsArray().size();
+        return loadIndex().size();
     }
 
     @Override
     public void removeAll() throws MessagingException {
-        ImmutableList.copyOf(list())
-            .forEach(Throwing.<MailKey>consumer(this::remove).sneakyThrow());
+        try {
+            lockMBox();
+        } catch (Exception e) {
+            LOGGER.error("Lock failed!", e);
+            return; // No lock, so exit
+        }
+        try {
+            removeKeys(loadIndex().keys());
+        } finally {
+            unlockMBox();
+        }
     }
 }
@@ -21,14 +21,21 @@ package org.apache.james.mailrepository;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
+import java.util.List;
 
 import org.apache.commons.configuration.DefaultConfigurationBuilder;
+import org.apache.commons.io.FileUtils;
 import org.apache.james.filesystem.api.mock.MockFileSystem;
 import org.apache.james.mailrepository.api.MailKey;
 import org.apache.james.mailrepository.api.MailRepository;
 import org.apache.james.mailrepository.file.MBoxMailRepository;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
 
 /**
  * NOTE this test *WAS* disabled because MBoxMailRepository does not currently
@@ -45,14 +52,33 @@ import org.junit.Test;
  */
 @Deprecated
 public class MBoxMailRepositoryTest {
+    private static final String MBOX = "From sender@james.apache.org Mon Jan 01 10:00:00 2018\n"
+        + "Subject: first\n"
+        + "\n"
+        + "first body\n"
+        + "From sender@james.apache.org Mon Jan 01 10:00:01 2018\n"
+        + "Subject: second\n"
+        + "\n"
+        + "second body\n"
+        + "From sender@james.apache.org Mon Jan 01 10:00:02 2018\n"
+        + "Subject: third\n"
+        + "\n"
+        + "third body\n";
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
 
     protected MailRepository getMailRepository() throws Exception {
+        File fInbox = new MockFileSystem().getFile("file://conf/org/apache/james/mailrepository/testdata/Inbox");
+        return getMailRepository(fInbox);
+    }
+
+    private MailRepository getMailRepository(File fInbox) throws Exception {
         MBoxMailRepository mr = new MBoxMailRepository();
 
         DefaultConfigurationBuilder defaultConfiguration = new DefaultConfigurationBuilder();
 
-        File fInbox = new MockFileSystem().getFile("file://conf/org/apache/james/mailrepository/testdata/Inbox");
-        String mboxPath = "mbox://" + fInbox.toURI().toString().substring(new File("").toURI().toString().length());
+        String mboxPath = "mbox://" + fInbox.getAbsolutePath();
 
         defaultConfiguration.addProperty("[@destinationURL]", mboxPath);
         defaultConfiguration.addProperty("[@type]", "MAIL");
@@ -78,6 +104,72 @@ public class MBoxMailRepositoryTest {
         assertThat(keys.hasNext()).describedAs("No messages").isFalse();
     }
 
+    @Test
+    public void listShouldPreserveTheOrderOfTheFile() throws Exception {
+        MailRepository mr = getMailRepository(writeMbox());
+
+        assertThat(subjects(mr))
+            .containsExactly("first", "second", "third");
+    }
+
+    @Test
+    public void retrieveShouldReturnTheMessageOfTheKey() throws Exception {
+        MailRepository mr = getMailRepository(writeMbox());
+        MailKey secondKey = ImmutableList.copyOf(mr.list()).get(1);
+
+        assertThat(mr.retrieve(secondKey).getMessage().getContent()).isEqualTo("second body\n");
+    }
+
+    @Test
+    public void retrieveShouldReadMessagesAppendedByOthers() throws Exception {
+        File mbox = writeMbox();
+        MailRepository mr = getMailRepository(mbox);
+        assertThat(mr.size()).isEqualTo(3);
+
+        FileUtils.write(mbox, "From sender@james.apache.org Mon Jan 01 10:00:03 2018\nSubject: fourth\n\nfourth body\n", StandardCharsets.US_ASCII, true);
+
+        assertThat(subjects(mr))
+            .containsExactly("first", "second", "third", "fourth");
+    }
+
+    @Test
+    public void removeShouldOnlyDropTheGivenMessage() throws Exception {
+        File mbox = writeMbox();
+        MailRepository mr = getMailRepository(mbox);
+        MailKey secondKey = ImmutableList.copyOf(mr.list()).get(1);
+
+        mr.remove(secondKey);
+
+        assertThat(subjects(mr))
+            .containsExactly("first", "third");
+        assertThat(FileUtils.readFileToString(mbox, StandardCharsets.US_ASCII)).doesNotContain("second");
+    }
+
+    @Test
+    public void removeAllShouldEmptyTheFile() throws Exception {
+        File mbox = writeMbox();
+        MailRepository mr = getMailRepository(mbox);
+
+        mr.removeAll();
+
+        assertThat(mr.size()).isEqualTo(0);
+        assertThat(mbox.length()).isEqualTo(0);
+    }
+
+    private List<String> subjects(MailRepository mr) throws Exception {
+        ImmutableList.Builder<String> subjects = ImmutableList.builder();
+        for (MailKey key : ImmutableList.copyOf(mr.list())) {
+            subjects.add(mr.retrieve(key).getMessage().getSubject());
+        }
+        return subjects.build();
+    }
+
+    private File writeMbox() throws Exception {
+        File mbox = tmpFolder.newFile("Inbox");
+        FileUtils.write(mbox, MBOX, StandardCharsets.US_ASCII);
+        return mbox;
+    }
+
     /*
      * public void runBare() throws Throwable {
      * System.err.println("TEST DISABLED!"); // Decomment this or remove this
@@ -20,12 +20,9 @@
 package org.apache.james.mailrepository.jdbc;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.Serializable;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -58,6 +55,7 @@ import org.apache.james.filesystem.api.FileSystem;
 import org.apache.james.mailrepository.api.MailKey;
 import org.apache.james.mailrepository.lib.AbstractMailRepository;
 import org.apache.james.repository.file.FilePersistentStreamRepository;
+import org.apache.james.server.core.MailCodec;
 import org.apache.james.server.core.MailImpl;
 import org.apache.james.server.core.MimeMessageCopyOnWriteProxy;
 import org.apache.james.server.core.MimeMessageWrapper;
@@ -67,6 +65,8 @@ import org.apache.mailet.Mail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.io.ByteStreams;
+
 /**
  * Implementation of a MailRepository on a database.
  * 
@@ -468,31 +468,8 @@ public class JDBCMailRepository extends AbstractMailRepository {
                     PreparedStatement updateMessageAttr = null;
                     try {
                         updateMessageAttr = conn.prepareStatement(updateMessageAttrSql);
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        ObjectOutputStream oos = new ObjectOutputStream(baos);
-                        try {
-                            if (mc instanceof MailImpl) {
-                                oos.writeObject(((MailImpl) mc).getAttributesRaw());
-                            } else {
-                                HashMap<String, Serializable> temp = new HashMap<>();
-                                for (Iterator<String> i = mc.getAttributeNames(); i.hasNext();) {
-                                    String hashKey = i.next();
-                                    temp.put(hashKey, mc.getAttribute(hashKey));
-                                }
-                                oos.writeObject(temp);
-                            }
-                            oos.flush();
-                            ByteArrayInputStream attrInputStream = new ByteArrayInputStream(baos.toByteArray());
-                            updateMessageAttr.setBinaryStream(1, attrInputStream, baos.size());
-                        } finally {
-                            try {
-                                if (oos != null) {
-                                    oos.close();
-                                }
-                            } catch (IOException ioe) {
-                                LOGGER.debug("JDBCMailRepository: Unexpected exception while closing output stream.", ioe);
-                            }
-                        }
+                        byte[] attributes = MailCodec.DEFAULT.encodeAttributes(mc);
+                        updateMessageAttr.setBinaryStream(1, new ByteArrayInputStream(attributes), attributes.length);
                         updateMessageAttr.setString(2, mc.getName());
                         updateMessageAttr.setString(3, repositoryName);
                         updateMessageAttr.execute();
@@ -547,7 +524,7 @@ public class JDBCMailRepository extends AbstractMailRepository {
                     if (mc.getPerRecipientSpecificHeaders().getHeadersByRecipient().isEmpty()) {
                         insertMessage.setNull(9, Types.BLOB);
                     } else {
-                        byte[] bytes = SerializationUtils.serialize(mc.getPerRecipientSpecificHeaders());
+                        byte[] bytes = MailCodec.DEFAULT.encodePerRecipientHeaders(mc.getPerRecipientSpecificHeaders());
                         insertMessage.setBinaryStream(9, new ByteArrayInputStream(bytes), bytes.length);
                     }
                     insertMessage.setTimestamp(10, new java.sql.Timestamp(mc.getLastUpdated().getTime()));
@@ -556,31 +533,8 @@ public class JDBCMailRepository extends AbstractMailRepository {
 
                     // Store attributes
                     if (numberOfParameters > 11) {
-                        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                        ObjectOutputStream oos = new ObjectOutputStream(baos);
-                        try {
-                            if (mc instanceof MailImpl) {
-                                oos.writeObject(((MailImpl) mc).getAttributesRaw());
-                            } else {
-                                HashMap<String, Serializable> temp = new HashMap<>();
-                                for (Iterator<String> i = mc.getAttributeNames(); i.hasNext();) {
-                                    String hashKey = i.next();
-                                    temp.put(hashKey, mc.getAttribute(hashKey));
-                                }
-                                oos.writeObject(temp);
-                            }
-                            oos.flush();
-                            ByteArrayInputStream attrInputStream = new ByteArrayInputStream(baos.toByteArray());
-                            insertMessage.setBinaryStream(12, attrInputStream, baos.size());
-                        } finally {
-                            try {
-                                if (oos != null) {
-                                    oos.close();
-                                }
-                            } catch (IOException ioe) {
-                                LOGGER.debug("JDBCMailRepository: Unexpected exception while closing output stream.", ioe);
-                            }
-                        }
+                        byte[] attributes = MailCodec.DEFAULT.encodeAttributes(mc);
+                        insertMessage.setBinaryStream(12, new ByteArrayInputStream(attributes), attributes.length);
                     }
 
                     insertMessage.execute();
@@ -649,7 +603,9 @@ public class JDBCMailRepository extends AbstractMailRepository {
                                 serializedAttr = rsMessageAttr.getBytes(1);
                             }
                             // this check is for better backwards compatibility
-                            if (serializedAttr != null) {
+                            if (MailCodec.isEncoded(serializedAttr)) {
+                                attributes = new HashMap<>(MailCodec.DEFAULT.decodeAttributes(serializedAttr));
+                            } else if (serializedAttr != null) {
                                 ByteArrayInputStream bais = new ByteArrayInputStream(serializedAttr);
                                 ObjectInputStream ois = new ObjectInputStream(bais);
                                 attributes = (HashMap<String, Object>) ois.readObject();
@@ -690,7 +646,12 @@ public class JDBCMailRepository extends AbstractMailRepository {
             mc.setRemoteAddr(rsMessage.getString(6));
             try (InputStream is = rsMessage.getBinaryStream(7)) {
                 if (is != null) {
-                    mc.addAllSpecificHeaderForRecipient(SerializationUtils.deserialize(is));
+                    byte[] headers = ByteStreams.toByteArray(is);
+                    if (MailCodec.isEncoded(headers)) {
+                        mc.addAllSpecificHeaderForRecipient(MailCodec.DEFAULT.decodePerRecipientHeaders(headers));
+                    } else {
+                        mc.addAllSpecificHeaderForRecipient(SerializationUtils.deserialize(headers));
+                    }
                 }
             }
 
@@ -0,0 +1,246 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.rrt.lib;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.james.core.Domain;
+import org.apache.james.metrics.api.GaugeRegistry;
+import org.apache.james.rrt.api.RecipientRewriteTable;
+import org.apache.james.rrt.api.RecipientRewriteTableException;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Caches the fully resolved mappings returned by {@link RecipientRewriteTable#getMappings(String, Domain)},
+ * including empty results.
+ *
+ * As resolution is recursive, a change on any source can alter the resolution of other addresses: every change
+ * thus drops the whole cache, on this node and, depending on the {@link MappingChangeNotifier}, on the other ones.
+ */
+public class CachingRecipientRewriteTable implements RecipientRewriteTable, MappingChangeNotifier.Listener {
+
+    private static class CacheKey {
+        private final String user;
+        private final Domain domain;
+
+        private CacheKey(String user, Domain domain) {
+            this.user = user;
+            this.domain = domain;
+        }
+
+        @Override
+        public final boolean equals(Object o) {
+            if (o instanceof CacheKey) {
+                CacheKey that = (CacheKey) o;
+
+                return Objects.equals(this.user, that.user)
+                    && Objects.equals(this.domain, that.domain);
+            }
+            return false;
+        }
+
+        @Override
+        public final int hashCode() {
+            return Objects.hash(user, domain);
+        }
+    }
+
+    private final RecipientRewriteTable underlying;
+    private final MappingChangeNotifier notifier;
+    private final Cache<CacheKey, Mappings> cache;
+    private final AtomicLong generation;
+
+    public CachingRecipientRewriteTable(RecipientRewriteTable underlying, MappingChangeNotifier notifier,
+                                        RecipientRewriteTableCacheConfiguration configuration, GaugeRegistry gaugeRegistry) {
+        this.underlying = underlying;
+        this.notifier = notifier;
+        this.generation = new AtomicLong();
+        this.cache = CacheBuilder.newBuilder()
+            .expireAfterWrite(configuration.getTtl().toMillis(), TimeUnit.MILLISECONDS)
+            .maximumSize(configuration.getMaxSize())
+            .recordStats()
+            .build();
+        recordStats(gaugeRegistry);
+        notifier.register(this);
+    }
+
+    private void recordStats(GaugeRegistry gaugeRegistry) {
+        gaugeRegistry
+            .register(
+                "recipientRewriteTable.cache.hit.rate",
+                () -> cache.stats().hitRate())
+            .register(
+                "recipientRewriteTable.cache.hit.count",
+                () -> cache.stats().hitCount())
+            .register(
+                "recipientRewriteTable.cache.miss.count",
+                () -> cache.stats().missCount())
+            .register(
+                "recipientRewriteTable.cache.eviction.count",
+                () -> cache.stats().evictionCount())
+            .register(
+                "recipientRewriteTable.cache.size",
+                cache::size);
+    }
+
+    @Override
+    public void onMappingChange(MappingSource source) {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    @Override
+    public Mappings getMappings(String user, Domain domain) throws ErrorMappingException, RecipientRewriteTableException {
+        CacheKey key = new CacheKey(user, domain);
+        long generationBeforeLoad = generation.get();
+        try {
+            Mappings mappings = cache.get(key, () -> underlying.getMappings(user, domain));
+            if (generation.get() != generationBeforeLoad) {
+                // A change happened while resolving: the loaded value might be stale
+                cache.invalidate(key);
+            }
+            return mappings;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private RuntimeException unwrap(Exception e) throws ErrorMappingException, RecipientRewriteTableException {
+        Throwable cause = Optional.ofNullable(e.getCause()).orElse(e);
+        if (cause instanceof ErrorMappingException) {
+            throw (ErrorMappingException) cause;
+        }
+        if (cause instanceof RecipientRewriteTableException) {
+            throw (RecipientRewriteTableException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new RuntimeException(cause);
+    }
+
+    @Override
+    public Mappings getUserDomainMappings(MappingSource source) throws RecipientRewriteTableException {
+        return underlying.getUserDomainMappings(source);
+    }
+
+    @Override
+    public Map<MappingSource, Mappings> getAllMappings() throws RecipientRewriteTableException {
+        return underlying.getAllMappings();
+    }
+
+    @Override
+    public void addMapping(MappingSource source, Mapping mapping) throws RecipientRewriteTableException {
+        underlying.addMapping(source, mapping);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void removeMapping(MappingSource source, Mapping mapping) throws RecipientRewriteTableException {
+        underlying.removeMapping(source, mapping);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void addRegexMapping(MappingSource source, String regex) throws RecipientRewriteTableException {
+        underlying.addRegexMapping(source, regex);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void removeRegexMapping(MappingSource source, String regex) throws RecipientRewriteTableException {
+        underlying.removeRegexMapping(source, regex);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void addAddressMapping(MappingSource source, String address) throws RecipientRewriteTableException {
+        underlying.addAddressMapping(source, address);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void removeAddressMapping(MappingSource source, String address) throws RecipientRewriteTableException {
+        underlying.removeAddressMapping(source, address);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void addErrorMapping(MappingSource source, String error) throws RecipientRewriteTableException {
+        underlying.addErrorMapping(source, error);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void removeErrorMapping(MappingSource source, String error) throws RecipientRewriteTableException {
+        underlying.removeErrorMapping(source, error);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void addAliasDomainMapping(MappingSource source, Domain realDomain) throws RecipientRewriteTableException {
+        underlying.addAliasDomainMapping(source, realDomain);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void removeAliasDomainMapping(MappingSource source, Domain realDomain) throws RecipientRewriteTableException {
+        underlying.removeAliasDomainMapping(source, realDomain);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void addForwardMapping(MappingSource source, String address) throws RecipientRewriteTableException {
+        underlying.addForwardMapping(source, address);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void removeForwardMapping(MappingSource source, String address) throws RecipientRewriteTableException {
+        underlying.removeForwardMapping(source, address);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void addGroupMapping(MappingSource source, String address) throws RecipientRewriteTableException {
+        underlying.addGroupMapping(source, address);
+        notifier.notifyChange(source);
+    }
+
+    @Override
+    public void removeGroupMapping(MappingSource source, String address) throws RecipientRewriteTableException {
+        underlying.removeGroupMapping(source, address);
+        notifier.notifyChange(source);
+    }
+
+    @VisibleForTesting
+    long size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,45 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.rrt.lib;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Only notifies listeners of the current JVM. Other nodes of a cluster rely on the cache expiry.
+ */
+public class InVMMappingChangeNotifier implements MappingChangeNotifier {
+
+    private final List<Listener> listeners;
+
+    public InVMMappingChangeNotifier() {
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public void register(Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void notifyChange(MappingSource source) {
+        listeners.forEach(listener -> listener.onMappingChange(source));
+    }
+}
@@ -0,0 +1,115 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.rrt.lib;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.james.util.TimeConverter;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Preconditions;
+
+public class RecipientRewriteTableCacheConfiguration {
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(1);
+    public static final long DEFAULT_MAX_SIZE = 10000;
+
+    public static final RecipientRewriteTableCacheConfiguration DISABLED =
+        new RecipientRewriteTableCacheConfiguration(false, DEFAULT_TTL, DEFAULT_MAX_SIZE);
+
+    public static RecipientRewriteTableCacheConfiguration enabled(Duration ttl, long maxSize) {
+        Preconditions.checkArgument(!ttl.isNegative() && !ttl.isZero(), "'ttl' should be strictly positive");
+        Preconditions.checkArgument(maxSize > 0, "'maxSize' should be strictly positive");
+        return new RecipientRewriteTableCacheConfiguration(true, ttl, maxSize);
+    }
+
+    /**
+     * Reads the optional <code>cache</code> element of recipientrewritetable.xml:
+     *
+     * <pre>
+     * &lt;cache&gt;
+     *   &lt;enabled&gt;true&lt;/enabled&gt;
+     *   &lt;ttl&gt;1m&lt;/ttl&gt;
+     *   &lt;maxSize&gt;10000&lt;/maxSize&gt;
+     * &lt;/cache&gt;
+     * </pre>
+     */
+    public static RecipientRewriteTableCacheConfiguration from(HierarchicalConfiguration configuration) throws ConfigurationException {
+        if (!configuration.getBoolean("cache.enabled", false)) {
+            return DISABLED;
+        }
+        try {
+            Duration ttl = Duration.ofMillis(TimeConverter.getMilliSeconds(configuration.getString("cache.ttl", "1m")));
+            return enabled(ttl, configuration.getLong("cache.maxSize", DEFAULT_MAX_SIZE));
+        } catch (IllegalArgumentException e) {
+            throw new ConfigurationException("Invalid recipient rewrite table cache configuration: " + e.getMessage(), e);
+        }
+    }
+
+    private final boolean enabled;
+    private final Duration ttl;
+    private final long maxSize;
+
+    private RecipientRewriteTableCacheConfiguration(boolean enabled, Duration ttl, long maxSize) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (o instanceof RecipientRewriteTableCacheConfiguration) {
+            RecipientRewriteTableCacheConfiguration that = (RecipientRewriteTableCacheConfiguration) o;
+
+            return Objects.equals(this.enabled, that.enabled)
+                && Objects.equals(this.ttl, that.ttl)
+                && Objects.equals(this.maxSize, that.maxSize);
+        }
+        return false;
+    }
+
+    @Override
+    public final int hashCode() {
+        return Objects.hash(enabled, ttl, maxSize);
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+            .add("enabled", enabled)
+            .add("ttl", ttl)
+            .add("maxSize", maxSize)
+            .toString();
+    }
+}
@@ -0,0 +1,142 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.rrt.lib;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.apache.james.core.Domain;
+import org.apache.james.metrics.api.NoopGaugeRegistry;
+import org.apache.james.rrt.api.RecipientRewriteTable;
+import org.apache.james.rrt.api.RecipientRewriteTableException;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachingRecipientRewriteTableTest {
+    private static final String USER = "user";
+    private static final Domain DOMAIN = Domain.of("domain.tld");
+    private static final MappingSource SOURCE = MappingSource.fromUser(USER, DOMAIN);
+    private static final Mappings MAPPINGS = MappingsImpl.fromMappings(Mapping.address("target@domain.tld"));
+
+    private RecipientRewriteTable underlying;
+    private InVMMappingChangeNotifier notifier;
+    private CachingRecipientRewriteTable testee;
+
+    @Before
+    public void setUp() {
+        underlying = mock(RecipientRewriteTable.class);
+        notifier = new InVMMappingChangeNotifier();
+        testee = new CachingRecipientRewriteTable(underlying, notifier,
+            RecipientRewriteTableCacheConfiguration.enabled(Duration.ofMinutes(1), 100),
+            new NoopGaugeRegistry());
+    }
+
+    @Test
+    public void getMappingsShouldReturnUnderlyingMappings() throws Exception {
+        when(underlying.getMappings(USER, DOMAIN)).thenReturn(MAPPINGS);
+
+        assertThat(testee.getMappings(USER, DOMAIN)).isEqualTo(MAPPINGS);
+    }
+
+    @Test
+    public void getMappingsShouldBeCached() throws Exception {
+        when(underlying.getMappings(USER, DOMAIN)).thenReturn(MAPPINGS);
+
+        testee.getMappings(USER, DOMAIN);
+        testee.getMappings(USER, DOMAIN);
+
+        verify(underlying, times(1)).getMappings(USER, DOMAIN);
+    }
+
+    @Test
+    public void getMappingsShouldCacheEmptyMappings() throws Exception {
+        when(underlying.getMappings(USER, DOMAIN)).thenReturn(MappingsImpl.empty());
+
+        testee.getMappings(USER, DOMAIN);
+        Mappings mappings = testee.getMappings(USER, DOMAIN);
+
+        assertThat(mappings.isEmpty()).isTrue();
+        verify(underlying, times(1)).getMappings(USER, DOMAIN);
+    }
+
+    @Test
+    public void getMappingsShouldNotCacheErrors() throws Exception {
+        when(underlying.getMappings(USER, DOMAIN))
+            .thenThrow(new RecipientRewriteTableException("failure"))
+            .thenReturn(MAPPINGS);
+
+        assertThatThrownBy(() -> testee.getMappings(USER, DOMAIN))
+            .isInstanceOf(RecipientRewriteTableException.class);
+        assertThat(testee.getMappings(USER, DOMAIN)).isEqualTo(MAPPINGS);
+    }
+
+    @Test
+    public void getMappingsShouldPropagateErrorMappingException() throws Exception {
+        when(underlying.getMappings(USER, DOMAIN))
+            .thenThrow(new RecipientRewriteTable.ErrorMappingException("554 bounce"));
+
+        assertThatThrownBy(() -> testee.getMappings(USER, DOMAIN))
+            .isInstanceOf(RecipientRewriteTable.ErrorMappingException.class);
+    }
+
+    @Test
+    public void addMappingShouldInvalidateCache() throws Exception {
+        when(underlying.getMappings(USER, DOMAIN)).thenReturn(MappingsImpl.empty(), MAPPINGS);
+        testee.getMappings(USER, DOMAIN);
+
+        testee.addAddressMapping(SOURCE, "target@domain.tld");
+
+        assertThat(testee.getMappings(USER, DOMAIN)).isEqualTo(MAPPINGS);
+    }
+
+    @Test
+    public void removeMappingShouldInvalidateCache() throws Exception {
+        when(underlying.getMappings(USER, DOMAIN)).thenReturn(MAPPINGS, MappingsImpl.empty());
+        testee.getMappings(USER, DOMAIN);
+
+        testee.removeAddressMapping(SOURCE, "target@domain.tld");
+
+        assertThat(testee.getMappings(USER, DOMAIN).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void changesNotifiedByOtherNodesShouldInvalidateCache() throws Exception {
+        when(underlying.getMappings(USER, DOMAIN)).thenReturn(MappingsImpl.empty(), MAPPINGS);
+        testee.getMappings(USER, DOMAIN);
+
+        notifier.notifyChange(MappingSource.fromUser("other", DOMAIN));
+
+        assertThat(testee.size()).isEqualTo(0);
+        assertThat(testee.getMappings(USER, DOMAIN)).isEqualTo(MAPPINGS);
+    }
+
+    @Test
+    public void writesShouldBeDelegated() throws Exception {
+        testee.addForwardMapping(SOURCE, "forward@domain.tld");
+
+        verify(underlying).addForwardMapping(SOURCE, "forward@domain.tld");
+    }
+}
@@ -0,0 +1,88 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.rrt.lib;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.junit.Test;
+
+import nl.jqno.equalsverifier.EqualsVerifier;
+
+public class RecipientRewriteTableCacheConfigurationTest {
+
+    @Test
+    public void shouldMatchBeanContract() {
+        EqualsVerifier.forClass(RecipientRewriteTableCacheConfiguration.class)
+            .verify();
+    }
+
+    @Test
+    public void fromShouldReturnDisabledByDefault() throws Exception {
+        assertThat(RecipientRewriteTableCacheConfiguration.from(new HierarchicalConfiguration()))
+            .isEqualTo(RecipientRewriteTableCacheConfiguration.DISABLED);
+    }
+
+    @Test
+    public void fromShouldUseDefaultValuesWhenOnlyEnabled() throws Exception {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.addProperty("cache.enabled", true);
+
+        assertThat(RecipientRewriteTableCacheConfiguration.from(configuration))
+            .isEqualTo(RecipientRewriteTableCacheConfiguration.enabled(
+                RecipientRewriteTableCacheConfiguration.DEFAULT_TTL,
+                RecipientRewriteTableCacheConfiguration.DEFAULT_MAX_SIZE));
+    }
+
+    @Test
+    public void fromShouldReadTtlAndMaxSize() throws Exception {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.addProperty("cache.enabled", true);
+        configuration.addProperty("cache.ttl", "30s");
+        configuration.addProperty("cache.maxSize", 42);
+
+        assertThat(RecipientRewriteTableCacheConfiguration.from(configuration))
+            .isEqualTo(RecipientRewriteTableCacheConfiguration.enabled(Duration.ofSeconds(30), 42));
+    }
+
+    @Test
+    public void fromShouldThrowOnInvalidTtl() {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.addProperty("cache.enabled", true);
+        configuration.addProperty("cache.ttl", "0s");
+
+        assertThatThrownBy(() -> RecipientRewriteTableCacheConfiguration.from(configuration))
+            .isInstanceOf(ConfigurationException.class);
+    }
+
+    @Test
+    public void fromShouldThrowOnInvalidMaxSize() {
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.addProperty("cache.enabled", true);
+        configuration.addProperty("cache.maxSize", -1);
+
+        assertThatThrownBy(() -> RecipientRewriteTableCacheConfiguration.from(configuration))
+            .isInstanceOf(ConfigurationException.class);
+    }
+}
@@ -19,6 +19,8 @@
 
 package org.apache.james.mailetcontainer.api;
 
+import java.util.concurrent.CompletableFuture;
+
 import org.apache.mailet.Mail;
 
 /**
@@ -58,4 +60,22 @@ public interface MailProcessor {
      */
     void service(Mail mail) throws javax.mail.MessagingException;
 
+    /**
+     * Same as {@link #service(Mail)}, but the mail may be processed later on, without blocking the calling thread,
+     * for instance when it has to wait for a saturated processor.
+     *
+     * @return a future completed once the mail is processed, or completed exceptionally with what
+     *         {@link #service(Mail)} would have thrown
+     */
+    default CompletableFuture<Void> serviceAsync(Mail mail) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        try {
+            service(mail);
+            completion.complete(null);
+        } catch (Exception e) {
+            completion.completeExceptionally(e);
+        }
+        return completion;
+    }
+
 }
@@ -19,7 +19,13 @@
 
 package org.apache.james.mailetcontainer.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -45,14 +51,37 @@ import org.apache.mailet.Mail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * Manages the mail spool. This class is responsible for retrieving messages
  * from the spool, directing messages to the appropriate processor, and removing
  * them from the spool when processing is complete.
+ *
+ * With the <code>fixed</code> worker pool (default), dequeued mails are handed to a fixed number of worker threads.
+ * With the <code>elastic</code> worker pool, worker threads are created on demand, and the spooler stops dequeuing
+ * once <code>threads</code> mails are in flight: pending mails wait in the mail queue rather than in memory.
+ *
+ * When <code>dequeueBatchSize</code> is greater than one, mails are dequeued by batches, and each batch is
+ * acknowledged at once when all its mails are processed. Until then, none of its mails is acknowledged: a slow mail
+ * delays the acknowledgement of the whole batch, and if James stops meanwhile, the mails of the batch that were already
+ * processed are delivered again. The default batch size of one avoids these duplicates.
  */
 public class JamesMailSpooler implements Runnable, Disposable, Configurable, MailSpoolerMBean {
     private static final Logger LOGGER = LoggerFactory.getLogger(JamesMailSpooler.class);
 
+    public enum WorkerPool {
+        FIXED,
+        ELASTIC;
+
+        public static WorkerPool parse(String value) throws ConfigurationException {
+            return Arrays.stream(values())
+                .filter(workerPool -> workerPool.name().equalsIgnoreCase(value))
+                .findAny()
+                .orElseThrow(() -> new ConfigurationException("Unknown spooler worker pool " + value));
+        }
+    }
+
     public static final String SPOOL_PROCESSING = "spoolProcessing";
     private MailQueue queue;
 
@@ -91,6 +120,23 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Mai
 
     private int numDequeueThreads;
 
+    private WorkerPool workerPool;
+
+    /**
+     * Bounds the number of mails in flight when using the elastic worker pool
+     */
+    private Semaphore inFlightPermits;
+
+    /**
+     * Maximum number of mails dequeued at once
+     */
+    private int dequeueBatchSize;
+
+    /**
+     * Maximum time, in milliseconds, spent waiting for a batch to fill
+     */
+    private long dequeueBatchTimeout;
+
     @Inject
     public JamesMailSpooler(MetricFactory metricFactory) {
         this.metricFactory = metricFactory;
@@ -111,6 +157,14 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Mai
         numDequeueThreads = config.getInt("dequeueThreads", 2);
 
         numThreads = config.getInt("threads", 100);
+
+        workerPool = WorkerPool.parse(config.getString("workerPool", WorkerPool.FIXED.name()));
+
+        dequeueBatchSize = config.getInt("dequeueBatchSize", 1);
+        if (dequeueBatchSize < 1) {
+            throw new ConfigurationException("'dequeueBatchSize' should be strictly positive");
+        }
+        dequeueBatchTimeout = config.getLong("dequeueBatchTimeout", 100);
     }
 
     /**
@@ -122,10 +176,15 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Mai
 
         queue = queueFactory.createQueue(MailQueueFactory.SPOOL);
 
-        LOGGER.info("{} uses {} Thread(s)", getClass().getName(), numThreads);
+        LOGGER.info("{} uses {} Thread(s) with a {} worker pool", getClass().getName(), numThreads, workerPool);
 
         active.set(true);
-        workerService = JMXEnabledThreadPoolExecutor.newFixedThreadPool("org.apache.james:type=component,component=mailetcontainer,name=mailspooler,sub-type=threadpool", "spooler", numThreads);
+        if (workerPool == WorkerPool.ELASTIC) {
+            inFlightPermits = new Semaphore(numThreads);
+            workerService = JMXEnabledThreadPoolExecutor.newCachedThreadPool("org.apache.james:type=component,component=mailetcontainer,name=mailspooler,sub-type=threadpool", "spooler");
+        } else {
+            workerService = JMXEnabledThreadPoolExecutor.newFixedThreadPool("org.apache.james:type=component,component=mailetcontainer,name=mailspooler,sub-type=threadpool", "spooler", numThreads);
+        }
         dequeueService = JMXEnabledThreadPoolExecutor.newFixedThreadPool("org.apache.james:type=component,component=mailetcontainer,name=mailspooler,sub-type=threadpool", "dequeuer", numDequeueThreads);
 
         for (int i = 0; i < numDequeueThreads; i++) {
@@ -144,46 +203,21 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Mai
         LOGGER.info("Queue={}", queue);
 
         while (active.get()) {
-
-            final MailQueueItem queueItem;
             try {
-                queueItem = queue.deQueue();
-                workerService.execute(() -> {
-                    TimeMetric timeMetric = metricFactory.timer(SPOOL_PROCESSING);
-                    try {
-                        numActive.incrementAndGet();
-
-                        // increase count
-                        processingActive.incrementAndGet();
-
-                        Mail mail = queueItem.getMail();
-                        LOGGER.debug("==== Begin processing mail {} ====", mail.getName());
-
-                        try {
-                            mailProcessor.service(mail);
-                            queueItem.done(true);
-                        } catch (Exception e) {
-                            if (active.get()) {
-                                LOGGER.error("Exception processing mail while spooling", e);
-                            }
-                            queueItem.done(false);
-
-                        } finally {
-                            LifecycleUtil.dispose(mail);
-                            mail = null;
-                        }
-                    } catch (Throwable e) {
-                        if (active.get()) {
-                            LOGGER.error("Exception processing mail while spooling", e);
-
-                        }
-                    } finally {
-                        processingActive.decrementAndGet();
-                        numActive.decrementAndGet();
-                        timeMetric.stopAndPublish();
-                    }
-
-                });
+                int acquiredPermits = acquireInFlightPermits();
+                List<MailQueueItem> queueItems;
+                try {
+                    queueItems = deQueue(acquiredPermits);
+                } catch (MailQueueException | RuntimeException e) {
+                    releaseInFlightPermits(acquiredPermits);
+                    throw e;
+                }
+                releaseInFlightPermits(acquiredPermits - queueItems.size());
+
+                SpooledBatch batch = new SpooledBatch(queueItems.size());
+                for (MailQueueItem queueItem : queueItems) {
+                    workerService.execute(() -> process(queueItem, batch));
+                }
             } catch (MailQueueException e1) {
                 if (active.get()) {
                     LOGGER.error("Exception dequeue mail", e1);
@@ -195,6 +229,123 @@ public class JamesMailSpooler implements Runnable, Disposable, Configurable, Mai
         LOGGER.info("Stop {} : {}", getClass().getName(), Thread.currentThread().getName());
     }
 
+    private List<MailQueueItem> deQueue(int maxItems) throws MailQueueException, InterruptedException {
+        if (maxItems == 1) {
+            return ImmutableList.of(queue.deQueue());
+        }
+        return queue.deQueue(maxItems, dequeueBatchTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Mails waiting for a saturated processor are parked by the processor: the worker thread is then released
+     * straight away, and the mail is acknowledged once the processor is done with it.
+     */
+    private void process(MailQueueItem queueItem, SpooledBatch batch) {
+        TimeMetric timeMetric = metricFactory.timer(SPOOL_PROCESSING);
+        numActive.incrementAndGet();
+
+        // increase count
+        processingActive.incrementAndGet();
+
+        Mail mail = null;
+        CompletableFuture<Void> processing;
+        try {
+            mail = queueItem.getMail();
+            LOGGER.debug("==== Begin processing mail {} ====", mail.getName());
+            processing = mailProcessor.serviceAsync(mail);
+        } catch (Throwable e) {
+            processing = new CompletableFuture<>();
+            processing.completeExceptionally(e);
+        }
+
+        Mail processedMail = mail;
+        processing.whenComplete((any, e) -> {
+            if (e != null && active.get()) {
+                LOGGER.error("Exception processing mail while spooling", e);
+            }
+            try {
+                LifecycleUtil.dispose(processedMail);
+            } finally {
+                processingActive.decrementAndGet();
+                numActive.decrementAndGet();
+                timeMetric.stopAndPublish();
+                releaseInFlightPermits(1);
+                batch.done(queueItem, e == null);
+            }
+        });
+    }
+
+    /**
+     * Acquires at least one, and up to dequeueBatchSize, in flight permits.
+     *
+     * @return the number of permits acquired
+     */
+    private int acquireInFlightPermits() throws InterruptedException {
+        if (inFlightPermits == null) {
+            return dequeueBatchSize;
+        }
+        inFlightPermits.acquire();
+        int acquiredPermits = 1;
+        while (acquiredPermits < dequeueBatchSize && inFlightPermits.tryAcquire()) {
+            acquiredPermits++;
+        }
+        return acquiredPermits;
+    }
+
+    private void releaseInFlightPermits(int permits) {
+        if (inFlightPermits != null && permits > 0) {
+            inFlightPermits.release(permits);
+        }
+    }
+
+    /**
+     * Collects the outcome of the mails of a dequeued batch, and acknowledges them to the queue once all of them
+     * have been processed.
+     *
+     * {@link #done(MailQueueItem, boolean)} needs to be called exactly once per mail, whatever the outcome of its
+     * processing, otherwise the batch is never acknowledged.
+     */
+    private class SpooledBatch {
+        private final AtomicInteger remaining;
+        private final List<MailQueueItem> succeeded;
+        private final List<MailQueueItem> failed;
+
+        SpooledBatch(int size) {
+            this.remaining = new AtomicInteger(size);
+            this.succeeded = new ArrayList<>(size);
+            this.failed = new ArrayList<>();
+        }
+
+        void done(MailQueueItem queueItem, boolean success) {
+            synchronized (this) {
+                if (success) {
+                    succeeded.add(queueItem);
+                } else {
+                    failed.add(queueItem);
+                }
+            }
+            if (remaining.decrementAndGet() == 0) {
+                acknowledge();
+            }
+        }
+
+        private synchronized void acknowledge() {
+            acknowledge(succeeded, true);
+            acknowledge(failed, false);
+        }
+
+        private void acknowledge(List<MailQueueItem> queueItems, boolean success) {
+            if (queueItems.isEmpty()) {
+                return;
+            }
+            try {
+                queue.done(queueItems, success);
+            } catch (MailQueueException e) {
+                LOGGER.error("Unable to acknowledge {} dequeued mails", queueItems.size(), e);
+            }
+        }
+    }
+
     /**
      * The dispose operation is called at the end of a components lifecycle.
      * Instances of this class use this method to release and destroy any
@@ -51,6 +51,7 @@ public class CamelCompositeProcessor extends AbstractStateCompositeProcessor imp
 
     @Inject
     public CamelCompositeProcessor(MetricFactory metricFactory) {
+        super(metricFactory);
         this.metricFactory = metricFactory;
     }
 
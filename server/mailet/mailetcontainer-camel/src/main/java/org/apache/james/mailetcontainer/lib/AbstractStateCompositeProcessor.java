@@ -23,6 +23,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -34,6 +36,8 @@ import org.apache.james.lifecycle.api.Configurable;
 import org.apache.james.lifecycle.api.LifecycleUtil;
 import org.apache.james.mailetcontainer.api.MailProcessor;
 import org.apache.james.mailetcontainer.impl.jmx.JMXStateCompositeProcessorListener;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.NoopMetricFactory;
 import org.apache.mailet.Mail;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,17 +45,29 @@ import org.slf4j.LoggerFactory;
 /**
  * Abstract base class for {@link org.apache.james.mailetcontainer.impl.camel.CamelCompositeProcessor} which service the
  * {@link Mail} with a {@link org.apache.james.mailetcontainer.impl.camel.CamelProcessor} instances
+ *
+ * The number of mails concurrently processed by a processor can be bounded with its <code>maxConcurrency</code>
+ * attribute.
  */
 public abstract class AbstractStateCompositeProcessor implements MailProcessor, Configurable {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractStateCompositeProcessor.class);
 
     private final List<CompositeProcessorListener> listeners = Collections.synchronizedList(new ArrayList<CompositeProcessorListener>());
     private final Map<String, MailProcessor> processors = new HashMap<>();
+    private final Map<String, ProcessorConcurrencyLimiter> concurrencyLimiters = new HashMap<>();
+    private final MetricFactory metricFactory;
     protected HierarchicalConfiguration config;
 
     private JMXStateCompositeProcessorListener jmxListener;
     private boolean enableJmx = true;
 
+    public AbstractStateCompositeProcessor() {
+        this(new NoopMetricFactory());
+    }
+
+    protected AbstractStateCompositeProcessor(MetricFactory metricFactory) {
+        this.metricFactory = metricFactory;
+    }
 
     public void addListener(CompositeProcessorListener listener) {
         listeners.add(listener);
@@ -74,34 +90,56 @@ public abstract class AbstractStateCompositeProcessor implements MailProcessor,
 
     @Override
     public void service(Mail mail) throws MessagingException {
+        MailProcessor processor = retrieveProcessor(mail);
+        concurrencyLimiters.get(mail.getState()).execute(() -> service(mail, processor));
+    }
+
+    /**
+     * Mails waiting for a saturated processor are parked by the processor rather than blocking the calling thread.
+     */
+    @Override
+    public CompletableFuture<Void> serviceAsync(Mail mail) {
+        try {
+            MailProcessor processor = retrieveProcessor(mail);
+            return concurrencyLimiters.get(mail.getState()).submit(() -> service(mail, processor));
+        } catch (MessagingException e) {
+            CompletableFuture<Void> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            return failure;
+        }
+    }
+
+    private MailProcessor retrieveProcessor(Mail mail) throws MessagingException {
+        MailProcessor processor = getProcessor(mail.getState());
+        if (processor == null) {
+            throw new MessagingException("No processor found for mail " + mail.getName() + " with state " + mail.getState());
+        }
+        return processor;
+    }
+
+    private void service(Mail mail, MailProcessor processor) throws MessagingException {
         long start = System.currentTimeMillis();
         MessagingException ex = null;
-        MailProcessor processor = getProcessor(mail.getState());
+        LOGGER.debug("Call MailProcessor {}", mail.getState());
+        try {
+            processor.service(mail);
 
-        if (processor != null) {
-            LOGGER.debug("Call MailProcessor {}", mail.getState());
-            try {
-                processor.service(mail);
-
-                if (Mail.GHOST.equals(mail.getState())) {
-                    LifecycleUtil.dispose(mail);
-                }
-                /*
-                 * // check the mail needs further processing if
-                 * (Mail.GHOST.equalsIgnoreCase(mail.getState()) == false) {
-                 * service(mail); } else { LifecycleUtil.dispose(mail); }
-                 */
-            } catch (MessagingException e) {
-                ex = e;
-                throw e;
-            } finally {
-                long end = System.currentTimeMillis() - start;
-                for (CompositeProcessorListener listener : listeners) {
-                    listener.afterProcessor(processor, mail.getName(), end, ex);
-                }
+            if (Mail.GHOST.equals(mail.getState())) {
+                LifecycleUtil.dispose(mail);
+            }
+            /*
+             * // check the mail needs further processing if
+             * (Mail.GHOST.equalsIgnoreCase(mail.getState()) == false) {
+             * service(mail); } else { LifecycleUtil.dispose(mail); }
+             */
+        } catch (MessagingException e) {
+            ex = e;
+            throw e;
+        } finally {
+            long end = System.currentTimeMillis() - start;
+            for (CompositeProcessorListener listener : listeners) {
+                listener.afterProcessor(processor, mail.getName(), end, ex);
             }
-        } else {
-            throw new MessagingException("No processor found for mail " + mail.getName() + " with state " + mail.getState());
         }
     }
 
@@ -115,6 +153,10 @@ public abstract class AbstractStateCompositeProcessor implements MailProcessor,
         return processors.get(state);
     }
 
+    public ProcessorConcurrencyLimiter getConcurrencyLimiter(String state) {
+        return concurrencyLimiters.get(state);
+    }
+
     public String[] getProcessorStates() {
         return processors.keySet().toArray(new String[processors.size()]);
     }
@@ -157,6 +199,8 @@ public abstract class AbstractStateCompositeProcessor implements MailProcessor,
             if (!processorConf.containsKey("[@enableJmx]")) {
                 processorConf.addProperty("[@enableJmx]", enableJmx);
             }
+            Optional<Integer> maxConcurrency = Optional.ofNullable(processorConf.getInteger("[@maxConcurrency]", null));
+            concurrencyLimiters.put(processorName, new ProcessorConcurrencyLimiter(processorName, maxConcurrency, metricFactory));
             processors.put(processorName, createMailProcessor(processorName, processorConf));
         }
 
@@ -180,6 +224,8 @@ public abstract class AbstractStateCompositeProcessor implements MailProcessor,
 
         }
 
+        concurrencyLimiters.values().forEach(ProcessorConcurrencyLimiter::dispose);
+
         if (jmxListener != null) {
             jmxListener.dispose();
         }
@@ -0,0 +1,258 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailetcontainer.lib;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.MessagingException;
+
+import org.apache.james.metrics.api.Metric;
+import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.metrics.api.TimeMetric;
+import org.apache.james.util.concurrent.NamedThreadFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Bounds the number of mails concurrently processed by a processor, and reports the number of mails in flight as well
+ * as the time spent waiting for the processor.
+ *
+ * Mails submitted while the processor is saturated are parked in a processor local queue, and later processed by a
+ * processor local executor: the submitting thread, typically a spooler thread, is not blocked.
+ *
+ * A thread only ever holds the permit of the processor it is currently processing the mail in. A mail handed over to
+ * another processor suspends its current permit, waits for the next processor, then waits to resume once the other
+ * processor is done. A thread thus never waits while holding a permit, and processors routing mails to each other can
+ * not deadlock.
+ */
+public class ProcessorConcurrencyLimiter {
+
+    @FunctionalInterface
+    public interface Operation {
+        void execute() throws MessagingException;
+    }
+
+    private static class ParkedOperation {
+        private final Operation operation;
+        private final CompletableFuture<Void> completion;
+        private final TimeMetric queueingTime;
+
+        ParkedOperation(Operation operation, CompletableFuture<Void> completion, TimeMetric queueingTime) {
+            this.operation = operation;
+            this.completion = completion;
+            this.queueingTime = queueingTime;
+        }
+    }
+
+    private static final ThreadLocal<Deque<ProcessorConcurrencyLimiter>> CURRENT_PROCESSORS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final String processorName;
+    private final Optional<Integer> maxConcurrency;
+    private final Optional<Semaphore> semaphore;
+    private final Optional<ExecutorService> parkedOperationExecutor;
+    private final Queue<ParkedOperation> parkedOperations;
+    private final MetricFactory metricFactory;
+    private final Metric inFlightMetric;
+    private final AtomicInteger inFlight;
+
+    public ProcessorConcurrencyLimiter(String processorName, Optional<Integer> maxConcurrency, MetricFactory metricFactory) {
+        maxConcurrency.ifPresent(value -> Preconditions.checkArgument(value > 0, "'maxConcurrency' of processor %s must be greater than zero", processorName));
+        this.processorName = processorName;
+        this.maxConcurrency = maxConcurrency;
+        this.semaphore = maxConcurrency.map(value -> new Semaphore(value, true));
+        this.parkedOperationExecutor = maxConcurrency.map(value -> Executors.newCachedThreadPool(new NamedThreadFactory("mailetProcessor-" + processorName)));
+        this.parkedOperations = new ConcurrentLinkedQueue<>();
+        this.metricFactory = metricFactory;
+        this.inFlightMetric = metricFactory.generate("mailetProcessor-" + processorName + "-inFlight");
+        this.inFlight = new AtomicInteger(0);
+    }
+
+    /**
+     * Processes a mail entering the mailet container. The mail is parked if the processor is saturated.
+     *
+     * @return a future completed once the operation is done
+     */
+    public CompletableFuture<Void> submit(Operation operation) {
+        if (!semaphore.isPresent() || !CURRENT_PROCESSORS.get().isEmpty()) {
+            return complete(() -> execute(operation));
+        }
+        if (parkedOperations.isEmpty() && tryAcquire()) {
+            return complete(() -> executeHoldingPermit(operation));
+        }
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        parkedOperations.add(new ParkedOperation(operation, completion,
+            metricFactory.timer("mailetProcessor-" + processorName + "-queueing")));
+        processParkedOperations();
+        return completion;
+    }
+
+    /**
+     * Processes a mail on the calling thread, waiting for the processor if it is saturated. The permit of the
+     * processor the thread is currently in, if any, is suspended meanwhile.
+     */
+    public void execute(Operation operation) throws MessagingException {
+        Optional<ProcessorConcurrencyLimiter> currentProcessor = Optional.ofNullable(CURRENT_PROCESSORS.get().peek());
+        currentProcessor.ifPresent(ProcessorConcurrencyLimiter::release);
+        try {
+            acquire();
+            executeHoldingPermit(operation);
+        } finally {
+            currentProcessor.ifPresent(ProcessorConcurrencyLimiter::resume);
+        }
+    }
+
+    private void executeHoldingPermit(Operation operation) throws MessagingException {
+        Deque<ProcessorConcurrencyLimiter> currentProcessors = CURRENT_PROCESSORS.get();
+        currentProcessors.push(this);
+        try {
+            operation.execute();
+        } finally {
+            currentProcessors.pop();
+            release();
+        }
+    }
+
+    private void processParkedOperations() {
+        while (!parkedOperations.isEmpty() && tryAcquire()) {
+            ParkedOperation parkedOperation = parkedOperations.poll();
+            if (parkedOperation == null) {
+                release();
+                continue;
+            }
+            parkedOperation.queueingTime.stopAndPublish();
+            try {
+                parkedOperationExecutor.get().execute(() ->
+                    completeWith(parkedOperation.completion, () -> executeHoldingPermit(parkedOperation.operation)));
+            } catch (RejectedExecutionException e) {
+                release();
+                parkedOperation.completion.completeExceptionally(
+                    new MessagingException("Processor " + processorName + " is stopping", e));
+            }
+        }
+    }
+
+    private void acquire() throws MessagingException {
+        if (semaphore.isPresent()) {
+            TimeMetric queueingTime = metricFactory.timer("mailetProcessor-" + processorName + "-queueing");
+            try {
+                semaphore.get().acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MessagingException("Interrupted while waiting for processor " + processorName, e);
+            } finally {
+                queueingTime.stopAndPublish();
+            }
+        }
+        markInFlight();
+    }
+
+    /**
+     * Does not barge in front of the threads waiting for the processor.
+     */
+    private boolean tryAcquire() {
+        try {
+            if (semaphore.get().tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                markInFlight();
+                return true;
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * The thread holds no permit while resuming, it will eventually get one.
+     */
+    private void resume() {
+        semaphore.ifPresent(Semaphore::acquireUninterruptibly);
+        markInFlight();
+    }
+
+    private void markInFlight() {
+        inFlight.incrementAndGet();
+        inFlightMetric.increment();
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        inFlightMetric.decrement();
+        if (semaphore.isPresent()) {
+            semaphore.get().release();
+            processParkedOperations();
+        }
+    }
+
+    private static CompletableFuture<Void> complete(Operation operation) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        completeWith(completion, operation);
+        return completion;
+    }
+
+    private static void completeWith(CompletableFuture<Void> completion, Operation operation) {
+        try {
+            operation.execute();
+            completion.complete(null);
+        } catch (Throwable e) {
+            completion.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stops the processor local executor. Parked mails fail, and are thus retried by the spooler.
+     */
+    public void dispose() {
+        parkedOperationExecutor.ifPresent(ExecutorService::shutdownNow);
+        ParkedOperation parkedOperation;
+        while ((parkedOperation = parkedOperations.poll()) != null) {
+            parkedOperation.completion.completeExceptionally(new MessagingException("Processor " + processorName + " is stopping"));
+        }
+    }
+
+    public String getProcessorName() {
+        return processorName;
+    }
+
+    public Optional<Integer> getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    @VisibleForTesting
+    int getParkedCount() {
+        return parkedOperations.size();
+    }
+}
@@ -0,0 +1,151 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.mailetcontainer.impl;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.apache.james.mailetcontainer.api.MailProcessor;
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.apache.james.queue.api.MailQueue;
+import org.apache.james.queue.api.MailQueue.MailQueueItem;
+import org.apache.james.queue.api.MailQueueFactory;
+import org.apache.mailet.Mail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class JamesMailSpoolerTest {
+
+    private MailQueue queue;
+    private MailQueueItem firstItem;
+    private MailQueueItem secondItem;
+    private Mail secondMail;
+    private JamesMailSpooler spooler;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        queue = mock(MailQueue.class);
+        firstItem = mockItem(mock(Mail.class));
+        secondMail = mock(Mail.class);
+        secondItem = mockItem(secondMail);
+        when(queue.deQueue(anyInt(), anyLong(), any()))
+            .thenReturn(ImmutableList.of(firstItem, secondItem))
+            .thenAnswer(invocation -> {
+                new CountDownLatch(1).await();
+                return ImmutableList.of();
+            });
+
+        MailQueueFactory<MailQueue> queueFactory = mock(MailQueueFactory.class);
+        when(queueFactory.createQueue(MailQueueFactory.SPOOL)).thenReturn(queue);
+
+        spooler = new JamesMailSpooler(new NoopMetricFactory());
+        spooler.setMailQueueFactory(queueFactory);
+        HierarchicalConfiguration configuration = new HierarchicalConfiguration();
+        configuration.addProperty("dequeueThreads", 1);
+        configuration.addProperty("threads", 2);
+        configuration.addProperty("dequeueBatchSize", 2);
+        spooler.configure(configuration);
+    }
+
+    @After
+    public void tearDown() {
+        spooler.dispose();
+    }
+
+    @Test
+    public void batchShouldBeAcknowledgedWhenProcessingThrowsAnError() throws Exception {
+        spooler.setMailProcessor(mail -> {
+            if (mail == secondMail) {
+                throw new StackOverflowError();
+            }
+        });
+        spooler.init();
+
+        verify(queue, timeout(10000)).done(ImmutableList.of(firstItem), true);
+        verify(queue, timeout(10000)).done(ImmutableList.of(secondItem), false);
+    }
+
+    @Test
+    public void batchShouldNotBeAcknowledgedBeforeAllItsMailsAreProcessed() throws Exception {
+        CountDownLatch secondMailRelease = new CountDownLatch(1);
+        spooler.setMailProcessor(mail -> {
+            if (mail == secondMail) {
+                try {
+                    secondMailRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        spooler.init();
+
+        verify(queue, after(500).never()).done(anyList(), anyBoolean());
+
+        secondMailRelease.countDown();
+        verify(queue, timeout(10000)).done(ImmutableList.of(firstItem, secondItem), true);
+    }
+
+    @Test
+    public void mailsParkedByTheProcessorShouldBeAcknowledgedOnceProcessed() throws Exception {
+        CompletableFuture<Void> secondMailProcessing = new CompletableFuture<>();
+        spooler.setMailProcessor(new MailProcessor() {
+            @Override
+            public void service(Mail mail) {
+            }
+
+            @Override
+            public CompletableFuture<Void> serviceAsync(Mail mail) {
+                if (mail == secondMail) {
+                    return secondMailProcessing;
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+        });
+        spooler.init();
+
+        verify(queue, after(500).never()).done(anyList(), anyBoolean());
+
+        secondMailProcessing.complete(null);
+        verify(queue, timeout(10000)).done(ImmutableList.of(firstItem, secondItem), true);
+    }
+
+    private MailQueueItem mockItem(Mail mail) {
+        MailQueueItem item = mock(MailQueueItem.class);
+        when(item.getMail()).thenReturn(mail);
+        return item;
+    }
+}
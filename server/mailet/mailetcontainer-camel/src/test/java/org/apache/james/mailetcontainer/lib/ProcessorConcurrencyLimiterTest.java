@@ -0,0 +1,277 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.mailetcontainer.lib;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.MessagingException;
+
+import org.apache.james.metrics.api.NoopMetricFactory;
+import org.junit.After;
+import org.junit.Test;
+
+public class ProcessorConcurrencyLimiterTest {
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void constructorShouldRejectNonPositiveMaxConcurrency() {
+        assertThatThrownBy(() -> new ProcessorConcurrencyLimiter("root", Optional.of(0), new NoopMetricFactory()))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void executeShouldTrackInFlightCount() throws Exception {
+        ProcessorConcurrencyLimiter limiter = new ProcessorConcurrencyLimiter("root", Optional.empty(), new NoopMetricFactory());
+        AtomicInteger observedInFlight = new AtomicInteger();
+
+        limiter.execute(() -> observedInFlight.set(limiter.getInFlightCount()));
+
+        assertThat(observedInFlight.get()).isEqualTo(1);
+        assertThat(limiter.getInFlightCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void executeShouldReleasePermitWhenOperationFails() throws Exception {
+        ProcessorConcurrencyLimiter limiter = new ProcessorConcurrencyLimiter("root", Optional.of(1), new NoopMetricFactory());
+
+        assertThatThrownBy(() -> limiter.execute(() -> {
+            throw new RuntimeException("boom");
+        })).isInstanceOf(RuntimeException.class);
+
+        assertThat(limiter.getInFlightCount()).isEqualTo(0);
+        limiter.execute(() -> { });
+    }
+
+    @Test
+    public void executeShouldNotExceedMaxConcurrency() throws Exception {
+        ProcessorConcurrencyLimiter limiter = new ProcessorConcurrencyLimiter("transport", Optional.of(2), new NoopMetricFactory());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        AtomicInteger maxObserved = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            executorService.execute(() -> {
+                try {
+                    limiter.execute(() -> {
+                        maxObserved.accumulateAndGet(limiter.getInFlightCount(), Math::max);
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        Thread.sleep(200);
+        assertThat(limiter.getInFlightCount()).isEqualTo(2);
+        release.countDown();
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(maxObserved.get()).isEqualTo(2);
+        assertThat(limiter.getInFlightCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void nestedExecuteShouldSuspendEnclosingPermit() throws Exception {
+        ProcessorConcurrencyLimiter root = new ProcessorConcurrencyLimiter("root", Optional.of(1), new NoopMetricFactory());
+        ProcessorConcurrencyLimiter transport = new ProcessorConcurrencyLimiter("transport", Optional.of(1), new NoopMetricFactory());
+        AtomicInteger rootInFlightDuringTransport = new AtomicInteger(-1);
+        AtomicInteger rootInFlightAfterTransport = new AtomicInteger(-1);
+
+        root.execute(() -> {
+            transport.execute(() -> rootInFlightDuringTransport.set(root.getInFlightCount()));
+            rootInFlightAfterTransport.set(root.getInFlightCount());
+        });
+
+        assertThat(rootInFlightDuringTransport.get()).isEqualTo(0);
+        assertThat(rootInFlightAfterTransport.get()).isEqualTo(1);
+        assertThat(root.getInFlightCount()).isEqualTo(0);
+        assertThat(transport.getInFlightCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void maxConcurrencyShouldHoldOnceNestedExecuteIsDone() throws Exception {
+        ProcessorConcurrencyLimiter root = new ProcessorConcurrencyLimiter("root", Optional.of(1), new NoopMetricFactory());
+        ProcessorConcurrencyLimiter transport = new ProcessorConcurrencyLimiter("transport", Optional.empty(), new NoopMetricFactory());
+        CountDownLatch transportDone = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondMailProcessed = new CountDownLatch(1);
+
+        executorService.execute(() -> {
+            try {
+                root.execute(() -> {
+                    transport.execute(() -> { });
+                    transportDone.countDown();
+                    awaitUninterruptibly(release);
+                });
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertThat(transportDone.await(10, TimeUnit.SECONDS)).isTrue();
+        executorService.execute(() -> {
+            try {
+                root.execute(secondMailProcessed::countDown);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertThat(secondMailProcessed.await(200, TimeUnit.MILLISECONDS)).isFalse();
+        release.countDown();
+        assertThat(secondMailProcessed.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    public void processorsRoutingMailsToEachOtherShouldNotDeadlock() throws Exception {
+        ProcessorConcurrencyLimiter root = new ProcessorConcurrencyLimiter("root", Optional.of(1), new NoopMetricFactory());
+        ProcessorConcurrencyLimiter transport = new ProcessorConcurrencyLimiter("transport", Optional.of(1), new NoopMetricFactory());
+        CountDownLatch bothHeld = new CountDownLatch(2);
+        CountDownLatch done = new CountDownLatch(2);
+
+        executorService.execute(() -> {
+            try {
+                root.execute(() -> {
+                    bothHeld.countDown();
+                    awaitUninterruptibly(bothHeld);
+                    transport.execute(() -> { });
+                });
+                done.countDown();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        executorService.execute(() -> {
+            try {
+                transport.execute(() -> {
+                    bothHeld.countDown();
+                    awaitUninterruptibly(bothHeld);
+                    root.execute(() -> { });
+                });
+                done.countDown();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(root.getInFlightCount()).isEqualTo(0);
+        assertThat(transport.getInFlightCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void submitShouldParkMailsWithoutBlockingTheCallerWhenProcessorIsSaturated() throws Exception {
+        ProcessorConcurrencyLimiter limiter = new ProcessorConcurrencyLimiter("transport", Optional.of(1), new NoopMetricFactory());
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger processedCount = new AtomicInteger();
+        executorService.execute(() -> limiter.submit(() -> {
+            held.countDown();
+            awaitUninterruptibly(release);
+        }));
+        assertThat(held.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<Void> parked = limiter.submit(processedCount::incrementAndGet);
+
+        try {
+            assertThat(parked).isNotDone();
+            assertThat(limiter.getParkedCount()).isEqualTo(1);
+        } finally {
+            release.countDown();
+        }
+        parked.get(10, TimeUnit.SECONDS);
+        assertThat(processedCount.get()).isEqualTo(1);
+        assertThat(limiter.getParkedCount()).isEqualTo(0);
+        limiter.dispose();
+    }
+
+    @Test
+    public void submitShouldCompleteExceptionallyWhenOperationFails() {
+        ProcessorConcurrencyLimiter limiter = new ProcessorConcurrencyLimiter("root", Optional.of(1), new NoopMetricFactory());
+
+        CompletableFuture<Void> processing = limiter.submit(() -> {
+            throw new MessagingException("boom");
+        });
+
+        assertThat(processing).isCompletedExceptionally();
+        assertThat(limiter.getInFlightCount()).isEqualTo(0);
+        limiter.dispose();
+    }
+
+    @Test
+    public void disposeShouldFailParkedMails() throws Exception {
+        ProcessorConcurrencyLimiter limiter = new ProcessorConcurrencyLimiter("transport", Optional.of(1), new NoopMetricFactory());
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executorService.execute(() -> limiter.submit(() -> {
+            held.countDown();
+            awaitUninterruptibly(release);
+        }));
+        assertThat(held.await(10, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Void> parked = limiter.submit(() -> { });
+
+        try {
+            limiter.dispose();
+
+            assertThat(parked).isCompletedExceptionally();
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void nestedExecuteOnSameProcessorShouldNotDeadlock() throws Exception {
+        ProcessorConcurrencyLimiter root = new ProcessorConcurrencyLimiter("root", Optional.of(1), new NoopMetricFactory());
+        AtomicInteger nestedCalls = new AtomicInteger();
+
+        root.execute(() -> root.execute(nestedCalls::incrementAndGet));
+
+        assertThat(nestedCalls.get()).isEqualTo(1);
+        assertThat(root.getInFlightCount()).isEqualTo(0);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
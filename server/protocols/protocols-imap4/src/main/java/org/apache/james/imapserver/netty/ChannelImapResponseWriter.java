@@ -28,6 +28,7 @@ import org.apache.james.imap.encode.ImapResponseWriter;
 import org.apache.james.imap.message.response.Literal;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.DefaultFileRegion;
 import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
@@ -44,20 +45,27 @@ public class ChannelImapResponseWriter implements ImapResponseWriter {
 
     private final Channel channel;
     private final boolean zeroCopy;
+    private final PendingWritesTracker pendingWrites;
 
     public ChannelImapResponseWriter(Channel channel) {
         this(channel, true);
     }
 
     public ChannelImapResponseWriter(Channel channel, boolean zeroCopy) {
+        this(channel, zeroCopy, new PendingWritesTracker(channel));
+    }
+
+    public ChannelImapResponseWriter(Channel channel, boolean zeroCopy, PendingWritesTracker pendingWrites) {
         this.channel = channel;
         this.zeroCopy = zeroCopy;
+        this.pendingWrites = pendingWrites;
     }
 
     @Override
     public void write(byte[] buffer) throws IOException {
         if (channel.isConnected()) {
-            channel.write(ChannelBuffers.wrappedBuffer(buffer));
+            ChannelFuture future = channel.write(ChannelBuffers.wrappedBuffer(buffer));
+            pendingWrites.track(future, buffer.length);
         }
     }
 
@@ -65,6 +73,7 @@ public class ChannelImapResponseWriter implements ImapResponseWriter {
     public void write(Literal literal) throws IOException {
         if (channel.isConnected()) {
             InputStream in = literal.getInputStream();
+            ChannelFuture future;
             if (in instanceof FileInputStream && channel.getFactory() instanceof NioServerSocketChannelFactory) {
                 FileChannel fc = ((FileInputStream) in).getChannel();
                 // Zero-copy is only possible if no SSL/TLS  and no COMPRESS is in place
@@ -72,13 +81,14 @@ public class ChannelImapResponseWriter implements ImapResponseWriter {
                 // See JAMES-1305 and JAMES-1306
                 ChannelPipeline cp = channel.getPipeline();
                 if (zeroCopy && cp.get(SslHandler.class) == null && cp.get(ZlibEncoder.class) == null) {
-                    channel.write(new DefaultFileRegion(fc, fc.position(), literal.size()));
+                    future = channel.write(new DefaultFileRegion(fc, fc.position(), literal.size()));
                 } else {
-                    channel.write(new ChunkedNioFile(fc, 8192));
+                    future = channel.write(new ChunkedNioFile(fc, 8192));
                 }
             } else {
-                channel.write(new ChunkedStream(literal.getInputStream()));
+                future = channel.write(new ChunkedStream(in));
             }
+            pendingWrites.track(future, literal.size());
         }
     }
     
@@ -20,6 +20,7 @@ package org.apache.james.imapserver.netty;
 
 import static org.jboss.netty.channel.Channels.pipeline;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLEngine;
@@ -121,6 +122,8 @@ public class IMAPServer extends AbstractConfigurableAsyncServer implements ImapC
                 .idleTimeInterval(configuration.getLong("idleTimeInterval", ImapConfiguration.DEFAULT_HEARTBEAT_INTERVAL_IN_SECONDS))
                 .idleTimeIntervalUnit(getTimeIntervalUnit(configuration.getString("idleTimeIntervalUnit", DEFAULT_TIME_UNIT)))
                 .disabledCaps(disabledCaps)
+                .fetchMaxPendingBytes(configuration.getLong("fetchMaxPendingBytes", ImapConfiguration.DEFAULT_FETCH_MAX_PENDING_BYTES))
+                .fetchPendingWritesTimeout(Duration.ofSeconds(configuration.getLong("fetchPendingWritesTimeout", ImapConfiguration.DEFAULT_FETCH_PENDING_WRITES_TIMEOUT.getSeconds())))
                 .build();
     }
 
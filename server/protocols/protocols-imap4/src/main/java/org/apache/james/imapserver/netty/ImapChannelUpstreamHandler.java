@@ -125,7 +125,8 @@ public class ImapChannelUpstreamHandler extends SimpleChannelUpstreamHandler imp
             LOGGER.info("Connection established from {}", address.getAddress().getHostAddress());
             imapConnectionsMetric.increment();
 
-            ImapResponseComposer response = new ImapResponseComposerImpl(new ChannelImapResponseWriter(ctx.getChannel()));
+            NettyImapSession imapSession = (NettyImapSession) attributes.get(ctx.getChannel());
+            ImapResponseComposer response = new ImapResponseComposerImpl(new ChannelImapResponseWriter(ctx.getChannel(), true, imapSession.getPendingWrites()));
             ctx.setAttachment(response);
 
             // write hello to client
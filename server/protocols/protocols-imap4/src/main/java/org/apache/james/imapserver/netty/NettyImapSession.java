@@ -18,6 +18,7 @@
  ****************************************************************/
 package org.apache.james.imapserver.netty;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -43,9 +44,11 @@ public class NettyImapSession implements ImapSession, NettyConstants {
     private final Channel channel;
     private int handlerCount;
     private final boolean plainAuthDisallowed;
+    private final PendingWritesTracker pendingWrites;
 
     public NettyImapSession(Channel channel, SSLContext sslContext, String[] enabledCipherSuites, boolean compress, boolean plainAuthDisallowed) {
         this.channel = channel;
+        this.pendingWrites = new PendingWritesTracker(channel);
         this.sslContext = sslContext;
         this.enabledCipherSuites = enabledCipherSuites;
         this.compress = compress;
@@ -62,6 +65,14 @@ public class NettyImapSession implements ImapSession, NettyConstants {
         return channel;
     }
 
+    /**
+     * Return the {@link PendingWritesTracker} which responses written to the
+     * {@link Channel} of this session should be reported to
+     */
+    public PendingWritesTracker getPendingWrites() {
+        return pendingWrites;
+    }
+
     @Override
     public void logout() {
         closeMailbox();
@@ -192,6 +203,16 @@ public class NettyImapSession implements ImapSession, NettyConstants {
         return plainAuthDisallowed;
     }
 
+    @Override
+    public boolean awaitPendingWrites(long maxPendingBytes, Duration timeout) {
+        // Without an ExecutionHandler requests are processed by the I/O thread which
+        // also flushes the pending writes, so waiting here would never end
+        if (channel.getPipeline().get(EXECUTION_HANDLER) == null) {
+            return channel.isConnected();
+        }
+        return pendingWrites.awaitPendingBytesBelow(maxPendingBytes, timeout);
+    }
+
     @Override
     public boolean isTLSActive() {
         return channel.getPipeline().get(SSL_HANDLER) != null;
@@ -0,0 +1,92 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.imapserver.netty;
+
+import java.time.Duration;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the amount of bytes written to a {@link Channel} which are not yet
+ * flushed to the client, so that the thread producing responses can wait for them to
+ * drain instead of filling the channel queue.
+ */
+public class PendingWritesTracker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PendingWritesTracker.class);
+    private static final long WAIT_INTERVAL_IN_MILLISECONDS = 1000;
+
+    private final Channel channel;
+    private long pendingBytes;
+
+    public PendingWritesTracker(Channel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Account the given amount of bytes as pending until the write completes
+     */
+    public void track(ChannelFuture writeFuture, long size) {
+        synchronized (this) {
+            pendingBytes += size;
+        }
+        writeFuture.addListener(future -> release(size));
+    }
+
+    private synchronized void release(long size) {
+        pendingBytes -= size;
+        notifyAll();
+    }
+
+    synchronized long getPendingBytes() {
+        return pendingBytes;
+    }
+
+    /**
+     * Block until at most maxPendingBytes are pending and the channel is writable.
+     * Must not be called from an I/O thread of the channel as this would prevent the
+     * pending writes from ever completing.
+     *
+     * A client not reading its responses within the given timeout is disconnected, so
+     * that it does not hold the waiting thread, which is shared with other sessions.
+     *
+     * @return false if the channel is closed, the client got disconnected for reading too
+     * slowly or the waiting thread got interrupted
+     */
+    public synchronized boolean awaitPendingBytesBelow(long maxPendingBytes, Duration timeout) {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        while (channel.isConnected() && (pendingBytes > maxPendingBytes || !channel.isWritable())) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                LOGGER.info("Closing a connection whose client did not read {} pending bytes within {}", pendingBytes, timeout);
+                channel.close();
+                return false;
+            }
+            try {
+                wait(Math.min(remaining, WAIT_INTERVAL_IN_MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return channel.isConnected();
+    }
+}
@@ -21,6 +21,7 @@ package org.apache.james.imapserver.netty;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.time.Duration;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.configuration.DefaultConfigurationBuilder;
@@ -56,6 +57,8 @@ public class IMAPServerTest {
         configurationBuilder.addProperty("idleTimeInterval", "1");
         configurationBuilder.addProperty("idleTimeIntervalUnit", "MINUTES");
         configurationBuilder.addProperty("disabledCaps", "ACL | MOVE");
+        configurationBuilder.addProperty("fetchMaxPendingBytes", "1024");
+        configurationBuilder.addProperty("fetchPendingWritesTimeout", "30");
         ImapConfiguration imapConfiguration = IMAPServer.getImapConfiguration(configurationBuilder);
 
         ImapConfiguration expectImapConfiguration = ImapConfiguration.builder()
@@ -63,6 +66,8 @@ public class IMAPServerTest {
                 .idleTimeInterval(1)
                 .idleTimeIntervalUnit(TimeUnit.MINUTES)
                 .disabledCaps(ImmutableSet.of("ACL", "MOVE"))
+                .fetchMaxPendingBytes(1024)
+                .fetchPendingWritesTimeout(Duration.ofSeconds(30))
                 .build();
 
         assertThat(imapConfiguration).isEqualTo(expectImapConfiguration);
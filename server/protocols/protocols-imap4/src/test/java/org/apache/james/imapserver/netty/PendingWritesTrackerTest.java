@@ -0,0 +1,137 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.imapserver.netty;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.DefaultChannelFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PendingWritesTrackerTest {
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+    private static final boolean NOT_CANCELLABLE = false;
+
+    private Channel channel;
+    private PendingWritesTracker testee;
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() {
+        channel = mock(Channel.class);
+        when(channel.isConnected()).thenReturn(true);
+        when(channel.isWritable()).thenReturn(true);
+        testee = new PendingWritesTracker(channel);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void trackShouldAccountPendingBytes() {
+        testee.track(newFuture(), 100);
+
+        assertThat(testee.getPendingBytes()).isEqualTo(100);
+    }
+
+    @Test
+    public void pendingBytesShouldBeReleasedOnceWritten() {
+        ChannelFuture future = newFuture();
+        testee.track(future, 100);
+
+        future.setSuccess();
+
+        assertThat(testee.getPendingBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void pendingBytesShouldBeReleasedWhenTheWriteFails() {
+        ChannelFuture future = newFuture();
+        testee.track(future, 100);
+
+        future.setFailure(new RuntimeException());
+
+        assertThat(testee.getPendingBytes()).isEqualTo(0);
+    }
+
+    @Test
+    public void awaitPendingBytesBelowShouldReturnRightAwayWhenBelowTheMaximum() {
+        testee.track(newFuture(), 100);
+
+        assertThat(testee.awaitPendingBytesBelow(100, TIMEOUT)).isTrue();
+    }
+
+    @Test
+    public void awaitPendingBytesBelowShouldWaitForPendingWrites() {
+        ChannelFuture future = newFuture();
+        testee.track(future, 100);
+        scheduler.schedule(() -> {
+            future.setSuccess();
+        }, 100, TimeUnit.MILLISECONDS);
+
+        assertThat(testee.awaitPendingBytesBelow(10, TIMEOUT)).isTrue();
+        assertThat(testee.getPendingBytes()).isEqualTo(0);
+        verify(channel, never()).close();
+    }
+
+    @Test
+    public void awaitPendingBytesBelowShouldCloseTheChannelWhenTheClientReadsTooSlowly() {
+        testee.track(newFuture(), 100);
+
+        assertThat(testee.awaitPendingBytesBelow(10, Duration.ofMillis(100))).isFalse();
+        verify(channel).close();
+    }
+
+    @Test
+    public void awaitPendingBytesBelowShouldCloseTheChannelWhenItStaysNotWritable() {
+        when(channel.isWritable()).thenReturn(false);
+
+        assertThat(testee.awaitPendingBytesBelow(10, Duration.ofMillis(100))).isFalse();
+        verify(channel).close();
+    }
+
+    @Test
+    public void awaitPendingBytesBelowShouldReturnFalseWhenTheChannelIsDisconnected() {
+        when(channel.isConnected()).thenReturn(false);
+        testee.track(newFuture(), 100);
+
+        assertThat(testee.awaitPendingBytesBelow(10, TIMEOUT)).isFalse();
+        verify(channel, never()).close();
+    }
+
+    private ChannelFuture newFuture() {
+        return new DefaultChannelFuture(channel, NOT_CANCELLABLE);
+    }
+}
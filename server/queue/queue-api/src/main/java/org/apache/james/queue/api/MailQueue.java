@@ -19,12 +19,15 @@
 
 package org.apache.james.queue.api;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.mail.MessagingException;
 
 import org.apache.mailet.Mail;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * <p>
  * A Queue/Spool for Mails. How the Queue handles the ordering of the dequeuing
@@ -97,6 +100,33 @@ public interface MailQueue {
      */
     MailQueueItem deQueue() throws MailQueueException, InterruptedException;
 
+    /**
+     * Dequeue up to maxItems ready-to-process Mails. This method will block
+     * until a Mail is ready, and then wait at most the given timeout for
+     * further Mails to fill the batch.
+     *
+     * Each returned {@link MailQueueItem} still needs to be acknowledged, either
+     * individually or through {@link #done(List, boolean)}.
+     *
+     * The default implementation returns a single item.
+     */
+    default List<MailQueueItem> deQueue(int maxItems, long timeout, TimeUnit unit) throws MailQueueException, InterruptedException {
+        return ImmutableList.of(deQueue());
+    }
+
+    /**
+     * Acknowledge several {@link MailQueueItem} dequeued from this queue at
+     * once. Implementations can use this to share a single round trip or
+     * transaction among the items.
+     *
+     * The default implementation acknowledges each item in turn.
+     */
+    default void done(List<MailQueueItem> items, boolean success) throws MailQueueException {
+        for (MailQueueItem item : items) {
+            item.done(success);
+        }
+    }
+
     /**
      * Exception which will get thrown if any problems occur while working the
      * {@link MailQueue}
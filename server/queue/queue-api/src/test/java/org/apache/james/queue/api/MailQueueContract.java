@@ -30,7 +30,9 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.io.Serializable;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ExecutorService;
@@ -340,12 +342,115 @@ public interface MailQueueContract {
         Mail mail = defaultMail()
             .name("name")
             .build();
-        Future<MailQueue.MailQueueItem> tryDequeue = executorService.submit(testee::deQueue);
+        Future<MailQueue.MailQueueItem> tryDequeue = executorService.submit(() -> testee.deQueue());
         testee.enQueue(mail);
 
         assertThat(tryDequeue.get().getMail().getName()).isEqualTo("name");
     }
 
+    @Test
+    default void batchDeQueueShouldBlockWhenNoMail(ExecutorService executorService) {
+        Future<?> future = executorService.submit(() -> getMailQueue().deQueue(10, 100, TimeUnit.MILLISECONDS));
+
+        assertThatThrownBy(() -> future.get(2, TimeUnit.SECONDS))
+            .isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    default void batchDeQueueShouldReturnAtMostMaxItems() throws Exception {
+        enQueue(defaultMail()
+            .name("name1")
+            .build());
+        enQueue(defaultMail()
+            .name("name2")
+            .build());
+        enQueue(defaultMail()
+            .name("name3")
+            .build());
+
+        List<MailQueue.MailQueueItem> items = getMailQueue().deQueue(2, 1, TimeUnit.SECONDS);
+
+        assertThat(items).hasSize(2);
+    }
+
+    @Test
+    default void batchDeQueueShouldReturnAllEnqueuedMails() throws Exception {
+        enQueue(defaultMail()
+            .name("name1")
+            .build());
+        enQueue(defaultMail()
+            .name("name2")
+            .build());
+
+        List<MailQueue.MailQueueItem> items = new ArrayList<>();
+        while (items.size() < 2) {
+            items.addAll(getMailQueue().deQueue(10, 1, TimeUnit.SECONDS));
+        }
+
+        assertThat(items)
+            .extracting(item -> item.getMail().getName())
+            .containsOnly("name1", "name2");
+    }
+
+    @Test
+    default void batchDoneShouldAcknowledgeAllItems(ExecutorService executorService) throws Exception {
+        enQueue(defaultMail()
+            .name("name1")
+            .build());
+        enQueue(defaultMail()
+            .name("name2")
+            .build());
+
+        List<MailQueue.MailQueueItem> items = new ArrayList<>();
+        while (items.size() < 2) {
+            items.addAll(getMailQueue().deQueue(10, 1, TimeUnit.SECONDS));
+        }
+        getMailQueue().done(items, true);
+
+        Future<?> future = executorService.submit(Throwing.runnable(() -> getMailQueue().deQueue()));
+        assertThatThrownBy(() -> future.get(2, TimeUnit.SECONDS))
+            .isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    default void batchDoneWithFailureShouldAllowRetries() throws Exception {
+        enQueue(defaultMail()
+            .name("name1")
+            .build());
+
+        List<MailQueue.MailQueueItem> items = getMailQueue().deQueue(10, 100, TimeUnit.MILLISECONDS);
+        getMailQueue().done(items, false);
+
+        MailQueue.MailQueueItem retriedItem = getMailQueue().deQueue();
+        assertThat(retriedItem.getMail().getName()).isEqualTo("name1");
+    }
+
+    @Test
+    default void batchPartialFailureShouldOnlyRetryFailedMails(ExecutorService executorService) throws Exception {
+        enQueue(defaultMail()
+            .name("name1")
+            .build());
+        enQueue(defaultMail()
+            .name("name2")
+            .build());
+
+        List<MailQueue.MailQueueItem> items = new ArrayList<>();
+        while (items.size() < 2) {
+            items.addAll(getMailQueue().deQueue(10, 1, TimeUnit.SECONDS));
+        }
+        for (MailQueue.MailQueueItem item : items) {
+            item.done(item.getMail().getName().equals("name1"));
+        }
+
+        MailQueue.MailQueueItem retriedItem = getMailQueue().deQueue();
+        assertThat(retriedItem.getMail().getName()).isEqualTo("name2");
+        retriedItem.done(true);
+
+        Future<?> future = executorService.submit(Throwing.runnable(() -> getMailQueue().deQueue()));
+        assertThatThrownBy(() -> future.get(2, TimeUnit.SECONDS))
+            .isInstanceOf(TimeoutException.class);
+    }
+
     @Test
     default void concurrentEnqueueDequeueShouldNotFail() throws Exception {
         MailQueue testee = getMailQueue();
@@ -18,13 +18,12 @@
  ****************************************************************/
 package org.apache.james.queue.file;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.ZoneId;
@@ -33,6 +32,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Optional;
@@ -51,6 +51,7 @@ import org.apache.james.lifecycle.api.Disposable;
 import org.apache.james.lifecycle.api.LifecycleUtil;
 import org.apache.james.queue.api.MailQueueItemDecoratorFactory;
 import org.apache.james.queue.api.ManageableMailQueue;
+import org.apache.james.server.core.MailCodec;
 import org.apache.james.server.core.MimeMessageCopyOnWriteProxy;
 import org.apache.james.server.core.MimeMessageSource;
 import org.apache.mailet.Mail;
@@ -58,6 +59,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.fge.lambdas.Throwing;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 
 /**
  * {@link ManageableMailQueue} implementation which use the fs to store {@link Mail}'s
@@ -109,16 +112,13 @@ public class FileMailQueue implements ManageableMailQueue {
 
             for (String name : files) {
 
-                ObjectInputStream oin = null;
-
                 try {
 
                     final String msgFileName = name.substring(0, name.length() - OBJECT_EXTENSION.length()) + MSG_EXTENSION;
 
                     FileItem item = new FileItem(qDir.getAbsolutePath() + File.separator + name, qDir.getAbsolutePath() + File.separator + msgFileName);
 
-                    oin = new ObjectInputStream(new FileInputStream(item.getObjectFile()));
-                    Mail mail = (Mail) oin.readObject();
+                    Mail mail = readMail(new File(item.getObjectFile()));
                     Optional<ZonedDateTime> next = getNextDelivery(mail);
 
                     final String key = mail.getName();
@@ -147,20 +147,26 @@ public class FileMailQueue implements ManageableMailQueue {
                     }
                 } catch (ClassNotFoundException | IOException e) {
                     LOGGER.error("Unable to load Mail", e);
-                } finally {
-                    if (oin != null) {
-                        try {
-                            oin.close();
-                        } catch (Exception e) {
-                            // ignore on close
-                        }
-                    }
                 }
 
             }
         }
     }
 
+    /**
+     * Reads the envelope stored in the given object file. Files written before the introduction of
+     * {@link MailCodec} hold a serialized {@link Mail} and are still readable.
+     */
+    private Mail readMail(File objectFile) throws IOException, ClassNotFoundException {
+        byte[] bytes = FileUtils.readFileToByteArray(objectFile);
+        if (MailCodec.isEncoded(bytes)) {
+            return MailCodec.DEFAULT.decode(bytes);
+        }
+        try (ObjectInputStream oin = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Mail) oin.readObject();
+        }
+    }
+
     private Optional<ZonedDateTime> getNextDelivery(Mail mail) {
         Long next = (Long) mail.getAttribute(NEXT_DELIVERY);
         if (next == null) {
@@ -181,10 +187,8 @@ public class FileMailQueue implements ManageableMailQueue {
             if (delay > 0) {
                 mail.setAttribute(NEXT_DELIVERY, System.currentTimeMillis() + unit.toMillis(delay));
             }
-            try (FileOutputStream foout = new FileOutputStream(item.getObjectFile());
-                ObjectOutputStream oout = new ObjectOutputStream(foout)) {
-                oout.writeObject(mail);
-                oout.flush();
+            try (FileOutputStream foout = new FileOutputStream(item.getObjectFile())) {
+                foout.write(MailCodec.DEFAULT.encode(mail));
                 if (sync) {
                     foout.getFD().sync();
                 }
@@ -238,47 +242,75 @@ public class FileMailQueue implements ManageableMailQueue {
                 item = keyMappings.get(k);
 
             }
-            final String key = k;
-            final FileItem fitem = item;
-            try {
-                final File objectFile = new File(fitem.getObjectFile());
-                final File msgFile = new File(fitem.getMessageFile());
-                try (ObjectInputStream oin = new ObjectInputStream(new FileInputStream(objectFile))) {
-                    final Mail mail = (Mail) oin.readObject();
-                    mail.setMessage(new MimeMessageCopyOnWriteProxy(new FileMimeMessageSource(msgFile)));
-                    MailQueueItem fileMailQueueItem = new MailQueueItem() {
-
-                        @Override
-                        public Mail getMail() {
-                            return mail;
-                        }
+            return createMailQueueItem(k, item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailQueueException("Unable to dequeue", e);
+        }
+    }
 
-                        @Override
-                        public void done(boolean success) throws MailQueueException {
-                            if (!success) {
-                                try {
-                                    inmemoryQueue.put(key);
-                                } catch (InterruptedException e) {
-                                    Thread.currentThread().interrupt();
-                                    throw new MailQueueException("Unable to rollback", e);
-                                }
-                            } else {
-                                fitem.delete();
-                                keyMappings.remove(key);
-                            }
+    @Override
+    public List<MailQueueItem> deQueue(int maxItems, long timeout, TimeUnit unit) throws MailQueueException {
+        Preconditions.checkArgument(maxItems > 0, "'maxItems' should be strictly positive");
 
-                            LifecycleUtil.dispose(mail);
-                        }
-                    };
-                    return mailQueueItemDecoratorFactory.decorate(fileMailQueueItem);
+        ImmutableList.Builder<MailQueueItem> items = ImmutableList.builder();
+        items.add(deQueue());
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            int count = 1;
+            while (count < maxItems) {
+                String key = inmemoryQueue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (key == null) {
+                    break;
+                }
+                FileItem item = keyMappings.get(key);
+                if (item != null) {
+                    items.add(createMailQueueItem(key, item));
+                    count++;
                 }
-                // TODO: Think about exception handling in detail
-            } catch (IOException | ClassNotFoundException | MessagingException e) {
-                throw new MailQueueException("Unable to dequeue", e);
             }
-
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+        } catch (MailQueueException e) {
+            // Items already dequeued are still handed over, so that they get acknowledged
+            LOGGER.error("Unable to dequeue the rest of the batch", e);
+        }
+        return items.build();
+    }
+
+    private MailQueueItem createMailQueueItem(String key, FileItem fitem) throws MailQueueException {
+        try {
+            final File objectFile = new File(fitem.getObjectFile());
+            final File msgFile = new File(fitem.getMessageFile());
+            final Mail mail = readMail(objectFile);
+            mail.setMessage(new MimeMessageCopyOnWriteProxy(new FileMimeMessageSource(msgFile)));
+            MailQueueItem fileMailQueueItem = new MailQueueItem() {
+
+                @Override
+                public Mail getMail() {
+                    return mail;
+                }
+
+                @Override
+                public void done(boolean success) throws MailQueueException {
+                    if (!success) {
+                        try {
+                            inmemoryQueue.put(key);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new MailQueueException("Unable to rollback", e);
+                        }
+                    } else {
+                        fitem.delete();
+                        keyMappings.remove(key);
+                    }
+
+                    LifecycleUtil.dispose(mail);
+                }
+            };
+            return mailQueueItemDecoratorFactory.decorate(fileMailQueueItem);
+            // TODO: Think about exception handling in detail
+        } catch (IOException | ClassNotFoundException | MessagingException e) {
             throw new MailQueueException("Unable to dequeue", e);
         }
     }
@@ -442,8 +474,8 @@ public class FileMailQueue implements ManageableMailQueue {
                 }
 
                 while (items.hasNext()) {
-                    try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(items.next().getObjectFile()))) {
-                        final Mail mail = (Mail) in.readObject();
+                    try {
+                        final Mail mail = readMail(new File(items.next().getObjectFile()));
                         item = new MailQueueItemView(mail, getNextDelivery(mail));
                         return true;
                     } catch (IOException | ClassNotFoundException e) {
@@ -0,0 +1,408 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.queue.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Append only log of records stored in segment files.
+ *
+ * An entry is appended with an identifier given by the log, and stays live until it is acknowledged. An
+ * acknowledgement is itself a record of the log. Each record is framed by its length and a CRC32 checksum, so
+ * that a record torn by a crash is detected and truncated when the log is opened again.
+ *
+ * Appends go to the active segment, which is replaced by a new one once it grows beyond the maximum segment
+ * size. Syncing an entry forces the segment holding it to the disk once for all the records appended so far,
+ * which shares the cost of <code>fsync</code> between concurrent writers.
+ *
+ * Segments are reclaimed from the oldest one: it is deleted once all its entries are acknowledged, and its
+ * remaining live entries are copied to the active segment when they use less than half of it, or when less than half
+ * of the whole log is live. The latter prevents a long lived entry of the oldest segment from retaining all the
+ * following segments. Acknowledgements only ever refer to older or same segment entries, so deleting the oldest
+ * segments never resurrects an entry.
+ */
+class SegmentLog implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentLog.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+    // length and checksum of the payload
+    private static final int FRAME_SIZE = 4 + 4;
+    // type and identifier
+    private static final int PAYLOAD_HEADER_SIZE = 1 + 8;
+
+    private static class Segment {
+        private final long id;
+        private final File file;
+        private final FileChannel channel;
+        private final Object syncLock = new Object();
+        private volatile long size;
+        private volatile long syncedSize;
+        private int liveEntries;
+        private long liveBytes;
+
+        Segment(long id, File file, FileChannel channel, long size) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+            this.size = size;
+            this.syncedSize = size;
+        }
+
+        void sync(long upTo) throws IOException {
+            if (syncedSize >= upTo) {
+                return;
+            }
+            synchronized (syncLock) {
+                if (syncedSize >= upTo) {
+                    // an other writer synced this record along with its own
+                    return;
+                }
+                long target = size;
+                try {
+                    channel.force(false);
+                } catch (ClosedChannelException e) {
+                    // the segment was reclaimed, its live entries were synced to the active segment beforehand
+                    return;
+                }
+                syncedSize = target;
+            }
+        }
+    }
+
+    private static class Entry {
+        private final Segment segment;
+        private final long dataOffset;
+        private final int dataLength;
+
+        Entry(Segment segment, long dataOffset, int dataLength) {
+            this.segment = segment;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+        }
+
+        long recordEnd() {
+            return dataOffset + dataLength;
+        }
+
+        long recordLength() {
+            return FRAME_SIZE + PAYLOAD_HEADER_SIZE + dataLength;
+        }
+    }
+
+    static SegmentLog open(File directory, long maxSegmentSize) throws IOException {
+        Preconditions.checkArgument(maxSegmentSize > 0, "'maxSegmentSize' should be strictly positive");
+        FileUtils.forceMkdir(directory);
+        SegmentLog log = new SegmentLog(directory, maxSegmentSize);
+        log.recover();
+        return log;
+    }
+
+    private final File directory;
+    private final long maxSegmentSize;
+    private final TreeMap<Long, Segment> segments;
+    private final TreeMap<Long, Entry> liveEntries;
+    private Segment active;
+    private long nextEntryId;
+
+    private SegmentLog(File directory, long maxSegmentSize) {
+        this.directory = directory;
+        this.maxSegmentSize = maxSegmentSize;
+        this.segments = new TreeMap<>();
+        this.liveEntries = new TreeMap<>();
+        this.nextEntryId = 1;
+    }
+
+    private synchronized void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        long lastSegmentId = 0;
+        if (files != null) {
+            TreeMap<Long, File> segmentFiles = new TreeMap<>();
+            for (File file : files) {
+                String name = file.getName();
+                segmentFiles.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+            for (Map.Entry<Long, File> segmentFile : segmentFiles.entrySet()) {
+                replay(openSegment(segmentFile.getKey(), segmentFile.getValue()));
+                lastSegmentId = segmentFile.getKey();
+            }
+        }
+        active = createSegment(lastSegmentId + 1);
+        reclaimSegments();
+    }
+
+    private Segment openSegment(long id, File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, file, channel, channel.size());
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        File file = new File(directory, SEGMENT_PREFIX + Strings.padStart(String.valueOf(id), 20, '0') + SEGMENT_SUFFIX);
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, file, channel, 0);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void replay(Segment segment) throws IOException {
+        long position = 0;
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        while (position + FRAME_SIZE <= segment.size) {
+            frame.clear();
+            readFully(segment.channel, frame, position);
+            frame.flip();
+            int payloadLength = frame.getInt();
+            int checksum = frame.getInt();
+            if (payloadLength < PAYLOAD_HEADER_SIZE || position + FRAME_SIZE + payloadLength > segment.size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+            readFully(segment.channel, payload, position + FRAME_SIZE);
+            payload.flip();
+            if (checksum(payload) != checksum) {
+                break;
+            }
+            byte type = payload.get();
+            long entryId = payload.getLong();
+            nextEntryId = Math.max(nextEntryId, entryId + 1);
+            if (type == ENQUEUE) {
+                long dataOffset = position + FRAME_SIZE + PAYLOAD_HEADER_SIZE;
+                // a copy made by a reclaim supersedes the original entry
+                unregister(liveEntries.put(entryId, register(new Entry(segment, dataOffset, payloadLength - PAYLOAD_HEADER_SIZE))));
+            } else if (type == ACK) {
+                unregister(liveEntries.remove(entryId));
+            }
+            position += FRAME_SIZE + payloadLength;
+        }
+        if (position < segment.size) {
+            LOGGER.warn("Truncating {} to {} bytes: the following record is incomplete or corrupted", segment.file, position);
+            segment.channel.truncate(position);
+            segment.size = position;
+            segment.syncedSize = position;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment");
+            }
+        }
+    }
+
+    private static int checksum(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private Entry register(Entry entry) {
+        entry.segment.liveEntries++;
+        entry.segment.liveBytes += entry.recordLength();
+        return entry;
+    }
+
+    private void unregister(Entry entry) {
+        if (entry != null) {
+            entry.segment.liveEntries--;
+            entry.segment.liveBytes -= entry.recordLength();
+        }
+    }
+
+    /**
+     * Append an entry to the log. The entry is not guaranteed to be on disk before it is synced.
+     *
+     * @return the identifier of the entry
+     */
+    synchronized long append(byte[] data) throws IOException {
+        long entryId = nextEntryId++;
+        liveEntries.put(entryId, register(write(ENQUEUE, entryId, data)));
+        return entryId;
+    }
+
+    /**
+     * Wait for the given entry, and all the ones appended before it in the same segment, to be on disk
+     */
+    void sync(long entryId) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = liveEntries.get(entryId);
+        }
+        if (entry != null) {
+            entry.segment.sync(entry.recordEnd());
+        }
+    }
+
+    /**
+     * Acknowledge the given entries, which will not be recovered anymore once the acknowledgement reaches the disk
+     */
+    synchronized void acknowledge(Collection<Long> entryIds) throws IOException {
+        for (long entryId : entryIds) {
+            Entry entry = liveEntries.remove(entryId);
+            if (entry != null) {
+                unregister(entry);
+                write(ACK, entryId, new byte[0]);
+            }
+        }
+    }
+
+    private Entry write(byte type, long entryId, byte[] data) throws IOException {
+        int payloadLength = PAYLOAD_HEADER_SIZE + data.length;
+        if (active.size > 0 && active.size + FRAME_SIZE + payloadLength > maxSegmentSize) {
+            roll();
+        }
+        ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+        payload.put(type).putLong(entryId).put(data).flip();
+        ByteBuffer frame = ByteBuffer.allocate(FRAME_SIZE);
+        frame.putInt(payloadLength).putInt(checksum(payload)).flip();
+
+        long position = active.size;
+        long written = 0;
+        ByteBuffer[] record = {frame, payload};
+        active.channel.position(position);
+        while (written < FRAME_SIZE + payloadLength) {
+            written += active.channel.write(record);
+        }
+        active.size = position + written;
+        return new Entry(active, position + FRAME_SIZE + PAYLOAD_HEADER_SIZE, data.length);
+    }
+
+    private void roll() throws IOException {
+        Segment previous = active;
+        previous.sync(previous.size);
+        active = createSegment(previous.id + 1);
+    }
+
+    /**
+     * Map the data of a live entry in memory
+     */
+    synchronized Optional<ByteBuffer> read(long entryId) throws IOException {
+        Entry entry = liveEntries.get(entryId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.dataLength == 0) {
+            return Optional.of(ByteBuffer.allocate(0));
+        }
+        MappedByteBuffer data = entry.segment.channel.map(FileChannel.MapMode.READ_ONLY, entry.dataOffset, entry.dataLength);
+        return Optional.of(data);
+    }
+
+    /**
+     * The identifiers of the live entries, in append order
+     */
+    synchronized List<Long> liveEntryIds() {
+        return ImmutableList.copyOf(liveEntries.keySet());
+    }
+
+    /**
+     * Delete the oldest segments once all their entries are acknowledged, copying their remaining live entries
+     * to the active segment when they use less than half of them, or less than half of the whole log is live
+     */
+    synchronized void reclaimSegments() throws IOException {
+        // segments created by the relocations of this call are left to the next one
+        long lastSegmentId = active.id;
+        while (segments.firstKey() < lastSegmentId) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest.liveEntries > 0) {
+                if (isMostlyLive(oldest.liveBytes, oldest.size) && isMostlyLive(liveBytes(), size())) {
+                    return;
+                }
+                relocateLiveEntries(oldest);
+            }
+            deleteSegment(oldest);
+        }
+    }
+
+    private boolean isMostlyLive(long liveBytes, long size) {
+        return liveBytes * 2 > size;
+    }
+
+    private long liveBytes() {
+        return segments.values().stream()
+            .mapToLong(segment -> segment.liveBytes)
+            .sum();
+    }
+
+    private long size() {
+        return segments.values().stream()
+            .mapToLong(segment -> segment.size)
+            .sum();
+    }
+
+    private void relocateLiveEntries(Segment segment) throws IOException {
+        List<Map.Entry<Long, Entry>> relocated = new ArrayList<>();
+        for (Map.Entry<Long, Entry> liveEntry : liveEntries.entrySet()) {
+            if (liveEntry.getValue().segment == segment) {
+                relocated.add(liveEntry);
+            }
+        }
+        for (Map.Entry<Long, Entry> liveEntry : relocated) {
+            Entry entry = liveEntry.getValue();
+            ByteBuffer data = ByteBuffer.allocate(entry.dataLength);
+            readFully(segment.channel, data, entry.dataOffset);
+            unregister(entry);
+            liveEntries.put(liveEntry.getKey(), register(write(ENQUEUE, liveEntry.getKey(), data.array())));
+        }
+        // the copies must be durable before the originals are deleted
+        active.sync(active.size);
+    }
+
+    private void deleteSegment(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        segment.channel.close();
+        FileUtils.forceDelete(segment.file);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.sync(segment.size);
+            segment.channel.close();
+        }
+        segments.clear();
+        liveEntries.clear();
+    }
+}
@@ -0,0 +1,501 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.queue.file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.mail.MessagingException;
+
+import org.apache.james.core.MailAddress;
+import org.apache.james.lifecycle.api.Disposable;
+import org.apache.james.lifecycle.api.LifecycleUtil;
+import org.apache.james.queue.api.MailQueueItemDecoratorFactory;
+import org.apache.james.queue.api.ManageableMailQueue;
+import org.apache.james.server.core.MailCodec;
+import org.apache.james.server.core.MailImpl;
+import org.apache.james.server.core.MimeMessageCopyOnWriteProxy;
+import org.apache.james.server.core.MimeMessageSource;
+import org.apache.james.util.concurrent.NamedThreadFactory;
+import org.apache.mailet.Mail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * {@link ManageableMailQueue} implementation storing {@link Mail}s in an append only {@link SegmentLog} on the
+ * local disk.
+ * <p/>
+ * Each enqueued mail is a single record holding its next delivery date, its envelope encoded by
+ * {@link MailCodec} and its message. When <code>sync</code> is enabled, concurrent enqueuers share the
+ * <code>fsync</code> calls of the log. Dequeued messages are read from memory mapped regions of the log, and
+ * segments are reclaimed in the background once their mails are acknowledged.
+ */
+public class SegmentLogMailQueue implements ManageableMailQueue, Disposable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SegmentLogMailQueue.class);
+
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final long NO_DELAY = -1;
+    private static final int NO_MESSAGE = -1;
+    private static final int MESSAGE = 0;
+
+    private enum State {
+        DELAYED,
+        READY,
+        IN_PROCESSING
+    }
+
+    private static class QueuedMail {
+        private final long id;
+        private final long nextDelivery;
+        private final AtomicReference<State> state;
+
+        QueuedMail(long id, long nextDelivery) {
+            this.id = id;
+            this.nextDelivery = nextDelivery;
+            this.state = new AtomicReference<>(State.DELAYED);
+        }
+
+        boolean transition(State from, State to) {
+            return state.compareAndSet(from, to);
+        }
+
+        Optional<ZonedDateTime> getNextDelivery() {
+            if (nextDelivery == NO_DELAY) {
+                return Optional.empty();
+            }
+            return Optional.of(Instant.ofEpochMilli(nextDelivery).atZone(ZoneId.systemDefault()));
+        }
+    }
+
+    private final String queueName;
+    private final boolean sync;
+    private final MailQueueItemDecoratorFactory mailQueueItemDecoratorFactory;
+    private final SegmentLog log;
+    private final ConcurrentSkipListMap<Long, QueuedMail> queuedMails;
+    private final BlockingQueue<Long> readyMails;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean reclaimScheduled;
+
+    public SegmentLogMailQueue(MailQueueItemDecoratorFactory mailQueueItemDecoratorFactory, File parentDir, String queueName, boolean sync) throws IOException {
+        this(mailQueueItemDecoratorFactory, parentDir, queueName, sync, DEFAULT_MAX_SEGMENT_SIZE);
+    }
+
+    public SegmentLogMailQueue(MailQueueItemDecoratorFactory mailQueueItemDecoratorFactory, File parentDir, String queueName, boolean sync, long maxSegmentSize) throws IOException {
+        this.mailQueueItemDecoratorFactory = mailQueueItemDecoratorFactory;
+        this.queueName = queueName;
+        this.sync = sync;
+        this.log = SegmentLog.open(new File(parentDir, queueName), maxSegmentSize);
+        this.queuedMails = new ConcurrentSkipListMap<>();
+        this.readyMails = new LinkedBlockingQueue<>();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("segment-log-mail-queue-" + queueName));
+        this.reclaimScheduled = new AtomicBoolean(false);
+        init();
+    }
+
+    @Override
+    public String getName() {
+        return queueName;
+    }
+
+    private void init() throws IOException {
+        for (long id : log.liveEntryIds()) {
+            Optional<ByteBuffer> record = log.read(id);
+            if (record.isPresent()) {
+                QueuedMail queuedMail = new QueuedMail(id, record.get().getLong(0));
+                queuedMails.put(id, queuedMail);
+                schedule(queuedMail);
+            }
+        }
+    }
+
+    private void schedule(QueuedMail queuedMail) {
+        long delay = queuedMail.nextDelivery - System.currentTimeMillis();
+        if (queuedMail.nextDelivery == NO_DELAY || delay <= 0) {
+            markReady(queuedMail);
+        } else {
+            // Schedule a task which will put the mail in the queue
+            // for processing after a given delay
+            scheduler.schedule(() -> markReady(queuedMail), delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private boolean markReady(QueuedMail queuedMail) {
+        if (queuedMail.transition(State.DELAYED, State.READY)) {
+            readyMails.add(queuedMail.id);
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void enQueue(Mail mail, long delay, TimeUnit unit) throws MailQueueException {
+        long nextDelivery = NO_DELAY;
+        if (delay > 0) {
+            nextDelivery = saturatedAdd(System.currentTimeMillis(), unit.toMillis(delay));
+        }
+        try {
+            long id = log.append(encode(mail, nextDelivery));
+            if (sync) {
+                log.sync(id);
+            }
+            QueuedMail queuedMail = new QueuedMail(id, nextDelivery);
+            queuedMails.put(id, queuedMail);
+            schedule(queuedMail);
+        } catch (IOException | MessagingException e) {
+            throw new MailQueueException("Unable to enqueue mail", e);
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long result = a + b;
+        if (result < a) {
+            return Long.MAX_VALUE;
+        }
+        return result;
+    }
+
+    @Override
+    public void enQueue(Mail mail) throws MailQueueException {
+        enQueue(mail, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private byte[] encode(Mail mail, long nextDelivery) throws IOException, MessagingException {
+        byte[] envelope = MailCodec.DEFAULT.encode(mail);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(envelope.length + 1024);
+        try (DataOutputStream out = new DataOutputStream(record)) {
+            out.writeLong(nextDelivery);
+            out.writeInt(envelope.length);
+            out.write(envelope);
+            if (mail.getMessage() == null) {
+                out.writeInt(NO_MESSAGE);
+            } else {
+                out.writeInt(MESSAGE);
+                mail.getMessage().writeTo(out);
+            }
+        }
+        return record.toByteArray();
+    }
+
+    private Optional<Mail> readMail(long id) throws IOException, MessagingException {
+        Optional<ByteBuffer> maybeRecord = log.read(id);
+        if (!maybeRecord.isPresent()) {
+            return Optional.empty();
+        }
+        ByteBuffer record = maybeRecord.get();
+        record.getLong();
+        byte[] envelope = new byte[record.getInt()];
+        record.get(envelope);
+        MailImpl mail = MailCodec.DEFAULT.decode(envelope);
+        if (record.getInt() != NO_MESSAGE) {
+            mail.setMessage(new MimeMessageCopyOnWriteProxy(new MappedMimeMessageSource(queueName + "-" + id, record.slice())));
+        }
+        return Optional.of(mail);
+    }
+
+    @Override
+    public MailQueueItem deQueue() throws MailQueueException, InterruptedException {
+        while (true) {
+            Optional<MailQueueItem> item = take(readyMails.take());
+            if (item.isPresent()) {
+                return item.get();
+            }
+        }
+    }
+
+    @Override
+    public List<MailQueueItem> deQueue(int maxItems, long timeout, TimeUnit unit) throws MailQueueException, InterruptedException {
+        Preconditions.checkArgument(maxItems > 0, "'maxItems' should be strictly positive");
+
+        ImmutableList.Builder<MailQueueItem> items = ImmutableList.builder();
+        items.add(deQueue());
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int count = 1;
+        while (count < maxItems) {
+            Long id = readyMails.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (id == null) {
+                break;
+            }
+            Optional<MailQueueItem> item = take(id);
+            if (item.isPresent()) {
+                items.add(item.get());
+                count++;
+            }
+        }
+        return items.build();
+    }
+
+    private Optional<MailQueueItem> take(long id) throws MailQueueException {
+        QueuedMail queuedMail = queuedMails.get(id);
+        if (queuedMail == null || !queuedMail.transition(State.READY, State.IN_PROCESSING)) {
+            return Optional.empty();
+        }
+        try {
+            Optional<Mail> mail = readMail(id);
+            if (!mail.isPresent()) {
+                return Optional.empty();
+            }
+            return Optional.of(mailQueueItemDecoratorFactory.decorate(new SegmentLogMailQueueItem(queuedMail, mail.get())));
+        } catch (IOException | MessagingException e) {
+            queuedMail.transition(State.IN_PROCESSING, State.READY);
+            readyMails.add(id);
+            throw new MailQueueException("Unable to dequeue", e);
+        }
+    }
+
+    private class SegmentLogMailQueueItem implements MailQueueItem {
+        private final QueuedMail queuedMail;
+        private final Mail mail;
+
+        SegmentLogMailQueueItem(QueuedMail queuedMail, Mail mail) {
+            this.queuedMail = queuedMail;
+            this.mail = mail;
+        }
+
+        @Override
+        public Mail getMail() {
+            return mail;
+        }
+
+        @Override
+        public void done(boolean success) throws MailQueueException {
+            if (success) {
+                acknowledge(ImmutableList.of(queuedMail.id));
+            } else if (queuedMail.transition(State.IN_PROCESSING, State.READY)) {
+                readyMails.add(queuedMail.id);
+            }
+            LifecycleUtil.dispose(mail);
+        }
+    }
+
+    private void acknowledge(List<Long> ids) throws MailQueueException {
+        ids.forEach(queuedMails::remove);
+        try {
+            log.acknowledge(ids);
+        } catch (IOException e) {
+            throw new MailQueueException("Unable to acknowledge mails", e);
+        }
+        if (reclaimScheduled.compareAndSet(false, true)) {
+            scheduler.execute(this::reclaimSegments);
+        }
+    }
+
+    private void reclaimSegments() {
+        reclaimScheduled.set(false);
+        try {
+            log.reclaimSegments();
+        } catch (IOException e) {
+            LOGGER.error("Unable to reclaim segments of queue {}", queueName, e);
+        }
+    }
+
+    @Override
+    public long getSize() throws MailQueueException {
+        return queuedMails.size();
+    }
+
+    @Override
+    public long flush() throws MailQueueException {
+        return queuedMails.values()
+            .stream()
+            .filter(this::markReady)
+            .count();
+    }
+
+    @Override
+    public long clear() throws MailQueueException {
+        List<Long> ids = ImmutableList.copyOf(queuedMails.keySet());
+        acknowledge(ids);
+        readyMails.clear();
+        return ids.size();
+    }
+
+    @Override
+    public long remove(Type type, String value) throws MailQueueException {
+        ImmutableList.Builder<Long> removed = ImmutableList.builder();
+        for (long id : queuedMails.keySet()) {
+            try {
+                Optional<Mail> mail = readMail(id);
+                if (mail.isPresent() && shouldRemove(mail.get(), type, value)) {
+                    removed.add(id);
+                }
+            } catch (IOException | MessagingException e) {
+                throw new MailQueueException("Unable to read mail", e);
+            }
+        }
+        List<Long> ids = removed.build();
+        acknowledge(ids);
+        return ids.size();
+    }
+
+    private boolean shouldRemove(Mail mail, Type type, String value) {
+        switch (type) {
+            case Name:
+                return mail.getName().equals(value);
+            case Recipient:
+                return mail.getRecipients().stream()
+                    .map(MailAddress::asString)
+                    .anyMatch(value::equals);
+            case Sender:
+                return Optional.ofNullable(mail.getSender())
+                    .map(MailAddress::asString)
+                    .map(value::equals)
+                    .orElse(false);
+            default:
+                throw new IllegalArgumentException("Unknown type " + type);
+        }
+    }
+
+    @Override
+    public MailQueueIterator browse() throws MailQueueException {
+        Iterator<QueuedMail> queued = ImmutableList.copyOf(queuedMails.values()).iterator();
+
+        return new MailQueueIterator() {
+            private MailQueueItemView item;
+
+            @Override
+            public MailQueueItemView next() {
+                if (hasNext()) {
+                    MailQueueItemView itemView = item;
+                    item = null;
+                    return itemView;
+                }
+
+                throw new NoSuchElementException();
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (item != null) {
+                    return true;
+                }
+
+                while (queued.hasNext()) {
+                    QueuedMail queuedMail = queued.next();
+                    try {
+                        Optional<Mail> mail = readMail(queuedMail.id);
+                        if (mail.isPresent()) {
+                            item = new MailQueueItemView(mail.get(), queuedMail.getNextDelivery());
+                            return true;
+                        }
+                    } catch (IOException | MessagingException e) {
+                        LOGGER.info("Unable to load mail", e);
+                    }
+                }
+
+                return false;
+            }
+
+            @Override
+            public void close() {
+                // do nothing
+            }
+        };
+    }
+
+    @Override
+    public void dispose() {
+        scheduler.shutdownNow();
+        try {
+            log.close();
+        } catch (IOException e) {
+            LOGGER.error("Unable to close queue {}", queueName, e);
+        }
+    }
+
+    private static class MappedMimeMessageSource extends MimeMessageSource {
+        private final String sourceId;
+        private final ByteBuffer message;
+
+        MappedMimeMessageSource(String sourceId, ByteBuffer message) {
+            this.sourceId = sourceId;
+            this.message = message;
+        }
+
+        @Override
+        public String getSourceId() {
+            return sourceId;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteBufferInputStream(message.duplicate());
+        }
+
+        @Override
+        public long getMessageSize() {
+            return message.remaining();
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.queue.file;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+
+import org.apache.james.filesystem.api.FileSystem;
+import org.apache.james.queue.api.MailQueueFactory;
+import org.apache.james.queue.api.MailQueueItemDecoratorFactory;
+import org.apache.james.queue.api.ManageableMailQueue;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * {@link MailQueueFactory} implementation which returns {@link SegmentLogMailQueue} instances
+ */
+public class SegmentLogMailQueueFactory implements MailQueueFactory<ManageableMailQueue> {
+
+    private final Map<String, SegmentLogMailQueue> queues = new HashMap<>();
+    private final MailQueueItemDecoratorFactory mailQueueItemDecoratorFactory;
+    private final FileSystem fs;
+    private boolean sync = true;
+    private long maxSegmentSize = SegmentLogMailQueue.DEFAULT_MAX_SEGMENT_SIZE;
+
+    @Inject
+    public SegmentLogMailQueueFactory(FileSystem fs, MailQueueItemDecoratorFactory mailQueueItemDecoratorFactory) {
+        this.fs = fs;
+        this.mailQueueItemDecoratorFactory = mailQueueItemDecoratorFactory;
+    }
+
+    @Override
+    public Set<ManageableMailQueue> listCreatedMailQueues() {
+        synchronized (queues) {
+            return ImmutableSet.copyOf(queues.values());
+        }
+    }
+
+    /**
+     * If <code>true</code> an enqueue only returns once the mail is on disk. Concurrent enqueues share the
+     * <code>fsync</code> calls, which limits the performance penalty.
+     * <p/>
+     * The default is <code>true</code>
+     *
+     * @param sync
+     */
+    public void setSync(boolean sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * Size above which the later created {@link SegmentLogMailQueue}s start a new segment of their log.
+     * <p/>
+     * The default is {@link SegmentLogMailQueue#DEFAULT_MAX_SEGMENT_SIZE}
+     *
+     * @param maxSegmentSize
+     */
+    public void setMaxSegmentSize(long maxSegmentSize) {
+        Preconditions.checkArgument(maxSegmentSize > 0, "'maxSegmentSize' should be strictly positive");
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    @Override
+    public Optional<ManageableMailQueue> getQueue(String name) {
+        synchronized (queues) {
+            return Optional.ofNullable(queues.get(name));
+        }
+    }
+
+    @Override
+    public ManageableMailQueue createQueue(String name) {
+        synchronized (queues) {
+            return getQueue(name).orElseGet(() -> createAndRegisterQueue(name));
+        }
+    }
+
+    private ManageableMailQueue createAndRegisterQueue(String name) {
+        try {
+            SegmentLogMailQueue queue = new SegmentLogMailQueue(mailQueueItemDecoratorFactory, fs.getFile("file://var/store/segment-queue"), name, sync, maxSegmentSize);
+            queues.put(name, queue);
+            return queue;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to access queue " + name, e);
+        }
+    }
+
+    @PreDestroy
+    public void dispose() {
+        synchronized (queues) {
+            queues.values().forEach(SegmentLogMailQueue::dispose);
+            queues.clear();
+        }
+    }
+
+}
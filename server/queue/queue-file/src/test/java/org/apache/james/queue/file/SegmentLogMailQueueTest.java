@@ -0,0 +1,157 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.queue.file;
+
+import static org.apache.james.queue.api.Mails.defaultMail;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.james.queue.api.DelayedManageableMailQueueContract;
+import org.apache.james.queue.api.MailQueue;
+import org.apache.james.queue.api.ManageableMailQueue;
+import org.apache.james.queue.api.RawMailQueueItemDecoratorFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.fge.lambdas.Throwing;
+
+public class SegmentLogMailQueueTest implements DelayedManageableMailQueueContract {
+    private static final boolean SYNC = true;
+    private static final long MAX_SEGMENT_SIZE = 4096;
+
+    private TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private File queueParentDir;
+    private SegmentLogMailQueue mailQueue;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        temporaryFolder.create();
+        queueParentDir = temporaryFolder.newFolder();
+        mailQueue = newMailQueue();
+    }
+
+    private SegmentLogMailQueue newMailQueue() throws Exception {
+        return new SegmentLogMailQueue(new RawMailQueueItemDecoratorFactory(), queueParentDir, "test", SYNC, MAX_SEGMENT_SIZE);
+    }
+
+    @AfterEach
+    void teardown() {
+        mailQueue.dispose();
+        temporaryFolder.delete();
+    }
+
+    @Override
+    public MailQueue getMailQueue() {
+        return mailQueue;
+    }
+
+    @Override
+    public ManageableMailQueue getManageableMailQueue() {
+        return mailQueue;
+    }
+
+    @Test
+    void enqueuedMailsShouldBeRecoveredAfterRestart() throws Exception {
+        enQueue(defaultMail()
+            .name("name1")
+            .build());
+        enQueue(defaultMail()
+            .name("name2")
+            .build());
+
+        restart();
+
+        assertThat(mailQueue.deQueue().getMail().getName()).isEqualTo("name1");
+        assertThat(mailQueue.deQueue().getMail().getName()).isEqualTo("name2");
+    }
+
+    @Test
+    void acknowledgedMailsShouldNotBeRecoveredAfterRestart() throws Exception {
+        enQueue(defaultMail()
+            .name("name1")
+            .build());
+        enQueue(defaultMail()
+            .name("name2")
+            .build());
+        mailQueue.deQueue().done(true);
+
+        restart();
+
+        assertThat(mailQueue.getSize()).isEqualTo(1);
+        assertThat(mailQueue.deQueue().getMail().getName()).isEqualTo("name2");
+    }
+
+    @Test
+    void unacknowledgedMailsShouldBeRecoveredAfterRestart() throws Exception {
+        enQueue(defaultMail()
+            .name("name1")
+            .build());
+        mailQueue.deQueue();
+
+        restart();
+
+        assertThat(mailQueue.deQueue().getMail().getName()).isEqualTo("name1");
+    }
+
+    @Test
+    void delaysShouldBePreservedAfterRestart(ExecutorService executorService) throws Exception {
+        mailQueue.enQueue(defaultMail()
+            .name("name1")
+            .build(),
+            30L,
+            TimeUnit.SECONDS);
+
+        restart();
+
+        Future<?> future = executorService.submit(Throwing.runnable(() -> mailQueue.deQueue()));
+        assertThat(mailQueue.getSize()).isEqualTo(1);
+        assertThatThrownBy(() -> future.get(2, TimeUnit.SECONDS))
+            .isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void segmentsShouldBeReclaimedOnceMailsAreAcknowledged() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            enQueue(defaultMail()
+                .name("name" + i)
+                .build());
+        }
+        for (int i = 0; i < 10; i++) {
+            mailQueue.deQueue().done(true);
+        }
+
+        restart();
+
+        assertThat(new File(queueParentDir, "test").list()).hasSize(1);
+    }
+
+    private void restart() throws Exception {
+        mailQueue.dispose();
+        mailQueue = newMailQueue();
+    }
+}
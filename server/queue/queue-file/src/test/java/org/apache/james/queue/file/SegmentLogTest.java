@@ -0,0 +1,158 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.queue.file;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+
+class SegmentLogTest {
+    private static final long MAX_SEGMENT_SIZE = 1024;
+
+    private TemporaryFolder temporaryFolder = new TemporaryFolder();
+    private File directory;
+    private SegmentLog log;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        temporaryFolder.create();
+        directory = temporaryFolder.newFolder();
+        log = SegmentLog.open(directory, MAX_SEGMENT_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        log.close();
+        temporaryFolder.delete();
+    }
+
+    @Test
+    void openShouldTruncateATornRecord() throws Exception {
+        long first = log.append(data(10, (byte) 1));
+        log.append(data(10, (byte) 2));
+        log.close();
+
+        File segment = onlySegment();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        log = SegmentLog.open(directory, MAX_SEGMENT_SIZE);
+
+        assertThat(log.liveEntryIds()).containsExactly(first);
+        assertThat(bytes(log.read(first).get())).isEqualTo(data(10, (byte) 1));
+    }
+
+    @Test
+    void openShouldTruncateARecordWithABadChecksum() throws Exception {
+        long first = log.append(data(10, (byte) 1));
+        log.append(data(10, (byte) 2));
+        log.close();
+
+        File segment = onlySegment();
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            long lastDataByte = file.length() - 1;
+            file.seek(lastDataByte);
+            file.write(42);
+        }
+        log = SegmentLog.open(directory, MAX_SEGMENT_SIZE);
+
+        assertThat(log.liveEntryIds()).containsExactly(first);
+        assertThat(bytes(log.read(first).get())).isEqualTo(data(10, (byte) 1));
+    }
+
+    @Test
+    void entriesAppendedAfterATruncationShouldBeRecovered() throws Exception {
+        long first = log.append(data(10, (byte) 1));
+        log.append(data(10, (byte) 2));
+        log.close();
+        try (RandomAccessFile file = new RandomAccessFile(onlySegment(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        log = SegmentLog.open(directory, MAX_SEGMENT_SIZE);
+
+        long third = log.append(data(10, (byte) 3));
+        log.close();
+        log = SegmentLog.open(directory, MAX_SEGMENT_SIZE);
+
+        assertThat(log.liveEntryIds()).containsExactly(first, third);
+        assertThat(bytes(log.read(third).get())).isEqualTo(data(10, (byte) 3));
+    }
+
+    @Test
+    void aLongLivedEntryShouldNotRetainTheFollowingSegments() throws Exception {
+        byte[] longLivedData = data(600, (byte) 1);
+        long longLived = log.append(longLivedData);
+
+        for (int i = 0; i < 100; i++) {
+            long entryId = log.append(data(100, (byte) 2));
+            log.acknowledge(ImmutableList.of(entryId));
+            log.reclaimSegments();
+        }
+
+        assertThat(directory.list().length).isLessThanOrEqualTo(3);
+        assertThat(log.liveEntryIds()).containsExactly(longLived);
+        assertThat(bytes(log.read(longLived).get())).isEqualTo(longLivedData);
+    }
+
+    @Test
+    void relocatedEntriesShouldBeRecovered() throws Exception {
+        byte[] longLivedData = data(600, (byte) 1);
+        long longLived = log.append(longLivedData);
+        for (int i = 0; i < 100; i++) {
+            long entryId = log.append(data(100, (byte) 2));
+            log.acknowledge(ImmutableList.of(entryId));
+            log.reclaimSegments();
+        }
+
+        log.close();
+        log = SegmentLog.open(directory, MAX_SEGMENT_SIZE);
+
+        assertThat(log.liveEntryIds()).containsExactly(longLived);
+        assertThat(bytes(log.read(longLived).get())).isEqualTo(longLivedData);
+    }
+
+    private File onlySegment() {
+        File[] segments = directory.listFiles();
+        assertThat(segments).hasSize(1);
+        return segments[0];
+    }
+
+    private static byte[] data(int length, byte value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, value);
+        return data;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
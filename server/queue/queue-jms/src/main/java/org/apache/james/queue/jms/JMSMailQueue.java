@@ -20,10 +20,12 @@ package org.apache.james.queue.jms;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.Serializable;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
@@ -61,6 +63,7 @@ import org.apache.james.queue.api.MailPrioritySupport;
 import org.apache.james.queue.api.MailQueue;
 import org.apache.james.queue.api.MailQueueItemDecoratorFactory;
 import org.apache.james.queue.api.ManageableMailQueue;
+import org.apache.james.server.core.MailCodec;
 import org.apache.james.server.core.MailImpl;
 import org.apache.james.server.core.MimeMessageCopyOnWriteProxy;
 import org.apache.james.util.SerializationUtil;
@@ -72,7 +75,9 @@ import org.threeten.extra.Temporals;
 
 import com.github.fge.lambdas.Throwing;
 import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 
 /**
@@ -239,6 +244,67 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
         }
     }
 
+    /**
+     * Dequeues a batch of mails, each of them within its own transacted {@link Session}: a mail whose processing fails
+     * is rolled back, and thus redelivered by the broker according to its redelivery policy, independently of the
+     * other mails of the batch.
+     */
+    @Override
+    public List<MailQueueItem> deQueue(int maxItems, long timeout, TimeUnit unit) throws MailQueueException {
+        Preconditions.checkArgument(maxItems > 0, "'maxItems' should be strictly positive");
+        ImmutableList.Builder<MailQueueItem> items = ImmutableList.builder();
+        items.add(deQueue());
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int i = 1; i < maxItems; i++) {
+            try {
+                Optional<MailQueueItem> item = deQueueBefore(deadline);
+                if (!item.isPresent()) {
+                    break;
+                }
+                items.add(item.get());
+            } catch (MailQueueException e) {
+                LOGGER.warn("Unable to complete the batch dequeued from {}", queueName, e);
+                break;
+            }
+        }
+        return items.build();
+    }
+
+    private Optional<MailQueueItem> deQueueBefore(long deadline) throws MailQueueException {
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remainingMillis <= 0) {
+            return Optional.empty();
+        }
+
+        Session session = null;
+        MessageConsumer consumer = null;
+        TimeMetric timeMetric = metricFactory.timer(DEQUEUED_TIMER_METRIC_NAME_PREFIX + queueName);
+        try {
+            session = connection.createSession(true, Session.SESSION_TRANSACTED);
+            Queue queue = session.createQueue(queueName);
+            consumer = session.createConsumer(queue, getMessageSelector());
+
+            Message message = consumer.receive(remainingMillis);
+
+            if (message != null) {
+                dequeuedMailsMetric.increment();
+                return Optional.of(createMailQueueItem(session, consumer, message));
+            }
+            session.commit();
+            closeConsumer(consumer);
+            closeSession(session);
+            return Optional.empty();
+        } catch (Exception e) {
+            rollback(session);
+            closeConsumer(consumer);
+            closeSession(session);
+            throw new MailQueueException("Unable to dequeue next message", e);
+        } finally {
+            timeMetric.stopAndPublish();
+        }
+    }
+
     @Override
     public void enQueue(Mail mail, long delay, TimeUnit unit) throws MailQueueException {
         TimeMetric timeMetric = metricFactory.timer(ENQUEUED_TIMER_METRIC_NAME_PREFIX + queueName);
@@ -324,7 +390,8 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
         // won't serialize the empty headers so it is mandatory
         // to handle nulls when reconstructing mail from message
         if (!mail.getPerRecipientSpecificHeaders().getHeadersByRecipient().isEmpty()) {
-            props.put(JAMES_MAIL_PER_RECIPIENT_HEADERS, SerializationUtil.serialize(mail.getPerRecipientSpecificHeaders()));
+            props.put(JAMES_MAIL_PER_RECIPIENT_HEADERS, encode(Throwing.function(MailCodec.DEFAULT::encodePerRecipientHeaders).sneakyThrow()
+                .apply(mail.getPerRecipientSpecificHeaders())));
         }
 
         String recipientsAsString = joiner.join(mail.getRecipients());
@@ -336,7 +403,7 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
         String sender = Optional.ofNullable(mail.getSender()).map(MailAddress::asString).orElse("");
 
         org.apache.james.util.streams.Iterators.toStream(mail.getAttributeNames())
-                .forEach(attrName -> props.put(attrName, SerializationUtil.serialize(mail.getAttribute(attrName))));
+                .forEach(attrName -> props.put(attrName, encodeAttributeValue(mail.getAttribute(attrName))));
 
         props.put(JAMES_MAIL_ATTRIBUTE_NAMES, joiner.join(mail.getAttributeNames()));
         props.put(JAMES_MAIL_SENDER, sender);
@@ -393,7 +460,8 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
         mail.setLastUpdated(new Date(message.getLongProperty(JAMES_MAIL_LAST_UPDATED)));
         mail.setName(message.getStringProperty(JAMES_MAIL_NAME));
 
-        Optional.ofNullable(SerializationUtil.<PerRecipientHeaders>deserialize(message.getStringProperty(JAMES_MAIL_PER_RECIPIENT_HEADERS)))
+        Optional.ofNullable(message.getStringProperty(JAMES_MAIL_PER_RECIPIENT_HEADERS))
+                .map(Throwing.function(JMSMailQueue::decodePerRecipientHeaders).sneakyThrow())
                 .ifPresent(mail::addAllSpecificHeaderForRecipient);
 
         List<MailAddress> rcpts = new ArrayList<>();
@@ -436,12 +504,46 @@ public class JMSMailQueue implements ManageableMailQueue, JMSSupport, MailPriori
         Object attrValue = Throwing.function(message::getObjectProperty).apply(name);
 
         if (attrValue instanceof String) {
-            mail.setAttribute(name, SerializationUtil.deserialize((String) attrValue));
+            try {
+                mail.setAttribute(name, decodeAttributeValue((String) attrValue));
+            } catch (IOException e) {
+                LOGGER.error("Unable to decode mail attribute {} for mail {}", name, mail.getName(), e);
+            }
         } else {
             LOGGER.error("Not supported mail attribute {} of type {} for mail {}", name, attrValue, mail.getName());
         }
     }
 
+    private static String encode(byte[] bytes) {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static String encodeAttributeValue(Serializable value) {
+        return Optional.ofNullable(value)
+                .map(Throwing.function(MailCodec.DEFAULT::encodeAttributeValue).sneakyThrow())
+                .map(JMSMailQueue::encode)
+                .orElse(null);
+    }
+
+    /**
+     * Values written before the introduction of {@link MailCodec} are base64 encoded serialized objects.
+     */
+    private static Serializable decodeAttributeValue(String value) throws IOException {
+        byte[] bytes = Base64.getDecoder().decode(value);
+        if (MailCodec.isEncoded(bytes)) {
+            return MailCodec.DEFAULT.decodeAttributeValue(bytes);
+        }
+        return SerializationUtil.deserialize(value);
+    }
+
+    private static PerRecipientHeaders decodePerRecipientHeaders(String value) throws IOException {
+        byte[] bytes = Base64.getDecoder().decode(value);
+        if (MailCodec.isEncoded(bytes)) {
+            return MailCodec.DEFAULT.decodePerRecipientHeaders(bytes);
+        }
+        return SerializationUtil.deserialize(value);
+    }
+
     private Gauge<Long> queueSizeGauge() {
         return () -> Throwing.supplier(this::getSize).get();
     }
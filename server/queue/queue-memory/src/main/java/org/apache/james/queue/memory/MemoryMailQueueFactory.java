@@ -23,6 +23,7 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
@@ -48,6 +49,7 @@ import org.threeten.extra.Temporals;
 import com.github.fge.lambdas.Throwing;
 import com.github.steveash.guavate.Guavate;
 import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
@@ -138,6 +140,27 @@ public class MemoryMailQueueFactory implements MailQueueFactory<ManageableMailQu
         @Override
         public MailQueueItem deQueue() throws MailQueueException, InterruptedException {
             MemoryMailQueueItem item = mailItems.take();
+            return markInProcessing(item);
+        }
+
+        @Override
+        public List<MailQueueItem> deQueue(int maxItems, long timeout, TimeUnit unit) throws MailQueueException, InterruptedException {
+            Preconditions.checkArgument(maxItems > 0, "'maxItems' should be strictly positive");
+
+            ImmutableList.Builder<MailQueueItem> items = ImmutableList.builder();
+            items.add(deQueue());
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            for (int count = 1; count < maxItems; count++) {
+                MemoryMailQueueItem item = mailItems.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (item == null) {
+                    break;
+                }
+                items.add(markInProcessing(item));
+            }
+            return items.build();
+        }
+
+        private MailQueueItem markInProcessing(MemoryMailQueueItem item) {
             inProcessingMailItems.add(item);
             return mailQueueItemDecoratorFactory.decorate(item);
         }
@@ -0,0 +1,134 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.queue.rabbitmq;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
+
+/**
+ * Broker side delayed delivery, shared by all the mail queues.
+ * <p>
+ * A delay expressed in seconds is written in binary in the first {@link #LEVEL_COUNT} words of the routing key,
+ * most significant bit first, followed by the name of the target mail queue. Each level is a topic exchange
+ * routing the messages with their bit set to a queue whose messages expire after <code>2^level</code> seconds, and
+ * the other ones to the next level exchange. Expired messages are dead lettered with their routing key to the next
+ * level exchange, until the last level which hands them over to {@link #DELIVERY_EXCHANGE}. There, each work queue
+ * is bound to the routing keys ending with its name.
+ * <p>
+ * As every level queue holds messages of a single TTL, messages never wait behind a message expiring later.
+ */
+final class DelayTopology {
+    /**
+     * 2^22 seconds is the largest power of two below the maximum TTL accepted by RabbitMQ (2^32 - 1 milliseconds).
+     */
+    static final int LEVEL_COUNT = 23;
+    static final long MAX_DELAY_IN_SECONDS = (1L << LEVEL_COUNT) - 1;
+
+    private static final String PREFIX = "JamesMailQueue-delay-";
+    static final String DELIVERY_EXCHANGE = PREFIX + "delivery";
+    private static final char BIT_SET = '1';
+    private static final char BIT_UNSET = '0';
+    private static final String ANY_WORD = "*";
+    private static final String ANY_WORDS = "#";
+    private static final Joiner WORD_JOINER = Joiner.on('.');
+    private static final Splitter WORD_SPLITTER = Splitter.on('.');
+
+    /**
+     * @return the delay rounded up to the second, capped to {@link #MAX_DELAY_IN_SECONDS}
+     */
+    static long delayInSeconds(long delay, TimeUnit unit) {
+        long millis = unit.toMillis(delay);
+        if (millis <= 0) {
+            return 0;
+        }
+        long seconds = millis / 1000 + (millis % 1000 == 0 ? 0 : 1);
+        return Math.min(seconds, MAX_DELAY_IN_SECONDS);
+    }
+
+    static String entryExchangeName() {
+        return levelExchangeName(LEVEL_COUNT - 1);
+    }
+
+    static String levelExchangeName(int level) {
+        return PREFIX + "exchange-" + level;
+    }
+
+    static String levelQueueName(int level) {
+        return PREFIX + "level-" + level;
+    }
+
+    static String nextExchangeName(int level) {
+        if (level == 0) {
+            return DELIVERY_EXCHANGE;
+        }
+        return levelExchangeName(level - 1);
+    }
+
+    static long levelTtlInMillis(int level) {
+        return TimeUnit.SECONDS.toMillis(1L << level);
+    }
+
+    static String routingKey(MailQueueName name, long delayInSeconds) {
+        String bits = IntStream.iterate(LEVEL_COUNT - 1, level -> level - 1)
+            .limit(LEVEL_COUNT)
+            .mapToObj(level -> String.valueOf(((delayInSeconds >> level) & 1) == 1 ? BIT_SET : BIT_UNSET))
+            .collect(Collectors.joining("."));
+        return WORD_JOINER.join(bits, name.asString());
+    }
+
+    static String levelQueueBindingKey(int level) {
+        return levelBindingKey(level, BIT_SET);
+    }
+
+    static String nextExchangeBindingKey(int level) {
+        return levelBindingKey(level, BIT_UNSET);
+    }
+
+    private static String levelBindingKey(int level, char bit) {
+        return WORD_JOINER.join(Stream.concat(
+                anyWords(LEVEL_COUNT - 1 - level),
+                Stream.of(String.valueOf(bit), ANY_WORDS))
+            .iterator());
+    }
+
+    static String deliveryBindingKey(MailQueueName name) {
+        return WORD_JOINER.join(Stream.concat(
+                anyWords(LEVEL_COUNT),
+                Stream.of(name.asString()))
+            .iterator());
+    }
+
+    static boolean isRoutedTo(String routingKey, MailQueueName name) {
+        String destination = WORD_JOINER.join(Iterables.skip(WORD_SPLITTER.split(routingKey), LEVEL_COUNT));
+        return destination.equals(name.asString());
+    }
+
+    private static Stream<String> anyWords(int count) {
+        return IntStream.range(0, count).mapToObj(i -> ANY_WORD);
+    }
+
+    private DelayTopology() {
+    }
+}
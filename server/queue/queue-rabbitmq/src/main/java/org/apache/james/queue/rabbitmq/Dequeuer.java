@@ -22,8 +22,12 @@ package org.apache.james.queue.rabbitmq;
 import static org.apache.james.queue.api.MailQueue.DEQUEUED_METRIC_NAME_PREFIX;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -36,6 +40,9 @@ import org.apache.mailet.Mail;
 
 import com.github.fge.lambdas.Throwing;
 import com.github.fge.lambdas.consumers.ThrowingConsumer;
+import com.github.steveash.guavate.Guavate;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.nurkiewicz.asyncretry.AsyncRetryExecutor;
 import com.rabbitmq.client.GetResponse;
 
@@ -45,10 +52,12 @@ class Dequeuer {
 
     private static class RabbitMQMailQueueItem implements MailQueue.MailQueueItem {
         private final Consumer<Boolean> ack;
+        private final long deliveryTag;
         private final Mail mail;
 
-        private RabbitMQMailQueueItem(Consumer<Boolean> ack, Mail mail) {
+        private RabbitMQMailQueueItem(Consumer<Boolean> ack, long deliveryTag, Mail mail) {
             this.ack = ack;
+            this.deliveryTag = deliveryTag;
             this.mail = mail;
         }
 
@@ -89,10 +98,68 @@ class Dequeuer {
             .join();
     }
 
+    /**
+     * Blocks until a mail is available, then keeps polling for at most the given timeout to fill the batch.
+     */
+    List<MailQueue.MailQueueItem> deQueue(int maxItems, long timeout, TimeUnit unit) throws MailQueue.MailQueueException, IOException, InterruptedException {
+        Preconditions.checkArgument(maxItems > 0, "'maxItems' should be strictly positive");
+
+        List<MailQueue.MailQueueItem> items = new ArrayList<>(maxItems);
+        items.add(deQueue());
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (items.size() < maxItems) {
+            Optional<GetResponse> response = rabbitClient.poll(name)
+                .filter(getResponse -> getResponse.getBody() != null);
+            if (response.isPresent()) {
+                items.add(loadItem(response.get()));
+            } else if (System.nanoTime() - deadline < 0) {
+                Thread.sleep(TEN_MS);
+            } else {
+                break;
+            }
+        }
+        return ImmutableList.copyOf(items);
+    }
+
+    /**
+     * Acknowledges the items of a batch using a single channel.
+     */
+    void done(List<MailQueue.MailQueueItem> items, boolean success) throws MailQueue.MailQueueException {
+        List<RabbitMQMailQueueItem> rabbitMQItems = items.stream()
+            .filter(RabbitMQMailQueueItem.class::isInstance)
+            .map(RabbitMQMailQueueItem.class::cast)
+            .collect(Guavate.toImmutableList());
+        List<Long> deliveryTags = rabbitMQItems.stream()
+            .map(item -> item.deliveryTag)
+            .collect(Guavate.toImmutableList());
+
+        try {
+            if (success) {
+                dequeueMetric.add(rabbitMQItems.size());
+                rabbitClient.ack(deliveryTags);
+                CompletableFuture.allOf(rabbitMQItems.stream()
+                        .map(item -> mailQueueView.delete(DeleteCondition.withName(item.getMail().getName())))
+                        .toArray(CompletableFuture[]::new))
+                    .join();
+            } else {
+                rabbitClient.nack(deliveryTags);
+            }
+        } catch (IOException e) {
+            throw new MailQueue.MailQueueException("Failed to ACK a batch of " + deliveryTags.size() + " mails", e);
+        }
+
+        for (MailQueue.MailQueueItem item : items) {
+            if (!(item instanceof RabbitMQMailQueueItem)) {
+                item.done(success);
+            }
+        }
+    }
+
     private RabbitMQMailQueueItem loadItem(GetResponse response) throws MailQueue.MailQueueException {
         Mail mail = loadMail(response);
-        ThrowingConsumer<Boolean> ack = ack(response.getEnvelope().getDeliveryTag(), mail);
-        return new RabbitMQMailQueueItem(ack, mail);
+        long deliveryTag = response.getEnvelope().getDeliveryTag();
+        ThrowingConsumer<Boolean> ack = ack(deliveryTag, mail);
+        return new RabbitMQMailQueueItem(ack, deliveryTag, mail);
     }
 
     private ThrowingConsumer<Boolean> ack(long deliveryTag, Mail mail) {
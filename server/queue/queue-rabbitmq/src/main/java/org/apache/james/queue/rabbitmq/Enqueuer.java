@@ -21,8 +21,11 @@ package org.apache.james.queue.rabbitmq;
 
 import static org.apache.james.queue.api.MailQueue.ENQUEUED_METRIC_NAME_PREFIX;
 
+import java.io.IOException;
+import java.io.Serializable;
 import java.time.Clock;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeMessage;
@@ -31,6 +34,7 @@ import org.apache.james.blob.api.Store;
 import org.apache.james.blob.mail.MimeMessagePartsId;
 import org.apache.james.metrics.api.Metric;
 import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.queue.api.MailPrioritySupport;
 import org.apache.james.queue.api.MailQueue;
 import org.apache.james.queue.rabbitmq.view.api.MailQueueView;
 import org.apache.mailet.Mail;
@@ -60,8 +64,16 @@ class Enqueuer {
     }
 
     void enQueue(Mail mail) throws MailQueue.MailQueueException {
+        enQueue(mail, 0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Delayed mails wait in the {@link DelayTopology} and do not reach the work queue before they are due.
+     */
+    void enQueue(Mail mail, long delay, TimeUnit unit) throws MailQueue.MailQueueException {
+        long delayInSeconds = DelayTopology.delayInSeconds(delay, unit);
         saveMail(mail)
-            .thenApply(Throwing.<MimeMessagePartsId, EnqueuedItem>function(partsId -> publishReferenceToRabbit(mail, partsId)).sneakyThrow())
+            .thenApply(Throwing.<MimeMessagePartsId, EnqueuedItem>function(partsId -> publishReferenceToRabbit(mail, partsId, delayInSeconds)).sneakyThrow())
             .thenApply(mailQueueView::storeMail)
             .thenRun(enqueueMetric::increment)
             .join();
@@ -75,8 +87,21 @@ class Enqueuer {
         }
     }
 
-    private EnqueuedItem publishReferenceToRabbit(Mail mail, MimeMessagePartsId partsId) throws MailQueue.MailQueueException {
-        rabbitClient.publish(name, getMailReferenceBytes(mail, partsId));
+    long flush() throws MailQueue.MailQueueException {
+        try {
+            return rabbitClient.flushDelayed(name);
+        } catch (IOException e) {
+            throw new MailQueue.MailQueueException("Unable to flush delayed mails", e);
+        }
+    }
+
+    private EnqueuedItem publishReferenceToRabbit(Mail mail, MimeMessagePartsId partsId, long delayInSeconds) throws MailQueue.MailQueueException {
+        byte[] mailReference = getMailReferenceBytes(mail, partsId);
+        if (delayInSeconds > 0) {
+            rabbitClient.publishDelayed(name, mailReference, priority(mail), delayInSeconds);
+        } else {
+            rabbitClient.publish(name, mailReference, priority(mail));
+        }
 
         return EnqueuedItem.builder()
             .mailQueueName(name)
@@ -86,6 +111,14 @@ class Enqueuer {
             .build();
     }
 
+    private int priority(Mail mail) {
+        Serializable priority = mail.getAttribute(MailPrioritySupport.MAIL_PRIORITY);
+        if (priority instanceof Integer) {
+            return Math.max(MailPrioritySupport.LOW_PRIORITY, Math.min(MailPrioritySupport.HIGH_PRIORITY, (Integer) priority));
+        }
+        return MailPrioritySupport.NORMAL_PRIORITY;
+    }
+
     private byte[] getMailReferenceBytes(Mail mail, MimeMessagePartsId partsId) throws MailQueue.MailQueueException {
         try {
             MailReferenceDTO mailDTO = MailReferenceDTO.fromMail(mail, partsId);
@@ -20,14 +20,21 @@
 package org.apache.james.queue.rabbitmq;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import org.apache.james.backend.rabbitmq.RabbitMQChannelPool;
+import org.apache.james.queue.api.MailPrioritySupport;
 import org.apache.james.queue.api.MailQueue;
 
 import com.google.common.collect.ImmutableMap;
 import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.GetResponse;
+import com.rabbitmq.client.Method;
+import com.rabbitmq.client.ShutdownSignalException;
 
 class RabbitClient {
 
@@ -36,8 +43,12 @@ class RabbitClient {
     private static final boolean DURABLE = true;
     private static final boolean EXCLUSIVE = true;
     private static final boolean MULTIPLE = true;
-    private static final ImmutableMap<String, Object> NO_ARGUMENTS = ImmutableMap.of();
     private static final String ROUTING_KEY = "";
+    private static final String TOPIC = "topic";
+    private static final String MAX_PRIORITY_ARGUMENT = "x-max-priority";
+    private static final String MESSAGE_TTL_ARGUMENT = "x-message-ttl";
+    private static final String DEAD_LETTER_EXCHANGE_ARGUMENT = "x-dead-letter-exchange";
+    private static final ImmutableMap<String, Object> WORK_QUEUE_ARGUMENTS = ImmutableMap.of(MAX_PRIORITY_ARGUMENT, MailPrioritySupport.HIGH_PRIORITY);
     public static final boolean REQUEUE = true;
 
     private final RabbitMQChannelPool channelPool;
@@ -50,7 +61,9 @@ class RabbitClient {
         channelPool.execute(channel -> {
             try {
                 channel.exchangeDeclare(name.toRabbitExchangeName().asString(), "direct", DURABLE);
-                channel.queueDeclare(name.toWorkQueueName().asString(), DURABLE, !EXCLUSIVE, !AUTO_DELETE, NO_ARGUMENTS);
+                if (!queueExists(channel.getConnection(), name.toWorkQueueName().asString())) {
+                    channel.queueDeclare(name.toWorkQueueName().asString(), DURABLE, !EXCLUSIVE, !AUTO_DELETE, WORK_QUEUE_ARGUMENTS);
+                }
                 channel.queueBind(name.toWorkQueueName().asString(), name.toRabbitExchangeName().asString(), ROUTING_KEY);
             } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -58,16 +71,126 @@ class RabbitClient {
         });
     }
 
-    void publish(MailQueueName name, byte[] message) throws MailQueue.MailQueueException {
+    /**
+     * Work queues declared before priorities were supported lack the x-max-priority argument, and RabbitMQ rejects
+     * re-declaring a queue with different arguments. Existing work queues are thus left as they are: they keep
+     * delivering mails in FIFO order, and only newly created work queues honor priorities.
+     *
+     * A failed passive declaration closes its channel, hence the check is done on a short lived channel rather than on
+     * a pooled one.
+     */
+    private boolean queueExists(Connection connection, String queueName) throws IOException {
+        Channel probe = connection.createChannel();
+        try {
+            probe.queueDeclarePassive(queueName);
+            return true;
+        } catch (IOException e) {
+            if (isNotFound(e)) {
+                return false;
+            }
+            throw e;
+        } finally {
+            closeQuietly(probe);
+        }
+    }
+
+    private boolean isNotFound(IOException e) {
+        if (!(e.getCause() instanceof ShutdownSignalException)) {
+            return false;
+        }
+        Method reason = ((ShutdownSignalException) e.getCause()).getReason();
+        return reason instanceof AMQP.Channel.Close
+            && ((AMQP.Channel.Close) reason).getReplyCode() == AMQP.NOT_FOUND;
+    }
+
+    private void closeQuietly(Channel channel) {
+        if (channel.isOpen()) {
+            try {
+                channel.close();
+            } catch (Exception e) {
+                // the probe channel is not reused
+            }
+        }
+    }
+
+    /**
+     * Declares the {@link DelayTopology} and binds the work queue of the given mail queue to it. Declarations are
+     * idempotent, which allows to call this upon each start.
+     */
+    void attemptDelayTopologyCreation(MailQueueName name) {
         channelPool.execute(channel -> {
             try {
-                channel.basicPublish(name.toRabbitExchangeName().asString(), ROUTING_KEY, new AMQP.BasicProperties(), message);
+                channel.exchangeDeclare(DelayTopology.DELIVERY_EXCHANGE, TOPIC, DURABLE);
+                for (int level = 0; level < DelayTopology.LEVEL_COUNT; level++) {
+                    channel.exchangeDeclare(DelayTopology.levelExchangeName(level), TOPIC, DURABLE);
+                    channel.queueDeclare(DelayTopology.levelQueueName(level), DURABLE, !EXCLUSIVE, !AUTO_DELETE, ImmutableMap.of(
+                        MESSAGE_TTL_ARGUMENT, DelayTopology.levelTtlInMillis(level),
+                        DEAD_LETTER_EXCHANGE_ARGUMENT, DelayTopology.nextExchangeName(level)));
+                    channel.queueBind(DelayTopology.levelQueueName(level), DelayTopology.levelExchangeName(level), DelayTopology.levelQueueBindingKey(level));
+                    channel.exchangeBind(DelayTopology.nextExchangeName(level), DelayTopology.levelExchangeName(level), DelayTopology.nextExchangeBindingKey(level));
+                }
+                channel.queueBind(name.toWorkQueueName().asString(), DelayTopology.DELIVERY_EXCHANGE, DelayTopology.deliveryBindingKey(name));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    void publish(MailQueueName name, byte[] message, int priority) throws MailQueue.MailQueueException {
+        publish(name.toRabbitExchangeName().asString(), ROUTING_KEY, message, priority);
+    }
+
+    void publishDelayed(MailQueueName name, byte[] message, int priority, long delayInSeconds) throws MailQueue.MailQueueException {
+        publish(DelayTopology.entryExchangeName(), DelayTopology.routingKey(name, delayInSeconds), message, priority);
+    }
+
+    private void publish(String exchange, String routingKey, byte[] message, int priority) throws MailQueue.MailQueueException {
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+            .priority(priority)
+            .build();
+        channelPool.execute(channel -> {
+            try {
+                channel.basicPublish(exchange, routingKey, properties, message);
             } catch (IOException e) {
                 throw new MailQueue.MailQueueException("Unable to publish to RabbitMQ", e);
             }
         });
     }
 
+    /**
+     * Moves the messages of the given mail queue waiting in the {@link DelayTopology} to its work queue.
+     *
+     * Messages of other mail queues are requeued in their original position. Messages being dead lettered from one
+     * level to the next one while flushing are not moved.
+     *
+     * @return the count of moved messages
+     */
+    long flushDelayed(MailQueueName name) throws IOException {
+        RabbitMQChannelPool.RabbitFunction<Long, IOException> f = channel -> {
+            long moved = 0;
+            for (int level = 0; level < DelayTopology.LEVEL_COUNT; level++) {
+                List<Long> requeued = new ArrayList<>();
+                GetResponse response = channel.basicGet(DelayTopology.levelQueueName(level), !AUTO_ACK);
+                while (response != null) {
+                    long deliveryTag = response.getEnvelope().getDeliveryTag();
+                    if (DelayTopology.isRoutedTo(response.getEnvelope().getRoutingKey(), name)) {
+                        channel.basicPublish(name.toRabbitExchangeName().asString(), ROUTING_KEY, response.getProps(), response.getBody());
+                        channel.basicAck(deliveryTag, !MULTIPLE);
+                        moved++;
+                    } else {
+                        requeued.add(deliveryTag);
+                    }
+                    response = channel.basicGet(DelayTopology.levelQueueName(level), !AUTO_ACK);
+                }
+                for (long deliveryTag : requeued) {
+                    channel.basicNack(deliveryTag, !MULTIPLE, REQUEUE);
+                }
+            }
+            return moved;
+        };
+        return channelPool.execute(f);
+    }
+
     void ack(long deliveryTag) throws IOException {
         RabbitMQChannelPool.RabbitConsumer<IOException> consumer = channel -> channel.basicAck(deliveryTag, !MULTIPLE);
         channelPool.execute(consumer);
@@ -78,6 +201,24 @@ class RabbitClient {
         channelPool.execute(consumer);
     }
 
+    void ack(List<Long> deliveryTags) throws IOException {
+        RabbitMQChannelPool.RabbitConsumer<IOException> consumer = channel -> {
+            for (long deliveryTag : deliveryTags) {
+                channel.basicAck(deliveryTag, !MULTIPLE);
+            }
+        };
+        channelPool.execute(consumer);
+    }
+
+    void nack(List<Long> deliveryTags) throws IOException {
+        RabbitMQChannelPool.RabbitConsumer<IOException> consumer = channel -> {
+            for (long deliveryTag : deliveryTags) {
+                channel.basicNack(deliveryTag, !MULTIPLE, REQUEUE);
+            }
+        };
+        channelPool.execute(consumer);
+    }
+
     Optional<GetResponse> poll(MailQueueName name) throws IOException {
         RabbitMQChannelPool.RabbitFunction<Optional<GetResponse>, IOException> f = channel ->
             Optional.ofNullable(channel.basicGet(name.toWorkQueueName().asString(), !AUTO_ACK));
@@ -19,22 +19,20 @@
 
 package org.apache.james.queue.rabbitmq;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.james.metrics.api.MetricFactory;
+import org.apache.james.queue.api.MailPrioritySupport;
 import org.apache.james.queue.api.ManageableMailQueue;
 import org.apache.james.queue.rabbitmq.view.api.DeleteCondition;
 import org.apache.james.queue.rabbitmq.view.api.MailQueueView;
 import org.apache.mailet.Mail;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import com.github.fge.lambdas.Throwing;
 import com.google.common.base.MoreObjects;
 
-public class RabbitMQMailQueue implements ManageableMailQueue {
-
-    private static final Logger LOGGER = LoggerFactory.getLogger(RabbitMQMailQueue.class);
+public class RabbitMQMailQueue implements ManageableMailQueue, MailPrioritySupport {
 
     private final MailQueueName name;
     private final MetricFactory metricFactory;
@@ -58,11 +56,9 @@ public class RabbitMQMailQueue implements ManageableMailQueue {
     }
 
     @Override
-    public void enQueue(Mail mail, long delay, TimeUnit unit) throws MailQueueException {
-        if (delay > 0) {
-            LOGGER.info("Ignored delay upon enqueue of {} : {} {}.", mail.getName(), delay, unit);
-        }
-        enQueue(mail);
+    public void enQueue(Mail mail, long delay, TimeUnit unit) {
+        metricFactory.runPublishingTimerMetric(ENQUEUED_TIMER_METRIC_NAME_PREFIX + name.asString(),
+            Throwing.runnable(() -> enqueuer.enQueue(mail, delay, unit)).sneakyThrow());
     }
 
     @Override
@@ -77,6 +73,17 @@ public class RabbitMQMailQueue implements ManageableMailQueue {
             Throwing.supplier(dequeuer::deQueue).sneakyThrow());
     }
 
+    @Override
+    public List<MailQueueItem> deQueue(int maxItems, long timeout, TimeUnit unit) {
+        return metricFactory.runPublishingTimerMetric(DEQUEUED_TIMER_METRIC_NAME_PREFIX + name.asString(),
+            Throwing.supplier(() -> dequeuer.deQueue(maxItems, timeout, unit)).sneakyThrow());
+    }
+
+    @Override
+    public void done(List<MailQueueItem> items, boolean success) throws MailQueueException {
+        dequeuer.done(items, success);
+    }
+
     @Override
     public long getSize() {
         return mailQueueView.getSize();
@@ -84,8 +91,7 @@ public class RabbitMQMailQueue implements ManageableMailQueue {
 
     @Override
     public long flush() {
-        LOGGER.warn("Delays are not supported by RabbitMQ. Flush is a NOOP.");
-        return 0;
+        return Throwing.supplier(enqueuer::flush).sneakyThrow().get();
     }
 
     @Override
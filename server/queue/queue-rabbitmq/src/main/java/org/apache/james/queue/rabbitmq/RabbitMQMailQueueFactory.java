@@ -75,6 +75,7 @@ public class RabbitMQMailQueueFactory implements MailQueueFactory<RabbitMQMailQu
 
         RabbitMQMailQueue create(MailQueueName mailQueueName) {
             mailQueueView.initialize(mailQueueName);
+            rabbitClient.attemptDelayTopologyCreation(mailQueueName);
 
             RabbitMQMailQueue rabbitMQMailQueue = new RabbitMQMailQueue(
                 metricFactory,
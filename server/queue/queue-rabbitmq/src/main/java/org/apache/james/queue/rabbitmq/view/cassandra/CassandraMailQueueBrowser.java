@@ -49,6 +49,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
 
 class CassandraMailQueueBrowser {
 
@@ -100,11 +101,42 @@ class CassandraMailQueueBrowser {
         this.clock = clock;
     }
 
-    CompletableFuture<Stream<ManageableMailQueue.MailQueueItemView>> browse(MailQueueName queueName) {
-        return browseReferences(queueName)
-            .map(this::toMailFuture, FluentFutureStream::unboxFuture)
-            .map(ManageableMailQueue.MailQueueItemView::new)
-            .completableFuture();
+    /**
+     * Browses the mails lazily: slices are read one at a time, and the content of a mail is only loaded when
+     * the iterator reaches it.
+     */
+    Iterator<ManageableMailQueue.MailQueueItemView> browse(MailQueueName queueName) {
+        return Iterators.transform(iterateReferences(queueName),
+            enqueuedItem -> new ManageableMailQueue.MailQueueItemView(toMailFuture(enqueuedItem).join()));
+    }
+
+    private Iterator<EnqueuedItemWithSlicingContext> iterateReferences(MailQueueName queueName) {
+        Iterator<Slice> slices = allSlicesStartingAt(browseStartDao.findBrowseStart(queueName).join()).iterator();
+        return Iterators.concat(Iterators.transform(slices,
+            slice -> browseSlice(queueName, slice).join().iterator()));
+    }
+
+    /**
+     * Reads slices one at a time from the browse start, until one holds a mail.
+     */
+    CompletableFuture<Optional<EnqueuedItemWithSlicingContext>> firstReference(MailQueueName queueName) {
+        return browseStartDao.findBrowseStart(queueName)
+            .thenCompose(browseStart -> firstReference(queueName, allSlicesStartingAt(browseStart).iterator()));
+    }
+
+    private CompletableFuture<Optional<EnqueuedItemWithSlicingContext>> firstReference(MailQueueName queueName, Iterator<Slice> slices) {
+        if (!slices.hasNext()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return browseSlice(queueName, slices.next())
+            .completableFuture()
+            .thenApply(Stream::findFirst)
+            .thenCompose(reference -> {
+                if (reference.isPresent()) {
+                    return CompletableFuture.completedFuture(reference);
+                }
+                return firstReference(queueName, slices);
+            });
     }
 
     FluentFutureStream<EnqueuedItemWithSlicingContext> browseReferences(MailQueueName queueName) {
@@ -23,7 +23,6 @@ import java.time.Instant;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.Stream;
 
 import javax.inject.Inject;
 
@@ -56,7 +55,7 @@ class CassandraMailQueueMailDelete {
     CompletableFuture<Void> considerDeleted(Mail mail, MailQueueName mailQueueName) {
         return deletedMailsDao
             .markAsDeleted(mailQueueName, MailKey.fromMail(mail))
-            .thenRunAsync(() -> maybeUpdateBrowseStart(mailQueueName));
+            .thenCompose(any -> maybeUpdateBrowseStart(mailQueueName));
     }
 
     CompletableFuture<Boolean> isDeleted(Mail mail, MailQueueName mailQueueName) {
@@ -68,17 +67,17 @@ class CassandraMailQueueMailDelete {
             .thenCompose(newBrowseStart -> updateNewBrowseStart(mailQueueName, newBrowseStart));
     }
 
-    private void maybeUpdateBrowseStart(MailQueueName mailQueueName) {
+    private CompletableFuture<Void> maybeUpdateBrowseStart(MailQueueName mailQueueName) {
         if (shouldUpdateBrowseStart()) {
-            updateBrowseStart(mailQueueName).join();
+            return updateBrowseStart(mailQueueName);
         }
+        return CompletableFuture.completedFuture(null);
     }
 
     private CompletableFuture<Optional<Instant>> findNewBrowseStart(MailQueueName mailQueueName) {
-        return cassandraMailQueueBrowser.browseReferences(mailQueueName)
-            .map(enqueuedItem -> enqueuedItem.getSlicingContext().getTimeRangeStart())
-            .completableFuture()
-            .thenApply(Stream::findFirst);
+        return cassandraMailQueueBrowser.firstReference(mailQueueName)
+            .thenApply(maybeReference -> maybeReference
+                .map(reference -> reference.getSlicingContext().getTimeRangeStart()));
     }
 
     private CompletableFuture<Void> updateNewBrowseStart(MailQueueName mailQueueName, Optional<Instant> maybeNewBrowseStart) {
@@ -19,7 +19,13 @@
 
 package org.apache.james.queue.rabbitmq.view.cassandra;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
@@ -34,6 +40,10 @@ import org.apache.james.queue.rabbitmq.view.cassandra.configuration.Eventsourcin
 import org.apache.james.queue.rabbitmq.view.cassandra.model.EnqueuedItemWithSlicingContext;
 import org.apache.james.util.FluentFutureStream;
 import org.apache.mailet.Mail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
 
 public class CassandraMailQueueView implements MailQueueView {
 
@@ -41,39 +51,57 @@ public class CassandraMailQueueView implements MailQueueView {
         private final CassandraMailQueueMailStore storeHelper;
         private final CassandraMailQueueBrowser cassandraMailQueueBrowser;
         private final CassandraMailQueueMailDelete cassandraMailQueueMailDelete;
+        private final MailQueueSizeDAO mailQueueSizeDao;
+        private final Clock clock;
 
         @Inject
         public Factory(CassandraMailQueueMailStore storeHelper,
                        CassandraMailQueueBrowser cassandraMailQueueBrowser,
                        CassandraMailQueueMailDelete cassandraMailQueueMailDelete,
+                       MailQueueSizeDAO mailQueueSizeDao,
                        EventsourcingConfigurationManagement eventsourcingConfigurationManagement,
-                       CassandraMailQueueViewConfiguration configuration) {
+                       CassandraMailQueueViewConfiguration configuration,
+                       Clock clock) {
             this.storeHelper = storeHelper;
             this.cassandraMailQueueBrowser = cassandraMailQueueBrowser;
             this.cassandraMailQueueMailDelete = cassandraMailQueueMailDelete;
+            this.mailQueueSizeDao = mailQueueSizeDao;
+            this.clock = clock;
 
             eventsourcingConfigurationManagement.registerConfiguration(configuration);
         }
 
         public MailQueueView create(MailQueueName mailQueueName) {
-            return new CassandraMailQueueView(storeHelper, mailQueueName, cassandraMailQueueBrowser, cassandraMailQueueMailDelete);
+            return new CassandraMailQueueView(storeHelper, mailQueueName, cassandraMailQueueBrowser, cassandraMailQueueMailDelete,
+                mailQueueSizeDao, clock);
         }
     }
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(CassandraMailQueueView.class);
+    private static final Duration SIZE_RECONCILIATION_PERIOD = Duration.ofMinutes(10);
+
     private final CassandraMailQueueMailStore storeHelper;
     private final CassandraMailQueueBrowser cassandraMailQueueBrowser;
     private final CassandraMailQueueMailDelete cassandraMailQueueMailDelete;
+    private final MailQueueSizeDAO mailQueueSizeDao;
+    private final Clock clock;
+    private final AtomicReference<Instant> lastSizeReconciliation;
 
     private final MailQueueName mailQueueName;
 
     CassandraMailQueueView(CassandraMailQueueMailStore storeHelper,
                            MailQueueName mailQueueName,
                            CassandraMailQueueBrowser cassandraMailQueueBrowser,
-                           CassandraMailQueueMailDelete cassandraMailQueueMailDelete) {
+                           CassandraMailQueueMailDelete cassandraMailQueueMailDelete,
+                           MailQueueSizeDAO mailQueueSizeDao,
+                           Clock clock) {
         this.mailQueueName = mailQueueName;
         this.storeHelper = storeHelper;
         this.cassandraMailQueueBrowser = cassandraMailQueueBrowser;
         this.cassandraMailQueueMailDelete = cassandraMailQueueMailDelete;
+        this.mailQueueSizeDao = mailQueueSizeDao;
+        this.clock = clock;
+        this.lastSizeReconciliation = new AtomicReference<>(Instant.EPOCH);
     }
 
     @Override
@@ -84,22 +112,82 @@ public class CassandraMailQueueView implements MailQueueView {
 
     @Override
     public CompletableFuture<Void> storeMail(EnqueuedItem enqueuedItem) {
-        return storeHelper.storeMail(enqueuedItem);
+        return storeHelper.storeMail(enqueuedItem)
+            .thenCompose(any -> mailQueueSizeDao.increment(mailQueueName));
     }
 
     @Override
     public ManageableMailQueue.MailQueueIterator browse() {
         return new CassandraMailQueueBrowser.CassandraMailQueueIterator(
-            cassandraMailQueueBrowser.browse(mailQueueName)
-                .join()
-                .iterator());
+            cassandraMailQueueBrowser.browse(mailQueueName));
     }
 
+    /**
+     * Reads the size of this queue: its last snapshot plus the changes counted since, see {@link MailQueueSizeDAO}.
+     *
+     * At most once per {@link #SIZE_RECONCILIATION_PERIOD}, this also triggers a reconciliation in the background.
+     * The returned size never waits for it.
+     */
     @Override
     public long getSize() {
+        if (shouldReconcileSize()) {
+            reconcileSize()
+                .exceptionally(e -> {
+                    LOGGER.warn("Failed reconciling the size of mail queue {}", mailQueueName.asString(), e);
+                    return null;
+                });
+        }
+        return Math.max(0, mailQueueSizeDao.getSize(mailQueueName).join());
+    }
+
+    /**
+     * Replaces the size snapshot of this queue by the count of a full browse.
+     *
+     * A lightweight transaction elects a single James node per {@link #SIZE_RECONCILIATION_PERIOD}, and the snapshot
+     * is an absolute value: corrections are neither applied once per node nor accumulated.
+     */
+    @VisibleForTesting
+    CompletableFuture<Void> reconcileSize() {
+        Instant reconciliationStart = clock.instant().truncatedTo(ChronoUnit.MILLIS);
+        return mailQueueSizeDao.findReconciliationStart(mailQueueName)
+            .thenCompose(previousStart -> {
+                if (isRecent(previousStart, reconciliationStart)) {
+                    return CompletableFuture.completedFuture(false);
+                }
+                return mailQueueSizeDao.claimReconciliation(mailQueueName, previousStart, reconciliationStart);
+            })
+            .thenCompose(elected -> {
+                if (!elected) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                return snapshotSize(reconciliationStart);
+            });
+    }
+
+    private boolean isRecent(Optional<Instant> previousStart, Instant now) {
+        return previousStart
+            .map(start -> Duration.between(start, now).compareTo(SIZE_RECONCILIATION_PERIOD) < 0)
+            .orElse(false);
+    }
+
+    /**
+     * The counter is read once the browse is done, so that mails enqueued or deleted during the browse are counted
+     * once, unless the browse happens between their storage and their counting.
+     */
+    private CompletableFuture<Void> snapshotSize(Instant reconciliationStart) {
         return cassandraMailQueueBrowser.browseReferences(mailQueueName)
-                .join()
-                .count();
+            .completableFuture()
+            .thenApply(Stream::count)
+            .thenCompose(browsed -> mailQueueSizeDao.getCounter(mailQueueName)
+                .thenCompose(counter -> mailQueueSizeDao.saveSnapshot(mailQueueName, reconciliationStart, browsed, counter)))
+            .thenApply(any -> null);
+    }
+
+    private boolean shouldReconcileSize() {
+        Instant now = clock.instant();
+        Instant lastReconciliation = lastSizeReconciliation.get();
+        return Duration.between(lastReconciliation, now).compareTo(SIZE_RECONCILIATION_PERIOD) >= 0
+            && lastSizeReconciliation.compareAndSet(lastReconciliation, now);
     }
 
     @Override
@@ -110,7 +198,9 @@ public class CassandraMailQueueView implements MailQueueView {
             .map(mailReference -> cassandraMailQueueMailDelete.considerDeleted(mailReference.getMail(), mailQueueName),
                 FluentFutureStream::unboxFuture)
             .completableFuture()
-            .thenApply(Stream::count);
+            .thenApply(Stream::count)
+            .thenCompose(count -> mailQueueSizeDao.decrement(mailQueueName, count)
+                .thenApply(any -> count));
 
         result.thenRunAsync(() -> cassandraMailQueueMailDelete.updateBrowseStart(mailQueueName));
 
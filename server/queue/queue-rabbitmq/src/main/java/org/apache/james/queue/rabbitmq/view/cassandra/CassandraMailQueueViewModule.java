@@ -19,8 +19,10 @@
 
 package org.apache.james.queue.rabbitmq.view.cassandra;
 
+import static com.datastax.driver.core.DataType.bigint;
 import static com.datastax.driver.core.DataType.blob;
 import static com.datastax.driver.core.DataType.cint;
+import static com.datastax.driver.core.DataType.counter;
 import static com.datastax.driver.core.DataType.list;
 import static com.datastax.driver.core.DataType.map;
 import static com.datastax.driver.core.DataType.text;
@@ -71,6 +73,22 @@ public interface CassandraMailQueueViewModule {
         String MAIL_KEY = "mailKey";
     }
 
+    interface MailQueueSizeTable {
+        String TABLE_NAME = "mailQueueSize";
+
+        String QUEUE_NAME = "queueName";
+        String SIZE = "size";
+    }
+
+    interface MailQueueSizeSnapshotTable {
+        String TABLE_NAME = "mailQueueSizeSnapshot";
+
+        String QUEUE_NAME = "queueName";
+        String SIZE = "size";
+        String COUNTER_OFFSET = "counterOffset";
+        String RECONCILIATION_START = "reconciliationStart";
+    }
+
     CassandraModule MODULE = CassandraModule
         .type(EnqueuedMailsTable.HEADER_TYPE)
             .statement(statement -> statement
@@ -117,5 +135,25 @@ public interface CassandraMailQueueViewModule {
             .addPartitionKey(DeletedMailTable.QUEUE_NAME, text())
             .addPartitionKey(DeletedMailTable.MAIL_KEY, text()))
 
+        .table(MailQueueSizeTable.TABLE_NAME)
+        .comment("this table holds a counter of the mails still enqueued in each mail queue, it is updated upon " +
+            "enqueue and delete so that sizing a mail queue do not require browsing the " + EnqueuedMailsTable.TABLE_NAME +
+            " table. Drifts are periodically corrected by the " + MailQueueSizeSnapshotTable.TABLE_NAME + " table.")
+        .options(options -> options)
+        .statement(statement -> statement
+            .addPartitionKey(MailQueueSizeTable.QUEUE_NAME, text())
+            .addColumn(MailQueueSizeTable.SIZE, counter()))
+
+        .table(MailQueueSizeSnapshotTable.TABLE_NAME)
+        .comment("this table holds, for each mail queue, the size found by the last browse of the " +
+            EnqueuedMailsTable.TABLE_NAME + " table, and the value of the " + MailQueueSizeTable.TABLE_NAME +
+            " counter once browsed. A single James node takes such a snapshot per period.")
+        .options(options -> options)
+        .statement(statement -> statement
+            .addPartitionKey(MailQueueSizeSnapshotTable.QUEUE_NAME, text())
+            .addColumn(MailQueueSizeSnapshotTable.SIZE, bigint())
+            .addColumn(MailQueueSizeSnapshotTable.COUNTER_OFFSET, bigint())
+            .addColumn(MailQueueSizeSnapshotTable.RECONCILIATION_START, timestamp()))
+
         .build();
 }
@@ -69,6 +69,8 @@ import com.datastax.driver.core.Session;
 
 class EnqueuedMailsDAO {
 
+    private static final int SELECT_FETCH_SIZE = 100;
+
     private final CassandraAsyncExecutor executor;
     private final PreparedStatement selectFrom;
     private final PreparedStatement insert;
@@ -150,7 +152,8 @@ class EnqueuedMailsDAO {
             selectFrom.bind()
                 .setString(QUEUE_NAME, queueName.asString())
                 .setTimestamp(TIME_RANGE_START, Date.from(slice.getStartSliceInstant()))
-                .setInt(BUCKET_ID, bucketId.getValue()))
+                .setInt(BUCKET_ID, bucketId.getValue())
+                .setFetchSize(SELECT_FETCH_SIZE))
             .thenApply(resultSet -> cassandraUtils.convertToStream(resultSet)
                 .map(row -> EnqueuedMailsDaoUtil.toEnqueuedMail(row, blobFactory)));
     }
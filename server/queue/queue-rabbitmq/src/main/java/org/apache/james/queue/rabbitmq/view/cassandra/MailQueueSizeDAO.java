@@ -0,0 +1,193 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.queue.rabbitmq.view.cassandra;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.bindMarker;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.incr;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.insertInto;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.set;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.update;
+import static org.apache.james.queue.rabbitmq.view.cassandra.CassandraMailQueueViewModule.MailQueueSizeTable.QUEUE_NAME;
+import static org.apache.james.queue.rabbitmq.view.cassandra.CassandraMailQueueViewModule.MailQueueSizeTable.SIZE;
+import static org.apache.james.queue.rabbitmq.view.cassandra.CassandraMailQueueViewModule.MailQueueSizeTable.TABLE_NAME;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import javax.inject.Inject;
+
+import org.apache.james.backends.cassandra.utils.CassandraAsyncExecutor;
+import org.apache.james.queue.rabbitmq.MailQueueName;
+import org.apache.james.queue.rabbitmq.view.cassandra.CassandraMailQueueViewModule.MailQueueSizeSnapshotTable;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+/**
+ * The size of a mail queue is the size of its last snapshot, plus the changes counted since this snapshot was taken.
+ *
+ * Mail queues without snapshot are sized by the counter alone.
+ */
+class MailQueueSizeDAO {
+
+    private static final String DELTA = "delta";
+    private static final String PREVIOUS_RECONCILIATION_START = "previousReconciliationStart";
+
+    private final CassandraAsyncExecutor executor;
+    private final PreparedStatement selectOne;
+    private final PreparedStatement add;
+    private final PreparedStatement selectSnapshot;
+    private final PreparedStatement insertReconciliationStart;
+    private final PreparedStatement updateReconciliationStart;
+    private final PreparedStatement updateSnapshot;
+
+    @Inject
+    MailQueueSizeDAO(Session session) {
+        this.executor = new CassandraAsyncExecutor(session);
+        this.selectOne = prepareSelect(session);
+        this.add = prepareAdd(session);
+        this.selectSnapshot = prepareSelectSnapshot(session);
+        this.insertReconciliationStart = prepareInsertReconciliationStart(session);
+        this.updateReconciliationStart = prepareUpdateReconciliationStart(session);
+        this.updateSnapshot = prepareUpdateSnapshot(session);
+    }
+
+    private PreparedStatement prepareSelect(Session session) {
+        return session.prepare(select(SIZE)
+            .from(TABLE_NAME)
+            .where(eq(QUEUE_NAME, bindMarker(QUEUE_NAME))));
+    }
+
+    private PreparedStatement prepareAdd(Session session) {
+        return session.prepare(update(TABLE_NAME)
+            .with(incr(SIZE, bindMarker(DELTA)))
+            .where(eq(QUEUE_NAME, bindMarker(QUEUE_NAME))));
+    }
+
+    private PreparedStatement prepareSelectSnapshot(Session session) {
+        return session.prepare(select()
+            .from(MailQueueSizeSnapshotTable.TABLE_NAME)
+            .where(eq(MailQueueSizeSnapshotTable.QUEUE_NAME, bindMarker(MailQueueSizeSnapshotTable.QUEUE_NAME))));
+    }
+
+    private PreparedStatement prepareInsertReconciliationStart(Session session) {
+        return session.prepare(insertInto(MailQueueSizeSnapshotTable.TABLE_NAME)
+            .value(MailQueueSizeSnapshotTable.QUEUE_NAME, bindMarker(MailQueueSizeSnapshotTable.QUEUE_NAME))
+            .value(MailQueueSizeSnapshotTable.RECONCILIATION_START, bindMarker(MailQueueSizeSnapshotTable.RECONCILIATION_START))
+            .ifNotExists());
+    }
+
+    private PreparedStatement prepareUpdateReconciliationStart(Session session) {
+        return session.prepare(update(MailQueueSizeSnapshotTable.TABLE_NAME)
+            .onlyIf(eq(MailQueueSizeSnapshotTable.RECONCILIATION_START, bindMarker(PREVIOUS_RECONCILIATION_START)))
+            .with(set(MailQueueSizeSnapshotTable.RECONCILIATION_START, bindMarker(MailQueueSizeSnapshotTable.RECONCILIATION_START)))
+            .where(eq(MailQueueSizeSnapshotTable.QUEUE_NAME, bindMarker(MailQueueSizeSnapshotTable.QUEUE_NAME))));
+    }
+
+    private PreparedStatement prepareUpdateSnapshot(Session session) {
+        return session.prepare(update(MailQueueSizeSnapshotTable.TABLE_NAME)
+            .onlyIf(eq(MailQueueSizeSnapshotTable.RECONCILIATION_START, bindMarker(MailQueueSizeSnapshotTable.RECONCILIATION_START)))
+            .with(set(MailQueueSizeSnapshotTable.SIZE, bindMarker(MailQueueSizeSnapshotTable.SIZE)))
+            .and(set(MailQueueSizeSnapshotTable.COUNTER_OFFSET, bindMarker(MailQueueSizeSnapshotTable.COUNTER_OFFSET)))
+            .where(eq(MailQueueSizeSnapshotTable.QUEUE_NAME, bindMarker(MailQueueSizeSnapshotTable.QUEUE_NAME))));
+    }
+
+    CompletableFuture<Void> increment(MailQueueName mailQueueName) {
+        return add(mailQueueName, 1);
+    }
+
+    CompletableFuture<Void> decrement(MailQueueName mailQueueName, long count) {
+        return add(mailQueueName, -count);
+    }
+
+    CompletableFuture<Void> add(MailQueueName mailQueueName, long delta) {
+        if (delta == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return executor.executeVoid(add.bind()
+            .setString(QUEUE_NAME, mailQueueName.asString())
+            .setLong(DELTA, delta));
+    }
+
+    CompletableFuture<Long> getSize(MailQueueName mailQueueName) {
+        return getCounter(mailQueueName)
+            .thenCombine(selectSnapshot(mailQueueName), (counter, maybeSnapshot) -> maybeSnapshot
+                .filter(snapshot -> !snapshot.isNull(MailQueueSizeSnapshotTable.SIZE))
+                .map(snapshot -> snapshot.getLong(MailQueueSizeSnapshotTable.SIZE)
+                    + counter - snapshot.getLong(MailQueueSizeSnapshotTable.COUNTER_OFFSET))
+                .orElse(counter));
+    }
+
+    CompletableFuture<Long> getCounter(MailQueueName mailQueueName) {
+        return executor.executeSingleRow(
+            selectOne.bind()
+                .setString(QUEUE_NAME, mailQueueName.asString()))
+            .thenApply(maybeRow -> maybeRow
+                .map(row -> row.getLong(SIZE))
+                .orElse(0L));
+    }
+
+    CompletableFuture<Optional<Instant>> findReconciliationStart(MailQueueName mailQueueName) {
+        return selectSnapshot(mailQueueName)
+            .thenApply(maybeSnapshot -> maybeSnapshot
+                .map(snapshot -> snapshot.getTimestamp(MailQueueSizeSnapshotTable.RECONCILIATION_START).toInstant()));
+    }
+
+    /**
+     * Elects the caller to reconcile the size of this mail queue. Only one of the callers racing from the same previous
+     * reconciliation start succeeds.
+     *
+     * @return true when the caller is elected
+     */
+    CompletableFuture<Boolean> claimReconciliation(MailQueueName mailQueueName, Optional<Instant> previousStart, Instant start) {
+        if (previousStart.isPresent()) {
+            return executor.executeReturnApplied(updateReconciliationStart.bind()
+                .setString(MailQueueSizeSnapshotTable.QUEUE_NAME, mailQueueName.asString())
+                .setTimestamp(PREVIOUS_RECONCILIATION_START, Date.from(previousStart.get()))
+                .setTimestamp(MailQueueSizeSnapshotTable.RECONCILIATION_START, Date.from(start)));
+        }
+        return executor.executeReturnApplied(insertReconciliationStart.bind()
+            .setString(MailQueueSizeSnapshotTable.QUEUE_NAME, mailQueueName.asString())
+            .setTimestamp(MailQueueSizeSnapshotTable.RECONCILIATION_START, Date.from(start)));
+    }
+
+    /**
+     * Saves the size of this mail queue as browsed by the reconciliation started at the given instant, along with
+     * the value of the counter once browsed. Does nothing if another reconciliation was claimed since.
+     */
+    CompletableFuture<Boolean> saveSnapshot(MailQueueName mailQueueName, Instant reconciliationStart, long size, long counterOffset) {
+        return executor.executeReturnApplied(updateSnapshot.bind()
+            .setString(MailQueueSizeSnapshotTable.QUEUE_NAME, mailQueueName.asString())
+            .setTimestamp(MailQueueSizeSnapshotTable.RECONCILIATION_START, Date.from(reconciliationStart))
+            .setLong(MailQueueSizeSnapshotTable.SIZE, size)
+            .setLong(MailQueueSizeSnapshotTable.COUNTER_OFFSET, counterOffset));
+    }
+
+    private CompletableFuture<Optional<Row>> selectSnapshot(MailQueueName mailQueueName) {
+        return executor.executeSingleRow(
+            selectSnapshot.bind()
+                .setString(MailQueueSizeSnapshotTable.QUEUE_NAME, mailQueueName.asString()));
+    }
+}
@@ -0,0 +1,99 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+package org.apache.james.queue.rabbitmq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.common.base.Splitter;
+
+class DelayTopologyTest {
+    private static final MailQueueName SPOOL = MailQueueName.fromString("spool");
+
+    @Test
+    void delayInSecondsShouldBeZeroWhenNegative() {
+        assertThat(DelayTopology.delayInSeconds(-30, TimeUnit.SECONDS)).isEqualTo(0);
+    }
+
+    @Test
+    void delayInSecondsShouldBeZeroWhenBelowOneMillisecond() {
+        assertThat(DelayTopology.delayInSeconds(10, TimeUnit.MICROSECONDS)).isEqualTo(0);
+    }
+
+    @Test
+    void delayInSecondsShouldRoundUp() {
+        assertThat(DelayTopology.delayInSeconds(1001, TimeUnit.MILLISECONDS)).isEqualTo(2);
+    }
+
+    @Test
+    void delayInSecondsShouldBeCappedToMaximumDelay() {
+        assertThat(DelayTopology.delayInSeconds(Long.MAX_VALUE, TimeUnit.DAYS)).isEqualTo(DelayTopology.MAX_DELAY_IN_SECONDS);
+    }
+
+    @Test
+    void levelTtlShouldNotExceedRabbitMQMaximum() {
+        assertThat(DelayTopology.levelTtlInMillis(DelayTopology.LEVEL_COUNT - 1)).isLessThanOrEqualTo(0xFFFFFFFFL);
+    }
+
+    @Test
+    void routingKeyShouldWriteDelayInBinaryMostSignificantBitFirst() {
+        String routingKey = DelayTopology.routingKey(SPOOL, 5);
+
+        assertThat(Splitter.on('.').splitToList(routingKey))
+            .hasSize(DelayTopology.LEVEL_COUNT + 1)
+            .endsWith("1", "0", "1", "spool");
+    }
+
+    @Test
+    void routingKeyShouldOnlyMatchLevelsOfSetBits() {
+        String routingKey = DelayTopology.routingKey(SPOOL, 5);
+
+        assertThat(matches(DelayTopology.levelQueueBindingKey(2), routingKey)).isTrue();
+        assertThat(matches(DelayTopology.nextExchangeBindingKey(1), routingKey)).isTrue();
+        assertThat(matches(DelayTopology.levelQueueBindingKey(0), routingKey)).isTrue();
+        assertThat(matches(DelayTopology.levelQueueBindingKey(1), routingKey)).isFalse();
+        assertThat(matches(DelayTopology.nextExchangeBindingKey(DelayTopology.LEVEL_COUNT - 1), routingKey)).isTrue();
+    }
+
+    @Test
+    void deliveryBindingKeyShouldOnlyMatchItsMailQueue() {
+        assertThat(matches(DelayTopology.deliveryBindingKey(SPOOL), DelayTopology.routingKey(SPOOL, 5))).isTrue();
+        assertThat(matches(DelayTopology.deliveryBindingKey(SPOOL), DelayTopology.routingKey(MailQueueName.fromString("other.spool"), 5))).isFalse();
+    }
+
+    @Test
+    void isRoutedToShouldMatchTheTargetMailQueue() {
+        assertThat(DelayTopology.isRoutedTo(DelayTopology.routingKey(MailQueueName.fromString("a.b"), 5), MailQueueName.fromString("a.b"))).isTrue();
+        assertThat(DelayTopology.isRoutedTo(DelayTopology.routingKey(MailQueueName.fromString("a.b"), 5), MailQueueName.fromString("b"))).isFalse();
+    }
+
+    /**
+     * Topic exchange matching, as done by RabbitMQ: '*' matches a word and '#' matches zero or more words.
+     */
+    private boolean matches(String bindingKey, String routingKey) {
+        String regex = bindingKey
+            .replace(".", "\\.")
+            .replace("*", "[^.]+")
+            .replace("\\.#", "(\\..*)?");
+        return routingKey.matches(regex);
+    }
+}
@@ -21,8 +21,10 @@ package org.apache.james.queue.rabbitmq;
 
 import static org.apache.james.backend.rabbitmq.RabbitMQFixture.DEFAULT_MANAGEMENT_CREDENTIAL;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.mockito.Mockito.mock;
 
+import java.io.IOException;
 import java.net.URISyntaxException;
 import java.time.Clock;
 import java.time.Duration;
@@ -31,6 +33,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import javax.mail.internet.MimeMessage;
 
+import org.apache.james.backend.rabbitmq.RabbitMQChannelPool;
 import org.apache.james.backend.rabbitmq.RabbitMQConfiguration;
 import org.apache.james.backend.rabbitmq.RabbitMQExtension;
 import org.apache.james.blob.api.HashBlobId;
@@ -46,6 +49,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
+import com.google.common.collect.ImmutableMap;
+
 class RabbitMqMailQueueFactoryTest implements MailQueueFactoryContract<RabbitMQMailQueue> {
     private static final HashBlobId.Factory BLOB_ID_FACTORY = new HashBlobId.Factory();
 
@@ -53,6 +58,7 @@ class RabbitMqMailQueueFactoryTest implements MailQueueFactoryContract<RabbitMQM
     static final RabbitMQExtension rabbitMQExtension = new RabbitMQExtension();
 
     private RabbitMQMailQueueFactory mailQueueFactory;
+    private RabbitClient rabbitClient;
 
     @BeforeEach
     void setup() throws URISyntaxException {
@@ -66,7 +72,7 @@ class RabbitMqMailQueueFactoryTest implements MailQueueFactoryContract<RabbitMQM
             .managementCredentials(DEFAULT_MANAGEMENT_CREDENTIAL)
             .build();
 
-        RabbitClient rabbitClient = new RabbitClient(rabbitMQExtension.getRabbitChannelPool());
+        rabbitClient = new RabbitClient(rabbitMQExtension.getRabbitChannelPool());
         RabbitMQMailQueueFactory.PrivateFactory factory = new RabbitMQMailQueueFactory.PrivateFactory(
             new NoopMetricFactory(),
             new NoopGaugeRegistry(),
@@ -101,4 +107,39 @@ class RabbitMqMailQueueFactoryTest implements MailQueueFactoryContract<RabbitMQM
             .extracting(RabbitMQMailQueue::getName)
             .hasOnlyOneElementSatisfying(queueName -> assertThat(queueName).isEqualTo("spool"));
     }
+
+    @Test
+    void attemptQueueCreationShouldBeIdempotent() {
+        MailQueueName name = MailQueueName.fromString("spool");
+        rabbitClient.attemptQueueCreation(name);
+
+        assertThatCode(() -> rabbitClient.attemptQueueCreation(name))
+            .doesNotThrowAnyException();
+    }
+
+    @Test
+    void attemptQueueCreationShouldNotFailWhenWorkQueueWasDeclaredWithoutPriority() throws Exception {
+        MailQueueName name = MailQueueName.fromString("spool");
+        RabbitMQChannelPool.RabbitConsumer<IOException> declareWorkQueueWithoutPriority = channel -> {
+            channel.exchangeDeclare(name.toRabbitExchangeName().asString(), "direct", true);
+            channel.queueDeclare(name.toWorkQueueName().asString(), true, false, false, ImmutableMap.of());
+        };
+        rabbitMQExtension.getRabbitChannelPool().execute(declareWorkQueueWithoutPriority);
+
+        assertThatCode(() -> rabbitClient.attemptQueueCreation(name))
+            .doesNotThrowAnyException();
+    }
+
+    @Test
+    void createQueueShouldReturnQueuesWhoseWorkQueueWasDeclaredWithoutPriority() throws Exception {
+        MailQueueName name = MailQueueName.fromString("spool");
+        RabbitMQChannelPool.RabbitConsumer<IOException> declareWorkQueueWithoutPriority = channel -> {
+            channel.exchangeDeclare(name.toRabbitExchangeName().asString(), "direct", true);
+            channel.queueDeclare(name.toWorkQueueName().asString(), true, false, false, ImmutableMap.of());
+        };
+        rabbitMQExtension.getRabbitChannelPool().execute(declareWorkQueueWithoutPriority);
+
+        assertThat(mailQueueFactory.createQueue("spool").getName())
+            .isEqualTo("spool");
+    }
 }
@@ -0,0 +1,137 @@
+/****************************************************************
+ * Licensed to the Apache Software Foundation (ASF) under one   *
+ * or more contributor license agreements.  See the NOTICE file *
+ * distributed with this work for additional information        *
+ * regarding copyright ownership.  The ASF licenses this file   *
+ * to you under the Apache License, Version 2.0 (the            *
+ * "License"); you may not use this file except in compliance   *
+ * with the License.  You may obtain a copy of the License at   *
+ *                                                              *
+ *   http://www.apache.org/licenses/LICENSE-2.0                 *
+ *                                                              *
+ * Unless required by applicable law or agreed to in writing,   *
+ * software distributed under the License is distributed on an  *
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY       *
+ * KIND, either express or implied.  See the License for the    *
+ * specific language governing permissions and limitations      *
+ * under the License.                                           *
+ ****************************************************************/
+
+package org.apache.james.queue.rabbitmq.view.cassandra;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.apache.james.backends.cassandra.CassandraCluster;
+import org.apache.james.backends.cassandra.CassandraClusterExtension;
+import org.apache.james.queue.rabbitmq.MailQueueName;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class MailQueueSizeDAOTest {
+
+    private static final MailQueueName OUT_GOING_1 = MailQueueName.fromString("OUT_GOING_1");
+    private static final MailQueueName OUT_GOING_2 = MailQueueName.fromString("OUT_GOING_2");
+    private static final Instant START = Instant.parse("2018-10-01T10:00:00.000Z");
+    private static final Instant NEXT_START = Instant.parse("2018-10-01T10:10:00.000Z");
+
+    @RegisterExtension
+    static CassandraClusterExtension cassandraCluster = new CassandraClusterExtension(CassandraMailQueueViewModule.MODULE);
+
+    private MailQueueSizeDAO testee;
+
+    @BeforeEach
+    void setUp(CassandraCluster cassandra) {
+        testee = new MailQueueSizeDAO(cassandra.getConf());
+    }
+
+    @Test
+    void getSizeShouldReturnZeroByDefault() {
+        assertThat(testee.getSize(OUT_GOING_1).join()).isEqualTo(0L);
+    }
+
+    @Test
+    void incrementShouldIncreaseSize() {
+        testee.increment(OUT_GOING_1).join();
+        testee.increment(OUT_GOING_1).join();
+
+        assertThat(testee.getSize(OUT_GOING_1).join()).isEqualTo(2L);
+    }
+
+    @Test
+    void decrementShouldDecreaseSizeByTheGivenCount() {
+        testee.add(OUT_GOING_1, 5).join();
+
+        testee.decrement(OUT_GOING_1, 3).join();
+
+        assertThat(testee.getSize(OUT_GOING_1).join()).isEqualTo(2L);
+    }
+
+    @Test
+    void addShouldAcceptNegativeDeltas() {
+        testee.add(OUT_GOING_1, 2).join();
+
+        testee.add(OUT_GOING_1, -2).join();
+
+        assertThat(testee.getSize(OUT_GOING_1).join()).isEqualTo(0L);
+    }
+
+    @Test
+    void sizesShouldBeIsolatedBetweenQueues() {
+        testee.increment(OUT_GOING_2).join();
+
+        assertThat(testee.getSize(OUT_GOING_1).join()).isEqualTo(0L);
+    }
+
+    @Test
+    void getSizeShouldAddTheChangesCountedSinceTheSnapshot() {
+        testee.add(OUT_GOING_1, 5).join();
+        testee.claimReconciliation(OUT_GOING_1, Optional.empty(), START).join();
+        testee.saveSnapshot(OUT_GOING_1, START, 3, 5).join();
+
+        testee.add(OUT_GOING_1, 2).join();
+
+        assertThat(testee.getSize(OUT_GOING_1).join()).isEqualTo(5L);
+    }
+
+    @Test
+    void getSizeShouldIgnoreClaimedReconciliationsWithoutSnapshot() {
+        testee.add(OUT_GOING_1, 5).join();
+
+        testee.claimReconciliation(OUT_GOING_1, Optional.empty(), START).join();
+
+        assertThat(testee.getSize(OUT_GOING_1).join()).isEqualTo(5L);
+    }
+
+    @Test
+    void findReconciliationStartShouldReturnEmptyByDefault() {
+        assertThat(testee.findReconciliationStart(OUT_GOING_1).join()).isEmpty();
+    }
+
+    @Test
+    void findReconciliationStartShouldReturnTheClaimedStart() {
+        testee.claimReconciliation(OUT_GOING_1, Optional.empty(), START).join();
+
+        assertThat(testee.findReconciliationStart(OUT_GOING_1).join()).contains(START);
+    }
+
+    @Test
+    void claimReconciliationShouldElectASingleCaller() {
+        assertThat(testee.claimReconciliation(OUT_GOING_1, Optional.empty(), START).join()).isTrue();
+        assertThat(testee.claimReconciliation(OUT_GOING_1, Optional.empty(), START).join()).isFalse();
+        assertThat(testee.claimReconciliation(OUT_GOING_1, Optional.of(START), NEXT_START).join()).isTrue();
+        assertThat(testee.claimReconciliation(OUT_GOING_1, Optional.of(START), NEXT_START).join()).isFalse();
+    }
+
+    @Test
+    void saveSnapshotShouldBeIgnoredOnceAnotherReconciliationWasClaimed() {
+        testee.claimReconciliation(OUT_GOING_1, Optional.empty(), START).join();
+        testee.claimReconciliation(OUT_GOING_1, Optional.of(START), NEXT_START).join();
+
+        assertThat(testee.saveSnapshot(OUT_GOING_1, START, 3, 0).join()).isFalse();
+        assertThat(testee.getSize(OUT_GOING_1).join()).isEqualTo(0L);
+    }
+}